@@ -22,6 +22,7 @@ package org.proninyaroslav.libretorrent;
 import android.Manifest;
 import android.content.Context;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -41,6 +42,8 @@ import androidx.room.Room;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.rule.GrantPermissionRule;
 
+import java.io.File;
+
 public class AbstractTest
 {
     @Rule
@@ -56,6 +59,7 @@ public class AbstractTest
     protected FeedRepository feedRepo;
     protected FileSystemFacade fs;
     protected TagRepository tagRepo;
+    private File fastResumeDir;
 
     @Before
     public void init()
@@ -65,7 +69,9 @@ public class AbstractTest
                 AppDatabase.class)
                 .allowMainThreadQueries()
                 .build();
-        torrentRepo = new TorrentRepositoryImpl(context, db);
+        fastResumeDir = new File(context.getCacheDir(), "fast_resume_test");
+        FileUtils.deleteQuietly(fastResumeDir);
+        torrentRepo = new TorrentRepositoryImpl(context, db, fastResumeDir);
         feedRepo = new FeedRepositoryImpl(context, db);
         engine = TorrentEngine.getInstance(context);
         tagRepo = new TagRepositoryImpl(db);
@@ -77,5 +83,6 @@ public class AbstractTest
     public void finish()
     {
         db.close();
+        FileUtils.deleteQuietly(fastResumeDir);
     }
 }
@@ -13,6 +13,7 @@ import org.proninyaroslav.libretorrent.core.model.AddTorrentParams;
 import org.proninyaroslav.libretorrent.core.model.data.Priority;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
 import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
 import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
 import org.proninyaroslav.libretorrent.core.utils.Utils;
 
@@ -191,11 +192,11 @@ public class TorrentInfoProviderTest extends AbstractTest
         Disposable d = stateProvider.observePiecesInfo(params.sha1hash)
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe((pieces) -> {
+                .subscribe((update) -> {
                     c.countDown();
-                    assertNotEquals(0, pieces.length);
-                    boolean[] expectedPieces = engine.getPieces(params.sha1hash);
-                    assertEquals(expectedPieces.length, pieces.length);
+                    assertNotEquals(0, update.map().size());
+                    PieceMap expectedPieces = engine.getPieces(params.sha1hash);
+                    assertEquals(expectedPieces.size(), update.map().size());
                 });
 
         try {
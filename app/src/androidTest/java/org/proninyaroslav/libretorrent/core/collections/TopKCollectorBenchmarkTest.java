@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * Compares the full sort with the top-k selection:
+ * top 7 of the large list, as in the foreground notification
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class TopKCollectorBenchmarkTest {
+    private static final String TAG = TopKCollectorBenchmarkTest.class.getSimpleName();
+
+    private static final int K = 7;
+    private static final int ROUNDS = 200;
+
+    @Test
+    public void benchmark10000() {
+        runBenchmark(10_000);
+    }
+
+    @Test
+    public void benchmark100000() {
+        runBenchmark(100_000);
+    }
+
+    private void runBenchmark(int itemsCount) {
+        Random random = new Random(42);
+        var items = new ArrayList<Long>(itemsCount);
+        for (int i = 0; i < itemsCount; i++)
+            items.add(random.nextLong());
+
+        long sortTime = 0, topKTime = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            var sorted = new ArrayList<>(items);
+            sorted.sort(Comparator.naturalOrder());
+            sortTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            var collector = new TopKCollector<Long>(K, Comparator.naturalOrder());
+            for (Long item : items)
+                collector.add(item);
+            List<Long> top = collector.toSortedList();
+            topKTime += System.nanoTime() - start;
+
+            assertEquals(sorted.subList(0, K), top);
+        }
+
+        Log.i(TAG, String.format(Locale.US,
+                "items=%d, k=%d, full sort=%.3f ms, top-k=%.3f ms",
+                itemsCount, K, sortTime / 1e6 / ROUNDS, topKTime / 1e6 / ROUNDS));
+    }
+}
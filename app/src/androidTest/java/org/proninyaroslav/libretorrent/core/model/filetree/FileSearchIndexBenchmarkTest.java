@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Compares the file search while typing the query:
+ * the scan and sort of all files versus the index
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class FileSearchIndexBenchmarkTest {
+    private static final String TAG = FileSearchIndexBenchmarkTest.class.getSimpleName();
+
+    private static final String QUERY = "file1234";
+
+    @Test
+    public void benchmark100k() {
+        runBenchmark(100_000);
+    }
+
+    private void runBenchmark(int filesCount) {
+        var tree = TorrentContentFlatTree.build(makeFiles(filesCount));
+        long start = System.nanoTime();
+        var index = new FileSearchIndex(tree);
+        long buildTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int naiveCount = 0;
+        for (int i = 1; i <= QUERY.length(); i++)
+            naiveCount = naiveSearch(tree, QUERY.substring(0, i)).size();
+        long naiveTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        FileSearchIndex.Result result = null;
+        for (int i = 1; i <= QUERY.length(); i++)
+            result = index.search(QUERY.substring(0, i), result);
+        long indexTime = System.nanoTime() - start;
+
+        assertEquals(naiveCount, result.getCount());
+        Log.i(TAG, String.format(Locale.US,
+                "files=%d, typing \"%s\", scan and sort=%.2f ms, index=%.2f ms, building=%.2f ms",
+                filesCount, QUERY, naiveTime / 1e6, indexTime / 1e6, buildTime / 1e6));
+    }
+
+    /*
+     * Scans all files, as before the index
+     */
+
+    private static List<Integer> naiveSearch(TorrentContentFlatTree tree, String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        var matches = new ArrayList<Integer>();
+        for (int i = 0; i < tree.getFileCount(); i++) {
+            int node = tree.getFileNode(i);
+            if (tree.getName(node).toLowerCase(Locale.ROOT).contains(q))
+                matches.add(node);
+        }
+        matches.sort((a, b) -> {
+            int res = tree.getName(a).compareToIgnoreCase(tree.getName(b));
+            return res != 0 ? res : Integer.compare(a, b);
+        });
+
+        return matches;
+    }
+
+    private static List<BencodeFileItem> makeFiles(int count) {
+        var files = new ArrayList<BencodeFileItem>(count);
+        for (int i = 0; i < count; i++) {
+            String path = String.format(Locale.US, "torrent/dir%d/subdir%d/file%d.bin",
+                    i % 20, (i / 20) % 50, i);
+            files.add(new BencodeFileItem(path, i, 1024L * (i % 100 + 1)));
+        }
+
+        return files;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.libtorrent4j.FileStorage;
+import org.libtorrent4j.swig.file_storage;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
+import org.proninyaroslav.libretorrent.core.utils.Utils;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Compares the content tree construction from libtorrent file storage:
+ * the file list with the flat tree built from it versus the streaming builder
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class FileTreeBuildBenchmarkTest {
+    private static final String TAG = FileTreeBuildBenchmarkTest.class.getSimpleName();
+
+    @Test
+    public void benchmark10k() {
+        runBenchmark(10_000, true);
+    }
+
+    @Test
+    public void benchmark100k() {
+        runBenchmark(100_000, true);
+    }
+
+    /*
+     * The file list of a million files doesn't fit into the heap
+     * of many devices, so only the streaming builder is used
+     */
+
+    @Test
+    public void benchmark1m() {
+        runBenchmark(1_000_000, false);
+    }
+
+    private void runBenchmark(int filesCount, boolean withFileList) {
+        FileStorage storage = makeStorage(filesCount);
+        Runtime runtime = Runtime.getRuntime();
+
+        long fileListTime = 0;
+        long fileListMemory = 0;
+        if (withFileList) {
+            System.gc();
+            long startMemory = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            List<BencodeFileItem> files = Utils.getFileList(storage);
+            TorrentContentFlatTree tree = TorrentContentFlatTree.build(files);
+            fileListTime = System.nanoTime() - start;
+            System.gc();
+            fileListMemory = runtime.totalMemory() - runtime.freeMemory() - startMemory;
+            assertEquals(filesCount, tree.getFileCount());
+        }
+
+        System.gc();
+        long startMemory = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        TorrentContentFlatTree flatTree = TorrentContentFlatTree.build(storage);
+        long flatTreeTime = System.nanoTime() - start;
+        System.gc();
+        long flatTreeMemory = runtime.totalMemory() - runtime.freeMemory() - startMemory;
+        assertEquals(filesCount, flatTree.getFileCount());
+
+        Log.i(TAG, String.format(Locale.US,
+                "files=%d, file list=%.2f ms, %d KiB, streaming=%.2f ms, %d KiB",
+                filesCount,
+                fileListTime / 1e6, fileListMemory / 1024,
+                flatTreeTime / 1e6, flatTreeMemory / 1024));
+    }
+
+    /*
+     * Synthetic torrent with a few levels of directories
+     */
+
+    private static FileStorage makeStorage(int filesCount) {
+        FileStorage storage = new FileStorage(new file_storage());
+        for (int i = 0; i < filesCount; i++) {
+            String path = String.format(Locale.US, "torrent/dir%d/subdir%d/file%d.bin",
+                    i % 20, (i / 20) % 50, i);
+            storage.addFile(path, 1024L * (i % 100 + 1));
+        }
+
+        return storage;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.proninyaroslav.libretorrent.core.model.data.Priority;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * The content tree operations of the details screen on the large torrent
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class TorrentContentFlatTreeBenchmarkTest {
+    private static final String TAG = TorrentContentFlatTreeBenchmarkTest.class.getSimpleName();
+
+    private static final int FILES_COUNT = 100_000;
+
+    /*
+     * Update all files and list every directory, as the details screen does
+     */
+
+    @Test
+    public void benchmarkUpdate() {
+        List<BencodeFileItem> files = makeFiles(FILES_COUNT);
+        long[] received = new long[files.size()];
+        for (int i = 0; i < received.length; i++)
+            received[i] = files.get(i).getSize() / 2;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long startMemory = runtime.totalMemory() - runtime.freeMemory();
+        var tree = TorrentContentFlatTree.build(files);
+        System.gc();
+        long memory = runtime.totalMemory() - runtime.freeMemory() - startMemory;
+
+        long start = System.nanoTime();
+        tree.update(received, null);
+        long sum = listAll(tree, TorrentContentFlatTree.ROOT);
+        long time = System.nanoTime() - start;
+
+        /* Each of the four levels under the root covers all files */
+        assertEquals(tree.size(TorrentContentFlatTree.ROOT) * 3 / 2 * 4, sum);
+        Log.i(TAG, String.format(Locale.US,
+                "files=%d, update and list=%.2f ms, tree=%d KiB",
+                files.size(), time / 1e6, memory / 1024));
+    }
+
+    /*
+     * Ignore all files: file by file versus the batch
+     */
+
+    @Test
+    public void benchmarkIgnoreAll() {
+        List<BencodeFileItem> files = makeFiles(FILES_COUNT);
+        var defaultPriority = new FilePriority(Priority.DEFAULT);
+        var ignorePriority = new FilePriority(Priority.IGNORE);
+
+        var tree = TorrentContentFlatTree.build(files);
+        tree.setPriority(TorrentContentFlatTree.ROOT, defaultPriority);
+        long start = System.nanoTime();
+        for (int i = 0; i < files.size(); i++)
+            tree.setPriority(tree.getFileNode(i), ignorePriority);
+        long fileByFileTime = System.nanoTime() - start;
+        assertEquals(0, tree.nonIgnoreFileSize(TorrentContentFlatTree.ROOT));
+
+        tree = TorrentContentFlatTree.build(files);
+        tree.setPriority(TorrentContentFlatTree.ROOT, defaultPriority);
+        int[] indexes = new int[files.size()];
+        var priorities = new Priority[files.size()];
+        start = System.nanoTime();
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+            priorities[i] = Priority.IGNORE;
+        }
+        tree.setFilePriorities(indexes, priorities);
+        long batchTime = System.nanoTime() - start;
+        assertEquals(0, tree.nonIgnoreFileSize(TorrentContentFlatTree.ROOT));
+
+        Log.i(TAG, String.format(Locale.US,
+                "files=%d, ignore all file by file=%.2f ms, batch=%.2f ms",
+                files.size(), fileByFileTime / 1e6, batchTime / 1e6));
+    }
+
+    private static List<BencodeFileItem> makeFiles(int count) {
+        var files = new ArrayList<BencodeFileItem>(count);
+        for (int i = 0; i < count; i++) {
+            String path = String.format(Locale.US, "torrent/dir%d/subdir%d/file%d.bin",
+                    i % 20, (i / 20) % 50, i);
+            files.add(new BencodeFileItem(path, i, 1024L * (i % 100 + 1)));
+        }
+
+        return files;
+    }
+
+    private static long listAll(TorrentContentFlatTree tree, int node) {
+        long sum = 0;
+        for (int child = tree.getFirstChild(node);
+             child != TorrentContentFlatTree.NO_NODE;
+             child = tree.getNextSibling(child)) {
+            sum += tree.getReceivedBytes(child) + tree.size(child);
+            if (!tree.isFile(child))
+                sum += listAll(tree, child);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/*
+ * Compares the parsing of the large filter (level-1 list size) with the cache loading
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class IPFilterCacheBenchmarkTest {
+    private static final String TAG = IPFilterCacheBenchmarkTest.class.getSimpleName();
+
+    private static final String SOURCE = "file:///sdcard/ipfilter.dat";
+    private static final int LINES = 800_000;
+
+    private File cacheFile;
+
+    @Before
+    public void init() {
+        Context context = ApplicationProvider.getApplicationContext();
+        cacheFile = new File(context.getCacheDir(), "ip_filter_benchmark.bin");
+        cacheFile.delete();
+    }
+
+    @After
+    public void finish() {
+        cacheFile.delete();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        var sb = new StringBuilder(LINES * 64);
+        for (int i = 0; i < LINES; i++) {
+            int addr = i * 1024;
+            sb.append(String.format(Locale.US, "%03d.%03d.%03d.000 - %03d.%03d.%03d.255 , 000 , Range %d%n",
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff,
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff, i));
+        }
+        byte[] datFile = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        long time = System.nanoTime();
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parseDAT(new ByteArrayInputStream(datFile), ranges);
+        ranges.normalize();
+        long parseTime = System.nanoTime() - time;
+        assertEquals(LINES, ruleCount);
+
+        var cache = new IPFilterCache(cacheFile);
+        cache.save(SOURCE, datFile.length, 1, ranges);
+
+        time = System.nanoTime();
+        IPFilterRanges loaded = cache.load(SOURCE, datFile.length, 1);
+        long loadTime = System.nanoTime() - time;
+        assertNotNull(loaded);
+        assertEquals(LINES, loaded.getRuleCount());
+
+        Log.i(TAG, String.format(Locale.US,
+                "rules=%d, parsing=%d ms, cache loading=%d ms",
+                LINES, parseTime / 1_000_000, loadTime / 1_000_000));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/*
+ * Compares the parser with the line-based parsing (LineIterator and String.split)
+ * on the synthetic 1M-line list
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class IPFilterParserBenchmarkTest {
+    private static final String TAG = IPFilterParserBenchmarkTest.class.getSimpleName();
+
+    private static final int LINES = 1_000_000;
+
+    @Test
+    public void benchmark() throws Exception {
+        var sb = new StringBuilder(LINES * 64);
+        for (int i = 0; i < LINES; i++) {
+            int addr = i * 1024;
+            sb.append(String.format(Locale.US, "%03d.%03d.%03d.000 - %03d.%03d.%03d.255 , 000 , Range %d%n",
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff,
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff, i));
+        }
+        byte[] file = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        /* Warm up */
+        for (int i = 0; i < 2; i++) {
+            new IPFilterParser(false).parseDAT(new ByteArrayInputStream(file), new IPFilterRanges());
+            parseLineBased(new ByteArrayInputStream(file), new IPFilterRanges());
+        }
+
+        long time = System.nanoTime();
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parseDAT(new ByteArrayInputStream(file), ranges);
+        long scannerTime = System.nanoTime() - time;
+        assertEquals(LINES, ruleCount);
+
+        time = System.nanoTime();
+        var lineBasedRanges = new IPFilterRanges();
+        ruleCount = parseLineBased(new ByteArrayInputStream(file), lineBasedRanges);
+        long lineBasedTime = System.nanoTime() - time;
+        assertEquals(LINES, ruleCount);
+        assertArrayEquals(lineBasedRanges.getV4Ranges(), ranges.getV4Ranges());
+
+        Log.i(TAG, String.format(Locale.US,
+                "lines=%d, parser=%.0f lines/sec, line-based parser=%.0f lines/sec",
+                LINES, LINES / (scannerTime / 1e9), LINES / (lineBasedTime / 1e9)));
+    }
+
+    /*
+     * The previous parsing approach of the DAT format
+     */
+
+    private static int parseLineBased(InputStream is, IPFilter filter) throws Exception {
+        int ruleCount = 0;
+        LineIterator it = IOUtils.lineIterator(is, "UTF-8");
+        while (it.hasNext()) {
+            String line = it.nextLine().trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("//"))
+                continue;
+            String[] parts = line.split(",");
+            if (parts.length > 1 && Integer.parseInt(parts[1].trim()) > 127)
+                continue;
+            String[] ips = parts[0].split("-");
+            if (ips.length != 2)
+                continue;
+            filter.addRange(ips[0].trim(), ips[1].trim());
+            ruleCount++;
+        }
+
+        return ruleCount;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Measures the aggregate throughput of the streams of the same torrent
+ * read in parallel, depending on the number of the streams
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class TorrentInputStreamBenchmarkTest {
+    private static final String TAG = TorrentInputStreamBenchmarkTest.class.getSimpleName();
+
+    private static final String TORRENT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final int PIECE_LENGTH = 256 * 1024;
+    private static final long FILE_SIZE = 32L * 1024 * 1024;
+    private static final int MAX_STREAMS = 8;
+    private static final long READ_LATENCY = 5; /* ms */
+    private static final int DISK_THREADS = 8;
+    private static final int READ_BUF_SIZE = 64 * 1024;
+
+    private FakeTorrentSession session;
+    private FakeTorrentDownload task;
+    private final List<TorrentStream> streams = new ArrayList<>();
+    private final PieceBufferPool bufferPool = new PieceBufferPool();
+
+    @Before
+    public void init() {
+        session = new FakeTorrentSession();
+        task = new FakeTorrentDownload(session, TORRENT_ID, PIECE_LENGTH,
+                FILE_SIZE * MAX_STREAMS, READ_LATENCY, DISK_THREADS);
+        session.addTask(task);
+        for (int i = 0; i < MAX_STREAMS; i++)
+            streams.add(task.makeStream(i, FILE_SIZE * i, FILE_SIZE));
+    }
+
+    @After
+    public void finish() {
+        task.shutdown();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        for (int n = 1; n <= MAX_STREAMS; n *= 2)
+            runBenchmark(n);
+    }
+
+    private void runBenchmark(int numStreams) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(numStreams);
+        try {
+            var readers = new ArrayList<Callable<Long>>();
+            for (int i = 0; i < numStreams; i++) {
+                var stream = streams.get(i);
+                readers.add(() -> readStream(stream));
+            }
+
+            long time = System.nanoTime();
+            long totalBytes = 0;
+            for (Future<Long> f : executor.invokeAll(readers))
+                totalBytes += f.get();
+            time = System.nanoTime() - time;
+
+            assertEquals(FILE_SIZE * numStreams, totalBytes);
+
+            Log.i(TAG, String.format(Locale.US,
+                    "streams=%d, time=%d ms, throughput=%.1f MB/s",
+                    numStreams, time / 1_000_000,
+                    totalBytes / (1024.0 * 1024.0) / (time / 1_000_000_000.0)));
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long readStream(TorrentStream stream) throws IOException {
+        try (var is = new TorrentInputStream(session, stream, bufferPool)) {
+            var buf = new byte[READ_BUF_SIZE];
+            long total = 0;
+            int n;
+            while ((n = is.read(buf)) != TorrentInputStream.EOF)
+                total += n;
+
+            return total;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Measures the latency (time to the first byte) and the throughput of
+ * the streaming server under concurrent range requests at random positions,
+ * as many players do while seeking. The correctness of the data under load
+ * is checked by TorrentStreamServerLoadTest
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class TorrentStreamServerBenchmarkTest {
+    private static final String TAG = TorrentStreamServerBenchmarkTest.class.getSimpleName();
+
+    private static final int PIECE_LENGTH = 256 * 1024;
+    private static final long FILE_SIZE = 64L * 1024 * 1024;
+    private static final long READ_LATENCY = 2; /* ms */
+    private static final int DISK_THREADS = 8;
+    private static final int TORRENTS = 5;
+    private static final int CLIENTS = 50;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final int RANGE_SIZE = 1024 * 1024;
+
+    private FakeTorrentSession session;
+    private final List<FakeTorrentDownload> tasks = new ArrayList<>();
+    private TorrentStreamServer server;
+
+    @Before
+    public void init() throws IOException {
+        session = new FakeTorrentSession();
+        for (int i = 0; i < TORRENTS; i++) {
+            var task = new FakeTorrentDownload(session, makeTorrentId(i), PIECE_LENGTH,
+                    FILE_SIZE, READ_LATENCY, DISK_THREADS);
+            session.addTask(task);
+            tasks.add(task);
+        }
+
+        server = new TorrentStreamServer("127.0.0.1", 0);
+        server.start(new TorrentStreamServer.StreamSource() {
+            @Override
+            public TorrentStream getStream(@NonNull String torrentId, int fileIndex) {
+                var task = (FakeTorrentDownload) session.getTask(torrentId);
+                return (task == null || fileIndex != 0 ? null : task.makeStream(0, 0, FILE_SIZE));
+            }
+
+            @Override
+            public TorrentInputStream openStream(@NonNull TorrentStream stream,
+                                                 @NonNull PieceBufferPool bufferPool) {
+                return new TorrentInputStream(session, stream, bufferPool);
+            }
+        });
+    }
+
+    @After
+    public void finish() {
+        server.stop();
+        for (var task : tasks)
+            task.shutdown();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        var bytes = new AtomicLong();
+        var rejected = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        long time;
+        try {
+            var clients = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < CLIENTS; i++) {
+                String url = TorrentStreamServer.makeStreamUrl("127.0.0.1",
+                        server.getListeningPort(), makeTorrentId(i % TORRENTS), 0);
+                var random = new Random(i);
+                clients.add(() -> {
+                    runClient(url, random, latencies, bytes, rejected);
+                    return null;
+                });
+            }
+
+            time = System.nanoTime();
+            for (var f : executor.invokeAll(clients))
+                f.get();
+            time = System.nanoTime() - time;
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, latencies.size() + rejected.get());
+        assertTrue(latencies.size() > 0);
+
+        Collections.sort(latencies);
+        Log.i(TAG, String.format(Locale.US,
+                "clients=%d, requests=%d, rejected=%d, " +
+                        "latency p50=%d ms, p90=%d ms, p99=%d ms, max=%d ms, throughput=%.1f MB/s",
+                CLIENTS, latencies.size(), rejected.get(),
+                percentile(latencies, 50), percentile(latencies, 90),
+                percentile(latencies, 99), latencies.get(latencies.size() - 1),
+                bytes.get() / (1024.0 * 1024.0) / (time / 1_000_000_000.0)));
+    }
+
+    private void runClient(String url, Random random, List<Long> latencies,
+                           AtomicLong bytes, AtomicInteger rejected) throws IOException {
+        var buf = new byte[64 * 1024];
+        for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+            long start = (long) (random.nextDouble() * (FILE_SIZE - RANGE_SIZE));
+            long end = start + RANGE_SIZE - 1;
+
+            long time = System.nanoTime();
+            var conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+            /* No free stream slot of the torrent */
+            if (conn.getResponseCode() == 503) {
+                conn.disconnect();
+                rejected.incrementAndGet();
+                continue;
+            }
+            assertEquals(HttpURLConnection.HTTP_PARTIAL, conn.getResponseCode());
+
+            try (InputStream is = conn.getInputStream()) {
+                int n = is.read(buf);
+                latencies.add((System.nanoTime() - time) / 1_000_000);
+                long read = 0;
+                while (n != -1) {
+                    read += n;
+                    n = is.read(buf);
+                }
+                assertEquals(RANGE_SIZE, read);
+                bytes.addAndGet(read);
+            }
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+
+        return sorted.get(Math.max(0, i));
+    }
+
+    private static String makeTorrentId(int i) {
+        return String.format(Locale.US, "%040x", i + 1);
+    }
+}
@@ -21,12 +21,14 @@ package org.proninyaroslav.libretorrent.core.storage;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import androidx.room.Room;
 import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -194,6 +196,43 @@ public class DatabaseMigrationTest {
         assertFalse(channel.isRegexFilter);
     }
 
+    @Test
+    public void testMigration9to10_Feed() throws IOException {
+        long currTime = System.currentTimeMillis();
+        try (SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE_NAME, 9)) {
+            ContentValues feedValues = new ContentValues();
+            feedValues.put("url", feedUrl);
+            feedValues.put("name", feedName);
+            feedValues.put("lastUpdate", currTime);
+            feedValues.put("autoDownload", true);
+            feedValues.put("filter", feedFilter);
+            feedValues.put("isRegexFilter", false);
+            assertNotEquals(-1, db.insert("FeedChannel", SQLiteDatabase.CONFLICT_REPLACE, feedValues));
+        }
+
+        SupportSQLiteDatabase migratedDb = helper.runMigrationsAndValidate(TEST_DATABASE_NAME, 10, true,
+                DatabaseMigration.MIGRATION_9_10);
+        try (Cursor cursor = migratedDb.query("SELECT `url`, `etag`, `lastModified` FROM `FeedChannel`")) {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(feedUrl, cursor.getString(0));
+            assertTrue(cursor.isNull(1));
+            assertTrue(cursor.isNull(2));
+        }
+
+        AppDatabase db = getMigratedRoomDatabase();
+
+        List<FeedChannel> channelList = db.feedDao().getAllFeeds();
+        assertEquals(1, channelList.size());
+
+        FeedChannel channel = channelList.get(0);
+        assertEquals(feedUrl, channel.url);
+        assertEquals(feedName, channel.name);
+        assertEquals(currTime, channel.lastUpdate);
+        assertNull(channel.etag);
+        assertNull(channel.lastModified);
+    }
+
     private void addTorrent(SQLiteDatabase sqliteDb, ContentValues values) {
         assertNotEquals(-1, sqliteDb.replace("torrents", null, values));
     }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
+import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Compares the time of saving the resume data of all torrents on stop:
+ * one transaction per torrent versus the write-behind store with flush
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class FastResumeWriterBenchmarkTest {
+    private static final String TAG = FastResumeWriterBenchmarkTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "fast_resume_benchmark.db";
+    private static final int RESUME_DATA_SIZE = 4096;
+
+    private Context context;
+    private AppDatabase db;
+    private TorrentRepository torrentRepo;
+    private File fastResumeDir;
+
+    @Before
+    public void init() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        /* On-disk database, the commit cost matters here */
+        db = Room.databaseBuilder(context, AppDatabase.class, DATABASE_NAME)
+                .allowMainThreadQueries()
+                .build();
+        fastResumeDir = new File(context.getCacheDir(), "fast_resume_benchmark");
+        FileUtils.deleteQuietly(fastResumeDir);
+        torrentRepo = new TorrentRepositoryImpl(context, db, fastResumeDir);
+    }
+
+    @After
+    public void finish() {
+        db.close();
+        context.deleteDatabase(DATABASE_NAME);
+        FileUtils.deleteQuietly(fastResumeDir);
+    }
+
+    @Test
+    public void benchmark2000() throws Exception {
+        runBenchmark(2000);
+    }
+
+    private void runBenchmark(int torrentsCount) throws Exception {
+        List<Torrent> torrents = fillDatabase(torrentsCount);
+        var data = new byte[RESUME_DATA_SIZE];
+
+        long start = System.nanoTime();
+        for (Torrent torrent : torrents) {
+            torrentRepo.addFastResume(new FastResume(torrent.id, data));
+        }
+        long perTorrentTime = System.nanoTime() - start;
+
+        var writer = new FastResumeWriter(torrentRepo);
+        start = System.nanoTime();
+        for (Torrent torrent : torrents) {
+            writer.put(torrent.id, data);
+        }
+        writer.flush();
+        long writerTime = System.nanoTime() - start;
+
+        for (Torrent torrent : torrents) {
+            assertNotNull(torrentRepo.getFastResumeById(torrent.id));
+        }
+        assertEquals(0, writer.getNumPending());
+
+        Log.i(TAG, String.format(Locale.US,
+                "torrents=%d, transaction per torrent=%.2f ms, write-behind with flush=%.2f ms",
+                torrentsCount,
+                perTorrentTime / 1e6,
+                writerTime / 1e6));
+    }
+
+    private List<Torrent> fillDatabase(int torrentsCount) {
+        var torrents = new ArrayList<Torrent>(torrentsCount);
+        var downloadPath = Uri.parse("file:///");
+        db.runInTransaction(() -> {
+            for (int i = 0; i < torrentsCount; i++) {
+                var torrent = new Torrent(String.format(Locale.US, "%040x", i), downloadPath,
+                        "torrent" + i, false, System.currentTimeMillis(), false, false);
+                torrentRepo.addTorrent(torrent);
+                torrents.add(torrent);
+            }
+        });
+
+        return torrents;
+    }
+}
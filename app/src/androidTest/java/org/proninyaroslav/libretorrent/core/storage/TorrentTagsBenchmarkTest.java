@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
+import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Compares tags lookup for the torrent list: one query per torrent
+ * versus the single join query (cold and cached)
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class TorrentTagsBenchmarkTest {
+    private static final String TAG = TorrentTagsBenchmarkTest.class.getSimpleName();
+
+    private static final int TAGS_COUNT = 10;
+    private static final int TAGS_PER_TORRENT = 2;
+
+    private AppDatabase db;
+    private TorrentRepository torrentRepo;
+    private TagRepository tagRepo;
+    private File fastResumeDir;
+
+    @Before
+    public void init() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        fastResumeDir = new File(context.getCacheDir(), "fast_resume_benchmark");
+        FileUtils.deleteQuietly(fastResumeDir);
+        torrentRepo = new TorrentRepositoryImpl(context, db, fastResumeDir);
+        tagRepo = new TagRepositoryImpl(db);
+    }
+
+    @After
+    public void finish() {
+        db.close();
+        FileUtils.deleteQuietly(fastResumeDir);
+    }
+
+    @Test
+    public void benchmark100() {
+        runBenchmark(100);
+    }
+
+    @Test
+    public void benchmark1000() {
+        runBenchmark(1000);
+    }
+
+    @Test
+    public void benchmark10000() {
+        runBenchmark(10000);
+    }
+
+    private void runBenchmark(int torrentsCount) {
+        List<Torrent> torrents = fillDatabase(torrentsCount);
+
+        long start = System.nanoTime();
+        int perTorrentCount = 0;
+        for (Torrent torrent : torrentRepo.getAllTorrents()) {
+            perTorrentCount += tagRepo.getByTorrentId(torrent.id).size();
+        }
+        long perTorrentTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int bulkCount = 0;
+        var allTags = tagRepo.getAllTorrentTags();
+        for (Torrent torrent : torrentRepo.getAllTorrents()) {
+            var tags = allTags.get(torrent.id);
+            bulkCount += (tags == null ? 0 : tags.size());
+        }
+        long bulkTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        allTags = tagRepo.getAllTorrentTags();
+        for (Torrent torrent : torrents) {
+            allTags.get(torrent.id);
+        }
+        long cachedTime = System.nanoTime() - start;
+
+        assertEquals(torrentsCount * TAGS_PER_TORRENT, perTorrentCount);
+        assertEquals(perTorrentCount, bulkCount);
+
+        Log.i(TAG, String.format(Locale.US,
+                "torrents=%d, per-torrent queries=%.2f ms, join query=%.2f ms, cached=%.2f ms",
+                torrentsCount,
+                perTorrentTime / 1e6,
+                bulkTime / 1e6,
+                cachedTime / 1e6));
+    }
+
+    private List<Torrent> fillDatabase(int torrentsCount) {
+        var tags = new ArrayList<TagInfo>(TAGS_COUNT);
+        for (int i = 0; i < TAGS_COUNT; i++) {
+            tagRepo.insert(new TagInfo("tag" + i, i));
+            tags.add(tagRepo.getByName("tag" + i));
+        }
+
+        var torrents = new ArrayList<Torrent>(torrentsCount);
+        var downloadPath = Uri.parse("file:///");
+        db.runInTransaction(() -> {
+            for (int i = 0; i < torrentsCount; i++) {
+                var torrent = new Torrent(String.format(Locale.US, "%040x", i), downloadPath,
+                        "torrent" + i, false, System.currentTimeMillis(), false, false);
+                torrentRepo.addTorrent(torrent);
+                var torrentTags = new ArrayList<TagInfo>(TAGS_PER_TORRENT);
+                for (int j = 0; j < TAGS_PER_TORRENT; j++) {
+                    torrentTags.add(tags.get((i + j) % TAGS_COUNT));
+                }
+                torrentRepo.replaceTags(torrent.id, torrentTags);
+                torrents.add(torrent);
+            }
+        });
+
+        return torrents;
+    }
+}
@@ -14,4 +14,16 @@ public interface FeedParser {
 	 * @return Feed object containing parsed data
 	 */
 	Feed parse(InputStream inStream) throws FeedException;
+
+	/**
+	 * Parses the feed until the first item published before the specified
+	 * time. Feeds usually list items from newest to oldest, so the rest of
+	 * the stream is not read. Items without a published date never stop
+	 * parsing.
+	 * 
+	 * @param inStream InputStream for the web feed
+	 * @param minPubDate time in milliseconds, or 0 to parse the whole feed
+	 * @return Feed object containing the items parsed before stopping
+	 */
+	Feed parse(InputStream inStream, long minPubDate) throws FeedException;
 }
@@ -15,8 +15,6 @@ import java.io.InputStream;
 public class XMLInputStream extends FilterInputStream {
 
     private static final int MIN_LENGTH = 2;
-    // Everything we've read.
-    StringBuilder red = new StringBuilder();
     // Data I have pushed back.
     StringBuilder pushBack = new StringBuilder();
     // How much we've given them.
@@ -120,7 +118,6 @@ public class XMLInputStream extends FilterInputStream {
 
     private void given(CharSequence s, int wanted, int got) {
         // Keep track of what we've given them.
-        red.append(s);
         given += got;
     }
 
@@ -20,6 +20,11 @@ public class DefaultFeedParser implements FeedParser {
 
     @Override
     public Feed parse(InputStream inStream) throws FeedException {
+        return parse(inStream, 0);
+    }
+
+    @Override
+    public Feed parse(InputStream inStream, long minPubDate) throws FeedException {
         try {
             // Create SAX parser.
             SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -31,10 +36,14 @@ public class DefaultFeedParser implements FeedParser {
             reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
             
         	// Create SAX handler.
-        	FeedHandler handler = new FeedHandler();
+        	FeedHandler handler = new FeedHandler(minPubDate);
         	
             // Parse feed and return data.
-        	parser.parse(new XMLInputStream(inStream), handler);
+            try {
+                parser.parse(new XMLInputStream(inStream), handler);
+            } catch (FeedHandler.StopParsingException ex) {
+                // Reached the old items, the feed is already complete.
+            }
         	Feed feed = handler.getFeed();
             if (feed == null)
                 throw new FeedException("Invalid RSS/Atom feed");
@@ -2,12 +2,14 @@ package com.ernieyu.feedparser.impl;
 
 import com.ernieyu.feedparser.Feed;
 import com.ernieyu.feedparser.FeedType;
+import com.ernieyu.feedparser.Item;
 
 import org.apache.commons.text.StringEscapeUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.util.Date;
 import java.util.Stack;
 
 /**
@@ -20,11 +22,20 @@ class FeedHandler extends DefaultHandler {
     private static final String ITEM = "item";
     private static final String ENTRY = "entry";
 
+    private final long minPubDate;
     private Stack<BaseElement> elementStack;
     private Feed feed;
     private FeedType type;
     private StringBuilder buffer;
     
+    /**
+     * Constructs a handler that stops at the first item published before
+     * the specified time in milliseconds, 0 to process the whole feed.
+     */
+    FeedHandler(long minPubDate) {
+        this.minPubDate = minPubDate;
+    }
+
     /**
      * Returns the feed.
      */
@@ -119,6 +130,12 @@ class FeedHandler extends DefaultHandler {
             content = StringEscapeUtils.unescapeXml(content);
         }
         currentElement.setContent(content);
+
+        // Skip the rest of the feed when the old item is reached.
+        if (isOldItem(currentElement)) {
+            closeElements();
+            throw new StopParsingException();
+        }
         
         // Add current element to its parent.
         if (!elementStack.empty()) {
@@ -129,4 +146,32 @@ class FeedHandler extends DefaultHandler {
         // Clear content buffer.
         buffer.delete(0, buffer.length());
     }
+
+    private boolean isOldItem(BaseElement element) {
+        if (minPubDate <= 0 || !(element instanceof Item)) {
+            return false;
+        }
+        Date pubDate = ((Item) element).getPubDate();
+        return pubDate != null && pubDate.getTime() < minPubDate;
+    }
+
+    /**
+     * Adds the elements that are still open to their parents, so the feed
+     * contains everything parsed so far.
+     */
+    private void closeElements() {
+        while (elementStack.size() > 1) {
+            BaseElement element = elementStack.pop();
+            elementStack.peek().addElement(element.getName(), element);
+        }
+    }
+
+    /**
+     * Thrown to stop the SAX parser before the end of the document.
+     */
+    static class StopParsingException extends SAXException {
+        StopParsingException() {
+            super("Parsing stopped");
+        }
+    }
 }
@@ -33,14 +33,19 @@ import com.ernieyu.feedparser.mediarss.Content;
 import com.ernieyu.feedparser.mediarss.Hash;
 import com.ernieyu.feedparser.mediarss.MediaRss;
 
+import org.proninyaroslav.libretorrent.core.exception.FetchLinkException;
 import org.proninyaroslav.libretorrent.core.model.data.entity.FeedChannel;
 import org.proninyaroslav.libretorrent.core.model.data.entity.FeedItem;
 import org.proninyaroslav.libretorrent.core.utils.Utils;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /*
  * Parser RSS/Atom feeds.
@@ -55,32 +60,76 @@ import java.util.List;
  */
 
 public class FeedParser {
+    /*
+     * The items published a bit earlier than the previous fetch can appear
+     * in the feed later (feed caching, clock skew), so parsing stops only
+     * at the items older than this margin
+     */
+    private static final long OLD_ITEMS_MARGIN = TimeUnit.DAYS.toMillis(1);
+
     private final FeedChannel feedChannel;
     private Feed feed;
+    private boolean notModified;
+    private String etag;
+    private String lastModified;
+
+    /*
+     * Sends the conditional request with the validators of the previous
+     * response and parses the response stream without buffering it
+     */
 
     public FeedParser(@NonNull Context context, @NonNull FeedChannel feedChannel) throws Exception {
         this.feedChannel = feedChannel;
-        ByteArrayInputStream bsStream = null;
+
+        var requestProperties = new HashMap<String, String>();
+        requestProperties.put("Accept-Encoding", "gzip");
+        if (!TextUtils.isEmpty(feedChannel.etag))
+            requestProperties.put("If-None-Match", feedChannel.etag);
+        if (!TextUtils.isEmpty(feedChannel.lastModified))
+            requestProperties.put("If-Modified-Since", feedChannel.lastModified);
+
+        HttpURLConnection connection = Utils.openHttpConnection(context, feedChannel.url,
+                requestProperties);
         try {
-            byte[] response = Utils.fetchHttpUrl(context, feedChannel.url);
-            if (response == null)
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                notModified = true;
                 return;
-            bsStream = new ByteArrayInputStream(response);
-            feed = FeedParserFactory.newParser().parse(bsStream);
+            } else if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new FetchLinkException("Error while downloading file: " + responseCode);
+            }
+            etag = connection.getHeaderField("ETag");
+            lastModified = connection.getHeaderField("Last-Modified");
 
-        } finally {
-            if (bsStream != null) {
-                try {
-                    bsStream.close();
-                } catch (Exception e) {
-                    /* Ignore */
-                }
+            long minPubDate = (feedChannel.lastUpdate > 0 ?
+                    feedChannel.lastUpdate - OLD_ITEMS_MARGIN : 0);
+            try (InputStream is = new BufferedInputStream(Utils.getHttpInputStream(connection))) {
+                feed = FeedParserFactory.newParser().parse(is, minPubDate);
             }
+
+        } finally {
+            connection.disconnect();
         }
     }
 
+    /*
+     * The feed hasn't changed since the previous fetch (HTTP 304), there are no items
+     */
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
     public String getTitle() {
-        return feed.getTitle();
+        return (feed == null ? null : feed.getTitle());
     }
 
     public List<FeedItem> getItems() {
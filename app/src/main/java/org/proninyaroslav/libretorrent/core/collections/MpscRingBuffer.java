@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.collections;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * Bounded lock-free queue for many producers and a single consumer.
+ * Each slot has a sequence number that tells whether it's free for
+ * the producer with the current lap or ready for the consumer,
+ * so producers only compete for the tail counter and never wait
+ * for each other or for the consumer. If the queue is full, either
+ * the new element is dropped (`offer()`) or the oldest one is evicted
+ * (`offerEvicting()`) and counted instead of blocking the producer.
+ *
+ * There is a single consumer, but the head counter is advanced with CAS,
+ * so the evicting producers can take the oldest elements concurrently with it.
+ */
+
+public class MpscRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    /* Changed by the consumer and by the evicting producers */
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    /*
+     * The capacity is rounded up to the next power of two
+     */
+
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        elements = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /*
+     * Never blocks. Returns false if the queue is full and the element was dropped
+     */
+
+    public boolean offer(@NonNull E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        if (tryOffer(element)) {
+            return true;
+        }
+        dropped.increment();
+
+        return false;
+    }
+
+    /*
+     * Never blocks. If the queue is full, evicts the oldest elements
+     * to make room for the new one, so the most recent elements are kept
+     */
+
+    public void offerEvicting(@NonNull E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        while (!tryOffer(element)) {
+            if (poll() != null) {
+                dropped.increment();
+            } else {
+                /* The oldest slot is being published or freed by another thread */
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private boolean tryOffer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements.lazySet(index, element);
+                    /* Publish the slot to the consumer */
+                    sequences.lazySet(index, pos + 1);
+
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                /* The consumer hasn't freed this slot since the previous lap */
+                return false;
+            } else {
+                /* Another producer took this position */
+                pos = tail.get();
+            }
+        }
+    }
+
+    @Nullable
+    public E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E element = elements.get(index);
+                    elements.lazySet(index, null);
+                    /* Free the slot for the next lap */
+                    sequences.lazySet(index, pos + mask + 1);
+
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                /* Empty or the producer hasn't published it yet */
+                return null;
+            } else {
+                /* Another thread took this position */
+                pos = head.get();
+            }
+        }
+    }
+
+    /*
+     * Removes up to `maxElements` in FIFO order and passes them to the consumer.
+     * Returns the number of drained elements
+     */
+
+    public int drain(@NonNull Consumer<? super E> consumer, int maxElements) {
+        int count = 0;
+        while (count < maxElements) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            consumer.accept(element);
+            count++;
+        }
+
+        return count;
+    }
+
+    /*
+     * Approximate if producers are working concurrently
+     */
+
+    public int size() {
+        long size = tail.get() - head.get();
+
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /*
+     * Number of elements rejected or evicted because the queue was full
+     */
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
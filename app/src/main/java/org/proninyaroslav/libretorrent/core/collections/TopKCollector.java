@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.collections;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Keeps the first `k` elements in the sort order without sorting all
+ * the added elements: O(n log k) time and O(k) memory.
+ * The order of equal elements is the order of addition, as in the stable sorting.
+ * Not thread-safe.
+ */
+
+public class TopKCollector<E> {
+    private final int k;
+    private final Comparator<? super E> comparator;
+    /* The worst kept element is the head */
+    private final PriorityQueue<Item<E>> heap;
+    private long count;
+
+    public TopKCollector(int k, @NonNull Comparator<? super E> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be greater or equal 0");
+        }
+
+        this.k = k;
+        this.comparator = comparator;
+        heap = new PriorityQueue<>(Math.max(1, k), (a, b) -> compareItems(b, a));
+    }
+
+    public void add(E element) {
+        var item = new Item<>(element, count++);
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (k > 0 && compareItems(item, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    /*
+     * Number of all added elements
+     */
+
+    public long getCount() {
+        return count;
+    }
+
+    @NonNull
+    public List<E> toSortedList() {
+        var items = new ArrayList<>(heap);
+        Collections.sort(items, this::compareItems);
+
+        var res = new ArrayList<E>(items.size());
+        for (var item : items) {
+            res.add(item.element);
+        }
+
+        return res;
+    }
+
+    public void clear() {
+        heap.clear();
+        count = 0;
+    }
+
+    private int compareItems(Item<E> a, Item<E> b) {
+        int res = comparator.compare(a.element, b.element);
+
+        return res != 0 ? res : Long.compare(a.order, b.order);
+    }
+
+    private record Item<E>(E element, long order) {}
+}
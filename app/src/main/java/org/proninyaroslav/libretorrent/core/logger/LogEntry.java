@@ -34,7 +34,6 @@ public class LogEntry
     @NonNull
     private final String msg;
     private final long timeStamp;
-    private final SimpleDateFormat timeStampFormatter;
 
     public LogEntry(int id, @NonNull String tag,@NonNull String msg, long timeStamp)
     {
@@ -42,8 +41,16 @@ public class LogEntry
         this.tag = tag;
         this.msg = msg;
         this.timeStamp = timeStamp;
-        this.timeStampFormatter = new SimpleDateFormat(defaultTimeStampFormatter,
-                Locale.getDefault());
+    }
+
+    /*
+     * The formatter isn't stored in each entry, because it's heavy
+     * and only needed for printing
+     */
+
+    static SimpleDateFormat newTimeStampFormatter()
+    {
+        return new SimpleDateFormat(defaultTimeStampFormatter, Locale.getDefault());
     }
 
     public int getId()
@@ -70,7 +77,7 @@ public class LogEntry
 
     public String getTimeStampAsString()
     {
-        return timeStampFormatter.format(this.timeStamp);
+        return newTimeStampFormatter().format(this.timeStamp);
     }
 
     @Override
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Exports the log snapshot to a stream. The entries are formatted
+ * by a background thread into chunks, which are passed through
+ * a bounded queue to the calling thread, which compresses (optional)
+ * and writes them. So formatting, compression and I/O overlap,
+ * and the logger isn't locked at all during the export.
+ */
+
+public class LogExporter {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_QUEUED_CHUNKS = 4;
+
+    public interface ProgressListener {
+        void onProgress(int exportedEntries, int totalEntries);
+    }
+
+    private final LogSnapshot snapshot;
+    private final boolean timeStamp;
+    private final boolean compress;
+
+    /*
+     * If `compress` is true, the output is in gzip format
+     */
+
+    public LogExporter(@NonNull LogSnapshot snapshot, boolean timeStamp, boolean compress) {
+        this.snapshot = snapshot;
+        this.timeStamp = timeStamp;
+        this.compress = compress;
+    }
+
+    /*
+     * Blocks until all entries are written. The stream isn't closed.
+     * Returns the number of exported entries
+     */
+
+    public int export(@NonNull OutputStream os, @Nullable ProgressListener listener) throws IOException {
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(MAX_QUEUED_CHUNKS);
+        var formatter = new Thread(() -> format(queue), "LogExporter");
+        formatter.setDaemon(true);
+        formatter.start();
+
+        int total = snapshot.size();
+        int exported = 0;
+        GzipStream gzipOut = null;
+        try {
+            if (compress) {
+                gzipOut = new GzipStream(os);
+            }
+            OutputStream out = (gzipOut == null ? os : gzipOut);
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk.error != null) {
+                    throw new IOException(chunk.error);
+                }
+                if (chunk.numEntries == 0) {
+                    break;
+                }
+
+                out.write(chunk.data, 0, chunk.length);
+                exported += chunk.numEntries;
+                if (listener != null) {
+                    listener.onProgress(exported, total);
+                }
+            }
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+            out.flush();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+
+        } finally {
+            /* Stop the formatter if it's still running */
+            formatter.interrupt();
+            if (gzipOut != null) {
+                gzipOut.end();
+            }
+        }
+
+        return exported;
+    }
+
+    /*
+     * Runs on the formatter thread. The last chunk is empty
+     */
+
+    private void format(BlockingQueue<Chunk> queue) {
+        try {
+            try {
+                var timeStampFormatter = (timeStamp ? new TimeStampFormatter() : null);
+                var chunk = new Chunk();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (timeStampFormatter != null) {
+                        timeStampFormatter.write(snapshot.getTimeStamp(i), chunk);
+                    }
+                    snapshot.write(i, chunk);
+                    chunk.numEntries++;
+
+                    if (chunk.length >= CHUNK_SIZE) {
+                        queue.put(chunk);
+                        chunk = new Chunk();
+                    }
+                }
+                if (chunk.numEntries > 0) {
+                    queue.put(chunk);
+                }
+                queue.put(new Chunk());
+
+            } catch (RuntimeException | IOException e) {
+                var errorChunk = new Chunk();
+                errorChunk.error = e;
+                queue.put(errorChunk);
+            }
+        } catch (InterruptedException e) {
+            /* Export is stopped */
+        }
+    }
+
+    /*
+     * The stream isn't closed, because it would close the underlying stream.
+     * Instead the native deflater is released explicitly, also on error
+     */
+
+    private static class GzipStream extends GZIPOutputStream {
+        GzipStream(OutputStream os) throws IOException {
+            super(os, CHUNK_SIZE);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+
+    /*
+     * Formatted entries, it's written by the formatter thread only
+     */
+
+    private static class Chunk extends OutputStream {
+        byte[] data = new byte[CHUNK_SIZE + CHUNK_SIZE / 4];
+        int length;
+        int numEntries;
+        Exception error;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            data[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, data, length, len);
+            length += len;
+        }
+
+        private void ensureCapacity(int len) {
+            if (length + len > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + len));
+            }
+        }
+    }
+
+    /*
+     * Formats the time stamp as `LogEntry.toStringWithTimeStamp()`.
+     * The date and time without milliseconds are formatted
+     * only once per second, which is the most expensive part.
+     */
+
+    static class TimeStampFormatter {
+        private final SimpleDateFormat secondsFormat;
+        /* Digits of the locale, as in SimpleDateFormat */
+        private final char zeroDigit;
+        private final byte[][] millis = new byte[1000][];
+        private long cachedSecond = Long.MIN_VALUE;
+        private byte[] cachedPrefix;
+
+        TimeStampFormatter() {
+            Locale locale = Locale.getDefault();
+            secondsFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.", locale);
+            zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+        }
+
+        void write(long timeStamp, @NonNull OutputStream os) throws IOException {
+            long second = Math.floorDiv(timeStamp, 1000L);
+            if (second != cachedSecond) {
+                cachedSecond = second;
+                cachedPrefix = secondsFormat.format(second * 1000)
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+
+            os.write(cachedPrefix);
+            os.write(getMillis((int) Math.floorMod(timeStamp, 1000L)));
+        }
+
+        private byte[] getMillis(int ms) {
+            if (millis[ms] == null) {
+                char[] chars = new char[]{
+                        (char) (zeroDigit + ms / 100),
+                        (char) (zeroDigit + ms / 10 % 10),
+                        (char) (zeroDigit + ms % 10),
+                        ' ',
+                };
+                millis[ms] = new String(chars).getBytes(StandardCharsets.UTF_8);
+            }
+
+            return millis[ms];
+        }
+    }
+}
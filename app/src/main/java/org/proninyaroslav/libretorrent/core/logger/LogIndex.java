@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.logger;
+
+/*
+ * Ordered ring of the `LogStore` sequence numbers, e.g. the entries that
+ * passed the filters. Entries evicted from the store are removed
+ * from the front by `trim()`.
+ * Not thread-safe.
+ */
+
+class LogIndex {
+    private static final int INIT_CAPACITY = 256;
+
+    private final int maxSize;
+    private long[] seqs;
+    private int head;
+    private int size;
+
+    LogIndex(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be greater than 0");
+        }
+
+        this.maxSize = maxSize;
+        seqs = new long[Math.min(maxSize, INIT_CAPACITY)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int pos) {
+        if (pos < 0 || pos >= size) {
+            throw new IllegalArgumentException("Invalid position = " + pos);
+        }
+
+        return seqs[index(pos)];
+    }
+
+    /*
+     * `seq` must be greater than the last added. The oldest one
+     * is removed if the index is full
+     */
+
+    void add(long seq) {
+        if (size == maxSize) {
+            head = index(1);
+            size--;
+        } else if (size == seqs.length) {
+            grow();
+        }
+        seqs[index(size)] = seq;
+        size++;
+    }
+
+    /*
+     * Removes all sequence numbers less than `firstSeq`
+     */
+
+    void trim(long firstSeq) {
+        while (size > 0 && seqs[head] < firstSeq) {
+            head = index(1);
+            size--;
+        }
+    }
+
+    /*
+     * Returns the position of the first sequence number
+     * that is greater or equal to `seq`, or size if none
+     */
+
+    int lowerBound(long seq) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (seqs[index(mid)] < seq) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int index(int pos) {
+        int index = head + pos;
+
+        return index >= seqs.length ? index - seqs.length : index;
+    }
+
+    private void grow() {
+        long[] newSeqs = new long[(int) Math.min(maxSize, (long) seqs.length * 2)];
+        for (int i = 0; i < size; i++) {
+            newSeqs[i] = seqs[index(i)];
+        }
+        seqs = newSeqs;
+        head = 0;
+    }
+}
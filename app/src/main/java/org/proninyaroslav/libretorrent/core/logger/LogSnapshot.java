@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.logger;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Immutable copy of the log entries, taken under the logger lock
+ * with a few array copies. It can be formatted and written
+ * by any thread without blocking the logger.
+ */
+
+public final class LogSnapshot {
+    private final byte[][] tags;
+    private final long[] timeStamps;
+    private final int[] entryTags;
+    private final int[] msgOffsets;
+    private final int[] msgLengths;
+    private final byte[] messages;
+
+    LogSnapshot(
+            @NonNull byte[][] tags,
+            @NonNull long[] timeStamps,
+            @NonNull int[] entryTags,
+            @NonNull int[] msgOffsets,
+            @NonNull int[] msgLengths,
+            @NonNull byte[] messages
+    ) {
+        this.tags = tags;
+        this.timeStamps = timeStamps;
+        this.entryTags = entryTags;
+        this.msgOffsets = msgOffsets;
+        this.msgLengths = msgLengths;
+        this.messages = messages;
+    }
+
+    static LogSnapshot empty() {
+        return new LogSnapshot(new byte[0][], new long[0], new int[0], new int[0], new int[0], new byte[0]);
+    }
+
+    public int size() {
+        return timeStamps.length;
+    }
+
+    public long getTimeStamp(int pos) {
+        return timeStamps[pos];
+    }
+
+    /*
+     * Writes the entry in the `LogEntry.toString()` format, without the time stamp
+     */
+
+    void write(int pos, @NonNull OutputStream os) throws IOException {
+        LogStore.writeEntry(os, tags[entryTags[pos]], messages, msgOffsets[pos], msgLengths[pos]);
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.logger;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+
+/*
+ * Compact storage of the log entries. Instead of the objects, each field
+ * is stored in its own primitive array (column), the messages are stored
+ * as UTF-8 in a shared circular byte arena and the tags are interned.
+ * If there is no space for a new entry, the oldest entries are evicted,
+ * either because of the maximum number of entries or the arena size.
+ * Both the columns and the arena grow on demand up to their limits.
+ *
+ * Entries are addressed by the sequence number, which is increased
+ * for each added entry and doesn't change after evicting old entries.
+ * Not thread-safe.
+ */
+
+class LogStore {
+    private static final int INIT_CAPACITY = 256;
+    private static final int INIT_ARENA_SIZE = 16 * 1024;
+    private static final byte[] TAG_START = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TAG_END = "] ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LINE_SEPARATOR =
+            System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final int maxEntries;
+    private final int maxArenaSize;
+
+    private int[] ids;
+    private long[] timeStamps;
+    private int[] tags;
+    private int[] msgOffsets;
+    private int[] msgLengths;
+    /* Column index of the oldest entry */
+    private int head;
+    private int size;
+    private long firstSeq;
+
+    private byte[] arena;
+    /* Offset of the oldest message */
+    private int arenaHead;
+    /* Offset where the next message will be written */
+    private int arenaTail;
+
+    private final ArrayList<String> tagNames = new ArrayList<>();
+    private final ArrayList<byte[]> tagBytes = new ArrayList<>();
+    private final HashMap<String, Integer> tagIndex = new HashMap<>();
+
+    LogStore(int maxEntries, int maxArenaSize) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum entries must be greater than 0");
+        }
+        if (maxArenaSize <= 0) {
+            throw new IllegalArgumentException("Maximum arena size must be greater than 0");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxArenaSize = maxArenaSize;
+        allocColumns(Math.min(maxEntries, INIT_CAPACITY));
+        arena = new byte[Math.min(maxArenaSize, INIT_ARENA_SIZE)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /*
+     * Sequence number of the oldest stored entry
+     */
+
+    long getFirstSeq() {
+        return firstSeq;
+    }
+
+    /*
+     * Sequence number that will be assigned to the next entry
+     */
+
+    long getEndSeq() {
+        return firstSeq + size;
+    }
+
+    boolean contains(long seq) {
+        return seq >= firstSeq && seq < firstSeq + size;
+    }
+
+    /*
+     * Returns the sequence number of the added entry
+     */
+
+    long add(@NonNull LogEntry entry) {
+        byte[] msg = entry.getMsg().getBytes(StandardCharsets.UTF_8);
+        int msgLength = Math.min(msg.length, maxArenaSize);
+
+        if (size == maxEntries) {
+            evictOldest();
+        } else if (size == ids.length) {
+            resize(Math.min(maxEntries, ids.length * 2), arena.length);
+        }
+        int offset = allocMessage(msgLength);
+        System.arraycopy(msg, 0, arena, offset, msgLength);
+        arenaTail = offset + msgLength;
+
+        int index = columnIndex(size);
+        ids[index] = entry.getId();
+        timeStamps[index] = entry.getTimeStamp();
+        tags[index] = internTag(entry.getTag());
+        msgOffsets[index] = offset;
+        msgLengths[index] = msgLength;
+        if (size == 0) {
+            arenaHead = offset;
+        }
+        size++;
+
+        return getEndSeq() - 1;
+    }
+
+    @NonNull
+    LogEntry get(long seq) {
+        int index = checkedColumnIndex(seq);
+
+        return new LogEntry(
+                ids[index],
+                tagNames.get(tags[index]),
+                new String(arena, msgOffsets[index], msgLengths[index], StandardCharsets.UTF_8),
+                timeStamps[index]
+        );
+    }
+
+    /*
+     * Writes the entry in the `LogEntry.toString()` format (or with the time stamp)
+     * directly from the arena, without creating the strings.
+     * `timeStampFormat` is required only if `timeStamp` is true.
+     */
+
+    void write(
+            long seq,
+            @NonNull OutputStream os,
+            boolean timeStamp,
+            SimpleDateFormat timeStampFormat
+    ) throws IOException {
+        int index = checkedColumnIndex(seq);
+
+        if (timeStamp) {
+            String time = timeStampFormat.format(new Date(timeStamps[index])) + " ";
+            os.write(time.getBytes(StandardCharsets.UTF_8));
+        }
+        writeEntry(os, tagBytes.get(tags[index]), arena, msgOffsets[index], msgLengths[index]);
+    }
+
+    static void writeEntry(
+            @NonNull OutputStream os,
+            @NonNull byte[] tag,
+            @NonNull byte[] messages,
+            int msgOffset,
+            int msgLength
+    ) throws IOException {
+        os.write(TAG_START);
+        os.write(tag);
+        os.write(TAG_END);
+        os.write(messages, msgOffset, msgLength);
+        os.write(LINE_SEPARATOR);
+    }
+
+    /*
+     * Copies the entries of the index starting from `startPos`,
+     * the messages are packed into a new array
+     */
+
+    @NonNull
+    LogSnapshot snapshot(@NonNull LogIndex index, int startPos) {
+        int count = Math.max(0, index.size() - startPos);
+        long[] snapshotTimeStamps = new long[count];
+        int[] snapshotTags = new int[count];
+        int[] snapshotMsgOffsets = new int[count];
+        int[] snapshotMsgLengths = new int[count];
+
+        int messagesSize = 0;
+        for (int i = 0; i < count; i++) {
+            messagesSize += msgLengths[checkedColumnIndex(index.get(startPos + i))];
+        }
+        byte[] messages = new byte[messagesSize];
+
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int columnIndex = checkedColumnIndex(index.get(startPos + i));
+            int length = msgLengths[columnIndex];
+            System.arraycopy(arena, msgOffsets[columnIndex], messages, offset, length);
+            snapshotTimeStamps[i] = timeStamps[columnIndex];
+            snapshotTags[i] = tags[columnIndex];
+            snapshotMsgOffsets[i] = offset;
+            snapshotMsgLengths[i] = length;
+            offset += length;
+        }
+
+        return new LogSnapshot(
+                tagBytes.toArray(new byte[0][]),
+                snapshotTimeStamps,
+                snapshotTags,
+                snapshotMsgOffsets,
+                snapshotMsgLengths,
+                messages
+        );
+    }
+
+    void clear() {
+        firstSeq += size;
+        head = 0;
+        size = 0;
+        arenaHead = 0;
+        arenaTail = 0;
+    }
+
+    /*
+     * Approximate heap size of the stored data, in bytes
+     */
+
+    long getAllocatedSize() {
+        return (long) ids.length * (Integer.BYTES * 4 + Long.BYTES) + arena.length;
+    }
+
+    private int columnIndex(int pos) {
+        int index = head + pos;
+
+        return index >= ids.length ? index - ids.length : index;
+    }
+
+    private int checkedColumnIndex(long seq) {
+        if (!contains(seq)) {
+            throw new IllegalArgumentException("Invalid sequence number = " + seq);
+        }
+
+        return columnIndex((int) (seq - firstSeq));
+    }
+
+    private int internTag(String tag) {
+        Integer index = tagIndex.get(tag);
+        if (index == null) {
+            index = tagNames.size();
+            tagNames.add(tag);
+            tagBytes.add(tag.getBytes(StandardCharsets.UTF_8));
+            tagIndex.put(tag, index);
+        }
+
+        return index;
+    }
+
+    /*
+     * Returns the offset of the contiguous arena region for the message,
+     * evicting the oldest entries or growing the arena if needed
+     */
+
+    private int allocMessage(int length) {
+        while (true) {
+            if (size == 0) {
+                arenaHead = 0;
+                arenaTail = 0;
+                if (length <= arena.length) {
+                    return 0;
+                }
+            } else if (arenaTail >= arenaHead) {
+                /* Used region is [arenaHead, arenaTail) */
+                if (length <= arena.length - arenaTail) {
+                    return arenaTail;
+                }
+                /* Wrap around, the tail must not reach the head */
+                if (length < arenaHead) {
+                    return 0;
+                }
+            } else if (length < arenaHead - arenaTail) {
+                /* Used regions are [arenaHead, end) and [0, arenaTail) */
+                return arenaTail;
+            }
+
+            if (arena.length < maxArenaSize) {
+                resize(ids.length, (int) Math.min(maxArenaSize, (long) arena.length * 2));
+            } else {
+                evictOldest();
+            }
+        }
+    }
+
+    private void evictOldest() {
+        head = columnIndex(1);
+        size--;
+        firstSeq++;
+        if (size > 0) {
+            arenaHead = msgOffsets[head];
+        }
+    }
+
+    private void allocColumns(int capacity) {
+        ids = new int[capacity];
+        timeStamps = new long[capacity];
+        tags = new int[capacity];
+        msgOffsets = new int[capacity];
+        msgLengths = new int[capacity];
+    }
+
+    /*
+     * Moves the entries to the start of the new columns and messages
+     * to the start of the new arena, in order
+     */
+
+    private void resize(int capacity, int arenaSize) {
+        int[] oldIds = ids;
+        long[] oldTimeStamps = timeStamps;
+        int[] oldTags = tags;
+        int[] oldMsgOffsets = msgOffsets;
+        int[] oldMsgLengths = msgLengths;
+        byte[] oldArena = arena;
+        int oldHead = head;
+        int oldCapacity = ids.length;
+
+        allocColumns(capacity);
+        arena = new byte[arenaSize];
+
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            int oldIndex = (oldHead + i) % oldCapacity;
+            ids[i] = oldIds[oldIndex];
+            timeStamps[i] = oldTimeStamps[oldIndex];
+            tags[i] = oldTags[oldIndex];
+            int length = oldMsgLengths[oldIndex];
+            System.arraycopy(oldArena, oldMsgOffsets[oldIndex], arena, offset, length);
+            msgOffsets[i] = offset;
+            msgLengths[i] = length;
+            offset += length;
+        }
+        head = 0;
+        arenaHead = 0;
+        arenaTail = offset;
+    }
+}
@@ -22,36 +22,60 @@ package org.proninyaroslav.libretorrent.core.logger;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import org.proninyaroslav.libretorrent.core.collections.FixedRingBuffer;
+import org.proninyaroslav.libretorrent.core.collections.MpscRingBuffer;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.subjects.PublishSubject;
 
+/*
+ * Producers (e.g. the libtorrent alert thread) put the entries into
+ * the lock-free pending queue and never wait for the lock.
+ * The pending thread (or any reader) drains the queue in batches
+ * under the lock, applies the filters and moves the entries to the output.
+ * If the consumer can't keep up or the logger is paused, the oldest
+ * pending entries are evicted and counted, so the most recent ones are kept.
+ *
+ * The entries are kept in the compact columnar store, the filtered output
+ * is an index of the store entries, so the entries aren't duplicated.
+ */
+
 public class Logger {
     protected static final long POLL_TIME_INTERVAL = 250; /* ms */
-
-    protected FixedRingBuffer<LogEntry> inputBuf;
-    protected FixedRingBuffer<LogEntry> outputBuf;
-    /* `numPendingLogs` <= `maxStoredLogs` */
-    protected int numPendingLogs;
+    protected static final int MIN_PENDING_CAPACITY = 4096;
+    protected static final int MAX_PENDING_CAPACITY = 64 * 1024;
+    /* Average message size for which the store arena is limited */
+    protected static final int AVG_MESSAGE_SIZE = 128; /* bytes */
+    protected static final int MAX_ARENA_SIZE = 64 * 1024 * 1024; /* bytes */
+
+    /* All entries */
+    protected LogStore store;
+    /* Entries that passed the filters */
+    protected LogIndex output;
+    protected volatile MpscRingBuffer<LogEntry> pendingBuf;
     protected HashMap<String, LogFilter> filters = new HashMap<>();
     protected ReentrantLock logLock = new ReentrantLock();
     protected int maxStoredLogs;
     protected PublishSubject<DataSetChange> dataSetChangedPublish = PublishSubject.create();
     protected ExecutorService sender = Executors.newSingleThreadExecutor();
-    protected Thread pendingThread;
-    protected boolean paused;
+    protected final AtomicReference<Thread> pendingThread = new AtomicReference<>();
+    protected volatile boolean paused;
     protected boolean recording;
-    protected int recordStartIndex = -1;
+    /* Sequence number of the first recorded entry */
+    protected long recordStartSeq = -1;
 
     public Logger(int maxStoredLogs) {
         if (maxStoredLogs <= 0) {
@@ -59,103 +83,116 @@ public class Logger {
         }
 
         this.maxStoredLogs = maxStoredLogs;
+        this.pendingBuf = new MpscRingBuffer<>(calcPendingBufCapacity(maxStoredLogs));
     }
 
-    private FixedRingBuffer<LogEntry> lazyGetInputBuf() {
-        if (inputBuf == null) {
-            inputBuf = new FixedRingBuffer<>(calcInitBufCapacity(maxStoredLogs), maxStoredLogs);
+    private LogStore lazyGetStore() {
+        if (store == null) {
+            long arenaSize = Math.min(MAX_ARENA_SIZE, (long) maxStoredLogs * AVG_MESSAGE_SIZE);
+            store = new LogStore(maxStoredLogs, (int) arenaSize);
         }
 
-        if (pendingThread == null) {
-            pendingThread = new Thread(this::periodicSwapBuffers);
-            pendingThread.start();
-
-        } else if (!pendingThread.isAlive()) {
-            try {
-                pendingThread.start();
+        return store;
+    }
 
-            } catch (IllegalThreadStateException e) {
-                /* Already started, ignore */
-            }
+    private LogIndex lazyGetOutput() {
+        if (output == null) {
+            output = new LogIndex(maxStoredLogs);
         }
 
-        return inputBuf;
+        return output;
     }
 
-    private FixedRingBuffer<LogEntry> lazyGetOutputBuf() {
-        if (outputBuf == null) {
-            outputBuf = new FixedRingBuffer<>(calcInitBufCapacity(maxStoredLogs), maxStoredLogs);
-        }
+    /*
+     * The pending queue must hold at least all entries that
+     * can be sent between two polls in normal operation
+     */
 
-        return outputBuf;
+    private int calcPendingBufCapacity(int maxStoredLogs) {
+        return Math.max(MIN_PENDING_CAPACITY, Math.min(maxStoredLogs, MAX_PENDING_CAPACITY));
     }
 
-    private int calcInitBufCapacity(int capacity) {
-        return (int) Math.floor(capacity / 2.0);
-    }
+    /*
+     * Lock-free, can be called from any thread
+     */
 
     protected void send(@NonNull LogEntry entry) {
-        logLock.lock();
-
-        try {
-            lazyGetInputBuf().add(entry);
-            if (numPendingLogs < maxStoredLogs) {
-                numPendingLogs++;
-            }
+        MpscRingBuffer<LogEntry> pendingBuf = this.pendingBuf;
+        pendingBuf.offerEvicting(entry);
+
+        Thread consumer = pendingThread.get();
+        if (consumer == null) {
+            startPendingThread();
+        } else if (!paused && pendingBuf.size() >= pendingBuf.capacity() / 2) {
+            /* Wake up the consumer before the queue is full */
+            LockSupport.unpark(consumer);
+        }
+    }
 
-        } finally {
-            logLock.unlock();
+    private void startPendingThread() {
+        var thread = new Thread(this::periodicSwapBuffers, "Logger");
+        thread.setDaemon(true);
+        if (pendingThread.compareAndSet(null, thread)) {
+            thread.start();
         }
     }
 
+    /*
+     * Number of entries that were evicted because the pending queue was full
+     */
+
+    public long getNumDroppedEntries() {
+        return pendingBuf.getDroppedCount();
+    }
+
     private void periodicSwapBuffers() {
-        while (!Thread.interrupted()) {
-            if (!paused) {
-                if (logLock.tryLock()) {
-                    try {
-                        if (Thread.interrupted()) {
-                            break;
-                        }
-                        swapBuffers();
-                    } finally {
-                        logLock.unlock();
+        Thread current = Thread.currentThread();
+        while (!current.isInterrupted()) {
+            if (!paused && logLock.tryLock()) {
+                try {
+                    if (current.isInterrupted()) {
+                        break;
                     }
+                    swapBuffers();
+                } finally {
+                    logLock.unlock();
                 }
             }
-            try {
-                Thread.sleep(POLL_TIME_INTERVAL);
-            } catch (InterruptedException e) {
-                break;
-            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(POLL_TIME_INTERVAL));
         }
     }
 
+    /*
+     * Must be called under the lock, so there is only one consumer at a time
+     */
+
     private void swapBuffers() {
+        MpscRingBuffer<LogEntry> pendingBuf = this.pendingBuf;
+        int numPendingLogs = pendingBuf.size();
         if (numPendingLogs == 0) {
             return;
         }
 
-        FixedRingBuffer<LogEntry> inputBuf = lazyGetInputBuf();
-        if (inputBuf.isEmpty()) {
-            return;
+        /* Entries beyond the limit will be evicted anyway */
+        if (numPendingLogs > maxStoredLogs) {
+            pendingBuf.drain((entry) -> {}, numPendingLogs - maxStoredLogs);
+            numPendingLogs = maxStoredLogs;
         }
-        FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
+
+        LogStore store = lazyGetStore();
+        LogIndex output = lazyGetOutput();
 
         ArrayList<LogEntry> newEntries = new ArrayList<>(numPendingLogs);
-        int size = inputBuf.size();
-        for (int i = size - numPendingLogs; i < size; i++) {
-            LogEntry entry = applyFilters(inputBuf.get(i));
+        pendingBuf.drain((pendingEntry) -> {
+            long seq = store.add(pendingEntry);
+            LogEntry entry = applyFilters(pendingEntry);
             if (entry != null) {
-                outputBuf.add(entry);
+                output.add(seq);
                 newEntries.add(entry);
-
-                /* Move old position back */
-                if (recording && recordStartIndex > 0) {
-                    recordStartIndex--;
-                }
             }
-        }
-        numPendingLogs = 0;
+        }, numPendingLogs);
+        /* Some entries might be evicted from the store */
+        output.trim(store.getFirstSeq());
 
         if (!newEntries.isEmpty()) {
             submitDataSetChanged(new DataSetChange(DataSetChange.Reason.NEW_ENTRIES, newEntries));
@@ -174,8 +211,8 @@ public class Logger {
         logLock.lock();
 
         try {
-            doClean();
             maxStoredLogs = max;
+            doClean();
 
         } finally {
             logLock.unlock();
@@ -239,14 +276,15 @@ public class Logger {
     }
 
     private void forceFilterBuf() {
-        FixedRingBuffer<LogEntry> inputBuf = lazyGetInputBuf();
-        FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
+        swapBuffers();
 
-        outputBuf.clear();
-        for (LogEntry entry : inputBuf) {
-            entry = applyFilters(entry);
-            if (entry != null) {
-                outputBuf.add(entry);
+        LogStore store = lazyGetStore();
+        LogIndex output = lazyGetOutput();
+
+        output.clear();
+        for (long seq = store.getFirstSeq(); seq < store.getEndSeq(); seq++) {
+            if (applyFilters(store.get(seq)) != null) {
+                output.add(seq);
             }
         }
 
@@ -275,17 +313,14 @@ public class Logger {
                 throw new IllegalArgumentException("Size must be greater than 0");
             }
 
-            FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
             swapBuffers();
+            LogStore store = lazyGetStore();
+            LogIndex output = lazyGetOutput();
 
-            ArrayList<LogEntry> res = new ArrayList<>(maxSize);
-            int endPos = startPos + maxSize;
+            int endPos = (int) Math.min(output.size(), (long) startPos + maxSize);
+            ArrayList<LogEntry> res = new ArrayList<>(Math.max(0, endPos - startPos));
             for (int i = startPos; i < endPos; i++) {
-                if (i >= outputBuf.size()) {
-                    continue;
-                }
-
-                res.add(outputBuf.get(i));
+                res.add(store.get(output.get(i)));
             }
 
             return res;
@@ -300,13 +335,13 @@ public class Logger {
         logLock.lock();
 
         try {
-            FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
             swapBuffers();
+            LogIndex output = lazyGetOutput();
 
-            if (pos < 0 || pos >= outputBuf.size())
+            if (pos < 0 || pos >= output.size())
                 throw new IllegalArgumentException("Invalid position = " + pos);
 
-            return outputBuf.get(pos);
+            return lazyGetStore().get(output.get(pos));
 
         } finally {
             logLock.unlock();
@@ -328,8 +363,10 @@ public class Logger {
             swapBuffers();
 
             recording = true;
-            int size = lazyGetOutputBuf().size();
-            recordStartIndex = (size > 0 ? size - 1 : 0);
+            /* Include the last entry */
+            LogIndex output = lazyGetOutput();
+            int size = output.size();
+            recordStartSeq = (size > 0 ? output.get(size - 1) : lazyGetStore().getEndSeq());
 
         } finally {
             logLock.unlock();
@@ -369,20 +406,18 @@ public class Logger {
             if (os != null) {
                 swapBuffers();
 
-                if (recordStartIndex < 0) {
+                if (recordStartSeq < 0) {
                     return count;
                 }
 
-                FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
-
-                return write(outputBuf, os, recordStartIndex, outputBuf.size() - 1, timeStamp);
+                return write(os, lazyGetOutput().lowerBound(recordStartSeq), timeStamp);
             }
 
             return count;
 
         } finally {
             recording = false;
-            recordStartIndex = -1;
+            recordStartSeq = -1;
 
             logLock.unlock();
         }
@@ -402,31 +437,83 @@ public class Logger {
 
         try {
             swapBuffers();
-            FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
 
-            return write(outputBuf, os, 0, outputBuf.size() - 1, timeStamp);
+            return write(os, 0, timeStamp);
 
         } finally {
             logLock.unlock();
         }
     }
 
-    private int write(FixedRingBuffer<LogEntry> buf, OutputStream os,
-                      int startPos, int endPos, boolean timeStamp) {
+    /*
+     * Returns a copy of all entries, that can be exported
+     * by `LogExporter` without holding the lock
+     */
+
+    @NonNull
+    public LogSnapshot snapshot() {
+        logLock.lock();
+
+        try {
+            swapBuffers();
+
+            return lazyGetStore().snapshot(lazyGetOutput(), 0);
+
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /*
+     * Stops recording and returns a copy of the recorded entries
+     */
+
+    @NonNull
+    public LogSnapshot stopRecordingAndSnapshot() {
+        logLock.lock();
+
+        try {
+            swapBuffers();
+            if (recordStartSeq < 0) {
+                return LogSnapshot.empty();
+            }
+            LogIndex output = lazyGetOutput();
+
+            return lazyGetStore().snapshot(output, output.lowerBound(recordStartSeq));
+
+        } finally {
+            recording = false;
+            recordStartSeq = -1;
+
+            logLock.unlock();
+        }
+    }
+
+    /*
+     * Writes the output entries starting from `startPos`
+     * straight from the store, without creating the entry objects
+     */
+
+    private int write(OutputStream os, int startPos, boolean timeStamp) {
         if (startPos < 0) {
             throw new IllegalArgumentException("startPos < 0");
         }
 
-        int count = 0;
-
-        PrintStream printStream = new PrintStream(os, true);
+        LogStore store = lazyGetStore();
+        LogIndex output = lazyGetOutput();
+        SimpleDateFormat timeStampFormat = (timeStamp ? LogEntry.newTimeStampFormatter() : null);
+        var bufOs = new BufferedOutputStream(os);
 
-        for (int i = startPos; i <= endPos; i++) {
-            LogEntry entry = buf.get(i);
-            printStream.println(timeStamp ? entry.toStringWithTimeStamp() : entry.toString());
-            if (!printStream.checkError()) {
+        int count = 0;
+        try {
+            for (int i = startPos; i < output.size(); i++) {
+                store.write(output.get(i), bufOs, timeStamp, timeStampFormat);
                 count++;
             }
+            bufOs.flush();
+
+        } catch (IOException e) {
+            /* Return the number of entries written before the error */
         }
 
         return count;
@@ -436,10 +523,9 @@ public class Logger {
         logLock.lock();
 
         try {
-            FixedRingBuffer<LogEntry> outputBuf = lazyGetOutputBuf();
             swapBuffers();
 
-            return outputBuf.size();
+            return lazyGetOutput().size();
 
         } finally {
             logLock.unlock();
@@ -470,15 +556,15 @@ public class Logger {
     }
 
     private void doClean() {
-        if (pendingThread != null) {
-            pendingThread.interrupt();
+        Thread thread = pendingThread.getAndSet(null);
+        if (thread != null) {
+            thread.interrupt();
         }
-        pendingThread = null;
-        inputBuf = null;
-        outputBuf = null;
-        numPendingLogs = 0;
+        store = null;
+        output = null;
+        pendingBuf = new MpscRingBuffer<>(calcPendingBufCapacity(maxStoredLogs));
         if (recording) {
-            recordStartIndex = 0;
+            recordStartSeq = 0;
         }
 
         submitDataSetChanged(new DataSetChange(DataSetChange.Reason.NEW_ENTRIES));
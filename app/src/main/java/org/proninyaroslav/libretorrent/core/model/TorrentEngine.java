@@ -43,15 +43,18 @@ import org.proninyaroslav.libretorrent.core.logger.Logger;
 import org.proninyaroslav.libretorrent.core.model.data.AdvancedTorrentInfo;
 import org.proninyaroslav.libretorrent.core.model.data.MagnetInfo;
 import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
 import org.proninyaroslav.libretorrent.core.model.data.Priority;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentInfo;
 import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
 import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
 import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
 import org.proninyaroslav.libretorrent.core.model.data.metainfo.TorrentMetaInfo;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
 import org.proninyaroslav.libretorrent.core.model.session.TorrentDownload;
 import org.proninyaroslav.libretorrent.core.model.session.TorrentSession;
 import org.proninyaroslav.libretorrent.core.model.session.TorrentSessionImpl;
+import org.proninyaroslav.libretorrent.core.model.stream.PieceBufferPool;
 import org.proninyaroslav.libretorrent.core.model.stream.TorrentInputStream;
 import org.proninyaroslav.libretorrent.core.model.stream.TorrentStream;
 import org.proninyaroslav.libretorrent.core.model.stream.TorrentStreamServer;
@@ -75,8 +78,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -625,15 +630,30 @@ public class TorrentEngine {
         return info;
     }
 
-    public boolean[] getPieces(@NonNull String id) {
+    public TorrentContentFlatTree makeFileTree(@NonNull String id) {
         if (!isRunning())
-            return new boolean[0];
+            return null;
+
+        TorrentDownload task = session.getTask(id);
+        if (task == null)
+            return null;
+
+        return task.makeFileTree();
+    }
+
+    public PieceMap getPieces(@NonNull String id) {
+        return getPieces(id, null);
+    }
+
+    public PieceMap getPieces(@NonNull String id, @Nullable PieceMap previous) {
+        if (!isRunning())
+            return PieceMap.empty();
 
         TorrentDownload task = session.getTask(id);
         if (task == null)
-            return new boolean[0];
+            return PieceMap.empty();
 
-        return task.pieces();
+        return task.pieces(previous);
     }
 
     public void pauseAll() {
@@ -742,8 +762,9 @@ public class TorrentEngine {
         return task.getStream(fileIndex);
     }
 
-    public TorrentInputStream getTorrentInputStream(@NonNull TorrentStream stream) {
-        return new TorrentInputStream(session, stream);
+    public TorrentInputStream getTorrentInputStream(@NonNull TorrentStream stream,
+                                                    @NonNull PieceBufferPool bufferPool) {
+        return new TorrentInputStream(session, stream, bufferPool);
     }
 
     /*
@@ -760,6 +781,18 @@ public class TorrentEngine {
         return makeInfo(torrent, tags);
     }
 
+    /*
+     * Do not run in the UI thread
+     */
+
+    public TorrentInfo makeInfoSync(@NonNull Torrent torrent, @NonNull List<TagInfo> tags) {
+        return makeInfo(torrent, tags);
+    }
+
+    public Flowable<List<Torrent>> observeTorrents() {
+        return repo.observeAllTorrents();
+    }
+
     private TorrentInfo makeInfo(Torrent torrent, List<TagInfo> tags) {
         TorrentDownload task = session.getTask(torrent.id);
         if (task == null || !task.isValid() || task.isStopped()) {
@@ -771,22 +804,23 @@ public class TorrentEngine {
                     tags
             );
         } else {
+            var status = task.getStatusSnapshot();
             return new TorrentInfo(
                     torrent.id,
                     torrent.name,
-                    task.getStateCode(),
-                    task.getProgress(),
-                    task.getReceivedBytes(),
-                    task.getTotalSentBytes(),
-                    task.getTotalWanted(),
-                    task.getDownloadSpeed(),
-                    task.getUploadSpeed(),
-                    task.getETA(),
+                    status.getStateCode(),
+                    status.getProgress(),
+                    status.getReceivedBytes(),
+                    status.getTotalSentBytes(),
+                    status.getTotalWanted(),
+                    status.getDownloadSpeed(),
+                    status.getUploadSpeed(),
+                    status.getETA(),
                     torrent.dateAdded,
-                    task.getTotalPeers(),
-                    task.getConnectedPeers(),
+                    status.getTotalPeers(),
+                    status.getConnectedPeers(),
                     torrent.error,
-                    task.isSequentialDownload(),
+                    status.isSequentialDownload(),
                     task.getFilePriorities(),
                     tags,
                     task.isFirstLastPiecePriority()
@@ -800,12 +834,13 @@ public class TorrentEngine {
 
     public List<TorrentInfo> makeInfoListSync() {
         ArrayList<TorrentInfo> stateList = new ArrayList<>();
+        Map<String, List<TagInfo>> allTags = tagRepo.getAllTorrentTags();
 
         for (Torrent torrent : repo.getAllTorrents()) {
             if (torrent == null) {
                 continue;
             }
-            List<TagInfo> tags = tagRepo.getByTorrentId(torrent.id);
+            List<TagInfo> tags = allTags.getOrDefault(torrent.id, Collections.emptyList());
             stateList.add(makeInfo(torrent, tags));
         }
 
@@ -828,21 +863,22 @@ public class TorrentEngine {
         if (torrent == null)
             return null;
 
-        int[] piecesAvail = task.getPiecesAvailability();
+        var piecesAvail = task.getPiecesAvailability();
+        var status = task.getStatusSnapshot();
 
         return new AdvancedTorrentInfo(
                 torrent.id,
                 task.getFilesReceivedBytes(),
-                task.getTotalSeeds(),
-                task.getConnectedSeeds(),
-                task.getNumDownloadedPieces(),
-                task.getShareRatio(),
-                task.getActiveTime(),
-                task.getSeedingTime(),
-                task.getAvailability(piecesAvail),
-                task.getFilesAvailability(piecesAvail),
-                task.getConnectedLeechers(),
-                task.getTotalLeechers());
+                status.getTotalSeeds(),
+                status.getConnectedSeeds(),
+                status.getNumDownloadedPieces(),
+                status.getShareRatio(),
+                status.getActiveTime(),
+                status.getSeedingTime(),
+                piecesAvail.getAvailability(),
+                piecesAvail.getFilesAvailability(),
+                status.getConnectedLeechers(),
+                status.getTotalLeechers());
     }
 
     public List<TrackerInfo> makeTrackerInfoList(@NonNull String id) {
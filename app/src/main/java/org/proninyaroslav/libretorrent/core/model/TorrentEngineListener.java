@@ -59,6 +59,8 @@ public abstract class TorrentEngineListener
 
     public void onRestoreSessionError(@NonNull String id) {}
 
+    public void onRestoreSessionProgress(int restored, int total) {}
+
     public void onTorrentError(@NonNull String id, Exception e) {}
 
     public void onSessionError(@NonNull String errorMsg) {}
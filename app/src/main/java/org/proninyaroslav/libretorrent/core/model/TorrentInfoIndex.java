@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model;
+
+import androidx.annotation.NonNull;
+
+import org.proninyaroslav.libretorrent.core.model.data.TorrentInfo;
+import org.proninyaroslav.libretorrent.core.model.data.TorrentListState;
+import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
+import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
+import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
+import org.proninyaroslav.libretorrent.core.storage.TagRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+ * In-memory index of TorrentInfo, which allows to refresh only those torrents
+ * whose state can actually change instead of rebuilding the whole list.
+ * Paused and stopped torrents are only refreshed by explicit events
+ * (see markChanged() and markAllChanged()), the rest are polled on every refresh().
+ */
+
+class TorrentInfoIndex {
+    private final TorrentEngine engine;
+    private final TagRepository tagRepo;
+    /* Preserve database order, since the list can be unsorted */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<String> pendingIds = new HashSet<>();
+    private boolean loaded = false;
+
+    private static class Entry {
+        Torrent torrent;
+        List<TagInfo> tags;
+        TorrentInfo info;
+
+        Entry(Torrent torrent, List<TagInfo> tags, TorrentInfo info) {
+            this.torrent = torrent;
+            this.tags = tags;
+            this.info = info;
+        }
+    }
+
+    TorrentInfoIndex(@NonNull TorrentEngine engine, @NonNull TagRepository tagRepo) {
+        this.engine = engine;
+        this.tagRepo = tagRepo;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized List<TorrentInfo> getList() {
+        var list = new ArrayList<TorrentInfo>(entries.size());
+        for (var entry : entries.values()) {
+            list.add(entry.info);
+        }
+
+        return list;
+    }
+
+    synchronized void markChanged(@NonNull String id) {
+        pendingIds.add(id);
+    }
+
+    synchronized void markAllChanged() {
+        pendingIds.addAll(entries.keySet());
+    }
+
+    /*
+     * Synchronize the index with the torrent rows from the database.
+     * Returns the changes relative to the previous state.
+     */
+
+    synchronized TorrentListState.Delta syncTorrents(@NonNull List<Torrent> torrents) {
+        var added = new HashSet<String>();
+        var changed = new HashSet<String>();
+        var removed = new HashSet<>(entries.keySet());
+
+        Map<String, List<TagInfo>> allTags = null;
+        var newEntries = new LinkedHashMap<String, Entry>(torrents.size());
+        for (var torrent : torrents) {
+            if (torrent == null) {
+                continue;
+            }
+            removed.remove(torrent.id);
+
+            var entry = entries.get(torrent.id);
+            if (entry == null) {
+                if (allTags == null) {
+                    allTags = tagRepo.getAllTorrentTags();
+                }
+                var tags = allTags.getOrDefault(torrent.id, Collections.emptyList());
+                entry = new Entry(torrent, tags, engine.makeInfoSync(torrent, tags));
+                added.add(torrent.id);
+            } else if (isRowChanged(entry.torrent, torrent)) {
+                entry.torrent = torrent;
+                if (updateInfo(entry)) {
+                    changed.add(torrent.id);
+                }
+            } else {
+                entry.torrent = torrent;
+            }
+            newEntries.put(torrent.id, entry);
+        }
+        entries.clear();
+        entries.putAll(newEntries);
+        pendingIds.removeAll(removed);
+
+        var full = !loaded;
+        loaded = true;
+
+        return new TorrentListState.Delta(added, changed, removed, full);
+    }
+
+    /*
+     * Apply the tags of all torrents, grouped by torrent id
+     */
+
+    synchronized TorrentListState.Delta syncTags(@NonNull Map<String, List<TagInfo>> allTags) {
+        var changed = new HashSet<String>();
+        for (var entry : entries.values()) {
+            var tags = allTags.getOrDefault(entry.torrent.id, Collections.emptyList());
+            if (!tags.equals(entry.tags)) {
+                entry.tags = tags;
+                if (updateInfo(entry)) {
+                    changed.add(entry.torrent.id);
+                }
+            }
+        }
+
+        return makeChangedDelta(changed);
+    }
+
+    /*
+     * Refresh torrents that were marked as changed and torrents whose
+     * state can change without any event (e.g. downloading or seeding)
+     */
+
+    synchronized TorrentListState.Delta refresh() {
+        var changed = new HashSet<String>();
+        for (var entry : entries.values()) {
+            var id = entry.torrent.id;
+            if (!pendingIds.contains(id) && !needPolling(entry.info)) {
+                continue;
+            }
+            if (updateInfo(entry)) {
+                changed.add(id);
+            }
+        }
+        pendingIds.clear();
+
+        return makeChangedDelta(changed);
+    }
+
+    /*
+     * Refresh the specified torrent immediately
+     */
+
+    synchronized TorrentListState.Delta refresh(@NonNull String id) {
+        var changed = new HashSet<String>();
+        var entry = entries.get(id);
+        if (entry != null) {
+            pendingIds.remove(id);
+            if (updateInfo(entry)) {
+                changed.add(id);
+            }
+        }
+
+        return makeChangedDelta(changed);
+    }
+
+    private boolean updateInfo(Entry entry) {
+        var newInfo = engine.makeInfoSync(entry.torrent, entry.tags);
+        if (newInfo.equals(entry.info)) {
+            return false;
+        }
+        entry.info = newInfo;
+
+        return true;
+    }
+
+    private static boolean needPolling(TorrentInfo info) {
+        return info.stateCode != TorrentStateCode.PAUSED &&
+                info.stateCode != TorrentStateCode.STOPPED;
+    }
+
+    /*
+     * Compare only those fields that are used in TorrentInfo
+     */
+
+    private static boolean isRowChanged(Torrent oldTorrent, Torrent newTorrent) {
+        return !Objects.equals(oldTorrent.name, newTorrent.name) ||
+                oldTorrent.dateAdded != newTorrent.dateAdded ||
+                !Objects.equals(oldTorrent.error, newTorrent.error);
+    }
+
+    private static TorrentListState.Delta makeChangedDelta(Set<String> changed) {
+        return new TorrentListState.Delta(new HashSet<>(), changed, new HashSet<>(), false);
+    }
+}
@@ -27,6 +27,8 @@ import androidx.annotation.NonNull;
 import org.proninyaroslav.libretorrent.core.RepositoryHelper;
 import org.proninyaroslav.libretorrent.core.model.data.AdvancedTorrentInfo;
 import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMapUpdate;
 import org.proninyaroslav.libretorrent.core.model.data.SessionStats;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentInfo;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentListState;
@@ -34,12 +36,11 @@ import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
 import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
 import org.proninyaroslav.libretorrent.core.storage.TagRepository;
 
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
@@ -117,7 +118,7 @@ public class TorrentInfoProvider {
         return makePeersInfoFlowable(id);
     }
 
-    public Flowable<boolean[]> observePiecesInfo(@NonNull String id) {
+    public Flowable<PieceMapUpdate> observePiecesInfo(@NonNull String id) {
         return makePiecesFlowable(id);
     }
 
@@ -243,69 +244,134 @@ public class TorrentInfoProvider {
 
     private Flowable<TorrentListState> makeInfoListFlowable() {
         return Flowable.create((emitter) -> {
-            final ConcurrentHashMap.KeySetView<TorrentInfo, Boolean> infoList
-                    = ConcurrentHashMap.newKeySet();
-
-            Runnable handleInfo = () -> {
-                var newInfoList = engine.makeInfoListSync();
-                if (infoList.size() != newInfoList.size() || !infoList.containsAll(newInfoList)) {
-                    infoList.clear();
-                    infoList.addAll(newInfoList);
-                    if (!emitter.isCancelled()) {
-                        emitter.onNext(new TorrentListState.Loaded(newInfoList));
+            final TorrentInfoIndex index = new TorrentInfoIndex(engine, tagRepo);
+
+            /* Emit under the index lock to keep deltas in order */
+            Consumer<Supplier<TorrentListState.Delta>> emitDelta = (update) -> {
+                synchronized (index) {
+                    var delta = update.get();
+                    if (!delta.isEmpty() && !emitter.isCancelled()) {
+                        emitter.onNext(new TorrentListState.Loaded(index.getList(), delta));
                     }
                 }
             };
 
+            Consumer<String> handleTorrent = (torrentId) -> {
+                if (index.isLoaded()) {
+                    emitDelta.accept(() -> index.refresh(torrentId));
+                }
+            };
+
             TorrentEngineListener listener = new TorrentEngineListener() {
+                @Override
+                public void onTorrentAdded(@NonNull String torrentId) {
+                    handleEvent(torrentId);
+                }
+
+                @Override
+                public void onTorrentLoaded(@NonNull String torrentId) {
+                    handleEvent(torrentId);
+                }
+
                 @Override
                 public void onTorrentStateChanged(@NonNull String torrentId,
                                                   @NonNull TorrentStateCode prevState,
                                                   @NonNull TorrentStateCode curState) {
-                    handleInfo.run();
+                    handleEvent(torrentId);
+                }
+
+                @Override
+                public void onTorrentFinished(@NonNull String torrentId) {
+                    handleEvent(torrentId);
                 }
 
                 @Override
                 public void onTorrentPaused(@NonNull String torrentId) {
-                    handleInfo.run();
+                    handleEvent(torrentId);
+                }
+
+                @Override
+                public void onTorrentResumed(@NonNull String torrentId) {
+                    handleEvent(torrentId);
                 }
 
                 @Override
-                public void onTorrentRemoved(@NonNull String torrentId) {
-                    handleInfo.run();
+                public void onTorrentMoved(@NonNull String torrentId, boolean success) {
+                    handleEvent(torrentId);
+                }
+
+                @Override
+                public void onTorrentMetadataLoaded(@NonNull String torrentId, Exception err) {
+                    handleEvent(torrentId);
                 }
 
                 @Override
                 public void onRestoreSessionError(@NonNull String torrentId) {
-                    handleInfo.run();
+                    handleEvent(torrentId);
                 }
 
                 @Override
                 public void onTorrentError(@NonNull String torrentId, Exception e) {
-                    handleInfo.run();
+                    handleEvent(torrentId);
+                }
+
+                @Override
+                public void onSessionStarted() {
+                    index.markAllChanged();
+                }
+
+                @Override
+                public void onSessionStopped() {
+                    index.markAllChanged();
                 }
 
                 @Override
                 public void onSessionStats(@NonNull SessionStats stats) {
-                    handleInfo.run();
+                    try {
+                        if (index.isLoaded()) {
+                            emitDelta.accept(index::refresh);
+                        }
+                    } catch (Throwable e) {
+                        if (!emitter.isCancelled())
+                            emitter.onError(e);
+                    }
+                }
+
+                private void handleEvent(String torrentId) {
+                    try {
+                        handleTorrent.accept(torrentId);
+
+                    } catch (Throwable e) {
+                        if (!emitter.isCancelled())
+                            emitter.onError(e);
+                    }
                 }
             };
 
             if (!emitter.isCancelled()) {
                 Thread t = new Thread(() -> {
                     emitter.onNext(new TorrentListState.Initial());
-                    infoList.clear();
-                    infoList.addAll(engine.makeInfoListSync());
                     if (!emitter.isCancelled()) {
-                        /* Emit once to avoid missing any data and also easy chaining */
-                        emitter.onNext(new TorrentListState.Loaded(infoList.stream().toList()));
                         engine.addListener(listener);
                         CompositeDisposable disposables = new CompositeDisposable();
                         disposables.add(Disposable.fromAction(() ->
                                 engine.removeListener(listener))
                         );
-                        disposables.add(tagRepo.observeAll()
-                                .subscribe((__) -> handleInfo.run())
+                        /* Emits once on subscribe to avoid missing any data and also easy chaining */
+                        disposables.add(engine.observeTorrents()
+                                .subscribe((torrents) -> emitDelta.accept(() -> index.syncTorrents(torrents)),
+                                        (Throwable e) -> {
+                                            if (!emitter.isCancelled())
+                                                emitter.onError(e);
+                                        })
+                        );
+                        disposables.add(tagRepo.observeAllTorrentTags()
+                                .filter((__) -> index.isLoaded())
+                                .subscribe((tags) -> emitDelta.accept(() -> index.syncTags(tags)),
+                                        (Throwable e) -> {
+                                            if (!emitter.isCancelled())
+                                                emitter.onError(e);
+                                        })
                         );
                         emitter.setDisposable(disposables);
                     }
@@ -431,29 +497,38 @@ public class TorrentInfoProvider {
         }, BackpressureStrategy.LATEST);
     }
 
-    private Flowable<boolean[]> makePiecesFlowable(String id) {
+    /*
+     * Emits only the changed pieces, the consumer can redraw just them
+     */
+
+    private Flowable<PieceMapUpdate> makePiecesFlowable(String id) {
         return Flowable.create((emitter) -> {
-            final AtomicReference<boolean[]> infoList = new AtomicReference<>();
+            final AtomicReference<PieceMap> pieces = new AtomicReference<>();
 
             Disposable d = Observable.interval(GET_INFO_SYNC_TIME, TimeUnit.MILLISECONDS)
                     .subscribe((__) -> {
-                                boolean[] newInfoList = engine.getPieces(id);
-                                boolean[] oldInfoList = infoList.get();
-                                if (!Arrays.equals(oldInfoList, newInfoList)) {
-                                    infoList.set(newInfoList);
-                                    if (!emitter.isCancelled())
-                                        emitter.onNext(newInfoList);
+                                PieceMap oldPieces = pieces.get();
+                                PieceMap newPieces = engine.getPieces(id, oldPieces);
+                                if (newPieces == oldPieces) {
+                                    return;
+                                }
+                                int[] changedRuns = (oldPieces == null ? null : oldPieces.diff(newPieces));
+                                if (changedRuns != null && changedRuns.length == 0) {
+                                    return;
                                 }
+                                pieces.set(newPieces);
+                                if (!emitter.isCancelled())
+                                    emitter.onNext(new PieceMapUpdate(oldPieces, newPieces, changedRuns));
                             },
                             (Throwable t) -> Log.e(TAG, "Getting pieces for torrent " + id + " error: " +
                                     Log.getStackTraceString(t)));
 
             if (!emitter.isCancelled()) {
                 Thread t = new Thread(() -> {
-                    infoList.set(engine.getPieces(id));
+                    pieces.set(engine.getPieces(id));
                     if (!emitter.isCancelled()) {
                         /* Emit once to avoid missing any data and also easy chaining */
-                        emitter.onNext(infoList.get());
+                        emitter.onNext(PieceMapUpdate.full(pieces.get()));
                         emitter.setDisposable(d);
                     }
                 });
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/*
+ * Immutable bitset of the downloaded pieces.
+ * It takes one bit per piece and can be compared with another map
+ * word by word, giving the runs of the changed pieces.
+ */
+
+public final class PieceMap {
+    private static final PieceMap EMPTY = new PieceMap(0, new long[0]);
+
+    private final int size;
+    private final long[] words;
+    private final int count;
+
+    /*
+     * The bits beyond `size` must be cleared
+     */
+
+    public PieceMap(int size, @NonNull long[] words) {
+        if (size < 0 || words.length != numWords(size)) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+
+        this.size = size;
+        this.words = words;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        this.count = count;
+    }
+
+    @NonNull
+    public static PieceMap empty() {
+        return EMPTY;
+    }
+
+    @NonNull
+    public static PieceMap full(int size) {
+        long[] words = new long[numWords(size)];
+        Arrays.fill(words, -1L);
+        int tailBits = size % Long.SIZE;
+        if (tailBits != 0) {
+            words[words.length - 1] = (1L << tailBits) - 1;
+        }
+
+        return new PieceMap(size, words);
+    }
+
+    public static int numWords(int size) {
+        return (size + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Number of downloaded pieces
+     */
+
+    public int count() {
+        return count;
+    }
+
+    public boolean get(int piece) {
+        if (piece < 0 || piece >= size) {
+            throw new IndexOutOfBoundsException("Invalid piece = " + piece);
+        }
+
+        return (words[piece >>> 6] & (1L << piece)) != 0;
+    }
+
+    /*
+     * Returns the runs of the pieces that differ in this and the other map,
+     * as flat [start, end) pairs, or null if the maps have different sizes
+     */
+
+    @Nullable
+    public int[] diff(@NonNull PieceMap other) {
+        if (size != other.size) {
+            return null;
+        }
+
+        int[] runs = new int[8];
+        int numRuns = 0;
+        int runStart = -1;
+        int runEnd = -1;
+        for (int w = 0; w < words.length; w++) {
+            long changed = words[w] ^ other.words[w];
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                int piece = (w << 6) + bit;
+                if (piece == runEnd) {
+                    runEnd++;
+                } else {
+                    if (runStart >= 0) {
+                        runs = addRun(runs, numRuns++, runStart, runEnd);
+                    }
+                    runStart = piece;
+                    runEnd = piece + 1;
+                }
+                changed &= changed - 1;
+            }
+        }
+        if (runStart >= 0) {
+            runs = addRun(runs, numRuns++, runStart, runEnd);
+        }
+
+        return Arrays.copyOf(runs, numRuns * 2);
+    }
+
+    private static int[] addRun(int[] runs, int index, int start, int end) {
+        if (index * 2 + 2 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[index * 2] = start;
+        runs[index * 2 + 1] = end;
+
+        return runs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        PieceMap other = (PieceMap) o;
+
+        return size == other.size && count == other.count && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PieceMap{size=" + size + ", count=" + count + '}';
+    }
+}
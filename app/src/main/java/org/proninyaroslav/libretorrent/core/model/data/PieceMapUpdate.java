@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/*
+ * The new piece map and the runs of the pieces ([start, end) pairs)
+ * that were changed since the `base` map. The runs are null if
+ * the whole map should be redrawn.
+ *
+ * Intermediate updates can be dropped by backpressure, so the runs
+ * can only be applied on top of exactly the `base` map (use `getChangedRuns()`).
+ */
+
+public record PieceMapUpdate(
+        @Nullable PieceMap base,
+        @NonNull PieceMap map,
+        @Nullable int[] changedRuns
+) {
+    @NonNull
+    public static PieceMapUpdate full(@NonNull PieceMap map) {
+        return new PieceMapUpdate(null, map, null);
+    }
+
+    /*
+     * Returns the runs of the changed pieces relative to `current`,
+     * or null if everything should be redrawn
+     */
+
+    @Nullable
+    public int[] getChangedRuns(@Nullable PieceMap current) {
+        if (current == null) {
+            return null;
+        }
+        if (current == base && changedRuns != null) {
+            return changedRuns;
+        }
+
+        return current.diff(map);
+    }
+}
@@ -21,12 +21,43 @@ package org.proninyaroslav.libretorrent.core.model.data;
 
 import androidx.annotation.NonNull;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 public sealed interface TorrentListState permits TorrentListState.Initial, TorrentListState.Loaded {
     record Initial() implements TorrentListState {
     }
 
-    record Loaded(@NonNull List<TorrentInfo> list) implements TorrentListState {
+    /*
+     * The list always contains all torrents, the delta describes
+     * which of them were changed since the previous emission.
+     */
+
+    record Loaded(@NonNull List<TorrentInfo> list, @NonNull Delta delta) implements TorrentListState {
+        public Loaded(@NonNull List<TorrentInfo> list) {
+            this(list, Delta.full());
+        }
+    }
+
+    /*
+     * Torrent ids that were added, changed or removed. If the delta is full,
+     * the consumer must rebuild its state from the whole list.
+     */
+
+    record Delta(
+            @NonNull Set<String> added,
+            @NonNull Set<String> changed,
+            @NonNull Set<String> removed,
+            boolean full
+    ) {
+        public static Delta full() {
+            return new Delta(Collections.emptySet(), Collections.emptySet(),
+                    Collections.emptySet(), true);
+        }
+
+        public boolean isEmpty() {
+            return !full && added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
     }
 }
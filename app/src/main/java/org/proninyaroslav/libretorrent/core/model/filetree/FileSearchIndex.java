@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * The file name search index of the torrent content tree. The lowercase
+ * names are stored in one buffer in the name order (rank), and the trigram
+ * index maps each three chars of the name to the sorted ranks of the files
+ * that contain them. So the matches are found without scanning all names
+ * and they are already sorted by name. The query with the path separator
+ * is matched against the file path (e.g. "dir/fi" matches "foo/dir/file").
+ * The query that extends the previous one only filters its result.
+ * Immutable after building, so it's thread-safe.
+ */
+
+public class FileSearchIndex {
+    private static final int NGRAM_LENGTH = 3;
+    private static final String SEPARATOR = File.separator;
+
+    public static final class Result {
+        private final String query;
+        private final int[] ranks;
+
+        private Result(String query, int[] ranks) {
+            this.query = query;
+            this.ranks = ranks;
+        }
+
+        @NonNull
+        public String getQuery() {
+            return query;
+        }
+
+        public int getCount() {
+            return ranks.length;
+        }
+    }
+
+    private final TorrentContentFlatTree tree;
+    private final char[] names;
+    /* Rank -> name offset in the buffer, the last one is the buffer length */
+    private final int[] nameOffsets;
+    private final int[] rankNodes;
+    /* Rank -> position of the file when sorted by size */
+    private final int[] sizeRanks;
+    /* Node -> lowercase directory path with the trailing separator, null for files */
+    private final String[] dirPaths;
+    /* Trigram -> id, the ranks of the trigram are postings[postingStarts[id]..postingStarts[id + 1]) */
+    private final NgramTable ngrams = new NgramTable();
+    private int[] postingStarts;
+    private int[] postings;
+
+    public FileSearchIndex(@NonNull TorrentContentFlatTree tree) {
+        this.tree = tree;
+        int numFiles = 0;
+        var nodes = new Integer[tree.getFileCount()];
+        for (int i = 0; i < tree.getFileCount(); i++) {
+            int node = tree.getFileNode(i);
+            if (node != TorrentContentFlatTree.NO_NODE)
+                nodes[numFiles++] = node;
+        }
+        nodes = Arrays.copyOf(nodes, numFiles);
+        Arrays.sort(nodes, (a, b) -> tree.getName(a).compareToIgnoreCase(tree.getName(b)));
+
+        rankNodes = new int[numFiles];
+        nameOffsets = new int[numFiles + 1];
+        var lowerNames = new String[numFiles];
+        int namesLength = 0;
+        for (int rank = 0; rank < numFiles; rank++) {
+            rankNodes[rank] = nodes[rank];
+            lowerNames[rank] = tree.getName(nodes[rank]).toLowerCase(Locale.ROOT);
+            nameOffsets[rank] = namesLength;
+            namesLength += lowerNames[rank].length();
+        }
+        nameOffsets[numFiles] = namesLength;
+        names = new char[namesLength];
+        for (int rank = 0; rank < numFiles; rank++)
+            lowerNames[rank].getChars(0, lowerNames[rank].length(), names, nameOffsets[rank]);
+
+        sizeRanks = buildSizeRanks();
+
+        dirPaths = new String[tree.getNodeCount()];
+        for (int node = 0; node < tree.getNodeCount(); node++)
+            if (!tree.isFile(node))
+                dirPaths[node] = tree.getPath(node).toLowerCase(Locale.ROOT);
+
+        buildNgrams();
+    }
+
+    /*
+     * Sorts the packed (size, rank) pairs, if the sizes fit
+     */
+
+    private int[] buildSizeRanks() {
+        int numFiles = rankNodes.length;
+        int rankBits = 32 - Integer.numberOfLeadingZeros(numFiles);
+        long maxSize = 0;
+        for (int node : rankNodes)
+            maxSize = Math.max(maxSize, tree.size(node));
+
+        int[] ranks = new int[numFiles];
+        if (maxSize < (1L << (63 - rankBits))) {
+            long[] keys = new long[numFiles];
+            for (int rank = 0; rank < numFiles; rank++)
+                keys[rank] = (tree.size(rankNodes[rank]) << rankBits) | rank;
+            Arrays.sort(keys);
+            long mask = (1L << rankBits) - 1;
+            for (int i = 0; i < numFiles; i++)
+                ranks[i] = (int) (keys[i] & mask);
+        } else {
+            var boxedRanks = new Integer[numFiles];
+            for (int rank = 0; rank < numFiles; rank++)
+                boxedRanks[rank] = rank;
+            Arrays.sort(boxedRanks, (a, b) -> Long.compare(tree.size(rankNodes[a]), tree.size(rankNodes[b])));
+            for (int i = 0; i < numFiles; i++)
+                ranks[i] = boxedRanks[i];
+        }
+
+        int[] sizeRanks = new int[numFiles];
+        for (int i = 0; i < numFiles; i++)
+            sizeRanks[ranks[i]] = i;
+
+        return sizeRanks;
+    }
+
+    /*
+     * Counts the ranks of each trigram and then fills the postings
+     * in the same order, so the ranks of each trigram are sorted
+     */
+
+    private void buildNgrams() {
+        int[] counts = new int[1024];
+        int[] lastRanks = new int[1024];
+        for (int rank = 0; rank < rankNodes.length; rank++) {
+            int end = nameOffsets[rank + 1] - NGRAM_LENGTH;
+            for (int i = nameOffsets[rank]; i <= end; i++) {
+                int id = ngrams.add(ngramKey(names, i));
+                if (id == counts.length) {
+                    counts = Arrays.copyOf(counts, id * 2);
+                    lastRanks = Arrays.copyOf(lastRanks, id * 2);
+                }
+                /* The name may have the same trigram several times */
+                if (counts[id] > 0 && lastRanks[id] == rank)
+                    continue;
+                counts[id]++;
+                lastRanks[id] = rank;
+            }
+        }
+
+        int numNgrams = ngrams.size();
+        postingStarts = new int[numNgrams + 1];
+        for (int id = 0; id < numNgrams; id++)
+            postingStarts[id + 1] = postingStarts[id] + counts[id];
+        postings = new int[postingStarts[numNgrams]];
+
+        int[] positions = Arrays.copyOf(postingStarts, numNgrams);
+        for (int rank = 0; rank < rankNodes.length; rank++) {
+            int end = nameOffsets[rank + 1] - NGRAM_LENGTH;
+            for (int i = nameOffsets[rank]; i <= end; i++) {
+                int id = ngrams.get(ngramKey(names, i));
+                int pos = positions[id];
+                if (pos > postingStarts[id] && postings[pos - 1] == rank)
+                    continue;
+                postings[pos] = rank;
+                positions[id]++;
+            }
+        }
+    }
+
+    public int getFileCount() {
+        return rankNodes.length;
+    }
+
+    /*
+     * If the previous result is given and the query extends its query,
+     * only the previous matches are checked
+     */
+
+    @NonNull
+    public Result search(@NonNull String query, @Nullable Result prev) {
+        String q = query.toLowerCase(Locale.ROOT);
+        if (prev != null && q.equals(prev.query))
+            return prev;
+        boolean pathQuery = q.contains(SEPARATOR);
+        int[] candidates = null;
+        if (prev != null && q.startsWith(prev.query) &&
+                pathQuery == prev.query.contains(SEPARATOR))
+            candidates = prev.ranks;
+
+        int[] matches = (pathQuery ?
+                searchPath(q, candidates) :
+                searchName(q, candidates));
+
+        return new Result(q, matches);
+    }
+
+    /*
+     * Returns the nodes of the matched files in the given order
+     */
+
+    @NonNull
+    public int[] getNodes(@NonNull Result result, boolean sortBySize, boolean descending) {
+        int n = result.ranks.length;
+        int[] ranks = result.ranks;
+        if (sortBySize) {
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++)
+                keys[i] = ((long) sizeRanks[ranks[i]] << 32) | ranks[i];
+            Arrays.sort(keys);
+            ranks = new int[n];
+            for (int i = 0; i < n; i++)
+                ranks[i] = (int) keys[i];
+        }
+
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++)
+            nodes[i] = rankNodes[ranks[descending ? n - 1 - i : i]];
+
+        return nodes;
+    }
+
+    private int[] searchName(String q, int[] candidates) {
+        if (q.isEmpty())
+            return candidates == null ? allRanks() : candidates;
+        if (candidates == null && q.length() >= NGRAM_LENGTH)
+            candidates = intersectNgrams(q);
+
+        char[] query = q.toCharArray();
+        int[] matches = new int[candidates == null ? rankNodes.length : candidates.length];
+        int count = 0;
+        if (candidates == null) {
+            for (int rank = 0; rank < rankNodes.length; rank++)
+                if (nameContains(rank, query))
+                    matches[count++] = rank;
+        } else {
+            for (int rank : candidates)
+                if (nameContains(rank, query))
+                    matches[count++] = rank;
+        }
+
+        return Arrays.copyOf(matches, count);
+    }
+
+    /*
+     * The file path is the parent directory path and the name. The name doesn't
+     * contain the separator, so the path contains the query if the directory
+     * path contains it, or the directory path ends with the query part up to
+     * the last separator and the name starts with the rest.
+     */
+
+    private int[] searchPath(String q, int[] candidates) {
+        int sep = q.lastIndexOf(SEPARATOR);
+        String dirSuffix = q.substring(0, sep + SEPARATOR.length());
+        char[] namePrefix = q.substring(sep + SEPARATOR.length()).toCharArray();
+
+        var dirMatches = new byte[dirPaths.length];
+        for (int node = 0; node < dirPaths.length; node++) {
+            String path = dirPaths[node];
+            if (path == null)
+                continue;
+            if (path.contains(q))
+                dirMatches[node] = 2;
+            else if (path.endsWith(dirSuffix))
+                dirMatches[node] = 1;
+        }
+
+        int n = (candidates == null ? rankNodes.length : candidates.length);
+        int[] matches = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int rank = (candidates == null ? i : candidates[i]);
+            byte dirMatch = dirMatches[tree.getParent(rankNodes[rank])];
+            if (dirMatch == 2 || (dirMatch == 1 && nameStartsWith(rank, namePrefix)))
+                matches[count++] = rank;
+        }
+
+        return Arrays.copyOf(matches, count);
+    }
+
+    /*
+     * Returns the ranks that contain all trigrams of the query, starting from the rarest
+     */
+
+    private int[] intersectNgrams(String q) {
+        char[] query = q.toCharArray();
+        int numNgrams = query.length - NGRAM_LENGTH + 1;
+        var ids = new Integer[numNgrams];
+        for (int i = 0; i < numNgrams; i++) {
+            int id = ngrams.get(ngramKey(query, i));
+            if (id == NgramTable.NO_ID)
+                return new int[0];
+            ids[i] = id;
+        }
+        Arrays.sort(ids, (a, b) -> Integer.compare(postingsCount(a), postingsCount(b)));
+
+        int[] result = Arrays.copyOfRange(postings, postingStarts[ids[0]], postingStarts[ids[0] + 1]);
+        int count = result.length;
+        for (int i = 1; i < numNgrams && count > 0; i++)
+            count = intersect(result, count, postingStarts[ids[i]], postingStarts[ids[i] + 1]);
+
+        return Arrays.copyOf(result, count);
+    }
+
+    private int postingsCount(int id) {
+        return postingStarts[id + 1] - postingStarts[id];
+    }
+
+    /*
+     * Keeps in place only the ranks that are in postings[from..to)
+     */
+
+    private int intersect(int[] ranks, int count, int from, int to) {
+        int newCount = 0;
+        for (int i = 0, j = from; i < count && j < to; ) {
+            if (ranks[i] < postings[j]) {
+                i++;
+            } else if (ranks[i] > postings[j]) {
+                j++;
+            } else {
+                ranks[newCount++] = ranks[i];
+                i++;
+                j++;
+            }
+        }
+
+        return newCount;
+    }
+
+    private boolean nameContains(int rank, char[] query) {
+        int start = nameOffsets[rank];
+        int last = nameOffsets[rank + 1] - query.length;
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < query.length && names[i + j] == query[j])
+                j++;
+            if (j == query.length)
+                return true;
+        }
+
+        return false;
+    }
+
+    private boolean nameStartsWith(int rank, char[] prefix) {
+        int start = nameOffsets[rank];
+        if (nameOffsets[rank + 1] - start < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++)
+            if (names[start + i] != prefix[i])
+                return false;
+
+        return true;
+    }
+
+    private int[] allRanks() {
+        int[] ranks = new int[rankNodes.length];
+        for (int i = 0; i < ranks.length; i++)
+            ranks[i] = i;
+
+        return ranks;
+    }
+
+    private static long ngramKey(char[] s, int offset) {
+        return ((long) s[offset] << 32) | ((long) s[offset + 1] << 16) | s[offset + 2];
+    }
+
+    /*
+     * The open addressing hash table of the trigrams to the sequential ids,
+     * without boxing the keys
+     */
+
+    private static class NgramTable {
+        static final int NO_ID = -1;
+        private static final long EMPTY = -1;
+
+        private long[] keys = new long[1024];
+        private int[] ids = new int[1024];
+        private int size;
+
+        NgramTable() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask)
+                if (keys[i] == key)
+                    return ids[i];
+
+            return NO_ID;
+        }
+
+        /*
+         * Returns the id of the key, the new key gets the next id
+         */
+
+        int add(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; keys[i] != EMPTY; i = (i + 1) & mask)
+                if (keys[i] == key)
+                    return ids[i];
+
+            keys[i] = key;
+            ids[i] = size;
+            if (++size * 2 > keys.length)
+                grow();
+
+            return size - 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldIds.length * 2];
+            Arrays.fill(keys, EMPTY);
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == EMPTY)
+                    continue;
+                int i = hash(oldKeys[j]) & mask;
+                while (keys[i] != EMPTY)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                ids[i] = oldIds[j];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,662 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.libtorrent4j.FileStorage;
+import org.proninyaroslav.libretorrent.core.model.data.Priority;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The torrent content tree stored in the flat primitive arrays instead of
+ * the node objects. The nodes are numbered in preorder, so the parent
+ * index is always less than the child index and the subtree of the node
+ * is the contiguous range [node, subtreeEnd). The directory values
+ * (size, received bytes, priority, etc.) are cached and updated
+ * bottom-up in one pass, so reading them doesn't walk the subtree.
+ * Each node counts the files of its subtree by the priority type,
+ * so the directory priority (including MIXED) is known in O(1).
+ * Not thread-safe.
+ */
+
+public class TorrentContentFlatTree {
+    public static final int ROOT = 0;
+    public static final int NO_NODE = -1;
+    private static final FilePriority MIXED = new FilePriority(FilePriority.Type.MIXED);
+    private static final FilePriority[] FILE_PRIORITIES;
+    static {
+        Priority[] values = Priority.values();
+        FILE_PRIORITIES = new FilePriority[values.length];
+        for (Priority p : values)
+            FILE_PRIORITIES[p.value()] = new FilePriority(p);
+    }
+    /* The priority types except MIXED */
+    private static final int TYPE_IGNORE = 0;
+    private static final int TYPE_NORMAL = 1;
+    private static final int TYPE_HIGH = 2;
+    private static final int NUM_TYPES = 3;
+    private static final FilePriority[] TYPE_PRIORITIES = {
+            new FilePriority(FilePriority.Type.IGNORE),
+            new FilePriority(FilePriority.Type.NORMAL),
+            new FilePriority(FilePriority.Type.HIGH),
+    };
+
+    private final int numNodes;
+    private final String[] names;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] subtreeEnds;
+    /* Torrent file index of the node, -1 for directories */
+    private final int[] fileIndexes;
+    /* Torrent file index -> node */
+    private final int[] fileNodes;
+    private final long[] sizes;
+    private final long[] receivedBytes;
+    private final long[] nonIgnoreSizes;
+    /* For files it's the availability, for directories the sum of availability * size */
+    private final double[] availability;
+    /* Indexed by the torrent file index */
+    private final Priority[] filePriorities;
+    /* The number of the subtree files of each priority type, NUM_TYPES per node */
+    private final int[] typeCounts;
+
+    private TorrentContentFlatTree(int numNodes, int numFiles) {
+        this.numNodes = numNodes;
+        names = new String[numNodes];
+        parents = new int[numNodes];
+        firstChildren = new int[numNodes];
+        nextSiblings = new int[numNodes];
+        subtreeEnds = new int[numNodes];
+        fileIndexes = new int[numNodes];
+        fileNodes = new int[numFiles];
+        sizes = new long[numNodes];
+        receivedBytes = new long[numNodes];
+        nonIgnoreSizes = new long[numNodes];
+        availability = new double[numNodes];
+        filePriorities = new Priority[numFiles];
+        typeCounts = new int[numNodes * NUM_TYPES];
+    }
+
+    @NonNull
+    public static TorrentContentFlatTree build(@NonNull List<BencodeFileItem> files) {
+        var builder = new Builder(files.size());
+        for (BencodeFileItem file : files)
+            builder.addFile(file.getIndex(), file.getPath(), file.getSize());
+
+        return builder.build();
+    }
+
+    /*
+     * Builds the tree directly from libtorrent file storage,
+     * without intermediate BencodeFileItem list
+     */
+
+    @NonNull
+    public static TorrentContentFlatTree build(@NonNull FileStorage storage) {
+        int numFiles = storage.numFiles();
+        var builder = new Builder(numFiles);
+        for (int i = 0; i < numFiles; i++)
+            builder.addFile(i, storage.filePath(i), storage.fileSize(i));
+
+        return builder.build();
+    }
+
+    public int getNodeCount() {
+        return numNodes;
+    }
+
+    public int getFileCount() {
+        return fileNodes.length;
+    }
+
+    public String getName(int node) {
+        return names[node];
+    }
+
+    public boolean isFile(int node) {
+        return fileIndexes[node] >= 0;
+    }
+
+    /*
+     * Returns the torrent file index or -1 for directories
+     */
+
+    public int getFileIndex(int node) {
+        return fileIndexes[node];
+    }
+
+    public int getFileNode(int fileIndex) {
+        return (fileIndex >= 0 && fileIndex < fileNodes.length) ? fileNodes[fileIndex] : NO_NODE;
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /*
+     * The subtree of the node is the range [node, subtreeEnd)
+     */
+
+    public int getSubtreeEnd(int node) {
+        return subtreeEnds[node];
+    }
+
+    public int getChild(int node, @NonNull String name) {
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child])
+            if (names[child].equals(name))
+                return child;
+
+        return NO_NODE;
+    }
+
+    public int getChildrenCount(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child])
+            count++;
+
+        return count;
+    }
+
+    public long size(int node) {
+        return sizes[node];
+    }
+
+    public long getReceivedBytes(int node) {
+        return receivedBytes[node];
+    }
+
+    public long nonIgnoreFileSize(int node) {
+        return nonIgnoreSizes[node];
+    }
+
+    public double getAvailability(int node) {
+        if (isFile(node))
+            return availability[node];
+
+        return nonIgnoreSizes[node] > 0 ? availability[node] / nonIgnoreSizes[node] : -1;
+    }
+
+    @NonNull
+    public FilePriority getFilePriority(int node) {
+        if (isFile(node))
+            return FILE_PRIORITIES[filePriorities[fileIndexes[node]].value()];
+
+        int offset = node * NUM_TYPES;
+        int total = 0;
+        for (int t = 0; t < NUM_TYPES; t++)
+            total += typeCounts[offset + t];
+        for (int t = 0; t < NUM_TYPES; t++)
+            if (total > 0 && typeCounts[offset + t] == total)
+                return TYPE_PRIORITIES[t];
+
+        return MIXED;
+    }
+
+    /*
+     * Returns the path relative to the torrent directory in the same
+     * format as FileTree.getPath()
+     */
+
+    @NonNull
+    public String getPath(int node) {
+        StringBuilder path = new StringBuilder();
+        for (int cur = node; cur != ROOT && cur != NO_NODE; cur = parents[cur])
+            path.insert(0, names[cur] + File.separator);
+
+        return path.toString();
+    }
+
+    /*
+     * The priorities are indexed by the torrent file index
+     */
+
+    public void setFilePriorities(@NonNull Priority[] priorities) {
+        int n = Math.min(priorities.length, filePriorities.length);
+        for (int i = 0; i < n; i++) {
+            if (priorities[i] != null)
+                filePriorities[i] = priorities[i];
+        }
+        updateRange(ROOT, numNodes);
+    }
+
+    /*
+     * Sets the priorities of the files given as (fileIndexes[i], priorities[i])
+     * pairs. Each changed file adds the difference of its priority type and
+     * non-ignored size to the counters of its ancestors, so no directory
+     * rescans its children and the cost is O(changed files * depth).
+     */
+
+    public void setFilePriorities(@NonNull int[] fileIndexes, @NonNull Priority[] priorities) {
+        int n = Math.min(fileIndexes.length, priorities.length);
+        for (int i = 0; i < n; i++) {
+            int index = fileIndexes[i];
+            Priority priority = priorities[i];
+            if (index < 0 || index >= fileNodes.length || fileNodes[index] == NO_NODE || priority == null)
+                continue;
+            Priority prevPriority = filePriorities[index];
+            if (prevPriority == priority)
+                continue;
+            filePriorities[index] = priority;
+
+            int node = fileNodes[index];
+            int prevType = typeOf(prevPriority);
+            int type = typeOf(priority);
+            if (prevType == type)
+                continue;
+            long prevNonIgnoreSize = nonIgnoreSizes[node];
+            double prevAvail = fileAvailability(node);
+            updateFile(node);
+            addToAncestors(node, prevType, type,
+                    nonIgnoreSizes[node] - prevNonIgnoreSize,
+                    fileAvailability(node) - prevAvail);
+        }
+    }
+
+    /*
+     * Returns the priorities for libtorrent, indexed by the torrent file index
+     */
+
+    @NonNull
+    public Priority[] getFilePriorities() {
+        return filePriorities.clone();
+    }
+
+    /*
+     * Sets the priority of the file or all files in the directory,
+     * updates the subtree and adds its difference to the ancestors
+     */
+
+    public void setPriority(int node, @NonNull FilePriority priority) {
+        if (priority.getType() == FilePriority.Type.MIXED)
+            return;
+
+        int offset = node * NUM_TYPES;
+        int prevIgnore = typeCounts[offset + TYPE_IGNORE];
+        int prevNormal = typeCounts[offset + TYPE_NORMAL];
+        int prevHigh = typeCounts[offset + TYPE_HIGH];
+        long prevNonIgnoreSize = nonIgnoreSizes[node];
+        double prevAvail = (isFile(node) ? fileAvailability(node) : availability[node]);
+
+        Priority p = priority.getPriority();
+        int end = subtreeEnds[node];
+        for (int i = node; i < end; i++)
+            if (isFile(i))
+                filePriorities[fileIndexes[i]] = p;
+        updateRange(node, end);
+
+        double avail = (isFile(node) ? fileAvailability(node) : availability[node]);
+        for (int parent = parents[node]; parent != NO_NODE; parent = parents[parent]) {
+            int parentOffset = parent * NUM_TYPES;
+            typeCounts[parentOffset + TYPE_IGNORE] += typeCounts[offset + TYPE_IGNORE] - prevIgnore;
+            typeCounts[parentOffset + TYPE_NORMAL] += typeCounts[offset + TYPE_NORMAL] - prevNormal;
+            typeCounts[parentOffset + TYPE_HIGH] += typeCounts[offset + TYPE_HIGH] - prevHigh;
+            nonIgnoreSizes[parent] += nonIgnoreSizes[node] - prevNonIgnoreSize;
+            availability[parent] += avail - prevAvail;
+        }
+    }
+
+    /*
+     * The arrays are indexed by the torrent file index, null means no changes
+     */
+
+    public void update(@Nullable long[] filesReceivedBytes, @Nullable double[] filesAvailability) {
+        if (filesReceivedBytes != null) {
+            int n = Math.min(filesReceivedBytes.length, fileNodes.length);
+            for (int i = 0; i < n; i++) {
+                int node = fileNodes[i];
+                if (node != NO_NODE)
+                    receivedBytes[node] = filesReceivedBytes[i];
+            }
+        }
+        if (filesAvailability != null) {
+            int n = Math.min(filesAvailability.length, fileNodes.length);
+            for (int i = 0; i < n; i++) {
+                int node = fileNodes[i];
+                if (node != NO_NODE)
+                    availability[node] = filesAvailability[i];
+            }
+        }
+        updateRange(ROOT, numNodes);
+    }
+
+    /*
+     * Updates the nodes of the subtree in reverse preorder,
+     * so the children are always updated before their parent
+     */
+
+    private void updateRange(int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (isFile(i)) {
+                updateFile(i);
+            } else {
+                updateDir(i);
+            }
+        }
+    }
+
+    private void updateFile(int node) {
+        Priority priority = filePriorities[fileIndexes[node]];
+        nonIgnoreSizes[node] = (priority == Priority.IGNORE ? 0 : sizes[node]);
+        int offset = node * NUM_TYPES;
+        for (int t = 0; t < NUM_TYPES; t++)
+            typeCounts[offset + t] = 0;
+        typeCounts[offset + typeOf(priority)] = 1;
+    }
+
+    private void updateDir(int node) {
+        long received = 0;
+        long nonIgnoreSize = 0;
+        double avail = 0;
+        int offset = node * NUM_TYPES;
+        for (int t = 0; t < NUM_TYPES; t++)
+            typeCounts[offset + t] = 0;
+
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+            received += receivedBytes[child];
+            nonIgnoreSize += nonIgnoreSizes[child];
+            avail += (isFile(child) ? fileAvailability(child) : availability[child]);
+            int childOffset = child * NUM_TYPES;
+            for (int t = 0; t < NUM_TYPES; t++)
+                typeCounts[offset + t] += typeCounts[childOffset + t];
+        }
+        receivedBytes[node] = received;
+        nonIgnoreSizes[node] = nonIgnoreSize;
+        availability[node] = avail;
+    }
+
+    /*
+     * The contribution of the file to the availability sum of its directory
+     */
+
+    private double fileAvailability(int node) {
+        return (nonIgnoreSizes[node] > 0 && availability[node] > 0) ?
+                availability[node] * sizes[node] : 0;
+    }
+
+    private void addToAncestors(int node, int prevType, int type,
+                                long nonIgnoreSizeDelta, double availDelta) {
+        for (int parent = parents[node]; parent != NO_NODE; parent = parents[parent]) {
+            int offset = parent * NUM_TYPES;
+            typeCounts[offset + prevType]--;
+            typeCounts[offset + type]++;
+            nonIgnoreSizes[parent] += nonIgnoreSizeDelta;
+            availability[parent] += availDelta;
+        }
+    }
+
+    private static int typeOf(Priority priority) {
+        if (priority == Priority.IGNORE)
+            return TYPE_IGNORE;
+
+        return (priority == Priority.TOP_PRIORITY ? TYPE_HIGH : TYPE_NORMAL);
+    }
+
+    /*
+     * Builds the tree in one pass from the file entries in any order, without
+     * materializing the file list. The path segments are interned and the
+     * directories are looked up by (parent, name) in the primitive hash table,
+     * so the substrings are made only for the new segments. The nodes are
+     * linked in the insertion order and then renumbered in preorder.
+     */
+
+    public static class Builder {
+        private static final int NO_SLOT = 0;
+
+        private final int numFiles;
+        private int numNodes;
+        private String[] names;
+        private int[] parents;
+        private int[] firstChildren;
+        private int[] lastChildren;
+        private int[] nextSiblings;
+        private int[] fileIndexes;
+        private long[] sizes;
+        /* Interned path segments, open addressing */
+        private String[] segments = new String[1024];
+        private int numSegments;
+        /* (parent, name) -> directory node + 1, open addressing */
+        private int[] dirs = new int[1024];
+        private int numDirs;
+        /* The files of the same directory usually go in a row */
+        private String prevPath;
+        private int prevDirLength = -1;
+        private int prevDir = ROOT;
+
+        public Builder(int numFiles) {
+            this.numFiles = numFiles;
+            int capacity = Math.max(numFiles + 1, 16);
+            names = new String[capacity];
+            parents = new int[capacity];
+            firstChildren = new int[capacity];
+            lastChildren = new int[capacity];
+            nextSiblings = new int[capacity];
+            fileIndexes = new int[capacity];
+            sizes = new long[capacity];
+            addNode(FileTree.ROOT, NO_NODE, -1, 0);
+        }
+
+        public void addFile(int index, @NonNull String path, long size) {
+            int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+            int dir;
+            if (prevPath != null && nameStart == prevDirLength &&
+                    path.regionMatches(0, prevPath, 0, nameStart)) {
+                dir = prevDir;
+            } else {
+                dir = ROOT;
+                for (int start = 0, end; (end = path.indexOf(File.separatorChar, start)) >= 0; start = end + 1) {
+                    if (end > start)
+                        dir = getOrAddDir(dir, intern(path, start, end));
+                }
+                prevPath = path;
+                prevDirLength = nameStart;
+                prevDir = dir;
+            }
+            addNode(intern(path, nameStart, path.length()), dir, index, size);
+        }
+
+        @NonNull
+        public TorrentContentFlatTree build() {
+            var tree = new TorrentContentFlatTree(numNodes, numFiles);
+            Arrays.fill(tree.fileNodes, NO_NODE);
+            Arrays.fill(tree.filePriorities, Priority.IGNORE);
+
+            /* Preorder numbering */
+            int[] newIds = new int[numNodes];
+            int[] stack = new int[numNodes];
+            int top = 0;
+            int nextId = 0;
+            stack[top++] = ROOT;
+            while (top > 0) {
+                int node = stack[--top];
+                newIds[node] = nextId++;
+                /* Push in reverse order to visit the children in the insertion order */
+                int childrenStart = top;
+                for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child])
+                    stack[top++] = child;
+                for (int i = childrenStart, j = top - 1; i < j; i++, j--) {
+                    int tmp = stack[i];
+                    stack[i] = stack[j];
+                    stack[j] = tmp;
+                }
+            }
+
+            for (int node = 0; node < numNodes; node++) {
+                int id = newIds[node];
+                tree.names[id] = names[node];
+                tree.parents[id] = (parents[node] == NO_NODE ? NO_NODE : newIds[parents[node]]);
+                tree.firstChildren[id] = (firstChildren[node] == NO_NODE ? NO_NODE : newIds[firstChildren[node]]);
+                tree.nextSiblings[id] = (nextSiblings[node] == NO_NODE ? NO_NODE : newIds[nextSiblings[node]]);
+                tree.fileIndexes[id] = fileIndexes[node];
+                tree.sizes[id] = sizes[node];
+                tree.availability[id] = -1;
+                if (fileIndexes[node] >= 0 && fileIndexes[node] < numFiles)
+                    tree.fileNodes[fileIndexes[node]] = id;
+            }
+
+            /* Directory sizes and subtree ranges, children first */
+            for (int id = tree.numNodes - 1; id >= 0; id--) {
+                if (tree.subtreeEnds[id] < id + 1)
+                    tree.subtreeEnds[id] = id + 1;
+                int parent = tree.parents[id];
+                if (parent != NO_NODE) {
+                    tree.sizes[parent] += tree.sizes[id];
+                    tree.subtreeEnds[parent] = Math.max(tree.subtreeEnds[parent], tree.subtreeEnds[id]);
+                }
+            }
+            tree.updateRange(ROOT, tree.numNodes);
+
+            return tree;
+        }
+
+        /*
+         * Returns the shared string of path[start, end), the substring
+         * is made only if there is no such segment yet
+         */
+
+        private String intern(String path, int start, int end) {
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++)
+                hash = 31 * hash + path.charAt(i);
+
+            int mask = segments.length - 1;
+            int slot = mix(hash) & mask;
+            for (String s; (s = segments[slot]) != null; slot = (slot + 1) & mask) {
+                if (s.hashCode() == hash && s.length() == length && path.regionMatches(start, s, 0, length))
+                    return s;
+            }
+
+            String segment = path.substring(start, end);
+            segments[slot] = segment;
+            if (++numSegments * 2 > segments.length)
+                growSegments();
+
+            return segment;
+        }
+
+        private void growSegments() {
+            String[] old = segments;
+            segments = new String[old.length * 2];
+            int mask = segments.length - 1;
+            for (String s : old) {
+                if (s == null)
+                    continue;
+                int slot = mix(s.hashCode()) & mask;
+                while (segments[slot] != null)
+                    slot = (slot + 1) & mask;
+                segments[slot] = s;
+            }
+        }
+
+        /*
+         * The names are interned, so they are compared by reference
+         */
+
+        private int getOrAddDir(int parent, String name) {
+            int mask = dirs.length - 1;
+            int slot = dirHash(parent, name) & mask;
+            for (int entry; (entry = dirs[slot]) != NO_SLOT; slot = (slot + 1) & mask) {
+                int node = entry - 1;
+                if (parents[node] == parent && names[node] == name)
+                    return node;
+            }
+
+            int node = addNode(name, parent, -1, 0);
+            dirs[slot] = node + 1;
+            if (++numDirs * 2 > dirs.length)
+                growDirs();
+
+            return node;
+        }
+
+        private void growDirs() {
+            int[] old = dirs;
+            dirs = new int[old.length * 2];
+            int mask = dirs.length - 1;
+            for (int entry : old) {
+                if (entry == NO_SLOT)
+                    continue;
+                int node = entry - 1;
+                int slot = dirHash(parents[node], names[node]) & mask;
+                while (dirs[slot] != NO_SLOT)
+                    slot = (slot + 1) & mask;
+                dirs[slot] = entry;
+            }
+        }
+
+        private static int dirHash(int parent, String name) {
+            return mix(parent * 31 + name.hashCode());
+        }
+
+        private static int mix(int hash) {
+            int h = hash * 0x9E3779B9;
+
+            return h ^ (h >>> 16);
+        }
+
+        private int addNode(String name, int parent, int fileIndex, long size) {
+            if (numNodes == names.length)
+                grow();
+            int node = numNodes++;
+            names[node] = name;
+            parents[node] = parent;
+            firstChildren[node] = NO_NODE;
+            lastChildren[node] = NO_NODE;
+            nextSiblings[node] = NO_NODE;
+            fileIndexes[node] = fileIndex;
+            sizes[node] = size;
+            if (parent != NO_NODE) {
+                if (firstChildren[parent] == NO_NODE)
+                    firstChildren[parent] = node;
+                else
+                    nextSiblings[lastChildren[parent]] = node;
+                lastChildren[parent] = node;
+            }
+
+            return node;
+        }
+
+        private void grow() {
+            int capacity = names.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            fileIndexes = Arrays.copyOf(fileIndexes, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+    }
+}
@@ -26,4 +26,18 @@ import org.proninyaroslav.libretorrent.core.exception.IPFilterException;
 interface IPFilter
 {
     void addRange(@NonNull String first, @NonNull String last) throws IPFilterException;
+
+    /*
+     * Adds the range of IPv4 addresses as unsigned ints.
+     * The first address must not be greater than the last
+     */
+
+    void addRangeV4(int first, int last) throws IPFilterException;
+
+    /*
+     * Adds the range of IPv6 addresses as high and low 64 bits.
+     * The first address must not be greater than the last
+     */
+
+    void addRangeV6(long firstHigh, long firstLow, long lastHigh, long lastLow) throws IPFilterException;
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Compiled IP filter: the normalized ranges of the parsed filter file
+ * in the binary form. The cache is bound to the source file
+ * by its path, size and modification time, so any change of the file
+ * invalidates the cache. Loading is done with the memory-mapped I/O,
+ * without any text parsing.
+ *
+ * Format (big-endian):
+ *   magic (int), version (int),
+ *   source size (long), source modification time (long),
+ *   source path length (int), source path (UTF-8),
+ *   rule count (int), IPv4 range count (int), IPv6 range count (int),
+ *   IPv4 ranges (2 ints each), IPv6 ranges (4 longs each)
+ */
+
+class IPFilterCache {
+    private static final int MAGIC = 0x4c544946; /* "LTIF" */
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    IPFilterCache(@NonNull File file) {
+        this.file = file;
+    }
+
+    /*
+     * Returns null if there is no valid cache for the specified source file
+     */
+
+    IPFilterRanges load(@NonNull String source, long sourceSize, long sourceLastModified) {
+        if (!file.exists())
+            return null;
+
+        try (FileInputStream is = new FileInputStream(file);
+             FileChannel channel = is.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.order(ByteOrder.BIG_ENDIAN);
+
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+                return null;
+            if (buf.getLong() != sourceSize || buf.getLong() != sourceLastModified)
+                return null;
+            byte[] sourceBytes = new byte[buf.getInt()];
+            buf.get(sourceBytes);
+            if (!source.equals(new String(sourceBytes, StandardCharsets.UTF_8)))
+                return null;
+
+            int ruleCount = buf.getInt();
+            int v4Count = buf.getInt();
+            int v6Count = buf.getInt();
+            if (v4Count < 0 || v6Count < 0 ||
+                    buf.remaining() != (long) v4Count * 2 * Integer.BYTES + (long) v6Count * 4 * Long.BYTES)
+                return null;
+
+            int[] v4Ranges = new int[v4Count * 2];
+            buf.asIntBuffer().get(v4Ranges);
+            buf.position(buf.position() + v4Ranges.length * Integer.BYTES);
+            long[] v6Ranges = new long[v6Count * 4];
+            buf.asLongBuffer().get(v6Ranges);
+
+            return new IPFilterRanges(ruleCount, v4Ranges, v6Ranges);
+
+        } catch (IOException | RuntimeException e) {
+            /* Corrupted cache */
+            return null;
+        }
+    }
+
+    /*
+     * The ranges must be normalized
+     */
+
+    void save(
+            @NonNull String source,
+            long sourceSize,
+            long sourceLastModified,
+            @NonNull IPFilterRanges ranges
+    ) throws IOException {
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+        int[] v4Ranges = ranges.getV4Ranges();
+        long[] v6Ranges = ranges.getV6Ranges();
+        int headerSize = 2 * Integer.BYTES + 2 * Long.BYTES +
+                Integer.BYTES + sourceBytes.length + 3 * Integer.BYTES;
+
+        ByteBuffer buf = ByteBuffer.allocate(headerSize +
+                v4Ranges.length * Integer.BYTES + v6Ranges.length * Long.BYTES);
+        buf.order(ByteOrder.BIG_ENDIAN);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putLong(sourceSize);
+        buf.putLong(sourceLastModified);
+        buf.putInt(sourceBytes.length);
+        buf.put(sourceBytes);
+        buf.putInt(ranges.getRuleCount());
+        buf.putInt(ranges.getV4Count());
+        buf.putInt(ranges.getV6Count());
+        buf.asIntBuffer().put(v4Ranges);
+        buf.position(buf.position() + v4Ranges.length * Integer.BYTES);
+        buf.asLongBuffer().put(v6Ranges);
+        buf.rewind();
+
+        /* Write to the temp file first, so the reader never sees a partially written cache */
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream os = new FileOutputStream(tmpFile);
+             FileChannel channel = os.getChannel()) {
+            while (buf.hasRemaining())
+                channel.write(buf);
+            os.getFD().sync();
+        }
+        if (!tmpFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            throw new IOException("Unable to rename " + tmpFile + " to " + file);
+        }
+    }
+
+    void delete() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
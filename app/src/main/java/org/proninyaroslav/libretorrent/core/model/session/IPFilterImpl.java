@@ -29,6 +29,9 @@ import org.proninyaroslav.libretorrent.core.exception.IPFilterException;
 class IPFilterImpl implements IPFilter
 {
     private final ip_filter filter;
+    /* Reused to convert the binary addresses */
+    private final StringBuilder addrBuf = new StringBuilder(39);
+    private final error_code addrError = new error_code();
 
     public IPFilterImpl()
     {
@@ -61,6 +64,50 @@ class IPFilterImpl implements IPFilter
         filter.add_rule(firstAddr, lastAddr, ip_filter.access_flags.blocked.swigValue());
     }
 
+    /*
+     * The libtorrent address can be made only from a string, so the binary
+     * address is formatted into the reused buffer without intermediate checks
+     */
+
+    @Override
+    public void addRangeV4(int first, int last) throws IPFilterException
+    {
+        addrBuf.setLength(0);
+        address firstAddr = toAddress(IPFilterRanges.appendV4(addrBuf, first));
+        address lastAddr = firstAddr;
+        if (first != last) {
+            addrBuf.setLength(0);
+            lastAddr = toAddress(IPFilterRanges.appendV4(addrBuf, last));
+        }
+
+        filter.add_rule(firstAddr, lastAddr, ip_filter.access_flags.blocked.swigValue());
+    }
+
+    @Override
+    public void addRangeV6(long firstHigh, long firstLow, long lastHigh, long lastLow)
+            throws IPFilterException
+    {
+        addrBuf.setLength(0);
+        address firstAddr = toAddress(IPFilterRanges.appendV6(addrBuf, firstHigh, firstLow));
+        address lastAddr = firstAddr;
+        if (firstHigh != lastHigh || firstLow != lastLow) {
+            addrBuf.setLength(0);
+            lastAddr = toAddress(IPFilterRanges.appendV6(addrBuf, lastHigh, lastLow));
+        }
+
+        filter.add_rule(firstAddr, lastAddr, ip_filter.access_flags.blocked.swigValue());
+    }
+
+    private address toAddress(StringBuilder addr) throws IPFilterException
+    {
+        addrError.clear();
+        address res = address.from_string(addr.toString(), addrError);
+        if (addrError.value() > 0)
+            throw new IPFilterException("Invalid IP: " + addr);
+
+        return res;
+    }
+
     public ip_filter getFilter()
     {
         return filter;
@@ -24,18 +24,27 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
 import org.proninyaroslav.libretorrent.core.exception.UnknownUriException;
 import org.proninyaroslav.libretorrent.core.system.FileDescriptorWrapper;
 import org.proninyaroslav.libretorrent.core.system.FileSystemFacade;
 
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 /*
- * Parser of blacklist IP addresses in DAT and P2P formats.
+ * Parser of the eMule (DAT) and PeerGuardian (P2P) IP filter files,
+ * including gzip and zip compressed ones.
+ *
+ * The input is scanned as bytes, line by line in the reusable buffer,
+ * and the addresses are parsed directly into the primitive ranges,
+ * without creating strings or other objects per line.
  */
 
 class IPFilterParser
@@ -43,6 +52,18 @@ class IPFilterParser
     private static final String TAG = IPFilterParser.class.getSimpleName();
 
     private static final int MAX_LOGGED_ERRORS = 5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ACCESS_VALUE = 127;
+
+    private static final int RULE_ADDED = 0;
+    private static final int RULE_IGNORED = 1;
+    private static final int RULE_MALFORMED = 2;
+
+    enum Format
+    {
+        DAT,
+        P2P
+    }
 
     private final boolean logEnabled;
 
@@ -56,7 +77,7 @@ class IPFilterParser
         this.logEnabled = logEnabled;
     }
 
-    public int parseFile(@NonNull Uri path, @NonNull FileSystemFacade fs, @NonNull IPFilter filter)
+    public int parseFile(@NonNull Uri path, @NonNull FileSystemFacade fs, @NonNull IPFilterRanges ranges)
     {
         int ruleCount = 0;
         try {
@@ -72,11 +93,7 @@ class IPFilterParser
         try (FileDescriptorWrapper w = fs.getFD(path);
              FileInputStream is = new FileInputStream(w.open("r"))) {
 
-            String pathStr = path.toString().toLowerCase();
-            if (pathStr.endsWith(".dat"))
-                ruleCount = parseDAT(is, filter);
-            else if (pathStr.endsWith(".p2p"))
-                ruleCount = parseP2P(is, filter);
+            ruleCount = parse(path.toString(), is, ranges);
 
         } catch (IOException | UnknownUriException e) {
             Log.e(TAG, Log.getStackTraceString(e));
@@ -90,181 +107,387 @@ class IPFilterParser
     }
 
     /*
-     * Parser for eMule ip filter in DAT format
+     * Parses the filter, the compression is detected by the content
+     * and the format by the file name (or by the content, if the name is unknown)
      */
 
-    public int parseDAT(@NonNull InputStream is, @NonNull IPFilter filter)
+    int parse(@NonNull String fileName, @NonNull InputStream is, @NonNull IPFilterRanges ranges)
+            throws IOException
     {
-        int ruleCount = 0;
-        long lineNum = 0;
-        int parseErrorCount = 0;
-        LineIterator it;
+        String name = fileName.toLowerCase(Locale.US);
+        var bufIs = new BufferedInputStream(is, BUFFER_SIZE);
+
+        bufIs.mark(4);
+        int b0 = bufIs.read();
+        int b1 = bufIs.read();
+        int b2 = bufIs.read();
+        int b3 = bufIs.read();
+        bufIs.reset();
+
+        if (b0 == 0x1f && b1 == 0x8b) {
+            if (name.endsWith(".gz"))
+                name = name.substring(0, name.length() - 3);
+            else if (name.endsWith(".tgz"))
+                name = name.substring(0, name.length() - 4);
+
+            return parse(new GZIPInputStream(bufIs, BUFFER_SIZE), formatOf(name), ranges);
+
+        } else if (b0 == 'P' && b1 == 'K' && b2 == 3 && b3 == 4) {
+            int ruleCount = 0;
+            var zipIs = new ZipInputStream(bufIs);
+            ZipEntry entry;
+            while ((entry = zipIs.getNextEntry()) != null) {
+                if (entry.isDirectory())
+                    continue;
+                ruleCount += parse(zipIs, formatOf(entry.getName().toLowerCase(Locale.US)), ranges);
+            }
+
+            return ruleCount;
+
+        } else {
+            return parse(bufIs, formatOf(name), ranges);
+        }
+    }
+
+    /*
+     * Parser for eMule ip filter in DAT format
+     */
 
+    public int parseDAT(@NonNull InputStream is, @NonNull IPFilterRanges ranges)
+    {
         try {
-            it = IOUtils.lineIterator(is, "UTF-8");
+            return parse(is, Format.DAT, ranges);
 
         } catch (IOException e) {
             Log.e(TAG, Log.getStackTraceString(e));
 
-            return ruleCount;
+            return 0;
         }
+    }
 
-        while (it.hasNext()) {
-            lineNum++;
+    /*
+     * Parser for PeerGuardian ip filter in p2p format
+     */
 
-            String line = it.nextLine();
-            line = (line == null ? null : line.trim());
-            if (line == null || line.isEmpty())
-                continue;
+    public int parseP2P(@NonNull InputStream is, @NonNull IPFilterRanges ranges)
+    {
+        try {
+            return parse(is, Format.P2P, ranges);
 
-            /* Ignoring commented lines */
-            if (line.startsWith("#") || line.startsWith("//"))
-                continue;
+        } catch (IOException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
 
-            /* Line should be split by commas */
-            String[] parts = line.split(",");
-            /* Check if there is at least one item (ip range) */
-            if (parts.length == 0)
-                continue;
+            return 0;
+        }
+    }
 
-            /* Check if there is an access value (apparently not mandatory) */
-            if (parts.length > 1) {
-                int accessNum = Integer.parseInt(parts[1].trim());
-                /* Ignoring this rule because access value is too high */
-                if (accessNum > 127)
-                    continue;
-            }
+    /*
+     * Returns null if the format is unknown
+     */
 
-            /* IP Range should be split by a dash */
-            String[] ips = parts[0].split("-");
-            if (ips.length != 2) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "DAT", "line " + lineNum + " is malformed. Line was " + line);
-                continue;
-            }
+    private static Format formatOf(String name)
+    {
+        if (name.endsWith(".dat"))
+            return Format.DAT;
+        else if (name.endsWith(".p2p"))
+            return Format.P2P;
+        else
+            return null;
+    }
 
-            String startAddr = parseIpAddress(ips[0]);
-            if (startAddr == null) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "DAT", "line " + lineNum +
-                        " is malformed. Start IP of the range is invalid: " + ips[0]);
-                continue;
+    /*
+     * Null format means that it's detected by the first rule
+     */
+
+    private int parse(InputStream is, Format format, IPFilterRanges ranges) throws IOException
+    {
+        var scanner = new LineScanner(format, ranges);
+        byte[] buf = new byte[BUFFER_SIZE];
+        /* Number of bytes in the buffer */
+        int len = 0;
+        /* Start of the current line */
+        int lineStart = 0;
+        /* Position from which to search the end of the current line */
+        int scanPos = 0;
+        boolean lineTooLong = false;
+        boolean eof = false;
+
+        while (true) {
+            int lineEnd = -1;
+            for (int i = scanPos; i < len; i++) {
+                if (buf[i] == '\n') {
+                    lineEnd = i;
+                    break;
+                }
             }
 
-            String endAddr = parseIpAddress(ips[1]);
-            if (endAddr == null) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "DAT", "line " + lineNum +
-                        " is malformed. End IP of the range is invalid: " + ips[1]);
+            if (lineEnd >= 0) {
+                if (lineTooLong) {
+                    scanner.skipLine();
+                    lineTooLong = false;
+                } else {
+                    scanner.parseLine(buf, lineStart, lineEnd);
+                }
+                lineStart = scanPos = lineEnd + 1;
                 continue;
             }
 
-            try {
-                filter.addRange(startAddr, endAddr);
-                ruleCount++;
+            if (eof) {
+                if (lineTooLong)
+                    scanner.skipLine();
+                else if (lineStart < len)
+                    scanner.parseLine(buf, lineStart, len);
+                break;
+            }
 
-            } catch (Exception e) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "DAT", "line " + lineNum +
-                        " is malformed. Line was " + line + ": " + e.getMessage());
+            /* Move the incomplete line to the beginning of the buffer */
+            if (lineStart > 0) {
+                System.arraycopy(buf, lineStart, buf, 0, len - lineStart);
+                len -= lineStart;
+                lineStart = 0;
+            }
+            if (len == buf.length) {
+                /* The line doesn't fit into the buffer, skip it */
+                lineTooLong = true;
+                len = 0;
             }
+            scanPos = len;
+
+            int n = is.read(buf, len, buf.length - len);
+            if (n < 0)
+                eof = true;
+            else
+                len += n;
         }
 
-        return ruleCount;
+        return scanner.ruleCount;
     }
 
-    /*
-     * Parser for PeerGuardian ip filter in p2p format
-     */
-
-    public int parseP2P(@NonNull InputStream is, @NonNull IPFilter filter)
+    private class LineScanner
     {
-        int ruleCount = 0;
-        long lineNum = 0;
-        int parseErrorCount = 0;
-        LineIterator it;
-
-        try {
-            it = IOUtils.lineIterator(is, "UTF-8");
-
-        } catch (IOException e) {
-            Log.e(TAG, Log.getStackTraceString(e));
+        private final IPFilterRanges ranges;
+        private Format format;
+        /* Scratch space for the IPv6 parsing */
+        private final int[] groups = new int[8];
+        private final long[] addr = new long[4];
+        private long lineNum;
+        private int parseErrorCount;
+        int ruleCount;
+
+        LineScanner(Format format, IPFilterRanges ranges)
+        {
+            this.format = format;
+            this.ranges = ranges;
+        }
 
-            return ruleCount;
+        void skipLine()
+        {
+            lineNum++;
+            parseErrorCount++;
+            errLog("line " + lineNum + " is too long");
         }
 
-        while (it.hasNext()) {
+        void parseLine(byte[] b, int from, int to)
+        {
             lineNum++;
 
-            String line = it.nextLine();
-            line = (line == null ? null : line.trim());
-            if (line == null || line.isEmpty())
-                continue;
+            /* Skip UTF-8 BOM */
+            if (lineNum == 1 && to - from >= 3 &&
+                    b[from] == (byte) 0xef && b[from + 1] == (byte) 0xbb && b[from + 2] == (byte) 0xbf)
+                from += 3;
+
+            from = skipSpaces(b, from, to);
+            to = trimSpaces(b, from, to);
+            if (from == to)
+                return;
 
             /* Ignoring commented lines */
-            if (line.startsWith("#") || line.startsWith("//"))
-                continue;
+            if (b[from] == '#' || (b[from] == '/' && to - from > 1 && b[from + 1] == '/'))
+                return;
 
-            /* Line should be split by ':' */
-            String[] parts = line.split(":");
-            if (parts.length < 2) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "P2P", "line " + lineNum + " is malformed");
-                continue;
-            }
+            if (format == null)
+                format = detectFormat(b, from, to);
 
-            /* IP Range should be split by a dash */
-            String[] ips = parts[1].split("-");
-            if (ips.length != 2) {
+            int res = (format == Format.DAT ?
+                    parseDATRule(b, from, to) :
+                    parseP2PRule(b, from, to));
+            if (res == RULE_ADDED) {
+                ruleCount++;
+            } else if (res == RULE_MALFORMED) {
                 parseErrorCount++;
-                errLog(parseErrorCount, "P2P", "line " + lineNum + " is malformed. Line was" + line);
-                continue;
+                /* Avoid creating the string if it isn't logged */
+                if (logEnabled && parseErrorCount <= MAX_LOGGED_ERRORS)
+                    errLog("line " + lineNum + " is malformed. Line was " +
+                            new String(b, from, to - from, StandardCharsets.UTF_8));
             }
+        }
 
-            String startAddr = parseIpAddress(ips[0]);
-            if (startAddr == null) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "P2P", "line " + lineNum +
-                        " is malformed. Start IP of the range is invalid: " + ips[0]);
-                continue;
+        /*
+         * <first IP> - <last IP> [, <access> [, <description>]]
+         */
+
+        private int parseDATRule(byte[] b, int from, int to)
+        {
+            int comma = indexOf(b, from, to, ',');
+            if (comma >= 0) {
+                int accessEnd = indexOf(b, comma + 1, to, ',');
+                if (accessEnd < 0)
+                    accessEnd = to;
+                int access = parseAccess(b, comma + 1, accessEnd);
+                if (access == -2)
+                    return RULE_MALFORMED;
+                /* Ignoring this rule because access value is too high */
+                if (access > MAX_ACCESS_VALUE)
+                    return RULE_IGNORED;
             }
 
-            String endAddr = parseIpAddress(ips[1]);
-            if (endAddr == null) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "P2P", "line " + lineNum +
-                        " is malformed. End IP of the range is invalid: " + ips[1]);
-                continue;
+            return (parseRange(b, from, comma < 0 ? to : comma) ? RULE_ADDED : RULE_MALFORMED);
+        }
+
+        /*
+         * <description>:<first IP>-<last IP>
+         */
+
+        private int parseP2PRule(byte[] b, int from, int to)
+        {
+            int lastColon = lastIndexOf(b, from, to, ':');
+            if (lastColon < 0)
+                return RULE_MALFORMED;
+            if (parseRange(b, lastColon + 1, to))
+                return RULE_ADDED;
+
+            /* The range contains colons (IPv6) */
+            int firstColon = indexOf(b, from, to, ':');
+            if (firstColon != lastColon && parseRange(b, firstColon + 1, to))
+                return RULE_ADDED;
+
+            return RULE_MALFORMED;
+        }
+
+        private boolean parseRange(byte[] b, int from, int to)
+        {
+            int dash = indexOf(b, from, to, '-');
+            if (dash < 0 || indexOf(b, dash + 1, to, '-') >= 0)
+                return false;
+
+            int firstStart = skipSpaces(b, from, dash);
+            int firstEnd = trimSpaces(b, firstStart, dash);
+            int lastStart = skipSpaces(b, dash + 1, to);
+            int lastEnd = trimSpaces(b, lastStart, to);
+
+            boolean firstIsV6 = indexOf(b, firstStart, firstEnd, ':') >= 0;
+            boolean lastIsV6 = indexOf(b, lastStart, lastEnd, ':') >= 0;
+            /* One IP is IPv6 and the other is IPv4 */
+            if (firstIsV6 != lastIsV6)
+                return false;
+
+            if (firstIsV6) {
+                if (!IPFilterRanges.parseV6(b, firstStart, firstEnd, groups, addr, 0) ||
+                        !IPFilterRanges.parseV6(b, lastStart, lastEnd, groups, addr, 2))
+                    return false;
+                if (IPFilterRanges.compareV6(addr[0], addr[1], addr[2], addr[3]) > 0)
+                    return false;
+                ranges.addRangeV6(addr[0], addr[1], addr[2], addr[3]);
+
+            } else {
+                long first = IPFilterRanges.parseV4(b, firstStart, firstEnd);
+                long last = IPFilterRanges.parseV4(b, lastStart, lastEnd);
+                if (first < 0 || last < 0 || first > last)
+                    return false;
+                ranges.addRangeV4((int) first, (int) last);
             }
 
-            try {
-                filter.addRange(startAddr, endAddr);
-                ruleCount++;
+            return true;
+        }
 
-            } catch (Exception e) {
-                parseErrorCount++;
-                errLog(parseErrorCount, "P2P", "line " + lineNum +
-                        " is malformed. Line was " + line + ": " + e.getMessage());
+        /*
+         * Returns -1 if the value is empty and -2 if it's invalid
+         */
+
+        private int parseAccess(byte[] b, int from, int to)
+        {
+            from = skipSpaces(b, from, to);
+            to = trimSpaces(b, from, to);
+            if (from == to)
+                return -1;
+
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                if (b[i] < '0' || b[i] > '9')
+                    return -2;
+                value = Math.min(value * 10 + (b[i] - '0'), Integer.MAX_VALUE / 10);
             }
+
+            return value;
         }
 
-        return ruleCount;
+        private void errLog(String msg)
+        {
+            if (!logEnabled || parseErrorCount > MAX_LOGGED_ERRORS)
+                return;
+
+            Log.e(TAG, (format == null ? "" : format.name() + ": ") + msg);
+        }
+    }
+
+    /*
+     * DAT rules are separated by commas, P2P rules have the range after a colon
+     */
+
+    private static Format detectFormat(byte[] b, int from, int to)
+    {
+        if (indexOf(b, from, to, ',') >= 0)
+            return Format.DAT;
+
+        int lastColon = lastIndexOf(b, from, to, ':');
+        if (lastColon >= 0 && indexOf(b, lastColon + 1, to, '.') >= 0)
+            return Format.P2P;
+
+        return Format.DAT;
     }
 
-    private String parseIpAddress(String ip)
+    private static int indexOf(byte[] b, int from, int to, char c)
     {
-        if (ip == null || ip.isEmpty()) {
-            return null;
-        } else {
-            return ip.trim();
+        for (int i = from; i < to; i++) {
+            if (b[i] == c)
+                return i;
         }
+
+        return -1;
     }
 
-    private void errLog(int parseErrorCount, String prefix, String msg)
+    private static int lastIndexOf(byte[] b, int from, int to, char c)
+    {
+        for (int i = to - 1; i >= from; i--) {
+            if (b[i] == c)
+                return i;
+        }
+
+        return -1;
+    }
+
+    private static boolean isSpace(byte c)
+    {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static int skipSpaces(byte[] b, int from, int to)
+    {
+        while (from < to && isSpace(b[from]))
+            from++;
+
+        return from;
+    }
+
+    /*
+     * Returns the end of [from, to) without trailing spaces
+     */
+
+    private static int trimSpaces(byte[] b, int from, int to)
     {
-        if (!logEnabled || parseErrorCount > MAX_LOGGED_ERRORS)
-            return;
+        while (to > from && isSpace(b[to - 1]))
+            to--;
 
-        Log.e(TAG, prefix + ": " + msg);
+        return to;
     }
 }
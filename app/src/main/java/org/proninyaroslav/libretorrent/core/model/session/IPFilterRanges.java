@@ -0,0 +1,455 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import androidx.annotation.NonNull;
+
+import org.proninyaroslav.libretorrent.core.exception.IPFilterException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Blocked IP ranges in the binary form. Collects the ranges from the parser,
+ * then sorts and merges the overlapping and adjacent ones,
+ * so the same rules can be stored compactly and applied to the real filter.
+ *
+ * IPv4 range is stored as two ints (unsigned), IPv6 range as four longs
+ * (high and low 64 bits of the first and the last address).
+ */
+
+class IPFilterRanges implements IPFilter {
+    private static final int V6_RANGE_LEN = 4;
+
+    private int ruleCount;
+    private int[] v4Ranges;
+    private int v4Count;
+    private long[] v6Ranges;
+    private int v6Count;
+
+    IPFilterRanges() {
+        v4Ranges = new int[1024];
+        v6Ranges = new long[64];
+    }
+
+    /*
+     * The ranges must be already normalized
+     */
+
+    IPFilterRanges(int ruleCount, @NonNull int[] v4Ranges, @NonNull long[] v6Ranges) {
+        this.ruleCount = ruleCount;
+        this.v4Ranges = v4Ranges;
+        this.v4Count = v4Ranges.length / 2;
+        this.v6Ranges = v6Ranges;
+        this.v6Count = v6Ranges.length / V6_RANGE_LEN;
+    }
+
+    @Override
+    public void addRange(@NonNull String first, @NonNull String last) throws IPFilterException {
+        boolean firstIsV6 = first.indexOf(':') >= 0;
+        boolean lastIsV6 = last.indexOf(':') >= 0;
+        if (firstIsV6 != lastIsV6)
+            throw new IPFilterException("IP range is malformed. One IP is IPv6 and the other is IPv4!");
+
+        if (firstIsV6) {
+            long[] firstAddr = parseV6(first);
+            if (firstAddr == null)
+                throw new IPFilterException("Invalid first IP in range: " + first);
+            long[] lastAddr = parseV6(last);
+            if (lastAddr == null)
+                throw new IPFilterException("Invalid last IP in range: " + last);
+            if (compareV6(firstAddr[0], firstAddr[1], lastAddr[0], lastAddr[1]) > 0)
+                throw new IPFilterException("IP range is malformed. First IP is greater than last");
+
+            addV6(firstAddr[0], firstAddr[1], lastAddr[0], lastAddr[1]);
+
+        } else {
+            long firstAddr = parseV4(first);
+            if (firstAddr < 0)
+                throw new IPFilterException("Invalid first IP in range: " + first);
+            long lastAddr = parseV4(last);
+            if (lastAddr < 0)
+                throw new IPFilterException("Invalid last IP in range: " + last);
+            if (firstAddr > lastAddr)
+                throw new IPFilterException("IP range is malformed. First IP is greater than last");
+
+            addV4((int) firstAddr, (int) lastAddr);
+        }
+        ruleCount++;
+    }
+
+    @Override
+    public void addRangeV4(int first, int last) {
+        addV4(first, last);
+        ruleCount++;
+    }
+
+    @Override
+    public void addRangeV6(long firstHigh, long firstLow, long lastHigh, long lastLow) {
+        addV6(firstHigh, firstLow, lastHigh, lastLow);
+        ruleCount++;
+    }
+
+    /*
+     * Number of the rules added by the parser (before merging)
+     */
+
+    int getRuleCount() {
+        return ruleCount;
+    }
+
+    int getV4Count() {
+        return v4Count;
+    }
+
+    int getV6Count() {
+        return v6Count;
+    }
+
+    /*
+     * Returns the copy of the IPv4 ranges as [first0, last0, first1, last1, ...]
+     */
+
+    @NonNull
+    int[] getV4Ranges() {
+        return Arrays.copyOf(v4Ranges, v4Count * 2);
+    }
+
+    /*
+     * Returns the copy of the IPv6 ranges as [firstHigh0, firstLow0, lastHigh0, lastLow0, ...]
+     */
+
+    @NonNull
+    long[] getV6Ranges() {
+        return Arrays.copyOf(v6Ranges, v6Count * V6_RANGE_LEN);
+    }
+
+    /*
+     * Sorts the ranges and merges the overlapping and adjacent ones
+     */
+
+    void normalize() {
+        normalizeV4();
+        normalizeV6();
+    }
+
+    /*
+     * Adds the ranges to another filter (e.g. libtorrent filter)
+     */
+
+    void apply(@NonNull IPFilter filter) throws IPFilterException {
+        for (int i = 0; i < v4Count; i++)
+            filter.addRangeV4(v4Ranges[i * 2], v4Ranges[i * 2 + 1]);
+
+        for (int i = 0; i < v6Count; i++) {
+            int pos = i * V6_RANGE_LEN;
+            filter.addRangeV6(v6Ranges[pos], v6Ranges[pos + 1],
+                    v6Ranges[pos + 2], v6Ranges[pos + 3]);
+        }
+    }
+
+    private void addV4(int first, int last) {
+        if (v4Count * 2 == v4Ranges.length)
+            v4Ranges = Arrays.copyOf(v4Ranges, v4Ranges.length * 2);
+        v4Ranges[v4Count * 2] = first;
+        v4Ranges[v4Count * 2 + 1] = last;
+        v4Count++;
+    }
+
+    private void addV6(long firstHigh, long firstLow, long lastHigh, long lastLow) {
+        if ((v6Count + 1) * V6_RANGE_LEN > v6Ranges.length)
+            v6Ranges = Arrays.copyOf(v6Ranges, v6Ranges.length * 2);
+        int pos = v6Count * V6_RANGE_LEN;
+        v6Ranges[pos] = firstHigh;
+        v6Ranges[pos + 1] = firstLow;
+        v6Ranges[pos + 2] = lastHigh;
+        v6Ranges[pos + 3] = lastLow;
+        v6Count++;
+    }
+
+    private void normalizeV4() {
+        if (v4Count == 0)
+            return;
+
+        /*
+         * Pack each range into a long that is sorted by the first address,
+         * flipping the sign bit to sort unsigned values as signed
+         */
+        long[] packed = new long[v4Count];
+        for (int i = 0; i < v4Count; i++)
+            packed[i] = ((long) (v4Ranges[i * 2] ^ Integer.MIN_VALUE) << 32) |
+                    (v4Ranges[i * 2 + 1] & 0xffffffffL);
+        Arrays.sort(packed);
+
+        int count = 0;
+        long curFirst = -1;
+        long curLast = -1;
+        for (long range : packed) {
+            long first = ((range >> 32) ^ Integer.MIN_VALUE) & 0xffffffffL;
+            long last = range & 0xffffffffL;
+            if (curFirst >= 0 && first <= curLast + 1) {
+                curLast = Math.max(curLast, last);
+                continue;
+            }
+            if (curFirst >= 0) {
+                v4Ranges[count * 2] = (int) curFirst;
+                v4Ranges[count * 2 + 1] = (int) curLast;
+                count++;
+            }
+            curFirst = first;
+            curLast = last;
+        }
+        v4Ranges[count * 2] = (int) curFirst;
+        v4Ranges[count * 2 + 1] = (int) curLast;
+        v4Count = count + 1;
+    }
+
+    private void normalizeV6() {
+        if (v6Count == 0)
+            return;
+
+        Integer[] order = new Integer[v6Count];
+        for (int i = 0; i < v6Count; i++)
+            order[i] = i;
+        long[] ranges = v6Ranges;
+        Arrays.sort(order, (a, b) -> {
+            int pa = a * V6_RANGE_LEN;
+            int pb = b * V6_RANGE_LEN;
+            int res = compareV6(ranges[pa], ranges[pa + 1], ranges[pb], ranges[pb + 1]);
+
+            return (res != 0 ? res :
+                    compareV6(ranges[pa + 2], ranges[pa + 3], ranges[pb + 2], ranges[pb + 3]));
+        });
+
+        long[] merged = new long[v6Count * V6_RANGE_LEN];
+        int count = 0;
+        for (int i : order) {
+            int pos = i * V6_RANGE_LEN;
+            int prev = (count - 1) * V6_RANGE_LEN;
+            if (count > 0 && isAdjacentOrOverlapV6(merged[prev + 2], merged[prev + 3],
+                    ranges[pos], ranges[pos + 1])) {
+                if (compareV6(ranges[pos + 2], ranges[pos + 3], merged[prev + 2], merged[prev + 3]) > 0) {
+                    merged[prev + 2] = ranges[pos + 2];
+                    merged[prev + 3] = ranges[pos + 3];
+                }
+                continue;
+            }
+            System.arraycopy(ranges, pos, merged, count * V6_RANGE_LEN, V6_RANGE_LEN);
+            count++;
+        }
+        v6Ranges = merged;
+        v6Count = count;
+    }
+
+    /*
+     * Returns true if the next range starts before or right after the end of the previous one
+     */
+
+    private static boolean isAdjacentOrOverlapV6(long lastHigh, long lastLow, long nextHigh, long nextLow) {
+        if (compareV6(nextHigh, nextLow, lastHigh, lastLow) <= 0)
+            return true;
+        /* last + 1 */
+        long high = (lastLow == -1L ? lastHigh + 1 : lastHigh);
+        long low = lastLow + 1;
+
+        return !(lastHigh == -1L && lastLow == -1L) && high == nextHigh && low == nextLow;
+    }
+
+    /*
+     * Returns the address as an unsigned value, or -1 if it's invalid
+     */
+
+    static long parseV4(@NonNull String ip) {
+        byte[] b = ip.getBytes(StandardCharsets.US_ASCII);
+
+        return parseV4(b, 0, b.length);
+    }
+
+    /*
+     * Returns the high and low 64 bits of the address, or null if it's invalid
+     */
+
+    static long[] parseV6(@NonNull String ip) {
+        byte[] b = ip.getBytes(StandardCharsets.US_ASCII);
+        long[] addr = new long[2];
+
+        return parseV6(b, 0, b.length, new int[8], addr, 0) ? addr : null;
+    }
+
+    /*
+     * Parses the address in [from, to) of the ASCII text.
+     * Returns the address as an unsigned value, or -1 if it's invalid.
+     * Leading zeros are allowed and don't mean the octal notation
+     */
+
+    static long parseV4(@NonNull byte[] b, int from, int to) {
+        long addr = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i <= to; i++) {
+            int c = (i == to ? '.' : b[i]);
+            if (c == '.') {
+                if (value < 0 || ++octets > 4)
+                    return -1;
+                addr = (addr << 8) | value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255)
+                    return -1;
+            } else {
+                return -1;
+            }
+        }
+
+        return (octets == 4 ? addr : -1);
+    }
+
+    /*
+     * Parses the address in [from, to) of the ASCII text and puts its high and low
+     * 64 bits to out[outPos] and out[outPos + 1]. The groups array (at least 8 elements)
+     * is used as the scratch space. Returns false if the address is invalid
+     */
+
+    static boolean parseV6(
+            @NonNull byte[] b,
+            int from,
+            int to,
+            @NonNull int[] groups,
+            @NonNull long[] out,
+            int outPos
+    ) {
+        int count = 0;
+        int compressAt = -1;
+        int i = from;
+
+        if (to - from >= 2 && b[from] == ':' && b[from + 1] == ':') {
+            compressAt = 0;
+            i += 2;
+        } else if (from < to && b[from] == ':') {
+            return false;
+        }
+
+        while (i < to) {
+            if (count == 8)
+                return false;
+
+            int end = i;
+            boolean embeddedV4 = false;
+            while (end < to && b[end] != ':') {
+                if (b[end] == '.')
+                    embeddedV4 = true;
+                end++;
+            }
+
+            if (embeddedV4) {
+                /* Embedded IPv4 address at the end */
+                if (end != to || count > 6)
+                    return false;
+                long v4 = parseV4(b, i, to);
+                if (v4 < 0)
+                    return false;
+                groups[count++] = (int) (v4 >>> 16);
+                groups[count++] = (int) (v4 & 0xffff);
+                break;
+            }
+            if (end == i || end - i > 4)
+                return false;
+            int value = 0;
+            for (int j = i; j < end; j++) {
+                int digit = Character.digit((char) (b[j] & 0xff), 16);
+                if (digit < 0)
+                    return false;
+                value = (value << 4) | digit;
+            }
+            groups[count++] = value;
+
+            if (end == to) {
+                break;
+            } else if (end + 1 < to && b[end + 1] == ':') {
+                if (compressAt >= 0)
+                    return false;
+                compressAt = count;
+                i = end + 2;
+            } else if (end + 1 == to) {
+                /* Trailing single colon */
+                return false;
+            } else {
+                i = end + 1;
+            }
+        }
+
+        if (compressAt >= 0) {
+            if (count == 8)
+                return false;
+            int shift = 8 - count;
+            System.arraycopy(groups, compressAt, groups, compressAt + shift, count - compressAt);
+            Arrays.fill(groups, compressAt, compressAt + shift, 0);
+        } else if (count != 8) {
+            return false;
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int g = 0; g < 4; g++)
+            high = (high << 16) | groups[g];
+        for (int g = 4; g < 8; g++)
+            low = (low << 16) | groups[g];
+        out[outPos] = high;
+        out[outPos + 1] = low;
+
+        return true;
+    }
+
+    static int compareV6(long high1, long low1, long high2, long low2) {
+        int res = Long.compareUnsigned(high1, high2);
+
+        return (res != 0 ? res : Long.compareUnsigned(low1, low2));
+    }
+
+    static String formatV4(int addr) {
+        return appendV4(new StringBuilder(15), addr).toString();
+    }
+
+    static String formatV6(long high, long low) {
+        return appendV6(new StringBuilder(39), high, low).toString();
+    }
+
+    @NonNull
+    static StringBuilder appendV4(@NonNull StringBuilder sb, int addr) {
+        return sb.append((addr >>> 24) & 0xff).append('.')
+                .append((addr >>> 16) & 0xff).append('.')
+                .append((addr >>> 8) & 0xff).append('.')
+                .append(addr & 0xff);
+    }
+
+    @NonNull
+    static StringBuilder appendV6(@NonNull StringBuilder sb, long high, long low) {
+        for (int g = 0; g < 8; g++) {
+            long part = (g < 4 ? high : low);
+            int shift = (3 - (g % 4)) * 16;
+            if (g > 0)
+                sb.append(':');
+            sb.append(Integer.toHexString((int) ((part >>> shift) & 0xffff)));
+        }
+
+        return sb;
+    }
+}
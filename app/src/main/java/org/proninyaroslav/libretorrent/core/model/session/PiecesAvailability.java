@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/*
+ * Availability of the torrent pieces among the peers (including ourselves).
+ * The torrent and per-file availability is precomputed once with
+ * the prefix count of available pieces, so each file is answered in O(1)
+ * regardless of its size.
+ */
+
+public final class PiecesAvailability {
+    private static final double[] EMPTY_FILES = new double[0];
+
+    private final int[] pieces;
+    private final double availability;
+    private final double[] filesAvailability;
+
+    /*
+     * Null piece index means that the torrent has no metadata yet
+     */
+
+    PiecesAvailability(@NonNull int[] pieces, TorrentPieceIndex pieceIndex) {
+        this.pieces = pieces;
+        this.availability = calcAvailability(pieces);
+        this.filesAvailability = calcFilesAvailability(pieces, pieceIndex);
+    }
+
+    static PiecesAvailability empty() {
+        return new PiecesAvailability(new int[0], null);
+    }
+
+    /*
+     * Number of peers that have each piece
+     */
+
+    @NonNull
+    public int[] getPieces() {
+        return pieces;
+    }
+
+    /*
+     * Number of distributed copies of the torrent
+     */
+
+    public double getAvailability() {
+        return availability;
+    }
+
+    /*
+     * A value in the range [0, 1] for each file, or -1 if unknown
+     */
+
+    @NonNull
+    public double[] getFilesAvailability() {
+        return filesAvailability.clone();
+    }
+
+    private static double calcAvailability(int[] pieces) {
+        if (pieces.length == 0)
+            return 0;
+
+        int min = Integer.MAX_VALUE;
+        for (int avail : pieces)
+            if (avail < min)
+                min = avail;
+
+        int total = 0;
+        for (int avail : pieces)
+            if (avail > 0 && avail > min)
+                ++total;
+
+        return (total / (double) pieces.length) + min;
+    }
+
+    private static double[] calcFilesAvailability(int[] pieces, TorrentPieceIndex pieceIndex) {
+        if (pieceIndex == null)
+            return EMPTY_FILES;
+
+        int numFiles = pieceIndex.getNumFiles();
+        double[] filesAvail = new double[numFiles];
+        if (pieces.length == 0) {
+            Arrays.fill(filesAvail, -1);
+
+            return filesAvail;
+        }
+
+        /* availableCount[i] is the number of available pieces in [0, i) */
+        int[] availableCount = new int[pieces.length + 1];
+        for (int i = 0; i < pieces.length; i++)
+            availableCount[i + 1] = availableCount[i] + (pieces[i] > 0 ? 1 : 0);
+
+        for (int i = 0; i < numFiles; i++) {
+            int first = pieceIndex.getFirstPiece(i);
+            int last = pieceIndex.getLastPiece(i);
+            if (first < 0 || last < first || last >= pieces.length) {
+                filesAvail[i] = -1;
+                continue;
+            }
+            int availablePieces = availableCount[last + 1] - availableCount[first];
+            filesAvail[i] = (double) availablePieces / (last - first + 1);
+        }
+
+        return filesAvail;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Restores the torrents of the previous session in batches.
+ * The resume data of a batch is loaded at once and decoded in parallel,
+ * while the next batch is being loaded. The decoded torrents are added
+ * in the order of the ids, except the deferred ones (e.g. finished),
+ * which are added after all the others in ascending defer order.
+ *
+ * Adding is asynchronous, the source reports the end of each add
+ * with onAddFinished(). The number of unfinished adds is limited,
+ * so that their results (e.g. libtorrent alerts) don't overflow
+ * the queue, and the progress counts only the finished ones.
+ * If no add has finished for a long time, the unfinished ones are
+ * given up on without an error, since they can still finish later.
+ */
+
+class RestoreTorrentsPipeline<T> {
+    private static final String TAG = RestoreTorrentsPipeline.class.getSimpleName();
+
+    static final int DEFAULT_BATCH_SIZE = 64;
+    static final int DEFAULT_MAX_PENDING_ADDS = 32;
+    /* Unfinished adds are considered lost if none has started or finished during this time */
+    static final long PENDING_ADD_TIMEOUT = 60_000; /* ms */
+    private static final long CANCEL_CHECK_INTERVAL = 100; /* ms */
+
+    interface Source<T> {
+        /*
+         * Returns the resume data of the torrents,
+         * the torrents without data are missing in the map
+         */
+
+        @NonNull
+        Map<String, byte[]> load(@NonNull List<String> ids) throws Exception;
+
+        @NonNull
+        T decode(@NonNull String id, @NonNull byte[] data) throws Exception;
+
+        /*
+         * Returns a negative value to add the torrent right away
+         */
+
+        long getDeferOrder(@NonNull T torrent);
+
+        /*
+         * Starts adding the torrent. Returns false if the torrent is skipped,
+         * otherwise the end of adding must be reported with onAddFinished()
+         */
+
+        boolean add(@NonNull String id, @NonNull T torrent) throws Exception;
+
+        void onError(@NonNull String id, @NonNull Exception e);
+
+        /*
+         * The torrent is added successfully after it was given up on by the timeout
+         */
+
+        void onAddedAfterTimeout(@NonNull String id);
+
+        void onProgress(int processed, int total);
+
+        boolean isCancelled();
+    }
+
+    private record Batch(List<String> ids, Map<String, byte[]> data, Exception error) {
+    }
+
+    private record Deferred<T>(String id, T torrent, long order) {
+    }
+
+    private final Source<T> source;
+    private final ExecutorService decodeExec;
+    private final int batchSize;
+    private final int maxPendingAdds;
+    private final long pendingAddTimeout;
+    private final Semaphore pendingAddSlots;
+    private final Set<String> pendingAdds = ConcurrentHashMap.newKeySet();
+    private final Set<String> expiredAdds = ConcurrentHashMap.newKeySet();
+    private volatile long lastAddActivityTime;
+    private final AtomicInteger processed = new AtomicInteger();
+    private int total;
+
+    RestoreTorrentsPipeline(@NonNull Source<T> source,
+                            @NonNull ExecutorService decodeExec,
+                            int batchSize) {
+        this(source, decodeExec, batchSize, DEFAULT_MAX_PENDING_ADDS, PENDING_ADD_TIMEOUT);
+    }
+
+    RestoreTorrentsPipeline(@NonNull Source<T> source,
+                            @NonNull ExecutorService decodeExec,
+                            int batchSize,
+                            int maxPendingAdds,
+                            long pendingAddTimeout) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        if (maxPendingAdds <= 0) {
+            throw new IllegalArgumentException("Invalid pending adds limit: " + maxPendingAdds);
+        }
+
+        this.source = source;
+        this.decodeExec = decodeExec;
+        this.batchSize = batchSize;
+        this.maxPendingAdds = maxPendingAdds;
+        this.pendingAddTimeout = pendingAddTimeout;
+        this.pendingAddSlots = new Semaphore(maxPendingAdds);
+    }
+
+    /*
+     * Blocks until all torrents are added or the restore is cancelled
+     */
+
+    void run(@NonNull List<String> ids) throws InterruptedException {
+        processed.set(0);
+        total = ids.size();
+        lastAddActivityTime = now();
+        var deferred = new ArrayList<Deferred<T>>();
+
+        Batch batch = load(ids, 0);
+        for (int start = 0; start < total; start += batchSize) {
+            if (source.isCancelled()) {
+                return;
+            }
+            List<Future<T>> decoded = decode(batch);
+
+            /* Load the next batch while the current one is decoding */
+            Batch nextBatch = load(ids, start + batchSize);
+
+            for (int i = 0; i < batch.ids.size(); i++) {
+                if (source.isCancelled()) {
+                    return;
+                }
+                String id = batch.ids.get(i);
+                T torrent = getDecoded(id, decoded.get(i));
+                if (torrent == null) {
+                    continue;
+                }
+                long order = source.getDeferOrder(torrent);
+                if (order < 0) {
+                    add(id, torrent);
+                } else {
+                    deferred.add(new Deferred<>(id, torrent, order));
+                }
+            }
+            source.onProgress(processed.get(), total);
+
+            batch = nextBatch;
+        }
+
+        Collections.sort(deferred, Comparator.comparingLong(Deferred::order));
+        for (int i = 0; i < deferred.size(); i++) {
+            if (source.isCancelled()) {
+                return;
+            }
+            var d = deferred.get(i);
+            add(d.id, d.torrent);
+            if ((i + 1) % batchSize == 0) {
+                source.onProgress(processed.get(), total);
+            }
+        }
+
+        /* Wait for the remaining adds */
+        for (int i = 0; i < maxPendingAdds; i++) {
+            if (!acquirePendingAddSlot()) {
+                return;
+            }
+        }
+        pendingAddSlots.release(maxPendingAdds);
+        source.onProgress(processed.get(), total);
+    }
+
+    /*
+     * Called by the source when the torrent is added or failed to add.
+     * Can be called from any thread
+     */
+
+    void onAddFinished(@NonNull String id, @Nullable Exception err) {
+        if (!pendingAdds.remove(id)) {
+            /* Already counted as processed */
+            if (expiredAdds.remove(id)) {
+                if (err == null) {
+                    source.onAddedAfterTimeout(id);
+                } else {
+                    source.onError(id, err);
+                }
+            }
+            return;
+        }
+        lastAddActivityTime = now();
+        pendingAddSlots.release();
+
+        if (err == null) {
+            processed.incrementAndGet();
+        } else {
+            onError(id, err);
+        }
+    }
+
+    private Batch load(List<String> ids, int start) {
+        if (start >= ids.size()) {
+            return new Batch(Collections.emptyList(), Collections.emptyMap(), null);
+        }
+
+        List<String> batchIds = ids.subList(start, Math.min(start + batchSize, ids.size()));
+        try {
+            return new Batch(batchIds, source.load(batchIds), null);
+
+        } catch (Exception e) {
+            /* Each torrent of the batch fails with this error */
+            return new Batch(batchIds, Collections.emptyMap(), e);
+        }
+    }
+
+    private List<Future<T>> decode(Batch batch) {
+        var futures = new ArrayList<Future<T>>(batch.ids.size());
+        for (String id : batch.ids) {
+            byte[] data = batch.data.get(id);
+            futures.add(decodeExec.submit(() -> {
+                if (batch.error != null) {
+                    throw batch.error;
+                }
+                if (data == null) {
+                    throw new IOException("Resume data not found");
+                }
+                return source.decode(id, data);
+            }));
+        }
+
+        return futures;
+    }
+
+    private T getDecoded(String id, Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            onError(id, cause instanceof Exception ? (Exception) cause : e);
+
+            return null;
+        }
+    }
+
+    private void add(String id, T torrent) throws InterruptedException {
+        if (!acquirePendingAddSlot()) {
+            return;
+        }
+
+        /* The add can finish before it returns */
+        pendingAdds.add(id);
+        Exception err = null;
+        boolean started;
+        try {
+            started = source.add(id, torrent);
+
+        } catch (Exception e) {
+            started = false;
+            err = e;
+        }
+        if (!started && pendingAdds.remove(id)) {
+            pendingAddSlots.release();
+            if (err == null) {
+                processed.incrementAndGet();
+            } else {
+                onError(id, err);
+            }
+        }
+    }
+
+    /*
+     * Returns false if the restore is cancelled
+     */
+
+    private boolean acquirePendingAddSlot() throws InterruptedException {
+        while (!pendingAddSlots.tryAcquire(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (source.isCancelled()) {
+                return false;
+            }
+            if (now() - lastAddActivityTime > pendingAddTimeout) {
+                expirePendingAdds();
+            }
+        }
+        lastAddActivityTime = now();
+
+        return true;
+    }
+
+    /*
+     * Returns true if some adds given up on by the timeout haven't reported the result yet
+     */
+
+    boolean hasExpiredAdds() {
+        return !expiredAdds.isEmpty();
+    }
+
+    private void expirePendingAdds() {
+        for (String id : pendingAdds.toArray(new String[0])) {
+            if (!pendingAdds.remove(id)) {
+                continue;
+            }
+            Log.w(TAG, "No result of adding the torrent in " + pendingAddTimeout + " ms: " + id);
+            expiredAdds.add(id);
+            pendingAddSlots.release();
+            processed.incrementAndGet();
+        }
+    }
+
+    private void onError(String id, Exception e) {
+        processed.incrementAndGet();
+        source.onError(id, e);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import androidx.annotation.NonNull;
+
+import org.proninyaroslav.libretorrent.core.model.stream.TorrentStream;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+ * Makes the pieces of the streamed files time-critical.
+ * Tracks the position and the consumption rate of each stream reader
+ * and sets graduated piece deadlines across the look-ahead horizon:
+ * the pieces the reader needs right now are requested immediately,
+ * the rest are expected at the time the reader reaches them.
+ * The horizon grows with the consumption rate.
+ * On seek the deadlines of the previous position are cleared,
+ * so the pieces of the new position aren't slowed down by them.
+ * Thread-safe.
+ */
+
+class StreamDeadlineScheduler {
+    /* Horizon for the unknown rate */
+    static final int MIN_LOOKAHEAD_PIECES = 5;
+    static final int MAX_LOOKAHEAD_PIECES = 64;
+    /* How far ahead of the playback the pieces are requested */
+    static final long LOOKAHEAD_TIME = 30000; /* ms */
+    /* Interval between deadlines for the unknown rate */
+    static final int DEFAULT_DEADLINE_STEP = 1000; /* ms */
+    /* Smoothing factor of the exponential moving average */
+    private static final double ALPHA = 0.3;
+    private static final long RATE_SAMPLE_PERIOD = 1000; /* ms */
+
+    interface PieceDeadlines {
+        boolean havePiece(int piece);
+
+        void setPieceDeadline(int piece, int deadline);
+
+        void resetPieceDeadline(int piece);
+    }
+
+    private static class ReaderState {
+        final int lastFilePiece;
+        final int pieceLength;
+        /* Range of the pieces with deadlines, [first, last] */
+        int firstPiece = -1;
+        int lastPiece = -1;
+        long offset = -1;
+        /* Bytes per ms */
+        double rate;
+        long sampleStartTime = -1;
+        long sampleStartOffset;
+
+        ReaderState(TorrentStream stream) {
+            this.lastFilePiece = stream.lastFilePiece;
+            this.pieceLength = Math.max(1, stream.pieceLength);
+        }
+
+        boolean hasDeadline(int piece) {
+            return firstPiece >= 0 && piece >= firstPiece && piece <= lastPiece;
+        }
+    }
+
+    private final PieceDeadlines target;
+    /* Readers that were not removed explicitly don't stay in memory forever */
+    private final WeakHashMap<Object, ReaderState> readers = new WeakHashMap<>();
+
+    StreamDeadlineScheduler(@NonNull PieceDeadlines target) {
+        this.target = target;
+    }
+
+    /*
+     * The reader is going to read len bytes of the stream
+     * starting at the specified torrent offset
+     */
+
+    synchronized void update(
+            @NonNull Object reader,
+            @NonNull TorrentStream stream,
+            long offset,
+            long len,
+            long timeMs
+    ) {
+        ReaderState state = readers.get(reader);
+        if (state == null) {
+            state = new ReaderState(stream);
+            readers.put(reader, state);
+        }
+
+        int piece = (int) (offset / state.pieceLength);
+        if (piece > state.lastFilePiece)
+            return;
+        int neededLastPiece = Math.min(state.lastFilePiece,
+                (int) ((offset + Math.max(1, len) - 1) / state.pieceLength));
+
+        /* Backward or beyond the horizon */
+        boolean seek = state.offset >= 0 &&
+                (offset < state.offset || piece > state.lastPiece + 1);
+        if (seek) {
+            resetDeadlines(reader, state.firstPiece, state.lastPiece);
+            state.firstPiece = state.lastPiece = -1;
+            state.rate = 0;
+            state.sampleStartTime = -1;
+        }
+        updateRate(state, offset, timeMs);
+        state.offset = offset;
+
+        int lastPiece = Math.min(state.lastFilePiece,
+                Math.max(neededLastPiece, piece + horizon(state) - 1));
+        /* Nothing new since the last update */
+        if (piece == state.firstPiece && lastPiece <= state.lastPiece)
+            return;
+
+        /* The reader has passed these pieces */
+        if (state.firstPiece >= 0)
+            resetDeadlines(reader, state.firstPiece, Math.min(piece - 1, state.lastPiece));
+
+        for (int p = piece; p <= lastPiece; p++) {
+            if (target.havePiece(p))
+                continue;
+            target.setPieceDeadline(p, deadline(state, p, neededLastPiece));
+        }
+        state.firstPiece = piece;
+        state.lastPiece = lastPiece;
+    }
+
+    /*
+     * Clears the deadlines of the reader, e.g. when it's closed
+     */
+
+    synchronized void remove(@NonNull Object reader) {
+        ReaderState state = readers.remove(reader);
+        if (state != null && state.firstPiece >= 0)
+            resetDeadlines(reader, state.firstPiece, state.lastPiece);
+    }
+
+    /*
+     * Returns the range of the pieces with deadlines as [first, last],
+     * or null if the reader is unknown
+     */
+
+    synchronized int[] getDeadlineRange(@NonNull Object reader) {
+        ReaderState state = readers.get(reader);
+        if (state == null || state.firstPiece < 0)
+            return null;
+
+        return new int[]{state.firstPiece, state.lastPiece};
+    }
+
+    private static void updateRate(ReaderState state, long offset, long timeMs) {
+        if (state.sampleStartTime < 0) {
+            state.sampleStartTime = timeMs;
+            state.sampleStartOffset = offset;
+            return;
+        }
+
+        long elapsed = timeMs - state.sampleStartTime;
+        if (elapsed >= RATE_SAMPLE_PERIOD) {
+            double rate = (double) (offset - state.sampleStartOffset) / elapsed;
+            state.rate = (state.rate == 0 ? rate : state.rate + ALPHA * (rate - state.rate));
+            state.sampleStartTime = timeMs;
+            state.sampleStartOffset = offset;
+        }
+    }
+
+    private static int horizon(ReaderState state) {
+        double pieces = Math.ceil(state.rate * LOOKAHEAD_TIME / state.pieceLength);
+
+        return (int) Math.min(MAX_LOOKAHEAD_PIECES, MIN_LOOKAHEAD_PIECES + pieces);
+    }
+
+    /*
+     * The pieces that are needed right now get zero deadline (as soon as possible),
+     * the rest get the time at which the reader reaches them
+     */
+
+    private static int deadline(ReaderState state, int piece, int neededLastPiece) {
+        if (piece <= neededLastPiece)
+            return 0;
+
+        int distance = piece - neededLastPiece;
+        if (state.rate <= 0)
+            return distance * DEFAULT_DEADLINE_STEP;
+
+        long bytesAhead = (long) piece * state.pieceLength - state.offset;
+        long deadline = (long) (bytesAhead / state.rate);
+
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(distance, deadline));
+    }
+
+    /*
+     * Pieces that have deadlines for other readers are left as is
+     */
+
+    private void resetDeadlines(Object reader, int first, int last) {
+        if (first < 0)
+            return;
+
+        for (int p = first; p <= last; p++) {
+            if (usedByOtherReader(reader, p) || target.havePiece(p))
+                continue;
+            target.resetPieceDeadline(p);
+        }
+    }
+
+    private boolean usedByOtherReader(Object reader, int piece) {
+        for (Map.Entry<Object, ReaderState> e : readers.entrySet()) {
+            if (e.getKey() != reader && e.getValue().hasDeadline(piece))
+                return true;
+        }
+
+        return false;
+    }
+}
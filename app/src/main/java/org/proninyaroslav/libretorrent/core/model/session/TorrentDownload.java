@@ -22,13 +22,16 @@ package org.proninyaroslav.libretorrent.core.model.session;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.proninyaroslav.libretorrent.core.exception.DecodeException;
 import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
 import org.proninyaroslav.libretorrent.core.model.data.Priority;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
 import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
 import org.proninyaroslav.libretorrent.core.model.data.metainfo.TorrentMetaInfo;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
 import org.proninyaroslav.libretorrent.core.model.stream.TorrentStream;
 
 import java.util.List;
@@ -65,6 +68,13 @@ public interface TorrentDownload
 
     int getProgress();
 
+    /*
+     * Returns the status of the torrent, captured with a single libtorrent call.
+     * Prefer it over separate getters if several values are needed at once
+     */
+
+    TorrentStatusSnapshot getStatusSnapshot();
+
     void prioritizeFiles(@NonNull Priority[] priorities);
 
     long getSize();
@@ -109,7 +119,12 @@ public interface TorrentDownload
 
     void addTrackers(@NonNull Set<String> trackers);
 
-    boolean[] pieces();
+    /*
+     * Returns `previous` if the pieces haven't changed since it
+     */
+
+    @NonNull
+    PieceMap pieces(@Nullable PieceMap previous);
 
     String makeMagnet(boolean includePriorities);
 
@@ -125,6 +140,8 @@ public interface TorrentDownload
 
     TorrentMetaInfo getTorrentMetaInfo() throws DecodeException;
 
+    TorrentContentFlatTree makeFileTree();
+
     String getTorrentName();
 
     void setDownloadPath(@NonNull Uri path);
@@ -169,17 +186,25 @@ public interface TorrentDownload
 
     int getMaxUploads();
 
-    double getAvailability(int[] piecesAvailability);
-
-    double[] getFilesAvailability(int[] piecesAvailability);
-
-    int[] getPiecesAvailability();
+    PiecesAvailability getPiecesAvailability();
 
     boolean havePiece(int pieceIndex);
 
     void readPiece(int pieceIndex);
 
-    void setInterestedPieces(@NonNull TorrentStream stream, int startPiece, int numPieces);
+    /*
+     * The reader (e.g. input stream) is going to read len bytes of the stream file
+     * starting at the specified torrent offset. The pieces ahead of the reader
+     * get deadlines according to its consumption rate
+     */
+
+    void setStreamPosition(@NonNull Object reader, @NonNull TorrentStream stream, long offset, long len);
+
+    /*
+     * Clears the piece deadlines of the reader
+     */
+
+    void removeStreamReader(@NonNull Object reader);
 
     TorrentStream getStream(int fileIndex);
 
@@ -26,13 +26,13 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.core.util.Pair;
 
 import org.libtorrent4j.AlertListener;
 import org.libtorrent4j.AnnounceEntry;
 import org.libtorrent4j.ErrorCode;
-import org.libtorrent4j.FileStorage;
 import org.libtorrent4j.MoveFlags;
 import org.libtorrent4j.PieceIndexBitfield;
 import org.libtorrent4j.SessionHandle;
@@ -65,20 +65,21 @@ import org.proninyaroslav.libretorrent.core.exception.FreeSpaceException;
 import org.proninyaroslav.libretorrent.core.exception.UnknownUriException;
 import org.proninyaroslav.libretorrent.core.model.TorrentEngineListener;
 import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
 import org.proninyaroslav.libretorrent.core.model.data.Priority;
 import org.proninyaroslav.libretorrent.core.model.data.ReadPieceInfo;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
 import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
-import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
 import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
 import org.proninyaroslav.libretorrent.core.model.data.metainfo.TorrentMetaInfo;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
 import org.proninyaroslav.libretorrent.core.model.stream.TorrentStream;
+import org.proninyaroslav.libretorrent.core.storage.FastResumeWriter;
 import org.proninyaroslav.libretorrent.core.storage.TorrentRepository;
 import org.proninyaroslav.libretorrent.core.system.FileSystemFacade;
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -101,10 +102,7 @@ class TorrentDownloadImpl implements TorrentDownload {
 
     private static final long SAVE_RESUME_SYNC_TIME = 10000; /* ms */
     private static final long CRITICAL_WORK_WAIT_TIMEOUT = 30000; /* ms */
-    private static final double MAX_RATIO = 9999.;
-    /* For streaming */
-    private final static int PRELOAD_PIECES_COUNT = 5;
-    private static final int DEFAULT_PIECE_DEADLINE = 1000; /* ms */
+    static final double MAX_RATIO = 9999.;
 
     private static final int[] INNER_LISTENER_TYPES = new int[]{
             AlertType.STATE_CHANGED.swig(),
@@ -129,6 +127,7 @@ class TorrentDownloadImpl implements TorrentDownload {
     private final TorrentHandle th;
     private final String id;
     private final TorrentRepository repo;
+    private final FastResumeWriter fastResumeWriter;
     private final FileSystemFacade fs;
     private final Queue<TorrentEngineListener> listeners;
     private final InnerListener listener;
@@ -143,9 +142,36 @@ class TorrentDownloadImpl implements TorrentDownload {
     private boolean resumeDataRejected;
     private boolean hasMissingFiles;
     private boolean hasFirstLastPiecePriority;
+    /* Cached status, reset by the torrent alerts and updated by the session state updates */
+    private volatile TorrentStatusSnapshot statusSnapshot;
+    private volatile Priority[] filePriorities;
+    /* Built once the metadata is available, never changes after that */
+    private volatile TorrentPieceIndex pieceIndex;
+    private final StreamDeadlineScheduler streamScheduler =
+            new StreamDeadlineScheduler(new StreamDeadlineScheduler.PieceDeadlines() {
+                @Override
+                public boolean havePiece(int piece) {
+                    return TorrentDownloadImpl.this.havePiece(piece);
+                }
+
+                @Override
+                public void setPieceDeadline(int piece, int deadline) {
+                    if (operationNotAllowed())
+                        return;
+                    th.piecePriority(piece, org.libtorrent4j.Priority.TOP_PRIORITY);
+                    th.setPieceDeadline(piece, deadline);
+                }
+
+                @Override
+                public void resetPieceDeadline(int piece) {
+                    if (!operationNotAllowed())
+                        th.resetPieceDeadline(piece);
+                }
+            });
 
     public TorrentDownloadImpl(SessionManager sessionManager,
                                TorrentRepository repo,
+                               FastResumeWriter fastResumeWriter,
                                FileSystemFacade fs,
                                final Queue<TorrentEngineListener> listeners,
                                String id,
@@ -153,6 +179,7 @@ class TorrentDownloadImpl implements TorrentDownload {
                                boolean autoManaged) {
         this.id = id;
         this.repo = repo;
+        this.fastResumeWriter = fastResumeWriter;
         this.fs = fs;
         this.sessionManager = sessionManager;
         this.autoManaged = autoManaged;
@@ -212,6 +239,9 @@ class TorrentDownloadImpl implements TorrentDownload {
                 return;
 
             AlertType type = alert.type();
+            if (type != AlertType.READ_PIECE && type != AlertType.PIECE_FINISHED) {
+                invalidateStatus();
+            }
             switch (type) {
                 case STATE_CHANGED:
                     StateChangedAlert a = ((StateChangedAlert) alert);
@@ -392,6 +422,7 @@ class TorrentDownloadImpl implements TorrentDownload {
             if (ti == null) {
                 return;
             }
+            pieceIndex = TorrentPieceIndex.fromTorrentInfo(ti);
 
             TorrentMetaInfo info = new TorrentMetaInfo(ti, th.swig().get_resume_data());
 
@@ -501,7 +532,7 @@ class TorrentDownloadImpl implements TorrentDownload {
     private void serializeResumeData(SaveResumeDataAlert alert) {
         try {
             byte_vector data = libtorrent.write_resume_data(alert.params().swig()).bencode();
-            repo.addFastResume(new FastResume(id, Vectors.byte_vector2bytes(data)));
+            fastResumeWriter.put(id, Vectors.byte_vector2bytes(data));
 
         } catch (Throwable e) {
             Log.e(TAG, Log.getStackTraceString(e));
@@ -626,6 +657,7 @@ class TorrentDownloadImpl implements TorrentDownload {
 
         th.unsetFlags(TorrentFlags.AUTO_MANAGED);
         th.pause();
+        invalidateStatus();
         saveResumeData(true);
     }
 
@@ -643,6 +675,7 @@ class TorrentDownloadImpl implements TorrentDownload {
         else
             th.unsetFlags(TorrentFlags.AUTO_MANAGED);
         th.resume();
+        invalidateStatus();
         saveResumeData(true);
     }
 
@@ -657,6 +690,7 @@ class TorrentDownloadImpl implements TorrentDownload {
             th.setFlags(TorrentFlags.AUTO_MANAGED);
         else
             th.unsetFlags(TorrentFlags.AUTO_MANAGED);
+        invalidateStatus();
     }
 
     @Override
@@ -664,6 +698,34 @@ class TorrentDownloadImpl implements TorrentDownload {
         return !operationNotAllowed() && th.status().flags().and_(TorrentFlags.AUTO_MANAGED).non_zero();
     }
 
+    @Override
+    public TorrentStatusSnapshot getStatusSnapshot() {
+        if (operationNotAllowed())
+            return new TorrentStatusSnapshot(sessionManager.isRunning());
+
+        var snapshot = statusSnapshot;
+        if (snapshot == null) {
+            snapshot = new TorrentStatusSnapshot(th.status(),
+                    sessionManager.isRunning(), sessionManager.isPaused());
+            statusSnapshot = snapshot;
+        }
+
+        return snapshot;
+    }
+
+    /*
+     * Called by the session for each status from the batched StateUpdateAlert
+     */
+
+    void updateStatus(@NonNull TorrentStatus status, boolean sessionPaused) {
+        statusSnapshot = new TorrentStatusSnapshot(status, sessionManager.isRunning(), sessionPaused);
+    }
+
+    private void invalidateStatus() {
+        statusSnapshot = null;
+        filePriorities = null;
+    }
+
     @Override
     public int getProgress() {
         if (operationNotAllowed())
@@ -704,6 +766,7 @@ class TorrentDownloadImpl implements TorrentDownload {
             return;
 
         th.prioritizeFiles(p);
+        filePriorities = null;
 
         // Restore first/last piece first option if necessary
         if (hasFirstLastPiecePriority) {
@@ -738,6 +801,7 @@ class TorrentDownloadImpl implements TorrentDownload {
 
     @Override
     public void remove(boolean withFiles) {
+        fastResumeWriter.discard(id);
         Torrent torrent = repo.getTorrentById(id);
         if (torrent != null) {
             repo.deleteTorrent(torrent);
@@ -937,17 +1001,40 @@ class TorrentDownloadImpl implements TorrentDownload {
         saveResumeData(true);
     }
 
+    @NonNull
     @Override
-    public boolean[] pieces() {
+    public PieceMap pieces(@Nullable PieceMap previous) {
         if (operationNotAllowed())
-            return new boolean[0];
+            return PieceMap.empty();
 
-        PieceIndexBitfield bitfield = th.status(TorrentHandle.QUERY_PIECES).pieces();
-        boolean[] pieces = new boolean[bitfield.size()];
-        for (int i = 0; i < bitfield.size(); i++)
-            pieces[i] = bitfield.getBit(i);
+        TorrentStatus status = th.status(TorrentHandle.QUERY_PIECES);
+        PieceIndexBitfield bitfield = status.pieces();
+        int size = bitfield.size();
+        int numPieces = status.numPieces();
+        /*
+         * Avoid reading the bitfield bit by bit, which is a native call per piece.
+         * The downloaded pieces are only added while the torrent is running,
+         * so the same number of pieces means the same bitfield. It doesn't hold
+         * during the check: the count starts over and can reach the previous one
+         * with a different set of pieces
+         */
+        TorrentStatus.State state = status.state();
+        boolean checking = (state == TorrentStatus.State.CHECKING_FILES ||
+                state == TorrentStatus.State.CHECKING_RESUME_DATA);
+        if (!checking && previous != null && previous.size() == size && previous.count() == numPieces)
+            return previous;
+        if (numPieces == size)
+            return PieceMap.full(size);
+
+        long[] words = new long[PieceMap.numWords(size)];
+        if (numPieces > 0) {
+            for (int i = 0; i < size; i++) {
+                if (bitfield.getBit(i))
+                    words[i >>> 6] |= 1L << i;
+            }
+        }
 
-        return pieces;
+        return new PieceMap(size, words);
     }
 
     @Override
@@ -1014,6 +1101,7 @@ class TorrentDownloadImpl implements TorrentDownload {
             th.setFlags(TorrentFlags.SEQUENTIAL_DOWNLOAD);
         else
             th.unsetFlags(TorrentFlags.SEQUENTIAL_DOWNLOAD);
+        invalidateStatus();
 
         saveResumeData(true);
 
@@ -1069,8 +1157,10 @@ class TorrentDownloadImpl implements TorrentDownload {
         // Updating file priorities is an async operation in libtorrent,
         // when we just updated it and immediately query it we might get the old/wrong values,
         // so we rely on `updatedFilePriorities` in this case.
-        var ti = th.torrentFile();
-        var files = ti.files();
+        var pieceIndex = getPieceIndex();
+        if (pieceIndex == null) {
+            return;
+        }
         for (var index = 0; index < filePriorities.length; index++) {
             var filePriority = filePriorities[index];
             if (filePriority == Priority.IGNORE) {
@@ -1080,15 +1170,16 @@ class TorrentDownloadImpl implements TorrentDownload {
             // Determine the priority to set
             var newPriority = enabled ? Priority.TOP_PRIORITY : filePriority;
             var piecePriority = PriorityConverter.convert(newPriority);
-            var filePieces = getFilePieces(ti, index);
-            if (filePieces == null) {
+            if (!pieceIndex.isValidFile(index)) {
                 continue;
             }
+            var firstPiece = pieceIndex.getFirstPiece(index);
+            var lastPiece = pieceIndex.getLastPiece(index);
             // Worst case: AVI index = 1% of total file size (at the end of the file)
-            var numPieces = Math.ceil(files.fileSize(index) * 0.01 / ti.pieceLength());
+            var numPieces = Math.ceil(pieceIndex.getFileSize(index) * 0.01 / pieceIndex.getPieceLength());
             for (var i = 0; i < numPieces; i++) {
-                piecePriorities[filePieces.first + i] = piecePriority;
-                piecePriorities[filePieces.second - i] = piecePriority;
+                piecePriorities[firstPiece + i] = piecePriority;
+                piecePriorities[lastPiece - i] = piecePriority;
             }
         }
 
@@ -1143,6 +1234,16 @@ class TorrentDownloadImpl implements TorrentDownload {
         return info;
     }
 
+    @Override
+    public TorrentContentFlatTree makeFileTree() {
+        if (operationNotAllowed())
+            return null;
+
+        TorrentInfo ti = th.torrentFile();
+
+        return (ti == null ? null : TorrentContentFlatTree.build(ti.files()));
+    }
+
     @Override
     public String getTorrentName() {
         Torrent torrent = repo.getTorrentById(id);
@@ -1368,71 +1469,40 @@ class TorrentDownloadImpl implements TorrentDownload {
     }
 
     @Override
-    public double getAvailability(int[] piecesAvailability) {
-        if (piecesAvailability == null || piecesAvailability.length == 0)
-            return 0;
-
-        int min = Integer.MAX_VALUE;
-        for (int avail : piecesAvailability)
-            if (avail < min)
-                min = avail;
-
-        int total = 0;
-        for (int avail : piecesAvailability)
-            if (avail > 0 && avail > min)
-                ++total;
-
-        return (total / (double) piecesAvailability.length) + min;
-    }
-
-    @Override
-    public double[] getFilesAvailability(int[] piecesAvailability) {
-        if (!hasMetadata()) {
-            return new double[0];
-        }
-
-        TorrentInfo ti = th.torrentFile();
-        if (ti == null)
-            return new double[0];
-        int numFiles = ti.numFiles();
-        if (numFiles < 0)
-            return new double[0];
-
-        double[] filesAvail = new double[numFiles];
-        if (piecesAvailability == null || piecesAvailability.length == 0) {
-            Arrays.fill(filesAvail, -1);
+    public PiecesAvailability getPiecesAvailability() {
+        if (operationNotAllowed())
+            return PiecesAvailability.empty();
 
-            return filesAvail;
-        }
-        for (int i = 0; i < numFiles; i++) {
-            Pair<Integer, Integer> filePieces = getFilePieces(ti, i);
-            if (filePieces == null) {
-                filesAvail[i] = -1;
-                continue;
-            }
-            int availablePieces = 0;
-            for (int p = filePieces.first; p <= filePieces.second; p++)
-                availablePieces += (piecesAvailability[p] > 0 ? 1 : 0);
-            filesAvail[i] = (double) availablePieces / (filePieces.second - filePieces.first + 1);
+        PieceIndexBitfield pieces = th.status(TorrentHandle.QUERY_PIECES).pieces();
+        int numPieces = pieces.size();
+        /*
+         * The piece picker keeps peers availability up to date
+         * on every have/bitfield message, so just copy it instead of
+         * scanning the bitfield of each peer
+         */
+        int[] avail = th.pieceAvailability();
+        if (avail == null || avail.length != numPieces) {
+            /* No piece picker for seeds, count peers pieces manually */
+            avail = countPeersPieces(numPieces);
         }
+        for (int i = 0; i < numPieces; i++)
+            if (pieces.getBit(i))
+                ++avail[i];
 
-        return filesAvail;
+        return new PiecesAvailability(avail, getPieceIndex());
     }
 
-    @Override
-    public int[] getPiecesAvailability() {
-        if (operationNotAllowed())
-            return new int[0];
-
-        PieceIndexBitfield pieces = th.status(TorrentHandle.QUERY_PIECES).pieces();
-        List<AdvancedPeerInfo> peers = advancedPeerInfo();
-        int[] avail = new int[pieces.size()];
-        for (int i = 0; i < pieces.size(); i++)
-            avail[i] = (pieces.getBit(i) ? 1 : 0);
-
-        for (AdvancedPeerInfo peer : peers) {
+    private int[] countPeersPieces(int numPieces) {
+        int[] avail = new int[numPieces];
+        for (AdvancedPeerInfo peer : advancedPeerInfo()) {
             PieceIndexBitfield peerPieces = peer.pieces();
-            for (int i = 0; i < pieces.size(); i++)
+            if (peerPieces.isAllSet()) {
+                for (int i = 0; i < numPieces; i++)
+                    ++avail[i];
+                continue;
+            }
+            int size = Math.min(numPieces, peerPieces.size());
+            for (int i = 0; i < size; i++)
                 if (peerPieces.getBit(i))
                     ++avail[i];
         }
@@ -1440,18 +1510,24 @@ class TorrentDownloadImpl implements TorrentDownload {
         return avail;
     }
 
-    private Pair<Integer, Integer> getFilePieces(TorrentInfo ti, int fileIndex) {
-        if (operationNotAllowed())
-            return null;
+    /*
+     * Returns null if the torrent has no metadata yet
+     */
 
-        if (fileIndex < 0 || fileIndex >= ti.numFiles())
+    private TorrentPieceIndex getPieceIndex() {
+        TorrentPieceIndex index = pieceIndex;
+        if (index != null)
+            return index;
+
+        if (!hasMetadata())
+            return null;
+        TorrentInfo ti = th.torrentFile();
+        if (ti == null)
             return null;
-        FileStorage fs = ti.files();
-        long fileSize = fs.fileSize(fileIndex);
-        long fileOffset = fs.fileOffset(fileIndex);
+        index = TorrentPieceIndex.fromTorrentInfo(ti);
+        pieceIndex = index;
 
-        return new Pair<>((int) (fileOffset / ti.pieceLength()),
-                (int) ((fileOffset + fileSize - 1) / ti.pieceLength()));
+        return index;
     }
 
     @Override
@@ -1467,42 +1543,23 @@ class TorrentDownloadImpl implements TorrentDownload {
         th.readPiece(pieceIndex);
     }
 
-    /*
-     * Set the bytes of the selected file that you're interested in
-     * the piece of that specific offset is selected and that piece plus the 1 preceding and the 3 after it.
-     * These pieces will then be prioritised, which results in continuing the sequential download after that piece
-     */
-
     @Override
-    public void setInterestedPieces(@NonNull TorrentStream stream, int startPiece, int numPieces) {
-        if (startPiece < 0 || numPieces < 0)
+    public void setStreamPosition(
+            @NonNull Object reader,
+            @NonNull TorrentStream stream,
+            long offset,
+            long len
+    ) {
+        if (offset < 0 || len < 0)
             return;
 
-        for (int i = 0; i < numPieces; i++) {
-            int piece = startPiece + i;
-            if (piece > stream.lastFilePiece)
-                break;
-
-            if (i + 1 == numPieces) {
-                int preloadPieces = PRELOAD_PIECES_COUNT;
-                for (int p = piece; p <= stream.lastFilePiece; p++) {
-                    /* Set max priority to first found piece that is not confirmed finished */
-                    if (!operationNotAllowed() && !th.havePiece(p)) {
-                        th.piecePriority(p, org.libtorrent4j.Priority.TOP_PRIORITY);
-                        th.setPieceDeadline(p, DEFAULT_PIECE_DEADLINE);
-                        preloadPieces--;
-                        if (preloadPieces == 0)
-                            break;
-                    }
-                }
+        streamScheduler.update(reader, stream, offset, len,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
 
-            } else {
-                if (!operationNotAllowed() && !th.havePiece(piece)) {
-                    th.piecePriority(piece, org.libtorrent4j.Priority.TOP_PRIORITY);
-                    th.setPieceDeadline(piece, DEFAULT_PIECE_DEADLINE);
-                }
-            }
-        }
+    @Override
+    public void removeStreamReader(@NonNull Object reader) {
+        streamScheduler.remove(reader);
     }
 
     @Override
@@ -1511,18 +1568,18 @@ class TorrentDownloadImpl implements TorrentDownload {
             return null;
         }
 
-        TorrentInfo ti = th.torrentFile();
-        if (ti == null)
+        TorrentPieceIndex index = getPieceIndex();
+        if (index == null)
             return null;
-        FileStorage fs = ti.files();
-        Pair<Integer, Integer> filePieces = getFilePieces(ti, fileIndex);
-        if (filePieces == null)
+        if (!index.isValidFile(fileIndex))
             throw new IllegalArgumentException("Incorrect file index");
 
+        int lastPiece = index.getLastPiece(fileIndex);
+
         return new TorrentStream(id, fileIndex,
-                filePieces.first, filePieces.second, ti.pieceLength(),
-                fs.fileOffset(fileIndex), fs.fileSize(fileIndex),
-                ti.pieceSize(filePieces.second));
+                index.getFirstPiece(fileIndex), lastPiece, index.getPieceLength(),
+                index.getFileOffset(fileIndex), index.getFileSize(fileIndex),
+                index.getPieceSize(lastPiece));
 
     }
 
@@ -1541,7 +1598,13 @@ class TorrentDownloadImpl implements TorrentDownload {
         if (operationNotAllowed())
             return new Priority[0];
 
-        return PriorityConverter.convert(th.filePriorities());
+        var priorities = filePriorities;
+        if (priorities == null) {
+            priorities = PriorityConverter.convert(th.filePriorities());
+            filePriorities = priorities;
+        }
+
+        return priorities.clone();
     }
 
     @Override
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import androidx.annotation.NonNull;
+
+import org.libtorrent4j.FileStorage;
+import org.libtorrent4j.TorrentInfo;
+
+import java.util.Arrays;
+
+/*
+ * Immutable file <-> piece mapping of the torrent, built once
+ * the metadata is available. Allows to get the piece range of a file in O(1)
+ * and the file by offset or piece in O(log n) without libtorrent calls.
+ */
+
+public final class TorrentPieceIndex {
+    private final int pieceLength;
+    private final int numPieces;
+    private final long totalSize;
+    private final long[] fileOffsets;
+    private final long[] fileSizes;
+    private final int[] fileFirstPiece;
+    private final int[] fileLastPiece;
+
+    TorrentPieceIndex(
+            int pieceLength,
+            long totalSize,
+            @NonNull long[] fileOffsets,
+            @NonNull long[] fileSizes
+    ) {
+        if (pieceLength <= 0)
+            throw new IllegalArgumentException("Invalid piece length: " + pieceLength);
+        if (fileOffsets.length != fileSizes.length)
+            throw new IllegalArgumentException("File offsets and sizes mismatch");
+
+        this.pieceLength = pieceLength;
+        this.totalSize = totalSize;
+        this.numPieces = (int) ((totalSize + pieceLength - 1) / pieceLength);
+        this.fileOffsets = fileOffsets;
+        this.fileSizes = fileSizes;
+
+        int numFiles = fileOffsets.length;
+        fileFirstPiece = new int[numFiles];
+        fileLastPiece = new int[numFiles];
+        for (int i = 0; i < numFiles; i++) {
+            int first = (int) (fileOffsets[i] / pieceLength);
+            int last = (int) ((fileOffsets[i] + fileSizes[i] - 1) / pieceLength);
+            fileFirstPiece[i] = first;
+            /* Empty file */
+            fileLastPiece[i] = Math.max(first, last);
+        }
+    }
+
+    static TorrentPieceIndex fromTorrentInfo(@NonNull TorrentInfo ti) {
+        FileStorage fs = ti.files();
+        int numFiles = fs.numFiles();
+        long[] offsets = new long[numFiles];
+        long[] sizes = new long[numFiles];
+        for (int i = 0; i < numFiles; i++) {
+            offsets[i] = fs.fileOffset(i);
+            sizes[i] = fs.fileSize(i);
+        }
+
+        return new TorrentPieceIndex(ti.pieceLength(), fs.totalSize(), offsets, sizes);
+    }
+
+    public int getNumFiles() {
+        return fileOffsets.length;
+    }
+
+    public int getNumPieces() {
+        return numPieces;
+    }
+
+    public int getPieceLength() {
+        return pieceLength;
+    }
+
+    public boolean isValidFile(int fileIndex) {
+        return fileIndex >= 0 && fileIndex < fileOffsets.length;
+    }
+
+    public long getFileOffset(int fileIndex) {
+        return fileOffsets[fileIndex];
+    }
+
+    public long getFileSize(int fileIndex) {
+        return fileSizes[fileIndex];
+    }
+
+    public int getFirstPiece(int fileIndex) {
+        return fileFirstPiece[fileIndex];
+    }
+
+    /*
+     * Inclusive
+     */
+
+    public int getLastPiece(int fileIndex) {
+        return fileLastPiece[fileIndex];
+    }
+
+    /*
+     * The last piece may be smaller than the rest
+     */
+
+    public int getPieceSize(int pieceIndex) {
+        if (pieceIndex < 0 || pieceIndex >= numPieces)
+            return 0;
+        if (pieceIndex == numPieces - 1)
+            return (int) (totalSize - (long) pieceIndex * pieceLength);
+
+        return pieceLength;
+    }
+
+    /*
+     * Returns the index of the file that contains the byte
+     * at the specified torrent offset, or -1 if out of range.
+     * Empty files are skipped.
+     */
+
+    public int getFileAtOffset(long offset) {
+        if (offset < 0 || offset >= totalSize)
+            return -1;
+
+        int pos = Arrays.binarySearch(fileOffsets, offset);
+        if (pos < 0) {
+            pos = -pos - 2;
+        } else {
+            /* Several files can start at the same offset if some of them are empty */
+            while (pos + 1 < fileOffsets.length && fileOffsets[pos + 1] == offset)
+                pos++;
+        }
+
+        return pos;
+    }
+
+    /*
+     * Returns the index of the first file that intersects with the piece
+     */
+
+    public int getFirstFileOfPiece(int pieceIndex) {
+        if (pieceIndex < 0 || pieceIndex >= numPieces)
+            return -1;
+
+        return getFileAtOffset((long) pieceIndex * pieceLength);
+    }
+}
@@ -40,15 +40,17 @@ import org.libtorrent4j.Sha1Hash;
 import org.libtorrent4j.TorrentFlags;
 import org.libtorrent4j.TorrentHandle;
 import org.libtorrent4j.TorrentInfo;
+import org.libtorrent4j.TorrentStatus;
 import org.libtorrent4j.Vectors;
 import org.libtorrent4j.alerts.Alert;
+import org.libtorrent4j.alerts.AddTorrentAlert;
 import org.libtorrent4j.alerts.AlertType;
 import org.libtorrent4j.alerts.ListenFailedAlert;
 import org.libtorrent4j.alerts.MetadataReceivedAlert;
 import org.libtorrent4j.alerts.PortmapErrorAlert;
 import org.libtorrent4j.alerts.SaveResumeDataAlert;
 import org.libtorrent4j.alerts.SessionErrorAlert;
-import org.libtorrent4j.alerts.TorrentAlert;
+import org.libtorrent4j.alerts.StateUpdateAlert;
 import org.libtorrent4j.swig.add_torrent_params;
 import org.libtorrent4j.swig.alert;
 import org.libtorrent4j.swig.alert_category_t;
@@ -66,6 +68,7 @@ import org.libtorrent4j.swig.string_vector;
 import org.libtorrent4j.swig.torrent_flags_t;
 import org.libtorrent4j.swig.torrent_handle;
 import org.proninyaroslav.libretorrent.core.exception.DecodeException;
+import org.proninyaroslav.libretorrent.core.exception.IPFilterException;
 import org.proninyaroslav.libretorrent.core.exception.TorrentAlreadyExistsException;
 import org.proninyaroslav.libretorrent.core.exception.UnknownUriException;
 import org.proninyaroslav.libretorrent.core.model.AddTorrentParams;
@@ -77,6 +80,7 @@ import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
 import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
 import org.proninyaroslav.libretorrent.core.model.data.metainfo.TorrentMetaInfo;
 import org.proninyaroslav.libretorrent.core.settings.SessionSettings;
+import org.proninyaroslav.libretorrent.core.storage.FastResumeWriter;
 import org.proninyaroslav.libretorrent.core.storage.TorrentRepository;
 import org.proninyaroslav.libretorrent.core.system.FileDescriptorWrapper;
 import org.proninyaroslav.libretorrent.core.system.FileSystemFacade;
@@ -92,11 +96,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
@@ -126,6 +130,7 @@ public class TorrentSessionImpl extends SessionManager
             AlertType.TORRENT_LOG.swig(),
             AlertType.SESSION_STATS.swig(),
             AlertType.SAVE_RESUME_DATA.swig(),
+            AlertType.STATE_UPDATE.swig(),
     };
 
     /* Base unit in KiB. Used for create torrent */
@@ -134,12 +139,14 @@ public class TorrentSessionImpl extends SessionManager
     private static final int[] torrentVersions = {0, 1, 2};
     private static final String PEER_FINGERPRINT = "Lr"; /* called peer id */
     private static final String USER_AGENT = "LibreTorrent %s";
+    private static final String IP_FILTER_CACHE_FILE = "ip_filter.bin";
 
     private final InnerListener innerListener;
     private final ConcurrentLinkedQueue<TorrentEngineListener> listeners = new ConcurrentLinkedQueue<>();
     private SessionSettings settings = new SessionSettings();
     private final ReentrantLock settingsLock = new ReentrantLock();
-    private final Queue<LoadTorrentTask> restoreTorrentsQueue = new LinkedList<>();
+    private final AtomicBoolean restoreInProgress = new AtomicBoolean(false);
+    private volatile RestoreTorrentsPipeline<add_torrent_params> restorePipeline;
     private final ExecutorService loadTorrentsExec;
     private final ConcurrentHashMap<String, TorrentDownload> torrentTasks = new ConcurrentHashMap<>();
     /* Wait list for non added magnets */
@@ -149,6 +156,7 @@ public class TorrentSessionImpl extends SessionManager
     private final ReentrantLock syncMagnet = new ReentrantLock();
     private final CompositeDisposable disposables = new CompositeDisposable();
     private final TorrentRepository repo;
+    private final FastResumeWriter fastResumeWriter;
     private final FileSystemFacade fs;
     private final SystemFacade system;
     private final SessionLogger sessionLogger;
@@ -165,6 +173,7 @@ public class TorrentSessionImpl extends SessionManager
         this.started = false;
         this.sessionLogger = new SessionLogger();
         this.repo = repo;
+        this.fastResumeWriter = new FastResumeWriter(repo);
         this.fs = fs;
         this.system = system;
         innerListener = new InnerListener();
@@ -363,6 +372,7 @@ public class TorrentSessionImpl extends SessionManager
 
         TorrentDownload task = getTask(id);
         if (task == null) {
+            fastResumeWriter.discard(id);
             Torrent torrent = repo.getTorrentById(id);
             if (torrent != null)
                 repo.deleteTorrent(torrent);
@@ -376,32 +386,92 @@ public class TorrentSessionImpl extends SessionManager
 
     @Override
     public void restoreTorrents() {
-        if (operationNotAllowed())
+        if (operationNotAllowed() || !restoreInProgress.compareAndSet(false, true))
             return;
 
-        for (Torrent torrent : repo.getAllTorrents()) {
-            if (torrent == null || isTorrentAlreadyRunning(torrent.id))
-                continue;
+        try {
+            loadTorrentsExec.execute(this::runRestoreTorrents);
 
-            String path = null;
-            try {
-                path = fs.makeFileSystemPath(torrent.downloadPath);
-            } catch (UnknownUriException e) {
-                Log.e(TAG, "Unable to restore torrent:");
-                Log.e(TAG, Log.getStackTraceString(e));
-            }
-            LoadTorrentTask loadTask = new LoadTorrentTask(torrent.id);
-            if (path != null && torrent.isDownloadingMetadata()) {
-                loadTask.putMagnet(
-                        torrent.getMagnet(),
-                        new File(path),
-                        torrent.manuallyPaused,
-                        torrent.sequentialDownload
-                );
+        } catch (Exception e) {
+            restoreInProgress.set(false);
+            Log.e(TAG, Log.getStackTraceString(e));
+        }
+    }
+
+    /*
+     * Magnets are restored first, then the torrents that are not paused
+     * and the paused ones. The finished torrents are restored last,
+     * see RestoreSource.getDeferOrder()
+     */
+
+    private void runRestoreTorrents() {
+        ExecutorService decodeExec = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try {
+            var ids = new ArrayList<String>();
+            var pausedIds = new ArrayList<String>();
+            for (Torrent torrent : repo.getAllTorrents()) {
+                if (operationNotAllowed())
+                    return;
+                if (torrent == null || isTorrentAlreadyRunning(torrent.id))
+                    continue;
+
+                if (torrent.isDownloadingMetadata())
+                    restoreMagnet(torrent);
+                else if (torrent.manuallyPaused)
+                    pausedIds.add(torrent.id);
+                else
+                    ids.add(torrent.id);
             }
-            restoreTorrentsQueue.add(loadTask);
+            ids.addAll(pausedIds);
+
+            var pipeline = new RestoreTorrentsPipeline<>(
+                    new RestoreSource(),
+                    decodeExec,
+                    RestoreTorrentsPipeline.DEFAULT_BATCH_SIZE
+            );
+            restorePipeline = pipeline;
+            pipeline.run(ids);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to restore torrents from previous session", e);
+        } finally {
+            /* Keep receiving the late results of the adds given up on by the timeout */
+            var pipeline = restorePipeline;
+            if (pipeline != null && !pipeline.hasExpiredAdds())
+                restorePipeline = null;
+            decodeExec.shutdownNow();
+            restoreInProgress.set(false);
         }
-        runNextLoadTorrentTask();
+    }
+
+    private void restoreMagnet(Torrent torrent) {
+        try {
+            String path = fs.makeFileSystemPath(torrent.downloadPath);
+            download(
+                    torrent.getMagnet(),
+                    new File(path),
+                    torrent.manuallyPaused,
+                    torrent.sequentialDownload
+            );
+
+        } catch (Exception e) {
+            handleRestoreError(torrent.id, e);
+        }
+    }
+
+    private void handleRestoreError(String id, Exception e) {
+        Log.e(TAG, "Unable to restore torrent from previous session: " + id, e);
+        Torrent torrent = repo.getTorrentById(id);
+        if (torrent != null) {
+            torrent.error = e.toString();
+            repo.updateTorrent(torrent);
+        }
+
+        notifyListeners((listener) ->
+                listener.onRestoreSessionError(id));
     }
 
     @Override
@@ -690,10 +760,12 @@ public class TorrentSessionImpl extends SessionManager
             if (operationNotAllowed() || Thread.interrupted())
                 return;
 
-            IPFilterImpl filter = new IPFilterImpl();
-            int ruleCount = new IPFilterParser().parseFile(path, fs, filter);
+            IPFilterRanges ranges = loadIpFilter(path);
             if (Thread.interrupted())
                 return;
+
+            IPFilterImpl filter = new IPFilterImpl();
+            int ruleCount = applyIpFilterRanges(ranges, filter);
             if (ruleCount != 0 && swig() != null && !operationNotAllowed())
                 swig().set_ip_filter(filter.getFilter());
 
@@ -703,6 +775,66 @@ public class TorrentSessionImpl extends SessionManager
         parseIpFilterThread.start();
     }
 
+    /*
+     * Loads the compiled filter from the cache if the filter file hasn't changed,
+     * otherwise parses the file and updates the cache
+     */
+
+    private IPFilterRanges loadIpFilter(Uri path) {
+        long size = -1;
+        long lastModified = -1;
+        try (FileDescriptorWrapper w = fs.getFD(path);
+             FileInputStream is = new FileInputStream(w.open("r"))) {
+            size = is.getChannel().size();
+            lastModified = fs.lastModified(path);
+        } catch (IOException | UnknownUriException e) {
+            /* Let the parser handle it */
+        }
+
+        var cache = new IPFilterCache(new File(fs.getCacheDir(), IP_FILTER_CACHE_FILE));
+        if (size >= 0 && lastModified > 0) {
+            IPFilterRanges ranges = cache.load(path.toString(), size, lastModified);
+            if (ranges != null) {
+                Log.d(TAG, "IP filter is loaded from the cache");
+                return ranges;
+            }
+        }
+
+        var ranges = new IPFilterRanges();
+        new IPFilterParser().parseFile(path, fs, ranges);
+        ranges.normalize();
+
+        if (ranges.getRuleCount() == 0 || size < 0 || lastModified <= 0) {
+            cache.delete();
+        } else {
+            try {
+                cache.save(path.toString(), size, lastModified, ranges);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to save IP filter cache: " + Log.getStackTraceString(e));
+                cache.delete();
+            }
+        }
+
+        return ranges;
+    }
+
+    /*
+     * Returns the number of applied rules
+     */
+
+    private int applyIpFilterRanges(IPFilterRanges ranges, IPFilter filter) {
+        try {
+            ranges.apply(filter);
+
+            return ranges.getRuleCount();
+
+        } catch (IPFilterException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+
+            return 0;
+        }
+    }
+
     @Override
     public void disableIpFilter() {
         if (operationNotAllowed())
@@ -967,6 +1099,12 @@ public class TorrentSessionImpl extends SessionManager
 
     @Override
     protected void onBeforeStop() {
+        /* The resume data saved while stopping must be written before the app can be killed */
+        try {
+            fastResumeWriter.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         disposables.clear();
         started = false;
         enableSessionLogger(false);
@@ -1005,23 +1143,7 @@ public class TorrentSessionImpl extends SessionManager
         public void alert(Alert<?> alert) {
             switch (alert.type()) {
                 case ADD_TORRENT:
-                    TorrentAlert<?> torrentAlert = (TorrentAlert<?>) alert;
-                    TorrentHandle th = find(torrentAlert.handle().infoHash());
-                    if (th == null)
-                        break;
-                    String hash = th.infoHash().toHex();
-                    if (magnets.contains(hash))
-                        break;
-                    torrentTasks.put(hash, newTask(th, hash));
-                    if (addTorrentsList.contains(hash))
-                        notifyListeners((listener) ->
-                                listener.onTorrentAdded(hash));
-                    else
-                        notifyListeners((listener) ->
-                                listener.onTorrentLoaded(hash));
-                    addTorrentsList.remove(hash);
-                    checkStop();
-                    runNextLoadTorrentTask();
+                    handleTorrentAdded((AddTorrentAlert) alert);
                     break;
                 case METADATA_RECEIVED:
                     handleMetadataReceived((MetadataReceivedAlert) alert);
@@ -1029,6 +1151,9 @@ public class TorrentSessionImpl extends SessionManager
                 case SESSION_STATS:
                     handleStats();
                     break;
+                case STATE_UPDATE:
+                    handleStateUpdate((StateUpdateAlert) alert);
+                    break;
                 case SAVE_RESUME_DATA:
                     handleSaveMetadata((SaveResumeDataAlert) alert);
                 default:
@@ -1102,6 +1227,9 @@ public class TorrentSessionImpl extends SessionManager
         if (operationNotAllowed())
             return;
 
+        /* Request statuses of the changed torrents for the next tick, see handleStateUpdate() */
+        swig().post_torrent_updates();
+
         notifyListeners((listener) -> listener.onSessionStats(
                 new SessionStats(dhtNodes(),
                         getTotalDownload(),
@@ -1112,6 +1240,24 @@ public class TorrentSessionImpl extends SessionManager
         );
     }
 
+    /*
+     * Contains only those torrents whose status has changed since the last update,
+     * the rest keep their cached status
+     */
+
+    private void handleStateUpdate(StateUpdateAlert alert) {
+        if (operationNotAllowed())
+            return;
+
+        boolean sessionPaused = isPaused();
+        for (TorrentStatus status : alert.status()) {
+            String hash = new TorrentHandle(status.swig().getHandle()).infoHash().toHex();
+            TorrentDownload task = torrentTasks.get(hash);
+            if (task instanceof TorrentDownloadImpl impl)
+                impl.updateStatus(status, sessionPaused);
+        }
+    }
+
     private static String dhtBootstrapNodes() {
         return "dht.libtorrent.org:25401" + "," +
                 "router.bittorrent.com:6881" + "," +
@@ -1347,8 +1493,8 @@ public class TorrentSessionImpl extends SessionManager
     }
 
     private TorrentDownload newTask(TorrentHandle th, String id) {
-        TorrentDownload task = new TorrentDownloadImpl(this, repo, fs, listeners,
-                id, th, settings.autoManaged);
+        TorrentDownload task = new TorrentDownloadImpl(this, repo, fastResumeWriter, fs,
+                listeners, id, th, settings.autoManaged);
         task.setMaxConnections(settings.connectionsLimitPerTorrent);
         task.setMaxUploads(settings.uploadsLimitPerTorrent);
 
@@ -1366,79 +1512,108 @@ public class TorrentSessionImpl extends SessionManager
         }
     }
 
-    private void runNextLoadTorrentTask() {
-        if (operationNotAllowed()) {
-            restoreTorrentsQueue.clear();
-
-            return;
+    private void handleTorrentAdded(AddTorrentAlert alert) {
+        TorrentHandle th = find(alert.handle().infoHash());
+        if (th != null) {
+            String hash = th.infoHash().toHex();
+            if (!magnets.contains(hash)) {
+                torrentTasks.put(hash, newTask(th, hash));
+                if (addTorrentsList.contains(hash))
+                    notifyListeners((listener) ->
+                            listener.onTorrentAdded(hash));
+                else
+                    notifyListeners((listener) ->
+                            listener.onTorrentLoaded(hash));
+                addTorrentsList.remove(hash);
+                checkStop();
+            }
         }
 
-        LoadTorrentTask task;
-        try {
-            task = restoreTorrentsQueue.poll();
-
-        } catch (Exception e) {
-            Log.e(TAG, Log.getStackTraceString(e));
-
-            return;
+        /* Let the restore add the next torrent */
+        RestoreTorrentsPipeline<add_torrent_params> pipeline = restorePipeline;
+        if (pipeline != null) {
+            sha1_hash hash = alert.params().swig().getInfo_hashes().get_best();
+            ErrorCode error = alert.error();
+            if (hash != null)
+                pipeline.onAddFinished(hash.to_hex(), error.isError() ?
+                        new IOException(SessionErrors.getErrorMsg(error)) :
+                        null);
+            if (!restoreInProgress.get() && !pipeline.hasExpiredAdds())
+                restorePipeline = null;
         }
-
-        if (task != null)
-            loadTorrentsExec.execute(task);
     }
 
     private boolean isTorrentAlreadyRunning(String torrentId) {
         return torrentTasks.containsKey(torrentId) || addTorrentsList.contains(torrentId);
     }
 
-    private final class LoadTorrentTask implements Runnable {
-        private final String torrentId;
-        private File saveDir = null;
-        private String magnetUri = null;
-        private boolean isMagnet = false;
-        private boolean magnetPaused = false;
-        private boolean magnetSequentialDownload = false;
+    private final class RestoreSource implements RestoreTorrentsPipeline.Source<add_torrent_params> {
+        @NonNull
+        @Override
+        public Map<String, byte[]> load(@NonNull List<String> ids) throws IOException {
+            var data = new HashMap<String, byte[]>(ids.size() * 2);
+            for (FastResume fastResume : repo.getFastResumeByIds(ids))
+                data.put(fastResume.torrentId, fastResume.data);
 
-        LoadTorrentTask(String torrentId) {
-            this.torrentId = torrentId;
+            return data;
         }
 
-        public void putMagnet(
-                String magnetUri,
-                File saveDir,
-                boolean magnetPaused,
-                boolean magnetSequentialDownload
-        ) {
-            this.magnetUri = magnetUri;
-            this.saveDir = saveDir;
-            this.magnetPaused = magnetPaused;
-            this.magnetSequentialDownload = magnetSequentialDownload;
-            isMagnet = true;
+        @NonNull
+        @Override
+        public add_torrent_params decode(@NonNull String id, @NonNull byte[] data) {
+            return decodeFastResume(data);
         }
 
+        /*
+         * Long-seeding torrents are added last
+         */
+
         @Override
-        public void run() {
-            try {
-                if (isTorrentAlreadyRunning(torrentId))
-                    return;
+        public long getDeferOrder(@NonNull add_torrent_params p) {
+            if (p.getFinished_time() <= 0)
+                return -1;
 
-                if (isMagnet)
-                    download(magnetUri, saveDir, magnetPaused, magnetSequentialDownload);
-                else
-                    restoreDownload(torrentId);
-
-            } catch (Exception e) {
-                Log.e(TAG, "Unable to restore torrent from previous session: " + torrentId, e);
-                Torrent torrent = repo.getTorrentById(torrentId);
-                if (torrent != null) {
-                    torrent.error = e.toString();
-                    repo.updateTorrent(torrent);
-                }
+            return p.getSeeding_time();
+        }
+
+        /*
+         * The add is finished by the ADD_TORRENT alert
+         */
+
+        @Override
+        public boolean add(@NonNull String id, @NonNull add_torrent_params p) {
+            if (operationNotAllowed() || isTorrentAlreadyRunning(id))
+                return false;
 
-                notifyListeners((listener) ->
-                        listener.onRestoreSessionError(torrentId));
+            swig().async_add_torrent(p);
+
+            return true;
+        }
+
+        @Override
+        public void onError(@NonNull String id, @NonNull Exception e) {
+            handleRestoreError(id, e);
+        }
+
+        @Override
+        public void onAddedAfterTimeout(@NonNull String id) {
+            Torrent torrent = repo.getTorrentById(id);
+            if (torrent != null && torrent.error != null) {
+                torrent.error = null;
+                repo.updateTorrent(torrent);
             }
         }
+
+        @Override
+        public void onProgress(int processed, int total) {
+            notifyListeners((listener) ->
+                    listener.onRestoreSessionProgress(processed, total));
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return operationNotAllowed();
+        }
     }
 
     private void download(byte[] bencode, File saveDir,
@@ -1644,16 +1819,13 @@ public class TorrentSessionImpl extends SessionManager
         settings.defaultTrackersList = trackersList;
     }
 
-    private void restoreDownload(String id) throws IOException {
-        if (operationNotAllowed())
-            return;
-
-        FastResume fastResume = repo.getFastResumeById(id);
-        if (fastResume == null)
-            throw new IOException("Fast resume data not found");
+    /*
+     * Thread-safe, doesn't touch the session
+     */
 
+    private add_torrent_params decodeFastResume(byte[] data) {
         error_code ec = new error_code();
-        byte_vector buffer = Vectors.bytes2byte_vector(fastResume.data);
+        byte_vector buffer = Vectors.bytes2byte_vector(data);
 
         bdecode_node n = new bdecode_node();
         int ret = bdecode_node.bdecode(buffer, n, ec);
@@ -1676,10 +1848,6 @@ public class TorrentSessionImpl extends SessionManager
 
         p.setFlags(flags);
 
-        /* After reading the metadata some time may have passed */
-        if (operationNotAllowed())
-            return;
-
-        swig().async_add_torrent(p);
+        return p;
     }
 }
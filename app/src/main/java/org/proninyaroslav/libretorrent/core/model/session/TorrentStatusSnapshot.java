@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.proninyaroslav.libretorrent.core.model.data.TorrentInfo.MAX_ETA;
+
+import androidx.annotation.NonNull;
+
+import org.libtorrent4j.TorrentFlags;
+import org.libtorrent4j.TorrentStatus;
+import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
+
+/*
+ * Immutable copy of the torrent status, taken with a single libtorrent call
+ * (or received in the batched state update). All values are derived
+ * from it without additional JNI round-trips.
+ */
+
+public final class TorrentStatusSnapshot {
+    private final boolean valid;
+    private final boolean sessionRunning;
+    private final boolean sessionPaused;
+    private final TorrentStatus.State state;
+    private final boolean torrentPaused;
+    private final boolean autoManaged;
+    private final boolean sequentialDownload;
+    private final boolean seeding;
+    private final boolean finished;
+    private final float progress;
+    private final long totalDone;
+    private final long totalWanted;
+    private final long totalWantedDone;
+    private final long allTimeUpload;
+    private final long allTimeDownload;
+    private final long downloadRate;
+    private final long uploadRate;
+    private final long activeDuration;
+    private final long seedingDuration;
+    private final int numPeers;
+    private final int numSeeds;
+    private final int numComplete;
+    private final int numIncomplete;
+    private final int listPeers;
+    private final int listSeeds;
+    private final int numPieces;
+
+    /*
+     * Snapshot for the invalid torrent handle
+     */
+
+    TorrentStatusSnapshot(boolean sessionRunning) {
+        valid = false;
+        this.sessionRunning = sessionRunning;
+        sessionPaused = false;
+        state = TorrentStatus.State.UNKNOWN;
+        torrentPaused = false;
+        autoManaged = false;
+        sequentialDownload = false;
+        seeding = false;
+        finished = false;
+        progress = 0;
+        totalDone = 0;
+        totalWanted = 0;
+        totalWantedDone = 0;
+        allTimeUpload = 0;
+        allTimeDownload = 0;
+        downloadRate = 0;
+        uploadRate = 0;
+        activeDuration = 0;
+        seedingDuration = 0;
+        numPeers = 0;
+        numSeeds = 0;
+        numComplete = 0;
+        numIncomplete = 0;
+        listPeers = 0;
+        listSeeds = 0;
+        numPieces = 0;
+    }
+
+    /*
+     * The status object must be copied immediately, because
+     * the statuses from StateUpdateAlert are owned by the alert
+     */
+
+    TorrentStatusSnapshot(@NonNull TorrentStatus ts, boolean sessionRunning, boolean sessionPaused) {
+        this.valid = true;
+        this.sessionRunning = sessionRunning;
+        this.sessionPaused = sessionPaused;
+        this.state = ts.state();
+        var flags = ts.flags();
+        this.torrentPaused = flags.and_(TorrentFlags.PAUSED).non_zero();
+        this.autoManaged = flags.and_(TorrentFlags.AUTO_MANAGED).non_zero();
+        this.sequentialDownload = flags.and_(TorrentFlags.SEQUENTIAL_DOWNLOAD).non_zero();
+        this.seeding = ts.isSeeding();
+        this.finished = ts.isFinished();
+        this.progress = ts.progress();
+        this.totalDone = ts.totalDone();
+        this.totalWanted = ts.totalWanted();
+        this.totalWantedDone = ts.totalWantedDone();
+        this.allTimeUpload = ts.allTimeUpload();
+        this.allTimeDownload = ts.allTimeDownload();
+        this.downloadRate = ts.downloadPayloadRate();
+        this.uploadRate = ts.uploadPayloadRate();
+        this.activeDuration = ts.activeDuration();
+        this.seedingDuration = ts.seedingDuration();
+        this.numPeers = ts.numPeers();
+        this.numSeeds = ts.numSeeds();
+        this.numComplete = ts.numComplete();
+        this.numIncomplete = ts.numIncomplete();
+        this.listPeers = ts.listPeers();
+        this.listSeeds = ts.listSeeds();
+        this.numPieces = ts.numPieces();
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public TorrentStateCode getStateCode() {
+        if (!sessionRunning)
+            return TorrentStateCode.STOPPED;
+
+        if (isPaused())
+            return TorrentStateCode.PAUSED;
+
+        if (!valid)
+            return TorrentStateCode.ERROR;
+
+        if (finished)
+            return TorrentStateCode.SEEDING;
+
+        return switch (state) {
+            case CHECKING_RESUME_DATA, CHECKING_FILES -> TorrentStateCode.CHECKING;
+            case DOWNLOADING_METADATA -> TorrentStateCode.DOWNLOADING_METADATA;
+            case DOWNLOADING -> TorrentStateCode.DOWNLOADING;
+            case FINISHED -> TorrentStateCode.FINISHED;
+            case SEEDING -> TorrentStateCode.SEEDING;
+            default -> TorrentStateCode.UNKNOWN;
+        };
+    }
+
+    public boolean isPaused() {
+        return valid && (torrentPaused || sessionPaused || !sessionRunning);
+    }
+
+    public boolean isSeeding() {
+        return valid && seeding;
+    }
+
+    public boolean isFinished() {
+        return valid && finished;
+    }
+
+    public boolean isAutoManaged() {
+        return valid && autoManaged;
+    }
+
+    public boolean isSequentialDownload() {
+        return valid && sequentialDownload;
+    }
+
+    /*
+     * A value in the range [0, 100]
+     */
+
+    public int getProgress() {
+        if (Float.compare(progress, 1f) == 0)
+            return 100;
+
+        int p = (int) (progress * 100);
+        if (p > 0)
+            return Math.min(p, 100);
+
+        return 0;
+    }
+
+    public long getReceivedBytes() {
+        return totalDone;
+    }
+
+    public long getTotalSentBytes() {
+        return allTimeUpload;
+    }
+
+    public long getTotalWanted() {
+        return totalWanted;
+    }
+
+    public long getDownloadSpeed() {
+        return isFinished() || isPaused() || isSeeding() ? 0 : downloadRate;
+    }
+
+    public long getUploadSpeed() {
+        return isFinished() && !isSeeding() || isPaused() ? 0 : uploadRate;
+    }
+
+    public long getETA() {
+        if (getStateCode() != TorrentStateCode.DOWNLOADING)
+            return MAX_ETA;
+
+        long left = totalWanted - totalWantedDone;
+        if (left <= 0)
+            return 0;
+        if (downloadRate <= 0)
+            return MAX_ETA;
+
+        return Math.min(left / downloadRate, MAX_ETA);
+    }
+
+    public long getActiveTime() {
+        return activeDuration / 1000L;
+    }
+
+    public long getSeedingTime() {
+        return seedingDuration / 1000L;
+    }
+
+    public int getConnectedPeers() {
+        return numPeers;
+    }
+
+    public int getConnectedSeeds() {
+        return numSeeds;
+    }
+
+    public int getConnectedLeechers() {
+        return numPeers - numSeeds;
+    }
+
+    public int getTotalPeers() {
+        int peers = numComplete + numIncomplete;
+
+        return (peers > 0 ? peers : listPeers);
+    }
+
+    public int getTotalSeeds() {
+        return (numComplete > 0 ? numComplete : listSeeds);
+    }
+
+    public int getTotalLeechers() {
+        return (numIncomplete > 0 ? numIncomplete : listPeers - listSeeds);
+    }
+
+    public int getNumDownloadedPieces() {
+        return numPieces;
+    }
+
+    public double getShareRatio() {
+        /*
+         * Special case for a seeder who lost its stats,
+         * also assume nobody will import a 99% done torrent
+         */
+        long downloaded = (allTimeDownload < totalDone * 0.01 ? totalDone : allTimeDownload);
+        if (downloaded == 0)
+            return (allTimeUpload == 0 ? 0.0 : TorrentDownloadImpl.MAX_RATIO);
+        double ratio = (double) allTimeUpload / (double) downloaded;
+
+        return Math.min(ratio, TorrentDownloadImpl.MAX_RATIO);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ * Pool of direct buffers, each can hold one piece. Shared by all
+ * streams, so that a new stream (e.g. a new HTTP request after
+ * a seek) reuses the buffers of the closed ones instead of
+ * allocating its own. Pieces are copied from the libtorrent memory
+ * without going through the Java heap.
+ *
+ * The total size of the direct buffers, both free and in use, is
+ * limited by the budget. When the budget is exhausted, the free buffers
+ * of other sizes are dropped; if that is not enough, a heap buffer
+ * is returned, which is not pooled and is garbage collected after use.
+ */
+
+public class PieceBufferPool {
+    /* Enough for two streams with the full read-ahead */
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    private final long maxBytes;
+    /* Buffer capacity -> free buffers */
+    private final HashMap<Integer, ArrayDeque<ByteBuffer>> free = new HashMap<>();
+    /* Direct buffers allocated by the pool, both free and in use */
+    private long allocatedBytes;
+    private long freeBytes;
+
+    public PieceBufferPool() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public PieceBufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+     * Returns an empty buffer of the specified piece length,
+     * limited to the specified number of bytes
+     */
+
+    @NonNull
+    synchronized ByteBuffer acquire(int pieceLength, int size) {
+        if (size > pieceLength)
+            throw new IllegalArgumentException("size > pieceLength");
+
+        ByteBuffer buf = pollFree(pieceLength);
+        if (buf == null) {
+            dropFree(allocatedBytes + pieceLength - maxBytes);
+            if (allocatedBytes + pieceLength <= maxBytes) {
+                buf = ByteBuffer.allocateDirect(pieceLength);
+                allocatedBytes += pieceLength;
+            } else {
+                return ByteBuffer.allocate(size);
+            }
+        }
+        buf.clear();
+        buf.limit(size);
+
+        return buf;
+    }
+
+    synchronized void release(@NonNull ByteBuffer buf) {
+        /* Heap buffers are allocated over the budget */
+        if (!buf.isDirect())
+            return;
+
+        free.computeIfAbsent(buf.capacity(), (k) -> new ArrayDeque<>()).push(buf);
+        freeBytes += buf.capacity();
+    }
+
+    /*
+     * Drops the free buffers, the buffers in use return to the pool as usual
+     */
+
+    public synchronized void clear() {
+        free.clear();
+        allocatedBytes -= freeBytes;
+        freeBytes = 0;
+    }
+
+    synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+    private ByteBuffer pollFree(int capacity) {
+        ArrayDeque<ByteBuffer> buffers = free.get(capacity);
+        ByteBuffer buf = (buffers == null ? null : buffers.poll());
+        if (buf != null)
+            freeBytes -= capacity;
+
+        return buf;
+    }
+
+    /*
+     * Drops the free buffers until the specified number of bytes is freed
+     */
+
+    private void dropFree(long bytes) {
+        Iterator<ArrayDeque<ByteBuffer>> it = free.values().iterator();
+        while (bytes > 0 && it.hasNext()) {
+            ArrayDeque<ByteBuffer> buffers = it.next();
+            ByteBuffer buf;
+            while (bytes > 0 && (buf = buffers.poll()) != null) {
+                allocatedBytes -= buf.capacity();
+                freeBytes -= buf.capacity();
+                bytes -= buf.capacity();
+            }
+            if (buffers.isEmpty())
+                it.remove();
+        }
+    }
+}
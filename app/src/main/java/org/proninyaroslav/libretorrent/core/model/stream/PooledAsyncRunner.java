@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import androidx.annotation.NonNull;
+
+import org.nanohttpd.NanoHTTPD;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Serves the client connections by the bounded pool of reusable threads
+ * instead of a new thread per connection. Each connection keeps its worker
+ * while it's alive (HTTP keep-alive), the rest are queued.
+ * If the queue is full, the connection is closed immediately.
+ */
+
+class PooledAsyncRunner implements NanoHTTPD.AsyncRunner {
+    private static final long IDLE_THREAD_TIMEOUT = 30; /* sec */
+
+    private final ThreadPoolExecutor executor;
+    private final Set<NanoHTTPD.ClientHandler> running =
+            Collections.synchronizedSet(new HashSet<>());
+
+    PooledAsyncRunner(int maxThreads, int maxQueuedConnections) {
+        executor = new ThreadPoolExecutor(
+                maxThreads,
+                maxThreads,
+                IDLE_THREAD_TIMEOUT,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxQueuedConnections),
+                new WorkerThreadFactory()
+        );
+        /* Don't keep threads when there are no clients */
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void closeAll() {
+        /* Copy of the set for concurrency */
+        ArrayList<NanoHTTPD.ClientHandler> handlers;
+        synchronized (running) {
+            handlers = new ArrayList<>(running);
+        }
+        for (var handler : handlers)
+            handler.close();
+    }
+
+    @Override
+    public void closed(NanoHTTPD.ClientHandler clientHandler) {
+        running.remove(clientHandler);
+    }
+
+    @Override
+    public void exec(NanoHTTPD.ClientHandler clientHandler) {
+        running.add(clientHandler);
+        try {
+            executor.execute(clientHandler);
+        } catch (RejectedExecutionException e) {
+            running.remove(clientHandler);
+            clientHandler.close();
+        }
+    }
+
+    void shutdown() {
+        closeAll();
+        executor.shutdownNow();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            var t = new Thread(r, "TorrentStreamServer Worker #" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+
+            return t;
+        }
+    }
+}
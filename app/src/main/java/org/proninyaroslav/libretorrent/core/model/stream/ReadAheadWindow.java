@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+/*
+ * Number of pieces that should be read ahead of the consumer.
+ * It's enough to cover the pieces that the consumer reads while
+ * one piece is being read from the disk, so the window grows
+ * with the consumption rate and the piece read latency, and shrinks
+ * back as the consumer slows down. Any seek resets the window
+ * to the minimum size.
+ * The maximum size is also limited in bytes, e.g. for torrents with large pieces.
+ */
+
+class ReadAheadWindow {
+    /* Smoothing factor of the exponential moving averages */
+    private static final double ALPHA = 0.2;
+    private static final long RATE_SAMPLE_PERIOD = 100; /* ms */
+
+    private final int minPieces;
+    private final int maxPieces;
+    private final int pieceLength;
+    /* Bytes per ms */
+    private double consumeRate;
+    /* ms */
+    private double readLatency;
+    private long sampleStartTime = -1;
+    private long sampleBytes;
+    private int lastPiece = -1;
+
+    ReadAheadWindow(int minPieces, int maxPieces, long maxBytes, int pieceLength) {
+        this.minPieces = Math.max(0, minPieces);
+        this.pieceLength = Math.max(1, pieceLength);
+        this.maxPieces = (int) Math.max(this.minPieces, Math.min(maxPieces, maxBytes / this.pieceLength));
+    }
+
+    int getMaxPieces() {
+        return maxPieces;
+    }
+
+    void onConsumed(int piece, int bytes, long timeMs) {
+        boolean sequential = lastPiece < 0 || piece == lastPiece || piece == lastPiece + 1;
+        if (!sequential) {
+            consumeRate = 0;
+            sampleStartTime = -1;
+        }
+        lastPiece = piece;
+
+        /* The bytes consumed before the start of the sample period aren't counted */
+        if (sampleStartTime < 0) {
+            sampleStartTime = timeMs;
+            sampleBytes = 0;
+            return;
+        }
+        sampleBytes += bytes;
+        long elapsed = timeMs - sampleStartTime;
+        if (elapsed >= RATE_SAMPLE_PERIOD) {
+            consumeRate = smooth(consumeRate, (double) sampleBytes / elapsed);
+            sampleStartTime = timeMs;
+            sampleBytes = 0;
+        }
+    }
+
+    void onPieceRead(long latencyMs) {
+        readLatency = smooth(readLatency, Math.max(0, latencyMs));
+    }
+
+    int getSize() {
+        /* Pieces consumed while the next one is being read */
+        double pieces = Math.ceil(consumeRate * readLatency / pieceLength);
+        int size = (int) Math.min(maxPieces, pieces);
+
+        return Math.max(minPieces, size);
+    }
+
+    private static double smooth(double prev, double value) {
+        return prev == 0 ? value : prev + ALPHA * (value - prev);
+    }
+}
@@ -31,6 +31,12 @@ import org.proninyaroslav.libretorrent.core.model.session.TorrentSession;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /*
@@ -51,47 +57,103 @@ import java.util.concurrent.locks.ReentrantLock;
 public class TorrentInputStream extends InputStream {
     public static final int EOF = -1;
 
+    public static final int DEFAULT_MAX_READ_AHEAD_PIECES = 8;
+    /* Limit memory usage for torrents with large pieces */
+    private static final long MAX_READ_AHEAD_BYTES = 32 * 1024 * 1024;
+    private static final int MIN_READ_AHEAD_PIECES = 1;
+    /* Give up on the piece after this number of failed reads in a row */
+    private static final int MAX_READ_RETRIES = 3;
+
     private TorrentSession session;
     private final TorrentStream stream;
-    private ReadSession readSession;
     private long filePos;
     private final long eof;
-    private byte[] cacheBuf;
-    private int cachePieceIndex = -1;
     private boolean stopped;
-    private static final ReentrantLock lock = new ReentrantLock();
+    /*
+     * Serializes readers of this stream only. Independent streams
+     * (even for the same torrent) are read in parallel
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /* Guarded by the stream monitor */
+    private final PieceCache cache;
+    private final PieceBufferPool bufferPool;
+    /* Piece index -> request time, guarded by the stream monitor */
+    private final HashMap<Integer, Long> pendingReads = new HashMap<>();
+    /* Piece index -> number of failed reads, guarded by the stream monitor */
+    private final HashMap<Integer, Integer> readErrors = new HashMap<>();
+    private final ReadAheadWindow readAheadWindow;
+    private final byte[] singleByteBuf = new byte[1];
 
-    private static class ReadSession {
-        private int countLatch;
-        private Piece[] piecesForReading;
-        private byte[] buf;
-    }
+    /*
+     * The piece data in the pooled direct buffer. The buffer returns
+     * to the pool when the piece is evicted from the cache (or the stream
+     * is closed) and nobody reads it at the moment (unpinned)
+     */
 
-    private static class Piece {
-        int index;
-        int readLength;
-        int readOffset;
-        int bufIndex;
-        boolean cache = false;
+    private static class PieceBuffer {
+        final ByteBuffer data;
+        int pins;
+        boolean evicted;
 
-        Piece(int index) {
-            this.index = index;
+        PieceBuffer(ByteBuffer data) {
+            this.data = data;
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return index;
+    /*
+     * LRU cache of the whole pieces read from the disk
+     */
+
+    private class PieceCache extends LinkedHashMap<Integer, PieceBuffer> {
+        private final int capacity;
+
+        PieceCache(int capacity) {
+            super(capacity + 1, 1.0f, true);
+            this.capacity = capacity;
         }
 
         @Override
-        public boolean equals(Object o) {
-            return o instanceof Piece && (o == this || index == ((Piece) o).index);
+        protected boolean removeEldestEntry(Map.Entry<Integer, PieceBuffer> eldest) {
+            if (size() <= capacity)
+                return false;
+            evict(eldest.getValue());
+
+            return true;
         }
     }
 
-    public TorrentInputStream(@NonNull TorrentSession session, @NonNull TorrentStream stream) {
+    /*
+     * Consumes all remaining bytes of the piece data.
+     * transferred is the number of bytes consumed before in the current transfer
+     */
+
+    private interface PieceSink {
+        void write(ByteBuffer src, long transferred) throws IOException;
+    }
+
+    public TorrentInputStream(
+            @NonNull TorrentSession session,
+            @NonNull TorrentStream stream,
+            @NonNull PieceBufferPool bufferPool
+    ) {
+        this(session, stream, bufferPool, DEFAULT_MAX_READ_AHEAD_PIECES);
+    }
+
+    /*
+     * The piece buffers are borrowed from the pool, which is shared by the streams.
+     * maxReadAheadPieces is the upper bound of the read-ahead window,
+     * the actual window adapts to the consumption rate
+     */
+
+    public TorrentInputStream(
+            @NonNull TorrentSession session,
+            @NonNull TorrentStream stream,
+            @NonNull PieceBufferPool bufferPool,
+            int maxReadAheadPieces
+    ) {
         this.session = session;
         this.stream = stream;
+        this.bufferPool = bufferPool;
         TorrentDownload task = session.getTask(stream.torrentId);
         if (task == null)
             throw new NullPointerException("task " + stream.torrentId + " is null");
@@ -107,49 +169,52 @@ public class TorrentInputStream extends InputStream {
         filePos = firstPieceSize - (firstPieceEnd - stream.fileOffset);
         eof = filePos + stream.fileSize;
 
+        readAheadWindow = new ReadAheadWindow(MIN_READ_AHEAD_PIECES, maxReadAheadPieces,
+                MAX_READ_AHEAD_BYTES, stream.pieceLength);
+        /* Pieces ahead, the current piece and the previous one (e.g. for small backward seeks) */
+        cache = new PieceCache(readAheadWindow.getMaxPieces() + 2);
+
         session.addListener(listener);
-        task.setInterestedPieces(stream, stream.firstFilePiece, 1);
+        task.setStreamPosition(this, stream, torrentOffset(filePos), 1);
     }
 
     @Override
     protected void finalize() throws Throwable {
-        synchronized (this) {
-            stopped = true;
-            if (session != null)
-                session.removeListener(listener);
-            session = null;
-            notifyAll();
-        }
+        stop();
 
         super.finalize();
     }
 
-    private synchronized boolean waitForPiece(TorrentDownload task, int pieceIndex) {
-        while (!Thread.currentThread().isInterrupted() && !stopped) {
-            try {
-                if (task.havePiece(pieceIndex))
-                    return true;
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    private synchronized void stop() {
+        if (stopped)
+            return;
+        stopped = true;
+        if (session != null) {
+            session.removeListener(listener);
+            TorrentDownload task = session.getTask(stream.torrentId);
+            if (task != null)
+                task.removeStreamReader(this);
         }
-
-        return false;
+        session = null;
+        /* Return the buffers to the pool, the pinned ones are returned after reading */
+        for (PieceBuffer piece : cache.values())
+            evict(piece);
+        cache.clear();
+        pendingReads.clear();
+        readErrors.clear();
+        notifyAll();
     }
 
-    private synchronized boolean waitForReadPieces() {
-        while (!Thread.currentThread().isInterrupted() && !stopped) {
-            try {
-                if (readSession != null && readSession.countLatch <= 0)
-                    return true;
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    /*
+     * Returns the piece that contains the byte at the specified file position
+     */
+
+    private int pieceAt(long pos) {
+        return stream.firstFilePiece + (int) (pos / stream.pieceLength);
+    }
 
-        return false;
+    private long torrentOffset(long pos) {
+        return (long) stream.firstFilePiece * stream.pieceLength + pos;
     }
 
     /*
@@ -157,98 +222,160 @@ public class TorrentInputStream extends InputStream {
      */
 
     private int filePosToPiecePos(int piece, long pos) {
-        int pieceLocalIndex = piece - stream.firstFilePiece;
-        int pieceSize = (piece == stream.lastFilePiece ?
+        return (int) (pos - (long) (piece - stream.firstFilePiece) * stream.pieceLength);
+    }
+
+    private int pieceSize(int piece) {
+        return (piece == stream.lastFilePiece ?
                 stream.lastFilePieceSize :
                 stream.pieceLength);
-        long pieceEnd = (long) pieceLocalIndex * stream.pieceLength + pieceSize;
+    }
+
+    /*
+     * Must be called with the stream monitor held
+     */
 
-        return pieceSize - (int) (pieceEnd - pos);
+    private void requestRead(TorrentDownload task, int piece) {
+        pendingReads.put(piece, now());
+        /* Async piece reading */
+        task.readPiece(piece);
     }
 
-    private void readFromCache(Piece piece, byte[] b) {
-        System.arraycopy(cacheBuf, piece.readOffset, b,
-                piece.bufIndex, piece.readLength);
+    /*
+     * Request reading of the already downloaded pieces that are not yet
+     * in the cache, up to the read-ahead window after the specified piece
+     */
+
+    private synchronized void readAhead(TorrentDownload task, int lastReadPiece) {
+        int window = readAheadWindow.getSize();
+        for (int p = lastReadPiece + 1; p <= stream.lastFilePiece && p <= lastReadPiece + window; p++) {
+            if (cache.containsKey(p) || pendingReads.containsKey(p))
+                continue;
+            /* Keep reading sequential */
+            if (!task.havePiece(p) || readFailed(p))
+                break;
+            requestRead(task, p);
+        }
     }
 
     /*
-     * Returns byte as an int in the range 0 to 255
+     * Must be called with the stream monitor held
      */
 
-    private int toUnsignedByte(byte b) {
-        return b & 0xff;
+    private void evict(PieceBuffer piece) {
+        piece.evicted = true;
+        if (piece.pins == 0)
+            bufferPool.release(piece.data);
     }
 
-    @Override
-    public int read() throws IOException {
-        lock.lock();
+    private synchronized void unpin(PieceBuffer piece) {
+        if (--piece.pins == 0 && piece.evicted)
+            bufferPool.release(piece.data);
+    }
 
-        try {
-            if (session == null)
-                throw new IOException("Torrent session is null");
+    /*
+     * Wait until the piece is downloaded and read from the disk.
+     * The returned piece is pinned and must be unpinned after reading.
+     * Returns null if the stream is stopped or the thread is interrupted.
+     * Throws IOException if the piece can't be read from the disk.
+     */
 
-            TorrentDownload task = session.getTask(stream.torrentId);
-            if (task == null)
-                throw new IOException("task " + stream.torrentId + " is null");
+    private synchronized PieceBuffer waitForPiece(TorrentDownload task, int piece) throws IOException {
+        while (!Thread.currentThread().isInterrupted() && !stopped) {
+            try {
+                PieceBuffer data = cache.get(piece);
+                if (data != null) {
+                    data.pins++;
+                    return data;
+                }
 
-            /* EOF check */
-            if (filePos == eof) {
-                cacheBuf = null;
-                return EOF;
+                if (readFailed(piece))
+                    throw new IOException("Unable to read piece " + piece + " of torrent " +
+                            stream.torrentId + " after " + MAX_READ_RETRIES + " attempts");
+
+                if (!pendingReads.containsKey(piece) && task.havePiece(piece))
+                    requestRead(task, piece);
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }
 
-            /* Pieces definition that need to be read */
-            int p = stream.bytesToPieceIndex(filePos + 1);
+        return null;
+    }
+
+    /*
+     * Must be called with the stream monitor held
+     */
 
-            task.setInterestedPieces(stream, p, 1);
+    private boolean readFailed(int piece) {
+        Integer errors = readErrors.get(piece);
 
-            readSession = new ReadSession();
-            readSession.piecesForReading = new Piece[1];
-            readSession.buf = new byte[1];
-            readSession.countLatch = 1;
+        return errors != null && errors >= MAX_READ_RETRIES;
+    }
 
-            Piece piece = new Piece(p);
-            piece.readOffset = filePosToPiecePos(p, filePos);
-            piece.readLength = 1;
-            piece.bufIndex = 0;
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
 
-            /* Check cache */
-            if (p == cachePieceIndex) {
-                readFromCache(piece, readSession.buf);
-                filePos++;
+    /*
+     * Returns byte as an int in the range 0 to 255
+     */
 
-                return toUnsignedByte(readSession.buf[0]);
-            }
-            piece.cache = true;
-            readSession.piecesForReading[0] = piece;
+    private int toUnsignedByte(byte b) {
+        return b & 0xff;
+    }
 
-            if (!waitForPiece(task, p))
-                return EOF;
-            /* Async piece reading */
-            task.readPiece(p);
+    @Override
+    public int read() throws IOException {
+        lock.lock();
 
-            if (!waitForReadPieces())
-                return EOF;
-            filePos++;
+        try {
+            int n = read(singleByteBuf, 0, 1);
 
-            return toUnsignedByte(readSession.buf[0]);
+            return n == EOF ? EOF : toUnsignedByte(singleByteBuf[0]);
 
         } finally {
-            readSession = null;
             lock.unlock();
         }
     }
 
     @Override
     public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        else if (len == 0)
+            return 0;
+
+        return (int) transfer((src, transferred) ->
+                src.get(b, off + (int) transferred, src.remaining()), len);
+    }
+
+    /*
+     * Writes up to count bytes from the current position directly from the piece buffers
+     * to the channel, without intermediate copying to the Java heap.
+     * At most one piece length is written per call, so that the pieces are
+     * prioritized gradually. Returns the number of bytes written,
+     * or EOF if the end of the file is reached
+     */
+
+    public long transferTo(@NonNull WritableByteChannel channel, long count) throws IOException {
+        if (count < 0)
+            throw new IllegalArgumentException("count < 0");
+        else if (count == 0)
+            return 0;
+
+        return transfer((src, transferred) -> {
+            while (src.hasRemaining())
+                channel.write(src);
+        }, Math.min(count, stream.pieceLength));
+    }
+
+    private long transfer(PieceSink sink, long len) throws IOException {
         lock.lock();
 
         try {
-            if (off < 0 || len < 0 || len > b.length - off)
-                throw new IndexOutOfBoundsException();
-            else if (len == 0)
-                return 0;
-
+            TorrentSession session = this.session;
             if (session == null)
                 throw new IOException("Torrent session is null");
 
@@ -257,81 +384,69 @@ public class TorrentInputStream extends InputStream {
                 throw new IOException("Task " + stream.torrentId + " is null");
 
             /* EOF check */
-            if (filePos == eof) {
-                cacheBuf = null;
+            if (filePos == eof)
                 return EOF;
-            }
             if (filePos + len > eof)
-                len = (int) (eof - filePos);
-
+                len = eof - filePos;
 
             /* Pieces definition that need to be read */
-            int firstPiece = stream.bytesToPieceIndex(filePos + 1);
-            int lastPiece = stream.bytesToPieceIndex(filePos + len);
-            int numPieces = lastPiece - firstPiece + 1;
-
-            task.setInterestedPieces(stream, firstPiece, numPieces);
-
-            readSession = new ReadSession();
-            readSession.piecesForReading = new Piece[numPieces];
-            readSession.buf = b;
-            readSession.countLatch = numPieces;
-
-            int bufIndex = off;
-            for (int p = firstPiece, i = 0; p <= lastPiece; p++, i++) {
-                int pieceSize;
-                if (p == stream.lastFilePiece)
-                    pieceSize = stream.lastFilePieceSize;
-                else
-                    pieceSize = stream.pieceLength;
-
-                Piece piece = new Piece(p);
-                piece.bufIndex = bufIndex;
-                piece.cache = p == lastPiece;
-
-                if (p == firstPiece)
-                    piece.readOffset = filePosToPiecePos(firstPiece, filePos);
-                else
-                    piece.readOffset = 0;
-
-                if (p == lastPiece && firstPiece != lastPiece) {
-                    piece.readLength = filePosToPiecePos(lastPiece, filePos + len);
-                } else {
-                    if (piece.readOffset + len > pieceSize)
-                        piece.readLength = pieceSize - piece.readOffset;
-                    else
-                        piece.readLength = len;
+            int firstPiece = pieceAt(filePos);
+            int lastPiece = pieceAt(filePos + len - 1);
+
+            task.setStreamPosition(this, stream, torrentOffset(filePos), len);
+
+            /*
+             * Request the pieces at once, so they are read in parallel.
+             * Don't request more than the cache can hold, the rest
+             * are requested as the previous ones are consumed
+             */
+            synchronized (this) {
+                int maxPieces = readAheadWindow.getMaxPieces();
+                for (int p = firstPiece; p <= lastPiece && p < firstPiece + maxPieces; p++) {
+                    if (!cache.containsKey(p) && !pendingReads.containsKey(p) &&
+                            !readFailed(p) && task.havePiece(p))
+                        requestRead(task, p);
                 }
-                bufIndex += piece.readLength;
-
-                /* Check cache */
-                if (p == cachePieceIndex) {
-                    readFromCache(piece, b);
-                    /* Exit if there are no other pieces except cached */
-                    if (numPieces == 1) {
-                        filePos += len;
+            }
 
-                        return len;
-                    }
+            long transferred = 0;
+            for (int p = firstPiece; p <= lastPiece; p++) {
+                PieceBuffer piece;
+                try {
+                    piece = waitForPiece(task, p);
+                } catch (IOException e) {
+                    /* Return what has been read, the next call will fail */
+                    if (transferred > 0)
+                        return transferred;
+                    throw e;
                 }
+                if (piece == null)
+                    return (transferred > 0 ? transferred : EOF);
+
+                int readLength;
+                try {
+                    int readOffset = filePosToPiecePos(p, filePos);
+                    readLength = (int) Math.min(len - transferred, piece.data.limit() - readOffset);
+                    ByteBuffer src = piece.data.duplicate();
+                    src.position(readOffset);
+                    src.limit(readOffset + readLength);
+                    sink.write(src, transferred);
+                } finally {
+                    unpin(piece);
+                }
+                transferred += readLength;
+                filePos += readLength;
 
-                readSession.piecesForReading[i] = piece;
-
-                if (!waitForPiece(task, p))
-                    return EOF;
-                /* Async pieces reading */
-                task.readPiece(p);
+                synchronized (this) {
+                    readAheadWindow.onConsumed(p, readLength, now());
+                }
             }
 
-            /* Wait for pieces reading */
-            if (!waitForReadPieces())
-                return EOF;
-            filePos += len;
+            readAhead(task, lastPiece);
 
-            return len;
+            return transferred;
 
         } finally {
-            readSession = null;
             lock.unlock();
         }
     }
@@ -343,13 +458,7 @@ public class TorrentInputStream extends InputStream {
 
     @Override
     public void close() throws IOException {
-        synchronized (this) {
-            stopped = true;
-            if (session != null)
-                session.removeListener(listener);
-            session = null;
-            notifyAll();
-        }
+        stop();
 
         super.close();
     }
@@ -370,10 +479,11 @@ public class TorrentInputStream extends InputStream {
 
             filePos += n;
 
-            if (session != null) {
+            TorrentSession session = this.session;
+            if (session != null && filePos < eof) {
                 TorrentDownload task = session.getTask(stream.torrentId);
                 if (task != null)
-                    task.setInterestedPieces(stream, stream.bytesToPieceIndex(filePos + 1), 1);
+                    task.setStreamPosition(this, stream, torrentOffset(filePos), 1);
             }
 
             return n;
@@ -406,37 +516,35 @@ public class TorrentInputStream extends InputStream {
     }
 
     private synchronized void readPiece(ReadPieceInfo info) {
-        if (readSession == null)
+        Long requestTime = pendingReads.remove(info.piece);
+        if (requestTime == null || stopped)
             return;
 
-        Piece piece = null;
-        for (Piece p : readSession.piecesForReading) {
-            if (p.index == info.piece) {
-                piece = p;
-                break;
-            }
-        }
-        if (readSession.countLatch > 0 && piece != null && readSession.buf != null) {
-            try {
-                if (info.err != null) {
-                    TorrentDownload task = session.getTask(stream.torrentId);
-                    if (task != null)
-                        task.resume();
-                    return;
-                }
-                Pointer ptr = new Pointer(info.bufferPtr);
-                if (piece.cache) {
-                    cacheBuf = new byte[info.size];
-                    ptr.read(0, cacheBuf, 0, info.size);
-                    cachePieceIndex = piece.index;
-                    readFromCache(piece, readSession.buf);
-                } else {
-                    ptr.read(piece.readOffset, readSession.buf, piece.bufIndex, piece.readLength);
-                }
-            } finally {
-                --readSession.countLatch;
-                notifyAll();
+        try {
+            if (info.err != null) {
+                /*
+                 * The piece will be requested again by the reader,
+                 * until the number of attempts is exhausted
+                 */
+                readErrors.merge(info.piece, 1, Integer::sum);
+                TorrentDownload task = (session == null ? null : session.getTask(stream.torrentId));
+                if (task != null)
+                    task.resume();
+                return;
             }
+            readErrors.remove(info.piece);
+            /* The buffer is owned by the alert, so it must be copied immediately */
+            int size = Math.min(info.size, pieceSize(info.piece));
+            ByteBuffer data = bufferPool.acquire(stream.pieceLength, size);
+            data.put(new Pointer(info.bufferPtr).getByteBuffer(0, size));
+            data.flip();
+            PieceBuffer prev = cache.put(info.piece, new PieceBuffer(data));
+            if (prev != null)
+                evict(prev);
+            readAheadWindow.onPieceRead(now() - requestTime);
+
+        } finally {
+            notifyAll();
         }
     }
-}
\ No newline at end of file
+}
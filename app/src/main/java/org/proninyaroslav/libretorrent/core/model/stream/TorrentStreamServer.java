@@ -36,12 +36,19 @@ import org.nanohttpd.NanoHTTPD;
 import org.proninyaroslav.libretorrent.core.model.TorrentEngine;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /*
  * The server that allows to stream selected file from a torrent and to which a specific address is assigned.
@@ -62,16 +69,67 @@ public class TorrentStreamServer extends NanoHTTPD {
         DLNA_FILE_TYPES.put("mkv", new DLNAFileType("mkv", "video/x-matroska", "DLNA.ORG_PN=AVC_MKV_MP_HD_AC3;DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000", "Streaming"));
     }
 
-    private TorrentEngine engine;
+    private static final int MAX_WORKER_THREADS = 16;
+    private static final int MAX_QUEUED_CONNECTIONS = 64;
+    static final int MAX_STREAMS_PER_TORRENT = 8;
+    /* How long the request waits for a free stream slot of the torrent */
+    private static final long STREAM_SLOT_TIMEOUT = 10; /* sec */
+
+    private static final Response.IStatus SERVICE_UNAVAILABLE = new Response.IStatus() {
+        @Override
+        public String getDescription() {
+            return "503 Service Unavailable";
+        }
+
+        @Override
+        public int getRequestStatus() {
+            return 503;
+        }
+    };
+
+    /*
+     * Provides the torrent streams to the server
+     */
+
+    interface StreamSource {
+        TorrentStream getStream(@NonNull String torrentId, int fileIndex);
+
+        TorrentInputStream openStream(@NonNull TorrentStream stream, @NonNull PieceBufferPool bufferPool);
+    }
+
+    private StreamSource source;
+    private final PooledAsyncRunner workerPool;
+    /* Shared by all streams of the server */
+    private final PieceBufferPool bufferPool = new PieceBufferPool();
+    private final ConcurrentHashMap<String, StreamSlots> torrentStreamSlots = new ConcurrentHashMap<>();
 
     public TorrentStreamServer(@NonNull String host, int port) {
         super(host, port);
+
+        workerPool = new PooledAsyncRunner(MAX_WORKER_THREADS, MAX_QUEUED_CONNECTIONS);
+        setAsyncRunner(workerPool);
     }
 
     public void start(@NonNull Context appContext) throws IOException {
         Log.i(TAG, "Start " + TAG);
 
-        engine = TorrentEngine.getInstance(appContext);
+        TorrentEngine engine = TorrentEngine.getInstance(appContext);
+        start(new StreamSource() {
+            @Override
+            public TorrentStream getStream(@NonNull String torrentId, int fileIndex) {
+                return engine.getStream(torrentId, fileIndex);
+            }
+
+            @Override
+            public TorrentInputStream openStream(@NonNull TorrentStream stream,
+                                                 @NonNull PieceBufferPool bufferPool) {
+                return engine.getTorrentInputStream(stream, bufferPool);
+            }
+        });
+    }
+
+    void start(@NonNull StreamSource source) throws IOException {
+        this.source = source;
 
         super.start();
     }
@@ -79,6 +137,8 @@ public class TorrentStreamServer extends NanoHTTPD {
     @Override
     public void stop() {
         super.stop();
+        workerPool.shutdown();
+        bufferPool.clear();
 
         Log.i(TAG, "Stop " + TAG);
     }
@@ -117,7 +177,8 @@ public class TorrentStreamServer extends NanoHTTPD {
     }
 
     public Response handleTorrent(IHTTPSession httpSession) {
-        if (engine == null)
+        StreamSource source = this.source;
+        if (source == null)
             return newFixedLengthResponse(NOT_FOUND, "", "");
 
         if (!httpSession.getUri().equals("/stream"))
@@ -133,7 +194,7 @@ public class TorrentStreamServer extends NanoHTTPD {
         TorrentStream stream;
         try {
             fileIndex = Integer.parseInt(Objects.requireNonNull(params.get("file")));
-            stream = engine.getStream(torrentId, fileIndex);
+            stream = source.getStream(torrentId, fileIndex);
             if (stream == null)
                 return newFixedLengthResponse(NOT_FOUND, "", "");
 
@@ -197,10 +258,19 @@ public class TorrentStreamServer extends NanoHTTPD {
                     if (newLen < 0)
                         newLen = 0;
 
-                    TorrentInputStream is = engine.getTorrentInputStream(stream);
-                    is.skip(startFrom);
+                    Runnable releaseSlot = acquireStreamSlot(torrentId);
+                    if (releaseSlot == null)
+                        return newFixedLengthResponse(SERVICE_UNAVAILABLE, NanoHTTPD.MIME_PLAINTEXT, "");
+                    TorrentInputStream is;
+                    try {
+                        is = source.openStream(stream, bufferPool);
+                        is.skip(startFrom);
+                    } catch (Throwable e) {
+                        releaseSlot.run();
+                        throw e;
+                    }
 
-                    res = newFixedLengthResponse(PARTIAL_CONTENT, MIME_OCTET_STREAM, is, newLen);
+                    res = new TorrentStreamResponse(PARTIAL_CONTENT, MIME_OCTET_STREAM, is, newLen, releaseSlot);
                     res.addHeader("Accept-Ranges", "bytes");
                     res.addHeader("Content-Length", "" + newLen);
                     res.addHeader("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + stream.fileSize);
@@ -234,8 +304,18 @@ public class TorrentStreamServer extends NanoHTTPD {
                     res.addHeader("ETag", etag);
 
                 } else {
-                    TorrentInputStream is = engine.getTorrentInputStream(stream);
-                    res = newFixedLengthResponse(OK, MIME_OCTET_STREAM, is, stream.fileSize);
+                    Runnable releaseSlot = acquireStreamSlot(torrentId);
+                    if (releaseSlot == null)
+                        return newFixedLengthResponse(SERVICE_UNAVAILABLE, NanoHTTPD.MIME_PLAINTEXT, "");
+                    TorrentInputStream is;
+                    try {
+                        is = source.openStream(stream, bufferPool);
+                    } catch (Throwable e) {
+                        releaseSlot.run();
+                        throw e;
+                    }
+
+                    res = new TorrentStreamResponse(OK, MIME_OCTET_STREAM, is, stream.fileSize, releaseSlot);
                     res.addHeader("Accept-Ranges", "bytes");
                     res.addHeader("Content-Length", "" + stream.fileSize);
                     res.addHeader("ETag", etag);
@@ -251,6 +331,95 @@ public class TorrentStreamServer extends NanoHTTPD {
         }
     }
 
+    /*
+     * Limits the number of simultaneous streams of the torrent, so that
+     * a lot of abandoned range requests (e.g. while seeking) don't compete
+     * for the same pieces. Waits for a free slot and returns the callback
+     * that releases it, or null if the waiting timed out
+     */
+
+    private Runnable acquireStreamSlot(String torrentId) {
+        StreamSlots slots = torrentStreamSlots.compute(torrentId, (id, prev) -> {
+            StreamSlots s = (prev == null ? new StreamSlots() : prev);
+            s.users++;
+            return s;
+        });
+        try {
+            if (!slots.semaphore.tryAcquire(STREAM_SLOT_TIMEOUT, TimeUnit.SECONDS)) {
+                leaveStreamSlots(torrentId);
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            leaveStreamSlots(torrentId);
+            return null;
+        }
+
+        return () -> {
+            slots.semaphore.release();
+            leaveStreamSlots(torrentId);
+        };
+    }
+
+    /*
+     * Removes the slots of the torrent when nobody holds or waits for them
+     */
+
+    private void leaveStreamSlots(String torrentId) {
+        torrentStreamSlots.computeIfPresent(torrentId,
+                (id, slots) -> (--slots.users == 0 ? null : slots));
+    }
+
+    private static class StreamSlots {
+        final Semaphore semaphore = new Semaphore(MAX_STREAMS_PER_TORRENT, true);
+        /* Holders and waiters of the slots, guarded by the map entry */
+        int users;
+    }
+
+    /*
+     * Sends the pieces straight from the stream buffers to the socket channel,
+     * bypassing the intermediate buffer of the default response.
+     * The stream slot is released when the response is closed.
+     */
+
+    private static class TorrentStreamResponse extends Response {
+        private final TorrentInputStream stream;
+        private final AtomicReference<Runnable> releaseSlot;
+
+        TorrentStreamResponse(IStatus status, String mimeType,
+                              @NonNull TorrentInputStream stream, long totalBytes,
+                              @NonNull Runnable releaseSlot) {
+            super(status, mimeType, stream, totalBytes);
+            this.stream = stream;
+            this.releaseSlot = new AtomicReference<>(releaseSlot);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                Runnable release = releaseSlot.getAndSet(null);
+                if (release != null)
+                    release.run();
+            }
+        }
+
+        @Override
+        protected void sendBody(OutputStream outputStream, long pending) throws IOException {
+            boolean sendEverything = pending == -1;
+            WritableByteChannel channel = Channels.newChannel(outputStream);
+            while (pending > 0 || sendEverything) {
+                long count = sendEverything ? Long.MAX_VALUE : pending;
+                long written = stream.transferTo(channel, count);
+                if (written <= 0)
+                    break;
+                if (!sendEverything)
+                    pending -= written;
+            }
+        }
+    }
+
     record DLNAFileType(String extension, String mimeType, String dlnaContentFeatures,
                         String dlnaTransferMode) {
 
@@ -50,7 +50,8 @@ class DatabaseMigration
                 MIGRATION_5_6,
                 MIGRATION_6_7,
                 MIGRATION_7_8,
-                MIGRATION_8_9
+                MIGRATION_8_9,
+                MIGRATION_9_10
         };
     }
 
@@ -113,6 +114,14 @@ class DatabaseMigration
         }
     };
 
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `FeedChannel` ADD COLUMN `etag` TEXT");
+            database.execSQL("ALTER TABLE `FeedChannel` ADD COLUMN `lastModified` TEXT");
+        }
+    };
+
     /*
      * Migration from old database (ver. 4) to Room (ver. 5).
      */
@@ -0,0 +1,649 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.storage;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/*
+ * Stores the fast resume data outside the database, in the append-only
+ * segment file. Each record is [magic, id length, data length, CRC32]
+ * followed by the torrent id and the data. Removing is a record without
+ * data (tombstone). The index of the latest records is kept in memory
+ * and rebuilt by scanning the file on open; a torn record at the end
+ * of the file (e.g. after a crash) is truncated, a damaged record in the
+ * middle is skipped up to the next valid one. The file is read via mmap
+ * in bounded windows, falling back to the regular reads. When the
+ * overwritten and removed data takes more space than the live data,
+ * the segment is compacted in the background.
+ * Thread-safe.
+ */
+
+public class FastResumeStore {
+    private static final String TAG = FastResumeStore.class.getSimpleName();
+
+    static final String SEGMENT_FILE = "fast_resume.seg";
+    private static final String COMPACT_FILE = "fast_resume.seg.tmp";
+    private static final int MAGIC = 0x4C524652;
+    static final int HEADER_SIZE = 16;
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_ID_LENGTH = 1024;
+    static final int DEFAULT_MAP_WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final int CRC_BUFFER_SIZE = 64 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    static final long DEFAULT_COMPACT_MIN_DEAD_SIZE = 8 * 1024 * 1024;
+
+    private record Location(long offset, int idLength, int dataLength) {
+        long recordSize() {
+            return HEADER_SIZE + idLength + Math.max(dataLength, 0);
+        }
+
+        long dataOffset() {
+            return offset + HEADER_SIZE + idLength;
+        }
+    }
+
+    private record Record(String id, Location location) {
+    }
+
+    private final File dir;
+    private final File segmentFile;
+    private final long compactMinDeadSize;
+    private final int mapWindowSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    /* Guarded by lock */
+    private HashMap<String, Location> index = new HashMap<>();
+    private FileChannel channel;
+    /* Mapped window of the file, starting at mapOffset */
+    private MappedByteBuffer map;
+    private long mapOffset;
+    private boolean mapFailed;
+    /* End of the valid records */
+    private long size;
+    private long liveSize;
+    private boolean compacting;
+    private ExecutorService compactExec;
+
+    public FastResumeStore(@NonNull File dir) {
+        this(dir, DEFAULT_COMPACT_MIN_DEAD_SIZE);
+    }
+
+    FastResumeStore(@NonNull File dir, long compactMinDeadSize) {
+        this(dir, compactMinDeadSize, DEFAULT_MAP_WINDOW_SIZE);
+    }
+
+    FastResumeStore(@NonNull File dir, long compactMinDeadSize, int mapWindowSize) {
+        this.dir = dir;
+        this.segmentFile = new File(dir, SEGMENT_FILE);
+        this.compactMinDeadSize = compactMinDeadSize;
+        this.mapWindowSize = mapWindowSize;
+    }
+
+    public void open() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                return;
+            }
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+            /* Unfinished compaction */
+            File compactFile = new File(dir, COMPACT_FILE);
+            if (compactFile.exists() && !compactFile.delete()) {
+                Log.w(TAG, "Unable to delete " + compactFile);
+            }
+
+            channel = openChannel(segmentFile);
+            mapFailed = false;
+            scan();
+
+        } finally {
+            lock.unlock();
+        }
+        maybeCompact();
+    }
+
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (compactExec != null) {
+                compactExec.shutdown();
+                compactExec = null;
+            }
+            if (channel != null) {
+                channel.close();
+            }
+            channel = null;
+            map = null;
+            index.clear();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * The data is on the disk on return
+     */
+
+    public void putAll(@NonNull List<FastResume> fastResumes) throws IOException {
+        if (fastResumes.isEmpty()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            checkOpen();
+            for (FastResume fastResume : fastResumes) {
+                append(fastResume.torrentId, fastResume.data);
+            }
+            channel.force(false);
+
+        } finally {
+            lock.unlock();
+        }
+        maybeCompact();
+    }
+
+    @Nullable
+    public FastResume get(@NonNull String torrentId) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            Location location = index.get(torrentId);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer buf = read(location.dataOffset(), location.dataLength);
+            byte[] data = new byte[location.dataLength];
+            buf.get(data);
+
+            return new FastResume(torrentId, data);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NonNull
+    public List<FastResume> get(@NonNull List<String> torrentIds) throws IOException {
+        var fastResumes = new ArrayList<FastResume>(torrentIds.size());
+        for (String id : torrentIds) {
+            FastResume fastResume = get(id);
+            if (fastResume != null) {
+                fastResumes.add(fastResume);
+            }
+        }
+
+        return fastResumes;
+    }
+
+    public void remove(@NonNull String torrentId) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            if (!index.containsKey(torrentId)) {
+                return;
+            }
+            append(torrentId, null);
+            channel.force(false);
+
+        } finally {
+            lock.unlock();
+        }
+        maybeCompact();
+    }
+
+    /*
+     * Removes the data of all torrents except the given
+     */
+
+    public void retainAll(@NonNull Collection<String> torrentIds) throws IOException {
+        var retained = new HashSet<>(torrentIds);
+        lock.lock();
+        try {
+            checkOpen();
+            var removed = new ArrayList<String>();
+            for (String id : index.keySet()) {
+                if (!retained.contains(id)) {
+                    removed.add(id);
+                }
+            }
+            if (removed.isEmpty()) {
+                return;
+            }
+            for (String id : removed) {
+                append(id, null);
+            }
+            channel.force(false);
+
+        } finally {
+            lock.unlock();
+        }
+        maybeCompact();
+    }
+
+    public int getCount() {
+        lock.lock();
+        try {
+            return index.size();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getFileSize() {
+        lock.lock();
+        try {
+            return size;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getLiveSize() {
+        lock.lock();
+        try {
+            return liveSize;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Rewrites the live records to the new segment. The writes aren't blocked
+     * while the records are copied, the records added in the meantime
+     * are appended to the new segment before it replaces the old one
+     */
+
+    void compact() throws IOException {
+        var snapshot = new ArrayList<Record>();
+        long snapshotEnd;
+        FileChannel src;
+        lock.lock();
+        try {
+            checkOpen();
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+            for (Map.Entry<String, Location> e : index.entrySet()) {
+                snapshot.add(new Record(e.getKey(), e.getValue()));
+            }
+            snapshotEnd = size;
+            src = channel;
+
+        } finally {
+            lock.unlock();
+        }
+
+        File compactFile = new File(dir, COMPACT_FILE);
+        try (FileChannel dst = openChannel(compactFile)) {
+            dst.truncate(0);
+            snapshot.sort(Comparator.comparingLong((r) -> r.location.offset));
+            var newIndex = new HashMap<String, Location>(snapshot.size() * 2);
+            long dstPos = 0;
+            for (Record record : snapshot) {
+                Location location = record.location;
+                transfer(src, location.offset, location.recordSize(), dst);
+                newIndex.put(record.id, new Location(dstPos, location.idLength, location.dataLength));
+                dstPos += location.recordSize();
+            }
+
+            lock.lock();
+            try {
+                if (channel != src) {
+                    /* Closed */
+                    return;
+                }
+                /* Records added during the compaction */
+                long tailSize = size - snapshotEnd;
+                transfer(channel, snapshotEnd, tailSize, dst);
+                for (long pos = snapshotEnd; pos < size; ) {
+                    Location location = readLocation(pos);
+                    String id = readId(location);
+                    if (location.dataLength == TOMBSTONE) {
+                        newIndex.remove(id);
+                    } else {
+                        newIndex.put(id, new Location(dstPos + pos - snapshotEnd,
+                                location.idLength, location.dataLength));
+                    }
+                    pos += location.recordSize();
+                }
+                dstPos += tailSize;
+                dst.force(true);
+
+                channel.close();
+                map = null;
+                boolean replaced = compactFile.renameTo(segmentFile);
+                channel = openChannel(segmentFile);
+                if (!replaced) {
+                    throw new IOException("Unable to replace " + segmentFile);
+                }
+                index = newIndex;
+                size = dstPos;
+                liveSize = 0;
+                for (Location location : newIndex.values()) {
+                    liveSize += location.recordSize();
+                }
+
+            } finally {
+                lock.unlock();
+            }
+
+        } finally {
+            if (compactFile.exists() && !compactFile.delete()) {
+                Log.w(TAG, "Unable to delete " + compactFile);
+            }
+            lock.lock();
+            try {
+                compacting = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void maybeCompact() {
+        lock.lock();
+        try {
+            if (channel == null || compacting || !needsCompaction()) {
+                return;
+            }
+            if (compactExec == null) {
+                compactExec = Executors.newSingleThreadExecutor((r) -> {
+                    var t = new Thread(r, "FastResumeCompaction");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            compactExec.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to compact fast resume data", e);
+                }
+            });
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean needsCompaction() {
+        long deadSize = size - liveSize;
+
+        return deadSize >= compactMinDeadSize && deadSize > liveSize;
+    }
+
+    private void checkOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("Fast resume store is not open");
+        }
+    }
+
+    private static FileChannel openChannel(File file) throws IOException {
+        return new RandomAccessFile(file, "rw").getChannel();
+    }
+
+    private void scan() throws IOException {
+        long fileSize = channel.size();
+        long pos = 0;
+        while (pos + HEADER_SIZE <= fileSize) {
+            Location location = readRecord(pos, fileSize);
+            if (location == null) {
+                long next = findNextRecord(pos + 1, fileSize);
+                if (next < 0) {
+                    /* Nothing valid after it, the torn tail */
+                    break;
+                }
+                /* Keep the previous record of the torrent, if any */
+                Log.w(TAG, "Skip corrupted data at " + pos + ", next record at " + next);
+                pos = next;
+                continue;
+            }
+
+            String id = readId(location);
+            Location prev = (location.dataLength == TOMBSTONE ?
+                    index.remove(id) :
+                    index.put(id, location));
+            if (prev != null) {
+                liveSize -= prev.recordSize();
+            }
+            if (location.dataLength != TOMBSTONE) {
+                liveSize += location.recordSize();
+            }
+            pos += location.recordSize();
+        }
+        if (pos < fileSize) {
+            Log.w(TAG, "Truncate the torn tail at " + pos + ", file size " + fileSize);
+            channel.truncate(pos);
+            map = null;
+        }
+        size = pos;
+    }
+
+    /*
+     * Returns null if there is no complete record with the valid checksum at the position
+     */
+
+    @Nullable
+    private Location readRecord(long pos, long fileSize) throws IOException {
+        if (pos + HEADER_SIZE > fileSize) {
+            return null;
+        }
+        ByteBuffer header = read(pos, HEADER_SIZE);
+        int magic = header.getInt();
+        int idLength = header.getInt();
+        int dataLength = header.getInt();
+        int crc = header.getInt();
+        if (magic != MAGIC || idLength <= 0 || idLength > MAX_ID_LENGTH ||
+                dataLength < TOMBSTONE) {
+            return null;
+        }
+        var location = new Location(pos, idLength, dataLength);
+        if (pos + location.recordSize() > fileSize) {
+            return null;
+        }
+        ByteBuffer payload = read(pos + HEADER_SIZE, (int) (location.recordSize() - HEADER_SIZE));
+
+        return (crc(payload) == crc ? location : null);
+    }
+
+    /*
+     * Returns the position of the first valid record starting from the given
+     * position, or -1 if there is none
+     */
+
+    private long findNextRecord(long from, long fileSize) throws IOException {
+        long pos = from;
+        while (pos + HEADER_SIZE <= fileSize) {
+            int length = (int) Math.min(SCAN_BUFFER_SIZE, fileSize - pos);
+            ByteBuffer buf = read(pos, length);
+            /* A magic split between the chunks is found in the next one */
+            for (int i = 0; i + Integer.BYTES <= length; i++) {
+                if (buf.getInt(i) == MAGIC && readRecord(pos + i, fileSize) != null) {
+                    return pos + i;
+                }
+            }
+            pos += length - (Integer.BYTES - 1);
+        }
+
+        return -1;
+    }
+
+    private void append(String id, byte[] data) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Too long id: " + id);
+        }
+        int dataLength = (data == null ? TOMBSTONE : data.length);
+        var crc = new CRC32();
+        crc.update(idBytes);
+        if (data != null) {
+            crc.update(data);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(idBytes.length)
+                .putInt(dataLength)
+                .putInt((int) crc.getValue())
+                .flip();
+        ByteBuffer[] bufs = (data == null ?
+                new ByteBuffer[]{header, ByteBuffer.wrap(idBytes)} :
+                new ByteBuffer[]{header, ByteBuffer.wrap(idBytes), ByteBuffer.wrap(data)});
+
+        var location = new Location(size, idBytes.length, dataLength);
+        try {
+            channel.position(size);
+            long remaining = location.recordSize();
+            while (remaining > 0) {
+                remaining -= channel.write(bufs);
+            }
+        } catch (IOException e) {
+            /* Don't leave the partial record */
+            channel.truncate(size);
+            throw e;
+        }
+        size += location.recordSize();
+
+        Location prev = (data == null ? index.remove(id) : index.put(id, location));
+        if (prev != null) {
+            liveSize -= prev.recordSize();
+        }
+        if (data != null) {
+            liveSize += location.recordSize();
+        }
+    }
+
+    private Location readLocation(long pos) throws IOException {
+        ByteBuffer header = read(pos, HEADER_SIZE);
+        header.getInt();
+
+        return new Location(pos, header.getInt(), header.getInt());
+    }
+
+    private String readId(Location location) throws IOException {
+        ByteBuffer buf = read(location.offset + HEADER_SIZE, location.idLength);
+        byte[] id = new byte[location.idLength];
+        buf.get(id);
+
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Reads from the mapped window of the file. The window is moved when the
+     * range is outside of it; the ranges larger than the window and all reads
+     * after a failed mapping go through the channel
+     */
+
+    private ByteBuffer read(long pos, int length) throws IOException {
+        long end = pos + length;
+        if (!mapFailed && length <= mapWindowSize) {
+            if (map == null || pos < mapOffset || end > mapOffset + map.capacity()) {
+                map = null;
+                long windowSize = Math.min(channel.size() - pos, mapWindowSize);
+                if (windowSize >= length) {
+                    try {
+                        map = channel.map(FileChannel.MapMode.READ_ONLY, pos, windowSize);
+                        mapOffset = pos;
+                    } catch (IOException e) {
+                        Log.w(TAG, "Unable to map " + segmentFile + ", use the regular reads", e);
+                        mapFailed = true;
+                    }
+                }
+            }
+            if (map != null) {
+                ByteBuffer buf = map.duplicate();
+                buf.limit((int) (end - mapOffset));
+                buf.position((int) (pos - mapOffset));
+
+                return buf.slice();
+            }
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buf.flip();
+
+        return buf;
+    }
+
+    private static int crc(ByteBuffer buf) {
+        var crc = new CRC32();
+        if (buf.hasArray()) {
+            crc.update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        } else {
+            byte[] chunk = new byte[Math.min(buf.remaining(), CRC_BUFFER_SIZE)];
+            while (buf.hasRemaining()) {
+                int len = Math.min(buf.remaining(), chunk.length);
+                buf.get(chunk, 0, len);
+                crc.update(chunk, 0, len);
+            }
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static void transfer(FileChannel src, long pos, long count, FileChannel dst)
+            throws IOException {
+        while (count > 0) {
+            long n = src.transferTo(pos, count, dst);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            pos += n;
+            count -= n;
+        }
+    }
+}
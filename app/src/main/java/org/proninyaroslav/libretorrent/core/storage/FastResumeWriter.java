@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.storage;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Write-behind store of the fast resume data.
+ * The data is written in the background, a batch per transaction.
+ * Several saves of the same torrent that are waiting for writing
+ * are coalesced into the last one. Use flush() to make sure that
+ * everything that was put before is written, e.g. before stopping.
+ */
+
+public class FastResumeWriter {
+    private static final String TAG = FastResumeWriter.class.getSimpleName();
+
+    static final int DEFAULT_BATCH_SIZE = 256;
+    /* How long to wait for other saves before writing */
+    static final long DEFAULT_COALESCE_DELAY = 1000; /* ms */
+
+    public interface Storage {
+        /*
+         * Writes the data in a single transaction
+         */
+
+        void addAll(@NonNull List<FastResume> fastResumes) throws Exception;
+
+        void add(@NonNull FastResume fastResume) throws Exception;
+    }
+
+    private static class PendingData {
+        byte[] data;
+        /* Sequence number of the oldest coalesced save */
+        final long seq;
+
+        PendingData(byte[] data, long seq) {
+            this.data = data;
+            this.seq = seq;
+        }
+    }
+
+    private final Storage storage;
+    private final int batchSize;
+    private final long coalesceDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final LinkedHashMap<String, PendingData> pending = new LinkedHashMap<>();
+    private final AtomicReference<Thread> writerThread = new AtomicReference<>();
+    /* Guarded by lock */
+    private long putSeq;
+    /* All saves with the lower or equal sequence number are written */
+    private long writtenSeq;
+    /* The oldest save in the batch that is being written */
+    private long writingMinSeq = Long.MAX_VALUE;
+    private int flushWaiters;
+
+    public FastResumeWriter(@NonNull TorrentRepository repo) {
+        this(new Storage() {
+            @Override
+            public void addAll(@NonNull List<FastResume> fastResumes) throws IOException {
+                repo.addFastResumes(fastResumes);
+            }
+
+            @Override
+            public void add(@NonNull FastResume fastResume) throws IOException {
+                repo.addFastResume(fastResume);
+            }
+        }, DEFAULT_BATCH_SIZE, DEFAULT_COALESCE_DELAY);
+    }
+
+    FastResumeWriter(@NonNull Storage storage, int batchSize, long coalesceDelay) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+
+        this.storage = storage;
+        this.batchSize = batchSize;
+        this.coalesceDelayNanos = TimeUnit.MILLISECONDS.toNanos(coalesceDelay);
+    }
+
+    /*
+     * Doesn't block, the previous data of the torrent
+     * is replaced if it hasn't been written yet
+     */
+
+    public void put(@NonNull String torrentId, @NonNull byte[] data) {
+        startWriterThread();
+
+        lock.lock();
+        try {
+            long seq = ++putSeq;
+            PendingData pendingData = pending.get(torrentId);
+            if (pendingData == null) {
+                pending.put(torrentId, new PendingData(data, seq));
+            } else {
+                pendingData.data = data;
+            }
+            hasPending.signal();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Drops the data of the torrent that hasn't been written yet, e.g. if it's deleted
+     */
+
+    public void discard(@NonNull String torrentId) {
+        lock.lock();
+        try {
+            if (pending.remove(torrentId) != null) {
+                updateWrittenSeq();
+            }
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Blocks until all the data that was put before the call is written
+     */
+
+    public void flush() throws InterruptedException {
+        lock.lock();
+        try {
+            long target = putSeq;
+            if (writtenSeq >= target) {
+                return;
+            }
+            flushWaiters++;
+            try {
+                hasPending.signal();
+                while (writtenSeq < target) {
+                    written.await();
+                }
+            } finally {
+                flushWaiters--;
+            }
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumPending() {
+        lock.lock();
+        try {
+            return pending.size();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startWriterThread() {
+        if (writerThread.get() != null) {
+            return;
+        }
+
+        var t = new Thread(this::runWriter, "FastResumeWriter");
+        t.setDaemon(true);
+        if (writerThread.compareAndSet(null, t)) {
+            t.start();
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<FastResume> batch = takeBatch();
+                write(batch);
+
+                lock.lock();
+                try {
+                    writingMinSeq = Long.MAX_VALUE;
+                    updateWrittenSeq();
+                    written.signalAll();
+
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writerThread.set(null);
+        }
+    }
+
+    private List<FastResume> takeBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                hasPending.await();
+            }
+            /* Wait for other saves, unless someone is waiting for the flush */
+            long remaining = coalesceDelayNanos;
+            while (flushWaiters == 0 && pending.size() < batchSize && remaining > 0) {
+                remaining = hasPending.awaitNanos(remaining);
+            }
+
+            var batch = new ArrayList<FastResume>(Math.min(batchSize, pending.size()));
+            Iterator<Map.Entry<String, PendingData>> it = pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < batchSize) {
+                var e = it.next();
+                batch.add(new FastResume(e.getKey(), e.getValue().data));
+                writingMinSeq = Math.min(writingMinSeq, e.getValue().seq);
+                it.remove();
+            }
+
+            return batch;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<FastResume> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            storage.addAll(batch);
+
+        } catch (Exception batchError) {
+            /*
+             * E.g. the torrent was deleted before its data was written,
+             * don't lose the data of the other torrents
+             */
+            for (FastResume fastResume : batch) {
+                try {
+                    storage.add(fastResume);
+
+                } catch (Exception e) {
+                    Log.e(TAG, "Unable to save fast resume data of " + fastResume.torrentId, e);
+                }
+            }
+        }
+    }
+
+    private void updateWrittenSeq() {
+        long minSeq = Math.min(putSeq + 1, writingMinSeq);
+        for (PendingData pendingData : pending.values()) {
+            minSeq = Math.min(minSeq, pendingData.seq);
+        }
+        writtenSeq = minSeq - 1;
+    }
+}
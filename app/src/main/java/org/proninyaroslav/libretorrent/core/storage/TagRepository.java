@@ -24,6 +24,7 @@ import androidx.annotation.NonNull;
 import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
 
 import java.util.List;
+import java.util.Map;
 
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Single;
@@ -44,4 +45,13 @@ public interface TagRepository {
     Single<List<TagInfo>> getByTorrentIdAsync(String torrentId);
 
     List<TagInfo> getByTorrentId(String torrentId);
+
+    /*
+     * Returns tags of all torrents, grouped by torrent id. The result is cached
+     * until TagInfo or TorrentTagInfo tables are changed
+     */
+
+    Map<String, List<TagInfo>> getAllTorrentTags();
+
+    Flowable<Map<String, List<TagInfo>>> observeAllTorrentTags();
 }
@@ -20,19 +20,42 @@
 package org.proninyaroslav.libretorrent.core.storage;
 
 import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
 
 import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
+import org.proninyaroslav.libretorrent.core.model.data.entity.TorrentTag;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 public class TagRepositoryImpl implements TagRepository {
     private final @NonNull AppDatabase db;
+    private final AtomicReference<Map<String, List<TagInfo>>> torrentTagsCache = new AtomicReference<>();
+    /* Prevents caching the result of a query that was started before invalidation */
+    private final AtomicLong torrentTagsVersion = new AtomicLong();
+    private final PublishProcessor<Boolean> torrentTagsInvalidated = PublishProcessor.create();
 
     public TagRepositoryImpl(@NonNull AppDatabase db) {
         this.db = db;
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("TagInfo", "TorrentTagInfo") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                torrentTagsVersion.incrementAndGet();
+                torrentTagsCache.set(null);
+                torrentTagsInvalidated.onNext(true);
+            }
+        });
     }
 
     @Override
@@ -74,4 +97,46 @@ public class TagRepositoryImpl implements TagRepository {
     public List<TagInfo> getByTorrentId(String torrentId) {
         return db.tagInfoDao().getByTorrentId(torrentId);
     }
+
+    @Override
+    public Map<String, List<TagInfo>> getAllTorrentTags() {
+        var tags = torrentTagsCache.get();
+        if (tags != null) {
+            return tags;
+        }
+
+        long version = torrentTagsVersion.get();
+        tags = groupByTorrentId(db.tagInfoDao().getAllTorrentTags());
+        if (torrentTagsVersion.get() == version) {
+            torrentTagsCache.compareAndSet(null, tags);
+        }
+
+        return tags;
+    }
+
+    @Override
+    public Flowable<Map<String, List<TagInfo>>> observeAllTorrentTags() {
+        return torrentTagsInvalidated
+                .onBackpressureLatest()
+                .startWithItem(true)
+                .observeOn(Schedulers.io())
+                .map((__) -> getAllTorrentTags());
+    }
+
+    private static Map<String, List<TagInfo>> groupByTorrentId(List<TorrentTag> torrentTags) {
+        var map = new HashMap<String, List<TagInfo>>();
+        for (var torrentTag : torrentTags) {
+            var tags = map.get(torrentTag.torrentId);
+            if (tags == null) {
+                tags = new ArrayList<>();
+                map.put(torrentTag.torrentId, tags);
+            }
+            tags.add(torrentTag.tag);
+        }
+        for (var entry : map.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
 }
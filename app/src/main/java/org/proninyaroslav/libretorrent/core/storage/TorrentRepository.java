@@ -47,9 +47,19 @@ public interface TorrentRepository
 
     List<Torrent> getAllTorrents();
 
-    void addFastResume(@NonNull FastResume fastResume);
+    Flowable<List<Torrent>> observeAllTorrents();
 
-    FastResume getFastResumeById(@NonNull String torrentId);
+    void addFastResume(@NonNull FastResume fastResume) throws IOException;
+
+    /*
+     * The data of the torrents that don't exist is skipped
+     */
+
+    void addFastResumes(@NonNull List<FastResume> fastResumes) throws IOException;
+
+    FastResume getFastResumeById(@NonNull String torrentId) throws IOException;
+
+    List<FastResume> getFastResumeByIds(@NonNull List<String> torrentIds) throws IOException;
 
     void saveSession(@NonNull byte[] data) throws IOException;
 
@@ -20,6 +20,7 @@
 package org.proninyaroslav.libretorrent.core.storage;
 
 import android.content.Context;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 
@@ -32,22 +33,38 @@ import org.proninyaroslav.libretorrent.core.system.SystemFacadeHelper;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Single;
 
 public class TorrentRepositoryImpl implements TorrentRepository {
+    private static final String TAG = TorrentRepositoryImpl.class.getSimpleName();
+
     private static final class FileDataModel {
         private static final String TORRENT_SESSION_FILE = "session";
+        private static final String FAST_RESUME_DIR = "fast_resume";
     }
 
+    /* Small batches, the rows can be large for the cursor window */
+    private static final int FAST_RESUME_MIGRATION_BATCH_SIZE = 8;
+
     private final Context appContext;
     private final AppDatabase db;
+    private final File fastResumeDir;
+    private FastResumeStore fastResumeStore;
 
     public TorrentRepositoryImpl(@NonNull Context appContext, @NonNull AppDatabase db) {
+        this(appContext, db, new File(appContext.getFilesDir(), FileDataModel.FAST_RESUME_DIR));
+    }
+
+    public TorrentRepositoryImpl(@NonNull Context appContext,
+                                 @NonNull AppDatabase db,
+                                 @NonNull File fastResumeDir) {
         this.appContext = appContext;
         this.db = db;
+        this.fastResumeDir = fastResumeDir;
     }
 
     @Override
@@ -63,6 +80,11 @@ public class TorrentRepositoryImpl implements TorrentRepository {
     @Override
     public void deleteTorrent(@NonNull Torrent torrent) {
         db.torrentDao().delete(torrent);
+        try {
+            getFastResumeStore().remove(torrent.id);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to delete fast resume data of " + torrent.id, e);
+        }
     }
 
     @Override
@@ -86,13 +108,79 @@ public class TorrentRepositoryImpl implements TorrentRepository {
     }
 
     @Override
-    public void addFastResume(@NonNull FastResume fastResume) {
-        db.fastResumeDao().add(fastResume);
+    public Flowable<List<Torrent>> observeAllTorrents() {
+        return db.torrentDao().observeAllTorrents();
+    }
+
+    @Override
+    public void addFastResume(@NonNull FastResume fastResume) throws IOException {
+        addFastResumes(List.of(fastResume));
+    }
+
+    @Override
+    public void addFastResumes(@NonNull List<FastResume> fastResumes) throws IOException {
+        var ids = new ArrayList<String>(fastResumes.size());
+        for (FastResume fastResume : fastResumes) {
+            ids.add(fastResume.torrentId);
+        }
+        var existingIds = new HashSet<>(db.torrentDao().getExistingTorrentIds(ids));
+        var existing = new ArrayList<FastResume>(fastResumes.size());
+        for (FastResume fastResume : fastResumes) {
+            if (existingIds.contains(fastResume.torrentId)) {
+                existing.add(fastResume);
+            }
+        }
+
+        getFastResumeStore().putAll(existing);
     }
 
     @Override
-    public FastResume getFastResumeById(@NonNull String torrentId) {
-        return db.fastResumeDao().getByTorrentId(torrentId);
+    public FastResume getFastResumeById(@NonNull String torrentId) throws IOException {
+        return getFastResumeStore().get(torrentId);
+    }
+
+    @Override
+    public List<FastResume> getFastResumeByIds(@NonNull List<String> torrentIds) throws IOException {
+        return getFastResumeStore().get(torrentIds);
+    }
+
+    private synchronized FastResumeStore getFastResumeStore() throws IOException {
+        if (fastResumeStore == null) {
+            var store = new FastResumeStore(fastResumeDir);
+            store.open();
+            migrateFastResume(store);
+            /* E.g. the torrent was deleted before its data was written */
+            store.retainAll(db.torrentDao().getAllTorrentIds());
+            fastResumeStore = store;
+        }
+
+        return fastResumeStore;
+    }
+
+    /*
+     * Moves the fast resume data from the database. The rows are deleted
+     * only after all of them are stored, so an interrupted migration
+     * is repeated on next start
+     */
+
+    private void migrateFastResume(FastResumeStore store) throws IOException {
+        List<String> ids = db.fastResumeDao().getAllTorrentIds();
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < ids.size(); i += FAST_RESUME_MIGRATION_BATCH_SIZE) {
+            var batch = ids.subList(i, Math.min(i + FAST_RESUME_MIGRATION_BATCH_SIZE, ids.size()));
+            store.putAll(db.fastResumeDao().getByTorrentIds(batch));
+        }
+        db.fastResumeDao().deleteAll();
+        /* Return the space of the blobs to the file system */
+        try {
+            db.getOpenHelper().getWritableDatabase().execSQL("VACUUM");
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to vacuum the database", e);
+        }
+        Log.i(TAG, "Fast resume data of " + ids.size() + " torrents moved from the database");
     }
 
     // TODO
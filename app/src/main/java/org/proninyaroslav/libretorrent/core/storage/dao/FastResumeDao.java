@@ -7,6 +7,8 @@ import androidx.room.Query;
 
 import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
 
+import java.util.List;
+
 @Dao
 public interface FastResumeDao
 {
@@ -15,4 +17,13 @@ public interface FastResumeDao
 
     @Query("SELECT * FROM FastResume WHERE torrentId = :torrentId")
     FastResume getByTorrentId(String torrentId);
+
+    @Query("SELECT * FROM FastResume WHERE torrentId IN (:torrentIds)")
+    List<FastResume> getByTorrentIds(List<String> torrentIds);
+
+    @Query("SELECT torrentId FROM FastResume")
+    List<String> getAllTorrentIds();
+
+    @Query("DELETE FROM FastResume")
+    void deleteAll();
 }
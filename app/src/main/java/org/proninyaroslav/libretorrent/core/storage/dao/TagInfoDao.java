@@ -27,6 +27,7 @@ import androidx.room.Query;
 import androidx.room.Update;
 
 import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
+import org.proninyaroslav.libretorrent.core.model.data.entity.TorrentTag;
 
 import java.util.List;
 
@@ -61,4 +62,9 @@ public interface TagInfoDao {
     @Query("SELECT * FROM TagInfo WHERE id IN " +
             "(SELECT tagId FROM TorrentTagInfo WHERE torrentId = :torrentId)")
     List<TagInfo> getByTorrentId(String torrentId);
+
+    @Query("SELECT TorrentTagInfo.torrentId, TagInfo.* FROM TorrentTagInfo " +
+            "INNER JOIN TagInfo ON TagInfo.id = TorrentTagInfo.tagId " +
+            "ORDER BY TagInfo.id")
+    List<TorrentTag> getAllTorrentTags();
 }
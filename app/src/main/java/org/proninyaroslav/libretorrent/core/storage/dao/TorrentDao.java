@@ -48,6 +48,15 @@ public abstract class TorrentDao {
     @Query("SELECT * FROM Torrent")
     public abstract List<Torrent> getAllTorrents();
 
+    @Query("SELECT * FROM Torrent")
+    public abstract Flowable<List<Torrent>> observeAllTorrents();
+
+    @Query("SELECT id FROM Torrent")
+    public abstract List<String> getAllTorrentIds();
+
+    @Query("SELECT id FROM Torrent WHERE id IN (:ids)")
+    public abstract List<String> getExistingTorrentIds(List<String> ids);
+
     @Query("SELECT * FROM Torrent WHERE id = :id")
     public abstract Torrent getTorrentById(String id);
 
@@ -83,6 +83,8 @@ public interface FileSystemFacade
 
     File makeTempFile(@NonNull String postfix);
 
+    File getCacheDir();
+
     String getExtension(String fileName);
 
     boolean isValidFatFilename(String name);
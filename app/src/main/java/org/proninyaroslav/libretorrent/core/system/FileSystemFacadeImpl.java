@@ -308,6 +308,16 @@ class FileSystemFacadeImpl implements FileSystemFacade
         return new File(getTempDir(), UUID.randomUUID().toString() + postfix);
     }
 
+    /*
+     * Internal app cache, files that can be recreated at any time
+     */
+
+    @Override
+    public File getCacheDir()
+    {
+        return appContext.getCacheDir();
+    }
+
     @Override
     public String getExtension(String fileName)
     {
@@ -27,14 +27,10 @@ import org.proninyaroslav.libretorrent.core.model.filetree.FileNode;
 import org.proninyaroslav.libretorrent.core.model.filetree.FileTree;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /*
  * The static class for create and using BencodeFileTree objects.
- *
- * TODO: need refactor (with TorrentContentFileTreeUtils)
  */
 
 public class BencodeFileTreeUtils
@@ -46,70 +42,46 @@ public class BencodeFileTreeUtils
     public static Pair<BencodeFileTree, BencodeFileTree[]> buildFileTree(List<BencodeFileItem> files)
     {
         BencodeFileTree root = new BencodeFileTree(FileTree.ROOT, 0L, FileNode.Type.DIR);
-        BencodeFileTree parentTree = root;
         BencodeFileTree[] leaves = new BencodeFileTree[files.size()];
-        /* It allows reduce the number of iterations on the paths with equal beginnings */
-        String prevPath = "";
-        List<BencodeFileItem> filesCopy = new ArrayList<>(files);
-        /* Sort reduces the returns number to root */
-        Collections.sort(filesCopy);
+        /*
+         * Files of the same directory usually go in a row, so the directory
+         * of the previous file is reused without walking the path from root
+         */
+        String prevPath = null;
+        int prevDirLength = -1;
+        BencodeFileTree prevDir = root;
 
-        for (BencodeFileItem file : filesCopy) {
-            String path;
-            /*
-             * Compare previous path with new path.
-             * Example:
-             * prev = dir1/dir2/
-             * cur  = dir1/dir2/file1
-             *        |________|
-             *          equal
-             *
-             * prev = dir1/dir2/
-             * cur  = dir3/file2
-             *        |________|
-             *         not equal
-             */
-            if (!prevPath.isEmpty() &&
-                    file.getPath().regionMatches(true, 0, prevPath, 0, prevPath.length())) {
-                /*
-                 * If beginning paths are equal, remove previous path from the new path.
-                 * Example:
-                 * prev = dir1/dir2/
-                 * cur  = dir1/dir2/file1
-                 * new  = file1
-                 */
-                path = file.getPath().substring(prevPath.length());
+        for (BencodeFileItem file : files) {
+            String path = file.getPath();
+            int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+            BencodeFileTree parentTree;
+            if (prevPath != null && nameStart == prevDirLength &&
+                    path.regionMatches(0, prevPath, 0, nameStart)) {
+                parentTree = prevDir;
             } else {
-                /* If beginning paths are not equal, return to root */
-                path = file.getPath();
                 parentTree = root;
-            }
-
-            String[] nodes = path.split(File.separator);
-            /*
-             * Remove last node (file) from previous path.
-             * Example:
-             * cur = dir1/dir2/file1
-             * new = dir1/dir2/
-             */
-            prevPath = file.getPath()
-                    .substring(0, file.getPath().length() - nodes[nodes.length - 1].length());
-
-            /* Iterates path nodes */
-            for (int i = 0; i < nodes.length; i++) {
-                if (!parentTree.contains(nodes[i])) {
-                    /* The last leaf item is a file */
-                    BencodeFileTree leaf = makeObject(file.getIndex(), nodes[i],
-                                                    file.getSize(), parentTree,
-                                                    i == (nodes.length - 1));
-                    leaves[file.getIndex()] = leaf;
-                    parentTree.addChild(leaf);
+                /* Iterates path nodes, except the last one (file) */
+                for (int start = 0, end; (end = path.indexOf(File.separatorChar, start)) >= 0; start = end + 1) {
+                    String name = path.substring(start, end);
+                    BencodeFileTree nextParent = parentTree.getChild(name);
+                    if (nextParent == null) {
+                        nextParent = makeObject(file.getIndex(), name, 0L, parentTree, false);
+                        parentTree.addChild(nextParent);
+                    }
+                    /* Skipping leaf nodes */
+                    if (!nextParent.isFile())
+                        parentTree = nextParent;
                 }
+                prevPath = path;
+                prevDirLength = nameStart;
+                prevDir = parentTree;
+            }
 
-                BencodeFileTree nextParent = parentTree.getChild(nodes[i]);
-                /* Skipping leaf nodes */
-                if (!nextParent.isFile())
-                    parentTree = nextParent;
+            String name = path.substring(nameStart);
+            if (!parentTree.contains(name)) {
+                BencodeFileTree leaf = makeObject(file.getIndex(), name, file.getSize(), parentTree, true);
+                leaves[file.getIndex()] = leaf;
+                parentTree.addChild(leaf);
             }
         }
 
@@ -109,8 +109,10 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
@@ -136,6 +138,7 @@ public class Utils {
     public static final String HASH_PATTERN = "\\b[0-9a-fA-F]{5,40}\\b";
     public static final String MIME_TORRENT = "application/x-bittorrent";
     public static final String MIME_TEXT_PLAIN = "text/plain";
+    public static final String MIME_GZIP = "application/gzip";
     public static final String NEWLINE_PATTERN = "\\r\\n|\\r|\\n";
     private static final String FEED_MIME_TYPE_PATTERN = "^(application|text)/((atom|rss)\\+)?xml";
     private static final String FEED_FILE_PATH_PATTERN = ".*\\.(xml|rss|atom)";
@@ -415,6 +418,40 @@ public class Utils {
 
     public static byte[] fetchHttpUrl(@NonNull Context context,
                                       @NonNull String url) throws FetchLinkException {
+        HttpURLConnection connection = openHttpConnection(context, url, null);
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                try (InputStream inputStream = connection.getInputStream();
+                     var byteArrayOutputStream = new ByteArrayOutputStream()) {
+                    byte[] buffer = new byte[8192];
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) != -1) {
+                        byteArrayOutputStream.write(buffer, 0, bytesRead);
+                    }
+                    return byteArrayOutputStream.toByteArray();
+                }
+            } else {
+                throw new FetchLinkException("Error while downloading file: " + responseCode);
+            }
+        } catch (IOException e) {
+            throw new FetchLinkException(e);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /*
+     * Sends GET request with the specified headers and follows the redirects.
+     * Returns the connection with the final (non-redirect) response,
+     * the caller reads the response code and must disconnect it.
+     */
+
+    @NonNull
+    public static HttpURLConnection openHttpConnection(@NonNull Context context,
+                                                       @NonNull String url,
+                                                       @Nullable Map<String, String> requestProperties)
+            throws FetchLinkException {
         if (!Utils.checkConnectivity(context)) {
             throw new FetchLinkException("No network connection");
         }
@@ -435,6 +472,11 @@ public class Utils {
                  */
                 connection.setInstanceFollowRedirects(false);
                 connection.setRequestMethod("GET");
+                if (requestProperties != null) {
+                    for (var property : requestProperties.entrySet()) {
+                        connection.setRequestProperty(property.getKey(), property.getValue());
+                    }
+                }
 
                 int responseCode = connection.getResponseCode();
                 if (isRedirect(responseCode)) {
@@ -447,25 +489,28 @@ public class Utils {
                     continue;
                 }
 
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    try (InputStream inputStream = connection.getInputStream();
-                         var byteArrayOutputStream = new ByteArrayOutputStream()) {
-                        byte[] buffer = new byte[1024];
-                        int bytesRead;
-                        while ((bytesRead = inputStream.read(buffer)) != -1) {
-                            byteArrayOutputStream.write(buffer, 0, bytesRead);
-                        }
-                        return byteArrayOutputStream.toByteArray();
-                    }
-                } else {
-                    throw new FetchLinkException("Error while downloading file: " + responseCode);
-                }
+                return connection;
             }
         } catch (IOException e) {
             throw new FetchLinkException(e);
         }
     }
 
+    /*
+     * Returns the response body, decompressed if the server
+     * used gzip encoding (requested with "Accept-Encoding: gzip")
+     */
+
+    @NonNull
+    public static InputStream getHttpInputStream(@NonNull HttpURLConnection connection)
+            throws IOException {
+        InputStream inputStream = connection.getInputStream();
+
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ?
+                new GZIPInputStream(inputStream) :
+                inputStream;
+    }
+
     private static boolean isRedirect(int responseCode) {
         return responseCode == HttpURLConnection.HTTP_MOVED_PERM
                 || responseCode == HttpURLConnection.HTTP_MOVED_TEMP
@@ -167,6 +167,14 @@ public class FeedFetcherWorker extends Worker {
             return Result.failure();
         }
 
+        if (parser.isNotModified()) {
+            channel.fetchError = null;
+            channel.lastUpdate = System.currentTimeMillis();
+            repo.updateFeed(channel);
+
+            return Result.success();
+        }
+
         List<FeedItem> items = parser.getItems();
 
         filterItems(id, items, acceptMinDate);
@@ -191,6 +199,8 @@ public class FeedFetcherWorker extends Worker {
             }
         }
         channel.lastUpdate = System.currentTimeMillis();
+        channel.etag = parser.getETag();
+        channel.lastModified = parser.getLastModified();
         repo.updateFeed(channel);
 
         if (forceAutoDownload || channel.autoDownload) {
@@ -33,6 +33,8 @@ import androidx.work.WorkerParameters;
 
 import org.proninyaroslav.libretorrent.R;
 import org.proninyaroslav.libretorrent.core.exception.UnknownUriException;
+import org.proninyaroslav.libretorrent.core.logger.LogExporter;
+import org.proninyaroslav.libretorrent.core.logger.LogSnapshot;
 import org.proninyaroslav.libretorrent.core.logger.Logger;
 import org.proninyaroslav.libretorrent.core.model.TorrentEngine;
 import org.proninyaroslav.libretorrent.core.system.FileDescriptorWrapper;
@@ -48,6 +50,13 @@ public class SaveLogWorker extends Worker
 
     public static final String TAG_FILE_URI = "file_uri";
     public static final String TAG_RESUME_AFTER_SAVE = "resume_after_save";
+    /* Progress data */
+    public static final String TAG_EXPORTED_ENTRIES = "exported_entries";
+    public static final String TAG_TOTAL_ENTRIES = "total_entries";
+
+    private static final String GZIP_EXTENSION = "gz";
+    /* Minimum interval between progress updates */
+    private static final long PROGRESS_UPDATE_INTERVAL = 500; /* ms */
 
     private Context appContext;
     private TorrentEngine engine;
@@ -86,29 +95,59 @@ public class SaveLogWorker extends Worker
         Logger logger = engine.getSessionLogger();
         logger.pause();
 
+        /*
+         * Only the copy of the entries is taken under the logger lock,
+         * the logger works as usual during the export
+         */
+        LogSnapshot snapshot;
+        try {
+            if (logger.isRecording())
+                snapshot = logger.stopRecordingAndSnapshot();
+            else
+                snapshot = logger.snapshot();
+        } finally {
+            if (resume)
+                logger.resume();
+        }
+
         try (FileDescriptorWrapper w = fs.getFD(filePath);
              FileOutputStream fout = new FileOutputStream(w.open("rw"))) {
 
-            if (logger.isRecording())
-                logger.stopRecording(fout, true);
-            else
-                logger.write(fout, true);
+            String path = fs.getFilePath(filePath);
+            boolean compress = GZIP_EXTENSION.equalsIgnoreCase(fs.getExtension(path));
+            var exporter = new LogExporter(snapshot, true, compress);
+            exporter.export(fout, new ProgressListener());
 
-            showSuccessToast(fs.getFilePath(filePath));
+            showSuccessToast(path);
 
         } catch (IOException | UnknownUriException e) {
             Log.e(TAG, "Cannot save log: " + Log.getStackTraceString(e));
 
             return Result.failure();
-
-        } finally {
-            if (resume)
-                logger.resume();
         }
 
         return Result.success();
     }
 
+    private class ProgressListener implements LogExporter.ProgressListener
+    {
+        private long lastUpdateTime;
+
+        @Override
+        public void onProgress(int exportedEntries, int totalEntries)
+        {
+            long now = System.currentTimeMillis();
+            if (exportedEntries < totalEntries && now - lastUpdateTime < PROGRESS_UPDATE_INTERVAL)
+                return;
+            lastUpdateTime = now;
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(TAG_EXPORTED_ENTRIES, exportedEntries)
+                    .putInt(TAG_TOTAL_ENTRIES, totalEntries)
+                    .build());
+        }
+    }
+
     private void showFailToast()
     {
         handler.post(() -> Toast.makeText(appContext,
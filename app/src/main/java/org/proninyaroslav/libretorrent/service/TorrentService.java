@@ -40,6 +40,7 @@ import androidx.core.app.NotificationCompat;
 import org.proninyaroslav.libretorrent.MainActivity;
 import org.proninyaroslav.libretorrent.R;
 import org.proninyaroslav.libretorrent.core.RepositoryHelper;
+import org.proninyaroslav.libretorrent.core.collections.TopKCollector;
 import org.proninyaroslav.libretorrent.core.filter.TorrentFilter;
 import org.proninyaroslav.libretorrent.core.model.TorrentEngine;
 import org.proninyaroslav.libretorrent.core.model.TorrentEngineListener;
@@ -60,10 +61,9 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
-import io.reactivex.rxjava3.core.Observable;
-import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.disposables.Disposable;
@@ -75,7 +75,10 @@ public class TorrentService extends Service {
     private static final String TAG = TorrentService.class.getSimpleName();
 
     private static final int SERVICE_STARTED_NOTIFICATION_ID = -1;
+    /* Minimum interval between updates, regardless of the events frequency */
     private static final int FOREGROUND_NOTIFY_UPDATE_DELAY = 1000; /* ms */
+    /* Maximum number of lines that the InboxStyle shows */
+    private static final int FOREGROUND_NOTIFY_MAX_LINES = 7;
     public static final String ACTION_SHUTDOWN = "org.proninyaroslav.libretorrent.services.TorrentService.ACTION_SHUTDOWN";
     public static final String ACTION_RESTART_FOREGROUND_NOTIFICATION = "org.proninyaroslav.libretorrent.services.TorrentService.ACTION_RESTART_FOREGROUND_NOTIFICATION";
 
@@ -83,7 +86,8 @@ public class TorrentService extends Service {
     /* For the pause action button of foreground notify */
     private NotificationCompat.Builder foregroundNotify;
     private Disposable foregroundDisposable;
-    private boolean isNetworkOnline = false;
+    /* The last shown content, because unchanged content isn't emitted again */
+    private ForegroundNotifyContent foregroundNotifyContent;
     private TorrentInfoProvider stateProvider;
     private TorrentEngine engine;
     private SettingsRepository pref;
@@ -92,8 +96,9 @@ public class TorrentService extends Service {
     private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
     private final AtomicBoolean shutDownNotifyShow = new AtomicBoolean(false);
     private final PublishSubject<Boolean> forceSortAndFilter = PublishSubject.create();
-    private TorrentFilter itemsFilter;
-    private TorrentSortingComparator itemsSorting;
+    /* Used by the background thread */
+    private volatile TorrentFilter itemsFilter;
+    private volatile TorrentSortingComparator itemsSorting;
     private final BehaviorSubject<Boolean> combinedPauseButtonState =
             BehaviorSubject.createDefault(false);
 
@@ -124,7 +129,6 @@ public class TorrentService extends Service {
         makeForegroundNotify();
         subscribeCombinedPauseButtonState();
         setFilterAndSorting();
-        subscribeForceSortAndFilter();
 
         disposables.add(pref.observeSettingsChanged()
                 .subscribe(this::handleSettingsChanged));
@@ -217,6 +221,9 @@ public class TorrentService extends Service {
             }
             case ACTION_RESTART_FOREGROUND_NOTIFICATION -> {
                 makeForegroundNotify();
+                if (foregroundNotifyContent != null) {
+                    updateForegroundNotify(foregroundNotifyContent);
+                }
                 yield START_STICKY;
             }
             default -> -1;
@@ -293,72 +300,32 @@ public class TorrentService extends Service {
         foregroundDisposable = Flowable.combineLatest(
                         stateProvider.observeInfoList(),
                         stateProvider.observeSessionStats(),
-                        Pair::new
+                        /* Re-render with the new filter and sorting */
+                        forceSortAndFilter.startWithItem(true)
+                                .toFlowable(BackpressureStrategy.LATEST),
+                        (state, sessionStats, force) -> Pair.create(state, sessionStats)
                 )
                 .subscribeOn(Schedulers.io())
-                .flatMapSingle((pair) -> {
+                .throttleLatest(FOREGROUND_NOTIFY_UPDATE_DELAY, TimeUnit.MILLISECONDS, true)
+                .map((pair) -> {
                     var state = pair.first;
                     var sessionStats = pair.second;
                     if (state instanceof TorrentListState.Initial) {
-                        return Single.just(Pair.create(new ArrayList<TorrentInfo>(0), sessionStats));
+                        return makeForegroundNotifyContent(Collections.emptyList(), sessionStats);
                     } else if (state instanceof TorrentListState.Loaded loaded) {
-                        return Single.zip(
-                                Flowable.fromIterable(loaded.list())
-                                        .filter(itemsFilter)
-                                        .sorted(itemsSorting)
-                                        .toList(),
-                                Single.just(sessionStats),
-                                Pair::new
-                        );
+                        return makeForegroundNotifyContent(loaded.list(), sessionStats);
                     }
                     throw new IllegalStateException("Unknown state: " + state);
                 })
+                /* Don't rebuild the notification if the visible content is the same */
+                .distinctUntilChanged()
                 .observeOn(AndroidSchedulers.mainThread())
-                .delay(FOREGROUND_NOTIFY_UPDATE_DELAY, TimeUnit.MILLISECONDS)
-                .subscribe((pair) -> {
-                            var stateList = pair.first;
-                            var sessionStats = pair.second;
-                            updateForegroundNotify(stateList, sessionStats);
-                        },
+                .subscribe(this::updateForegroundNotify,
                         (Throwable t) -> Log.e(TAG, "Getting torrents info error: "
                                 + Log.getStackTraceString(t))
                 );
     }
 
-    private Disposable getInfoListSingle() {
-        return Single.zip(
-                        stateProvider.getInfoListSingle(),
-                        stateProvider.getSessionStatsSingle(),
-                        Pair::new
-                )
-                .subscribeOn(Schedulers.io())
-                .flatMap((pair) -> {
-                    var infoList = pair.first;
-                    var sessionStats = pair.second;
-                    return Single.zip(
-                            Observable.fromIterable(infoList)
-                                    .filter(itemsFilter)
-                                    .sorted(itemsSorting)
-                                    .toList(),
-                            Single.just(sessionStats),
-                            Pair::new
-                    );
-                })
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe((Pair<List<TorrentInfo>, SessionStats> pair) ->
-                                updateForegroundNotify(pair.first, pair.second),
-                        (Throwable t) -> Log.e(TAG, "Getting torrents info error: "
-                                + Log.getStackTraceString(t))
-                );
-    }
-
-    private void subscribeForceSortAndFilter() {
-        disposables.add(forceSortAndFilter
-                .filter((force) -> force)
-                .observeOn(Schedulers.io())
-                .subscribe((force) -> disposables.add(getInfoListSingle())));
-    }
-
     private void subscribeCombinedPauseButtonState() {
         disposables.add(combinedPauseButtonState
                 .observeOn(AndroidSchedulers.mainThread())
@@ -368,8 +335,8 @@ public class TorrentService extends Service {
     }
 
     private void forceClearForeground() {
-        disposables.add(Completable.fromRunnable(() ->
-                        updateForegroundNotify(Collections.emptyList(), null))
+        disposables.add(Completable.fromAction(() ->
+                        updateForegroundNotify(makeForegroundNotifyContent(Collections.emptyList(), null)))
                 .subscribeOn(AndroidSchedulers.mainThread())
                 .subscribe());
     }
@@ -404,13 +371,11 @@ public class TorrentService extends Service {
         startForegroundNotification(foregroundNotify.build());
     }
 
-    private void updateForegroundNotify(List<TorrentInfo> stateList, @Nullable SessionStats sessionStats) {
+    private void updateForegroundNotify(ForegroundNotifyContent content) {
         if ((shuttingDown.get() && shutDownNotifyShow.get()) || foregroundNotify == null) {
             return;
         }
 
-        isNetworkOnline = Utils.checkConnectivity(getApplicationContext());
-
         if (shuttingDown.get()) {
             shutdownPendingIntent.cancel();
             stopUpdateForegroundNotify();
@@ -423,7 +388,8 @@ public class TorrentService extends Service {
             foregroundNotify.setTicker(shuttingDownStr);
             foregroundNotify.setContentTitle(shuttingDownStr);
         } else {
-            makeDetailNotifyInboxStyle(stateList, sessionStats);
+            foregroundNotifyContent = content;
+            setForegroundNotifyContent(content);
         }
         /* Disallow killing the service process by system */
         startForegroundNotification(foregroundNotify.build());
@@ -439,15 +405,66 @@ public class TorrentService extends Service {
         }
     }
 
-    private void makeDetailNotifyInboxStyle(List<TorrentInfo> stateList, @Nullable SessionStats sessionStats) {
+    /*
+     * Visible content of the foreground notification
+     * (the style is InboxStyle if `lines` isn't null)
+     */
+
+    private record ForegroundNotifyContent(
+            String title,
+            String text,
+            @Nullable String bigContentTitle,
+            @Nullable List<String> lines
+    ) {}
+
+    private void setForegroundNotifyContent(ForegroundNotifyContent content) {
+        foregroundNotify.setContentTitle(content.title);
+        foregroundNotify.setContentText(content.text);
+        foregroundNotify.setTicker(content.title);
+
+        if (content.lines == null) {
+            foregroundNotify.setStyle(null);
+        } else {
+            var inboxStyle = new NotificationCompat.InboxStyle();
+            for (var line : content.lines) {
+                inboxStyle.addLine(line);
+            }
+            inboxStyle.setBigContentTitle(content.bigContentTitle);
+            foregroundNotify.setStyle(inboxStyle);
+        }
+    }
+
+    /*
+     * Can be called from any thread. The list is traversed once,
+     * only the torrents that fit in the notification are sorted.
+     */
+
+    private ForegroundNotifyContent makeForegroundNotifyContent(
+            List<TorrentInfo> infoList,
+            @Nullable SessionStats sessionStats
+    ) throws Throwable {
+        var filter = itemsFilter;
+        var topStates = new TopKCollector<TorrentInfo>(FOREGROUND_NOTIFY_MAX_LINES, itemsSorting);
+        int downloadingCount = 0;
+        TorrentInfo downloadingState = null;
+        for (var state : infoList) {
+            if (state == null || !filter.test(state)) {
+                continue;
+            }
+            topStates.add(state);
+            if (state.stateCode == TorrentStateCode.DOWNLOADING) {
+                downloadingCount++;
+                downloadingState = state;
+            }
+        }
+
+        boolean isNetworkOnline = Utils.checkConnectivity(getApplicationContext());
         var isNetworkOnlineText = isNetworkOnline
                 ? getString(R.string.network_online)
                 : getString(R.string.network_offline);
         String defaultContentText;
         if (sessionStats == null) {
-            defaultContentText = isNetworkOnline
-                    ? getString(R.string.network_online)
-                    : getString(R.string.network_offline);
+            defaultContentText = isNetworkOnlineText;
         } else {
             String downSpeed = Formatter.formatFileSize(this, sessionStats.downloadSpeed);
             String upSpeed = Formatter.formatFileSize(this, sessionStats.uploadSpeed);
@@ -455,26 +472,16 @@ public class TorrentService extends Service {
                     downSpeed, upSpeed, isNetworkOnlineText);
         }
 
-        if (stateList.isEmpty()) {
+        if (topStates.getCount() == 0) {
             var title = getString(R.string.app_running_in_the_background);
-            foregroundNotify.setStyle(null);
-            foregroundNotify.setContentTitle(title);
-            foregroundNotify.setContentText(defaultContentText);
-            foregroundNotify.setTicker(title);
-            return;
+            return new ForegroundNotifyContent(title, defaultContentText, null, null);
         }
-        var inboxStyle = new NotificationCompat.InboxStyle();
-        var downloadingTorrents = new ArrayList<TorrentInfo>();
-
-        for (var state : stateList) {
-            if (state == null) {
-                continue;
-            }
 
+        var lines = new ArrayList<String>(FOREGROUND_NOTIFY_MAX_LINES);
+        for (var state : topStates.toSortedList()) {
             var code = state.stateCode;
             if (code == TorrentStateCode.DOWNLOADING) {
-                downloadingTorrents.add(state);
-                inboxStyle.addLine(getString(R.string.downloading_torrent_notify_template,
+                lines.add(getString(R.string.downloading_torrent_notify_template,
                         state.progress,
                         state.ETA >= TorrentInfo.MAX_ETA
                                 ? Utils.INFINITY_SYMBOL
@@ -483,7 +490,7 @@ public class TorrentService extends Service {
                         state.name)
                 );
             } else if (code == TorrentStateCode.SEEDING) {
-                inboxStyle.addLine(getString(R.string.seeding_torrent_notify_template,
+                lines.add(getString(R.string.seeding_torrent_notify_template,
                         getString(R.string.torrent_status_seeding),
                         Formatter.formatFileSize(this, state.uploadSpeed),
                         state.name));
@@ -496,33 +503,27 @@ public class TorrentService extends Service {
                             getString(R.string.torrent_status_downloading_metadata);
                     default -> "";
                 };
-                inboxStyle.addLine(getString(R.string.other_torrent_notify_template, stateString, state.name));
+                lines.add(getString(R.string.other_torrent_notify_template, stateString, state.name));
             }
         }
 
         var defaultContentTitle = getString(R.string.torrent_count_notify_template,
-                downloadingTorrents.size(), stateList.size());
+                downloadingCount, (int) topStates.getCount());
         String contentTitle, contentText;
-        if (downloadingTorrents.size() == 1) {
-            var state = downloadingTorrents.get(0);
-            contentTitle = state.name;
+        if (downloadingCount == 1) {
+            contentTitle = downloadingState.name;
             contentText = getString(R.string.single_downloading_torrent_notify_template,
-                    state.progress,
-                    state.ETA >= TorrentInfo.MAX_ETA
+                    downloadingState.progress,
+                    downloadingState.ETA >= TorrentInfo.MAX_ETA
                             ? Utils.INFINITY_SYMBOL
-                            : DateUtils.formatElapsedTime(state.ETA),
-                    Formatter.formatFileSize(this, state.downloadSpeed));
+                            : DateUtils.formatElapsedTime(downloadingState.ETA),
+                    Formatter.formatFileSize(this, downloadingState.downloadSpeed));
         } else {
             contentTitle = defaultContentTitle;
             contentText = defaultContentText;
         }
-        foregroundNotify.setContentTitle(contentTitle);
-        foregroundNotify.setContentText(contentText);
-        foregroundNotify.setTicker(contentTitle);
-
-        inboxStyle.setBigContentTitle(defaultContentTitle);
 
-        foregroundNotify.setStyle(inboxStyle);
+        return new ForegroundNotifyContent(contentTitle, contentText, defaultContentTitle, lines);
     }
 
     private void setForegroundNotifyActions(boolean combinedPauseButton) {
@@ -43,17 +43,17 @@ import org.proninyaroslav.libretorrent.core.model.TorrentEngine;
 import org.proninyaroslav.libretorrent.core.model.TorrentInfoProvider;
 import org.proninyaroslav.libretorrent.core.model.data.AdvancedTorrentInfo;
 import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMapUpdate;
 import org.proninyaroslav.libretorrent.core.model.data.Priority;
 import org.proninyaroslav.libretorrent.core.model.data.TorrentInfo;
 import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
 import org.proninyaroslav.libretorrent.core.model.data.entity.TagInfo;
 import org.proninyaroslav.libretorrent.core.model.data.entity.Torrent;
-import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
 import org.proninyaroslav.libretorrent.core.model.data.metainfo.TorrentMetaInfo;
-import org.proninyaroslav.libretorrent.core.model.filetree.FileNode;
 import org.proninyaroslav.libretorrent.core.model.filetree.FilePriority;
+import org.proninyaroslav.libretorrent.core.model.filetree.FileSearchIndex;
 import org.proninyaroslav.libretorrent.core.model.filetree.FileTree;
-import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFileTree;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
 import org.proninyaroslav.libretorrent.core.model.stream.TorrentStreamServer;
 import org.proninyaroslav.libretorrent.core.settings.SettingsRepository;
 import org.proninyaroslav.libretorrent.core.sorting.BaseSorting;
@@ -62,20 +62,22 @@ import org.proninyaroslav.libretorrent.core.storage.TagRepository;
 import org.proninyaroslav.libretorrent.core.storage.TorrentRepository;
 import org.proninyaroslav.libretorrent.core.system.FileSystemFacade;
 import org.proninyaroslav.libretorrent.core.system.SystemFacadeHelper;
-import org.proninyaroslav.libretorrent.core.utils.TorrentContentFileTreeUtils;
 import org.proninyaroslav.libretorrent.core.utils.Utils;
 import org.proninyaroslav.libretorrent.ui.FileListState;
+import org.proninyaroslav.libretorrent.ui.detailtorrent.pages.files.TorrentContentFileItem;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.locks.ReentrantLock;
 
 import io.reactivex.rxjava3.core.Completable;
@@ -86,9 +88,11 @@ import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import io.reactivex.rxjava3.subjects.BehaviorSubject;
 import io.reactivex.rxjava3.subjects.PublishSubject;
+import io.reactivex.rxjava3.subjects.Subject;
 
 public class TorrentDetailsViewModel extends ViewModel {
     private static final String TAG = TorrentDetailsViewModel.class.getSimpleName();
+    private static final int SEARCH_PAGE_SIZE = 200;
 
     public static final CreationExtras.Key<String> KEY_TORRENT_ID = new CreationExtras.Key<>() {
     };
@@ -107,12 +111,19 @@ public class TorrentDetailsViewModel extends ViewModel {
     private final TagRepository tagRepo;
 
     private final ReentrantLock syncBuildFileTree = new ReentrantLock();
-    public TorrentContentFileTree fileTree;
-    private TorrentContentFileTree[] treeLeaves;
-    private final BehaviorSubject<FileListState<TorrentContentFileTree>> children = BehaviorSubject.create();
+    public volatile TorrentContentFlatTree fileTree;
+    /* Serialized, the tree updates emit from the background thread */
+    private final Subject<FileListState<TorrentContentFileItem>> children =
+            BehaviorSubject.<FileListState<TorrentContentFileItem>>create().toSerialized();
     /* Current directory */
-    private TorrentContentFileTree curDir;
-    private String searchQuery = "";
+    private volatile int curDir = TorrentContentFlatTree.NO_NODE;
+    private volatile String searchQuery = "";
+    /* Guarded by syncBuildFileTree */
+    private FileSearchIndex searchIndex;
+    private FileSearchIndex.Result searchResult;
+    /* Matched files in the display order, the items are made only for the loaded pages */
+    private int[] searchNodes;
+    private int searchLimit = SEARCH_PAGE_SIZE;
     private FileTreeSorting.SortingColumns sortColumn = FileTreeSorting.SortingColumns.name;
     private BaseSorting.Direction sortDirection = BaseSorting.Direction.ASC;
 
@@ -172,12 +183,26 @@ public class TorrentDetailsViewModel extends ViewModel {
         return freeSpaceError;
     }
 
-    public io.reactivex.rxjava3.core.Observable<FileListState<TorrentContentFileTree>> getDirChildren() {
+    public io.reactivex.rxjava3.core.Observable<FileListState<TorrentContentFileItem>> getDirChildren() {
         return children;
     }
 
     public void setSearchQuery(String query) {
         searchQuery = query == null ? "" : query.trim();
+        search();
+    }
+
+    public void loadMoreSearchResults() {
+        try {
+            syncBuildFileTree.lock();
+
+            if (!isSearchActive() || searchNodes == null || searchLimit >= searchNodes.length)
+                return;
+            searchLimit += SEARCH_PAGE_SIZE;
+
+        } finally {
+            syncBuildFileTree.unlock();
+        }
         updateChildren();
     }
 
@@ -192,7 +217,10 @@ public class TorrentDetailsViewModel extends ViewModel {
     public void setSort(@NonNull FileTreeSorting.SortingColumns column, @NonNull BaseSorting.Direction direction) {
         sortColumn = column;
         sortDirection = direction;
-        updateChildren();
+        if (isSearchActive())
+            search();
+        else
+            updateChildren();
     }
 
     public FileTreeSorting.SortingColumns getSortColumn() {
@@ -223,7 +251,7 @@ public class TorrentDetailsViewModel extends ViewModel {
         return infoProvider.observePeersInfo(torrentId);
     }
 
-    public Flowable<boolean[]> observePieces() {
+    public Flowable<PieceMapUpdate> observePieces() {
         return infoProvider.observePiecesInfo(torrentId);
     }
 
@@ -263,71 +291,99 @@ public class TorrentDetailsViewModel extends ViewModel {
      */
 
     public void upToParentDirectory() {
-        updateCurDir(curDir.getParent());
+        TorrentContentFlatTree fileTree = this.fileTree;
+        if (fileTree == null || curDir == TorrentContentFlatTree.NO_NODE)
+            return;
+
+        int parent = fileTree.getParent(curDir);
+        if (parent != TorrentContentFlatTree.NO_NODE)
+            updateCurDir(parent);
     }
 
-    public FileListState<TorrentContentFileTree> getChildren(TorrentContentFileTree node) {
-        if (isSearchActive()) {
-            List<TorrentContentFileTree> matches = new ArrayList<>();
-            if (treeLeaves != null) {
-                String query = searchQuery.toLowerCase(Locale.ROOT);
-                for (TorrentContentFileTree leaf : treeLeaves) {
-                    if (leaf != null && leaf.getName().toLowerCase(Locale.ROOT).contains(query))
-                        matches.add(leaf);
+    /*
+     * Makes the items from the cached values of the nodes, so listing
+     * the directory doesn't depend on the size of its subtree
+     */
+
+    public FileListState<TorrentContentFileItem> getChildren(int node) {
+        List<TorrentContentFileItem> items = new ArrayList<>();
+        TorrentContentFlatTree fileTree = this.fileTree;
+        if (fileTree == null)
+            return new FileListState<>(items, isSearchActive());
+
+        try {
+            syncBuildFileTree.lock();
+
+            if (isSearchActive()) {
+                if (searchNodes != null) {
+                    int n = Math.min(searchLimit, searchNodes.length);
+                    for (int i = 0; i < n; i++)
+                        items.add(new TorrentContentFileItem(fileTree, searchNodes[i], true));
                 }
+
+                return new FileListState<>(items, true);
             }
-            matches.sort(childComparator());
 
-            return new FileListState<>(matches, true);
-        }
+            if (node == TorrentContentFlatTree.NO_NODE || fileTree.isFile(node))
+                return new FileListState<>(items, false);
 
-        List<TorrentContentFileTree> children = new ArrayList<>();
-        if (node == null || node.isFile())
-            return new FileListState<>(children, false);
+            for (int child = fileTree.getFirstChild(node);
+                 child != TorrentContentFlatTree.NO_NODE;
+                 child = fileTree.getNextSibling(child))
+                items.add(new TorrentContentFileItem(fileTree, child, false));
+            items.sort(childComparator());
 
-        children.addAll(node.getChildren());
-        children.sort(childComparator());
+            /* Adding parent dir for navigation */
+            if (node != TorrentContentFlatTree.ROOT)
+                items.add(0, new TorrentContentFileItem(-1, FileTree.PARENT_DIR, false, 0L,
+                        new FilePriority(FilePriority.Type.IGNORE), 0L, -1));
 
-        /* Adding parent dir for navigation */
-        if (curDir != fileTree && curDir.getParent() != null)
-            children.add(0, new TorrentContentFileTree(TorrentContentFileTree.PARENT_DIR, 0L,
-                    FileNode.Type.DIR, curDir.getParent()));
+        } finally {
+            syncBuildFileTree.unlock();
+        }
 
-        return new FileListState<>(children, false);
+        return new FileListState<>(items, false);
     }
 
-    private Comparator<TorrentContentFileTree> childComparator() {
-        Comparator<TorrentContentFileTree> directoryFirst = Comparator.comparing(FileTree::isFile);
-        Comparator<TorrentContentFileTree> byColumn = (a, b) -> sortColumn.compare(a, b, sortDirection);
+    private Comparator<TorrentContentFileItem> childComparator() {
+        Comparator<TorrentContentFileItem> directoryFirst = Comparator.comparing((item) -> item.isFile);
+        Comparator<TorrentContentFileItem> byColumn = switch (sortColumn) {
+            case name -> (a, b) -> a.name.compareToIgnoreCase(b.name);
+            case size -> Comparator.comparingLong((item) -> item.size);
+        };
+        if (sortDirection == BaseSorting.Direction.DESC)
+            byColumn = byColumn.reversed();
 
         return directoryFirst.thenComparing(byColumn);
     }
 
     public void chooseDirectory(@NonNull String name) {
-        TorrentContentFileTree node = curDir.getChild(name);
-        if (node == null)
+        TorrentContentFlatTree fileTree = this.fileTree;
+        int node = childByName(name);
+        if (node == TorrentContentFlatTree.NO_NODE)
             return;
 
-        if (node.isFile())
-            node = fileTree;
+        if (fileTree.isFile(node))
+            node = TorrentContentFlatTree.ROOT;
 
         updateCurDir(node);
     }
 
     public Single<Uri> getFilePath(@NonNull String name) {
-        return getFilePath(curDir.getChild(name));
+        return getFilePath(childByName(name));
     }
 
     public Single<Uri> getFilePathByIndex(int index) {
         return getFilePath(leafByIndex(index));
     }
 
-    private Single<Uri> getFilePath(TorrentContentFileTree node) {
-        if (node == null)
+    private Single<Uri> getFilePath(int node) {
+        TorrentContentFlatTree fileTree = this.fileTree;
+        if (fileTree == null || node == TorrentContentFlatTree.NO_NODE)
             return Single.error(new NullPointerException("node is null"));
 
         Context context = application.getApplicationContext();
-        String relativePath = node.getPath();
+        String relativePath = fileTree.getPath(node);
 
         Torrent torrent = info.getTorrent();
         if (torrent == null)
@@ -347,8 +403,18 @@ public class TorrentDetailsViewModel extends ViewModel {
         });
     }
 
-    private TorrentContentFileTree leafByIndex(int index) {
-        return (treeLeaves != null && index >= 0 && index < treeLeaves.length) ? treeLeaves[index] : null;
+    private int childByName(String name) {
+        TorrentContentFlatTree fileTree = this.fileTree;
+        if (fileTree == null || curDir == TorrentContentFlatTree.NO_NODE)
+            return TorrentContentFlatTree.NO_NODE;
+
+        return fileTree.getChild(curDir, name);
+    }
+
+    private int leafByIndex(int index) {
+        TorrentContentFlatTree fileTree = this.fileTree;
+
+        return fileTree == null ? TorrentContentFlatTree.NO_NODE : fileTree.getFileNode(index);
     }
 
     /*
@@ -359,10 +425,10 @@ public class TorrentDetailsViewModel extends ViewModel {
 
     @NonNull
     public FilePriority getFilesPriority(@NonNull List<String> fileNames) {
-        List<TorrentContentFileTree> files = new ArrayList<>();
+        List<Integer> files = new ArrayList<>();
         for (String name : fileNames) {
-            TorrentContentFileTree file = curDir.getChild(name);
-            if (file != null) {
+            int file = childByName(name);
+            if (file != TorrentContentFlatTree.NO_NODE) {
                 files.add(file);
             }
         }
@@ -372,10 +438,10 @@ public class TorrentDetailsViewModel extends ViewModel {
 
     @NonNull
     public FilePriority getFilesPriorityByIndex(@NonNull List<Integer> indexes) {
-        List<TorrentContentFileTree> files = new ArrayList<>();
+        List<Integer> files = new ArrayList<>();
         for (int index : indexes) {
-            TorrentContentFileTree file = leafByIndex(index);
-            if (file != null) {
+            int file = leafByIndex(index);
+            if (file != TorrentContentFlatTree.NO_NODE) {
                 files.add(file);
             }
         }
@@ -384,10 +450,11 @@ public class TorrentDetailsViewModel extends ViewModel {
     }
 
     @NonNull
-    private FilePriority getFilesPriorityFromNodes(@NonNull List<TorrentContentFileTree> files) {
+    private FilePriority getFilesPriorityFromNodes(@NonNull List<Integer> files) {
         List<FilePriority> priorities = new ArrayList<>();
-        for (TorrentContentFileTree file : files) {
-            priorities.add(file.getFilePriority());
+        TorrentContentFlatTree fileTree = this.fileTree;
+        for (int file : files) {
+            priorities.add(fileTree.getFilePriority(file));
         }
         if (priorities.isEmpty()) {
             return new FilePriority(FilePriority.Type.MIXED);
@@ -417,25 +484,101 @@ public class TorrentDetailsViewModel extends ViewModel {
 
     public void applyPriority(@NonNull List<String> fileNames,
                               @NonNull FilePriority priority) {
-        applyPriority(io.reactivex.rxjava3.core.Observable.fromIterable(fileNames)
-                .map((fileName) -> curDir.getChild(fileName)), priority);
+        applyPriority(() -> childrenByName(fileNames), priority);
     }
 
     public void applyPriorityByIndex(@NonNull List<Integer> indexes,
                                      @NonNull FilePriority priority) {
-        applyPriority(io.reactivex.rxjava3.core.Observable.fromIterable(indexes)
-                .map(this::leafByIndex), priority);
+        applyPriority(() -> {
+            int[] nodes = new int[indexes.size()];
+            for (int i = 0; i < nodes.length; i++)
+                nodes[i] = leafByIndex(indexes.get(i));
+            return nodes;
+        }, priority);
     }
 
-    private void applyPriority(io.reactivex.rxjava3.core.Observable<TorrentContentFileTree> files,
+    /*
+     * Applies the priority to all selected files and directories
+     * as one batch, instead of updating the tree file by file
+     */
+
+    private void applyPriority(@NonNull Callable<int[]> selectedNodes,
                                @NonNull FilePriority priority) {
-        disposable.add(files
-                .filter(Objects::nonNull)
-                .subscribe((file) -> {
-                    file.setPriority(priority, true);
+        if (priority.getType() == FilePriority.Type.MIXED)
+            return;
+
+        disposable.add(Completable.fromAction(() -> {
+                    try {
+                        syncBuildFileTree.lock();
+
+                        TorrentContentFlatTree fileTree = this.fileTree;
+                        if (fileTree == null)
+                            return;
+                        int[] fileIndexes = collectFiles(fileTree, selectedNodes.call());
+                        Priority[] priorities = new Priority[fileIndexes.length];
+                        Arrays.fill(priorities, priority.getPriority());
+                        fileTree.setFilePriorities(fileIndexes, priorities);
+
+                    } finally {
+                        syncBuildFileTree.unlock();
+                    }
                     updateChildren();
-                    mutableParams.setPrioritiesChanged(true);
-                }));
+                })
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(() -> mutableParams.setPrioritiesChanged(true)));
+    }
+
+    /*
+     * Looks up the children of the current directory in one pass
+     */
+
+    private int[] childrenByName(List<String> names) {
+        TorrentContentFlatTree fileTree = this.fileTree;
+        int dir = curDir;
+        if (fileTree == null || dir == TorrentContentFlatTree.NO_NODE)
+            return new int[0];
+
+        var nameSet = new HashSet<>(names);
+        int[] nodes = new int[nameSet.size()];
+        int count = 0;
+        for (int child = fileTree.getFirstChild(dir);
+             child != TorrentContentFlatTree.NO_NODE && count < nodes.length;
+             child = fileTree.getNextSibling(child)) {
+            if (nameSet.contains(fileTree.getName(child)))
+                nodes[count++] = child;
+        }
+
+        return Arrays.copyOf(nodes, count);
+    }
+
+    /*
+     * Returns the torrent file indexes of the files and directory subtrees
+     */
+
+    private static int[] collectFiles(TorrentContentFlatTree fileTree, int[] nodes) {
+        int count = 0;
+        for (int node : nodes) {
+            if (node == TorrentContentFlatTree.NO_NODE)
+                continue;
+            int end = fileTree.getSubtreeEnd(node);
+            for (int i = node; i < end; i++)
+                if (fileTree.isFile(i))
+                    count++;
+        }
+
+        int[] fileIndexes = new int[count];
+        int pos = 0;
+        for (int node : nodes) {
+            if (node == TorrentContentFlatTree.NO_NODE)
+                continue;
+            int end = fileTree.getSubtreeEnd(node);
+            for (int i = node; i < end; i++)
+                if (fileTree.isFile(i))
+                    fileIndexes[pos++] = fileTree.getFileIndex(i);
+        }
+
+        return fileIndexes;
     }
 
     public String getStreamUrl(int fileIndex) {
@@ -514,21 +657,24 @@ public class TorrentDetailsViewModel extends ViewModel {
     }
 
     private Priority[] getFilePriorities() {
-        if (treeLeaves == null)
+        TorrentContentFlatTree fileTree = this.fileTree;
+        if (fileTree == null)
             return null;
 
-        Priority[] priorities = new Priority[treeLeaves.length];
-        for (TorrentContentFileTree file : treeLeaves)
-            if (file != null && (file.getIndex() >= 0 && file.getIndex() < treeLeaves.length))
-                priorities[file.getIndex()] = file.getFilePriority().getPriority();
+        try {
+            syncBuildFileTree.lock();
+            return fileTree.getFilePriorities();
 
-        return priorities;
+        } finally {
+            syncBuildFileTree.unlock();
+        }
     }
 
     private boolean checkFreeSpace() {
         long storageFreeSpace = info.getStorageFreeSpace();
 
-        return storageFreeSpace == -1 || storageFreeSpace >= fileTree.nonIgnoreFileSize();
+        return storageFreeSpace == -1 ||
+                storageFreeSpace >= fileTree.nonIgnoreFileSize(TorrentContentFlatTree.ROOT);
     }
 
     private void initMutableParams() {
@@ -626,7 +772,10 @@ public class TorrentDetailsViewModel extends ViewModel {
         disposable.add(Completable.fromRunnable(this::makeFileTree)
                 .subscribeOn(Schedulers.computation())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(() -> updateCurDir(fileTree)));
+                .subscribe(() -> {
+                    if (fileTree != null)
+                        updateCurDir(TorrentContentFlatTree.ROOT);
+                }));
     }
 
     private void makeFileTree() {
@@ -636,40 +785,32 @@ public class TorrentDetailsViewModel extends ViewModel {
             if (fileTree != null)
                 return;
 
-            TorrentMetaInfo metaInfo = info.getMetaInfo();
-            if (metaInfo == null)
-                return;
-            List<BencodeFileItem> files = metaInfo.fileList;
-            if (files.isEmpty())
-                return;
             Torrent torrent = info.getTorrent();
             TorrentInfo ti = info.getTorrentInfo();
-            if (torrent == null || ti == null || ti.filePriorities.length != metaInfo.fileCount)
+            if (torrent == null || ti == null)
+                return;
+            /* Streams file entries from the session, without the intermediate file list */
+            TorrentContentFlatTree fileTree = engine.makeFileTree(torrentId);
+            if (fileTree == null || fileTree.getFileCount() == 0 ||
+                    ti.filePriorities.length != fileTree.getFileCount())
                 return;
 
-            ArrayList<FilePriority> priorities = new ArrayList<>();
-            for (Priority p : ti.filePriorities)
-                priorities.add(new FilePriority(p));
-
-            Pair<TorrentContentFileTree, TorrentContentFileTree[]> res = TorrentContentFileTreeUtils.buildFileTree(files);
-            TorrentContentFileTree fileTree = res.first;
-            treeLeaves = res.second;
-
-            /* Set priorities */
-            for (int i = 0; i < files.size(); i++) {
-                BencodeFileItem f = files.get(i);
-                TorrentContentFileTree file = treeLeaves[f.getIndex()];
-                if (file != null)
-                    file.setPriority(priorities.get(i), false);
-            }
+            fileTree.setFilePriorities(ti.filePriorities);
+            searchIndex = new FileSearchIndex(fileTree);
 
             this.fileTree = fileTree;
+            updateSearchResult();
 
         } finally {
             syncBuildFileTree.unlock();
         }
     }
 
+    /*
+     * Updates the files and their directories in one pass
+     * and makes the current directory items off the main thread
+     */
+
     private void updateFiles(long[] receivedBytes, double[] availability) {
         disposable.add(Completable.fromRunnable(() -> {
                     try {
@@ -677,33 +818,54 @@ public class TorrentDetailsViewModel extends ViewModel {
 
                         if (fileTree == null)
                             return;
+                        fileTree.update(receivedBytes, availability);
 
-                        if (receivedBytes != null) {
-                            for (int i = 0; i < receivedBytes.length; i++) {
-                                // TODO
-                                TorrentContentFileTree file = treeLeaves[i];
-                                if (file != null)
-                                    file.setReceivedBytes(receivedBytes[i]);
-                            }
-                        }
-                        if (availability != null) {
-                            for (int i = 0; i < availability.length; i++) {
-                                TorrentContentFileTree file = treeLeaves[i];
-                                if (file != null)
-                                    file.setAvailability(availability[i]);
-                            }
-                        }
+                    } finally {
+                        syncBuildFileTree.unlock();
+                    }
+                    if (fileTree != null)
+                        children.onNext(getChildren(curDir));
+                })
+                .subscribeOn(Schedulers.computation())
+                .subscribe());
+    }
+
+    /*
+     * Searches off the main thread. The index is queried with the current
+     * query, so the results of the outdated queries aren't shown
+     */
+
+    private void search() {
+        disposable.add(Completable.fromRunnable(() -> {
+                    try {
+                        syncBuildFileTree.lock();
+                        updateSearchResult();
 
                     } finally {
                         syncBuildFileTree.unlock();
                     }
+                    children.onNext(getChildren(curDir));
                 })
                 .subscribeOn(Schedulers.computation())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(this::updateChildren));
+                .subscribe());
+    }
+
+    private void updateSearchResult() {
+        if (searchIndex == null || !isSearchActive()) {
+            searchResult = null;
+            searchNodes = null;
+            return;
+        }
+
+        /* Typing the query further only filters the previous result */
+        searchResult = searchIndex.search(searchQuery, searchResult);
+        searchNodes = searchIndex.getNodes(searchResult,
+                sortColumn == FileTreeSorting.SortingColumns.size,
+                sortDirection == BaseSorting.Direction.DESC);
+        searchLimit = SEARCH_PAGE_SIZE;
     }
 
-    private void updateCurDir(TorrentContentFileTree node) {
+    private void updateCurDir(int node) {
         curDir = node;
         updateChildren();
     }
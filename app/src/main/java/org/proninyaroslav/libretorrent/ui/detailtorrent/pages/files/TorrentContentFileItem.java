@@ -26,7 +26,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.proninyaroslav.libretorrent.core.model.filetree.FilePriority;
-import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFileTree;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
 import org.proninyaroslav.libretorrent.ui.FileItem;
 
 import java.util.Objects;
@@ -36,13 +36,24 @@ public class TorrentContentFileItem extends FileItem {
     public long receivedBytes;
     public double availability;
 
-    public TorrentContentFileItem(@NonNull TorrentContentFileTree tree, boolean showPath) {
-        super(tree.getIndex(), tree.getName(), tree.isFile(), tree.size());
+    public TorrentContentFileItem(@NonNull TorrentContentFlatTree tree, int node, boolean showPath) {
+        super(tree.getFileIndex(node), tree.getName(node), tree.isFile(node), tree.size(node));
 
-        priority = tree.getFilePriority();
-        receivedBytes = tree.getReceivedBytes();
-        availability = tree.getAvailability();
-        path = (showPath && tree.getParent() != null) ? tree.getParent().getPath() : null;
+        priority = tree.getFilePriority(node);
+        receivedBytes = tree.getReceivedBytes(node);
+        availability = tree.getAvailability(node);
+        int parent = tree.getParent(node);
+        path = (showPath && parent != TorrentContentFlatTree.NO_NODE) ? tree.getPath(parent) : null;
+    }
+
+    public TorrentContentFileItem(int index, String name, boolean isFile, long size,
+                                  @NonNull FilePriority priority, long receivedBytes,
+                                  double availability) {
+        super(index, name, isFile, size);
+
+        this.priority = priority;
+        this.receivedBytes = receivedBytes;
+        this.availability = availability;
     }
 
     public TorrentContentFileItem(Parcel source) {
@@ -36,7 +36,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import org.proninyaroslav.libretorrent.R;
 import org.proninyaroslav.libretorrent.core.model.filetree.FilePriority;
-import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFileTree;
+import org.proninyaroslav.libretorrent.core.model.filetree.FileTree;
 import org.proninyaroslav.libretorrent.databinding.ItemTorrentContentFileBinding;
 import org.proninyaroslav.libretorrent.ui.Selectable;
 
@@ -123,7 +123,7 @@ public class TorrentContentFilesAdapter extends ListAdapter<TorrentContentFileIt
         void bind(TorrentContentFileItem item, ClickListener listener) {
             selectionKey = item;
             var context = itemView.getContext();
-            var isParentDir = item.name.equals(TorrentContentFileTree.PARENT_DIR);
+            var isParentDir = item.name.equals(FileTree.PARENT_DIR);
 
             /*
              * Only expose the card's checked state to accessibility while a
@@ -56,6 +56,7 @@ import com.google.android.material.snackbar.Snackbar;
 import org.proninyaroslav.libretorrent.R;
 import org.proninyaroslav.libretorrent.core.model.filetree.BencodeFileTree;
 import org.proninyaroslav.libretorrent.core.model.filetree.FilePriority;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
 import org.proninyaroslav.libretorrent.core.sorting.BaseSorting;
 import org.proninyaroslav.libretorrent.core.sorting.FileTreeSorting;
 import org.proninyaroslav.libretorrent.core.utils.Utils;
@@ -69,7 +70,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
@@ -88,6 +88,8 @@ public class TorrentsDetailsFilesFragment extends Fragment
     private static final String SELECTION_TRACKER_ID = "selection_tracker_0";
     private static final String KEY_CHANGE_PRIORITY_DIALOG_REQUEST = TAG + "_change_priority_dialog";
     private static final long SEARCH_DEBOUNCE_MS = 200;
+    /* Load the next page of the search results this number of items before the end */
+    private static final int SEARCH_PRELOAD_ITEMS = 50;
 
     private AppCompatActivity activity;
     private FragmentTorrentDetailsFilesBinding binding;
@@ -187,15 +189,9 @@ public class TorrentsDetailsFilesFragment extends Fragment
 
     private void subscribeAdapter() {
         disposables.add(viewModel.getDirChildren()
-                .subscribeOn(Schedulers.computation())
-                .flatMapSingle((state) ->
-                        Flowable.fromIterable(state.items())
-                                .map((tree) -> new TorrentContentFileItem(tree, state.searchActive()))
-                                .toList()
-                )
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe((children) -> {
-                    adapter.submitList(children);
+                .subscribe((state) -> {
+                    adapter.submitList(state.items());
                     updateFileSize();
                 }));
     }
@@ -228,6 +224,7 @@ public class TorrentsDetailsFilesFragment extends Fragment
         };
         binding.fileList.setItemAnimator(animator);
         binding.fileList.setAdapter(adapter);
+        binding.fileList.addOnScrollListener(searchScrollCallback);
 
         selectionTracker = new SelectionTracker.Builder<>(
                 SELECTION_TRACKER_ID,
@@ -296,6 +293,21 @@ public class TorrentsDetailsFilesFragment extends Fragment
         initSearchAndSort();
     }
 
+    private final RecyclerView.OnScrollListener searchScrollCallback = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            super.onScrolled(recyclerView, dx, dy);
+
+            if (dy <= 0 || !viewModel.isSearchActive()) {
+                return;
+            }
+            int lastVisible = layoutManager.findLastVisibleItemPosition();
+            if (lastVisible >= adapter.getItemCount() - SEARCH_PRELOAD_ITEMS) {
+                viewModel.loadMoreSearchResults();
+            }
+        }
+    };
+
     private void initSearchAndSort() {
         var query = viewModel.getSearchQuery();
         if (!query.isEmpty()) {
@@ -366,15 +378,16 @@ public class TorrentsDetailsFilesFragment extends Fragment
     }
 
     private void updateFileSize() {
-        if (viewModel.fileTree == null) {
+        var fileTree = viewModel.fileTree;
+        if (fileTree == null) {
             return;
         }
 
         binding.filesSize.setText(getString(R.string.files_size,
                 Formatter.formatFileSize(activity.getApplicationContext(),
-                        viewModel.fileTree.nonIgnoreFileSize()),
+                        fileTree.nonIgnoreFileSize(TorrentContentFlatTree.ROOT)),
                 Formatter.formatFileSize(activity.getApplicationContext(),
-                        viewModel.fileTree.size())));
+                        fileTree.size(TorrentContentFlatTree.ROOT))));
     }
 
     @Override
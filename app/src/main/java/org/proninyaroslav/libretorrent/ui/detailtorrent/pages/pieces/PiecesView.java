@@ -20,36 +20,62 @@
 package org.proninyaroslav.libretorrent.ui.detailtorrent.pages.pieces;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
 import android.util.AttributeSet;
 import android.view.View;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.android.material.color.MaterialColors;
 
 import org.proninyaroslav.libretorrent.R;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMapUpdate;
 import org.proninyaroslav.libretorrent.core.utils.Utils;
 
-import java.util.Arrays;
-
 /*
  * A widget for display pieces map.
+ *
+ * The pieces are cached in bitmap tiles with one pixel per cell, so
+ * that only the changed cells are repainted. The tiles are drawn
+ * scaled up through the cells mask, which keeps the gaps between cells
+ * transparent, instead of drawing each cell separately.
  */
 
 public class PiecesView extends View {
     private static final float CELL_SIZE_BIG_DP = 20f;
     private static final float CELL_SIZE_SMALL_DP = 10f;
     private static final float BORDER_SIZE_DP = 1f;
+    /* Rows of cells in one bitmap tile */
+    private static final int TILE_ROWS = 512;
+    /* Rows of cells in the mask, must be a divisor of TILE_ROWS */
+    private static final int MASK_ROWS = 32;
 
-    private static final boolean[] UNINITIALIZED_VIEW_PIECES = new boolean[10];
+    private static final PieceMap UNINITIALIZED_VIEW_PIECES =
+            new PieceMap(10, new long[PieceMap.numWords(10)]);
 
-    private boolean[] pieces;
+    private PieceMap pieces;
     private int borderSize;
     private MeasureResult measureResult;
-    private final Paint empty = new Paint();
-    private final Paint complete = new Paint();
+    private int emptyColor;
+    private int completeColor;
+    /* Tiles are valid for this measure result */
+    private MeasureResult tilesMeasureResult;
+    private Bitmap[] tiles;
+    private Paint[] tilePaints;
+    private Bitmap mask;
+    private int[] rowPixels;
+    private final Rect clipBounds = new Rect();
+    private final Rect maskSrc = new Rect();
+    private final Rect maskDst = new Rect();
 
     public PiecesView(@NonNull Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -64,36 +90,52 @@ public class PiecesView extends View {
     }
 
     void create() {
-        Arrays.fill(UNINITIALIZED_VIEW_PIECES, false);
         borderSize = Utils.dpToPx(getContext(), BORDER_SIZE_DP);
         pieces = UNINITIALIZED_VIEW_PIECES;
 
-        complete.setColor(MaterialColors.getColor(this, R.attr.colorPrimaryInverse));
-        empty.setColor(MaterialColors.getColor(this, R.attr.colorSurfaceVariant));
+        completeColor = MaterialColors.getColor(this, R.attr.colorPrimaryInverse);
+        emptyColor = MaterialColors.getColor(this, R.attr.colorSurfaceVariant);
     }
 
-    public void setPieces(boolean[] pieces) {
-        if (pieces == null || Arrays.equals(this.pieces, pieces)) {
+    public void setPieces(@Nullable PieceMapUpdate update) {
+        if (update == null || update.map() == pieces) {
             return;
         }
 
-        int prevLength = this.pieces != null ? this.pieces.length : 0;
-        this.pieces = pieces;
+        PieceMap prevPieces = pieces;
+        int[] changedRuns = update.getChangedRuns(prevPieces);
+        pieces = update.map();
 
-        if (prevLength == pieces.length) {
+        if (prevPieces.size() != pieces.size()) {
+            releaseTiles();
+            requestLayout();
+            return;
+        }
+        if (tiles == null) {
+            /* Will be filled before drawing */
             invalidate();
+            return;
+        }
+
+        if (changedRuns == null) {
+            fillTiles();
+        } else if (changedRuns.length == 0) {
+            return;
         } else {
-            requestLayout();
+            for (int i = 0; i < changedRuns.length; i += 2) {
+                updateCells(changedRuns[i], changedRuns[i + 1]);
+            }
         }
+        invalidate();
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         int width = MeasureSpec.getSize(widthMeasureSpec) - getPaddingLeft() - getPaddingRight();
-        var result = measure(width, pieces.length, CELL_SIZE_BIG_DP);
+        var result = measure(width, pieces.size(), CELL_SIZE_BIG_DP);
         if (result.height >= result.width) {
-            result = measure(width, pieces.length, CELL_SIZE_SMALL_DP);
+            result = measure(width, pieces.size(), CELL_SIZE_SMALL_DP);
         }
         measureResult = result;
 
@@ -112,33 +154,142 @@ public class PiecesView extends View {
         return new MeasureResult(stepSize, width, height, rows, cols, margin);
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        releaseTiles();
+    }
 
     @Override
     protected void onDraw(@NonNull Canvas canvas) {
         super.onDraw(canvas);
 
-        int position = 0;
-        for (int r = 0; r < measureResult.rows; r++) {
-            for (int c = 0; c < measureResult.cols && position < pieces.length; c++) {
-                var paint = pieces[position] ? complete : empty;
-                int left = c * measureResult.stepSize + borderSize + measureResult.margin;
-                int right = left + measureResult.stepSize - borderSize * 2;
-                int top = r * measureResult.stepSize + borderSize;
-                int bottom = top + measureResult.stepSize - borderSize * 2;
-
-                canvas.drawRect(
-                        left + borderSize,
-                        top + borderSize,
-                        right + borderSize,
-                        bottom + borderSize,
-                        paint
+        if (measureResult == null || measureResult.cols <= 0 || measureResult.rows <= 0) {
+            return;
+        }
+        if (!measureResult.equals(tilesMeasureResult)) {
+            createTiles(measureResult);
+            fillTiles();
+        }
+
+        int stepSize = measureResult.stepSize;
+        int maskHeight = MASK_ROWS * stepSize;
+        canvas.getClipBounds(clipBounds);
+        int firstBand = Math.max(clipBounds.top / maskHeight, 0);
+        int lastBand = Math.min(
+                (clipBounds.bottom + maskHeight - 1) / maskHeight,
+                (measureResult.rows + MASK_ROWS - 1) / MASK_ROWS
+        );
+        for (int band = firstBand; band < lastBand; band++) {
+            int tile = band * MASK_ROWS / TILE_ROWS;
+            int rows = Math.min(MASK_ROWS, measureResult.rows - band * MASK_ROWS);
+            /* Relative to the tile top, where the tile shader starts */
+            int top = (band * MASK_ROWS - tile * TILE_ROWS) * stepSize;
+            maskSrc.set(0, 0, mask.getWidth(), rows * stepSize);
+            maskDst.set(measureResult.margin, top,
+                    measureResult.margin + mask.getWidth(), top + rows * stepSize);
+
+            canvas.save();
+            canvas.translate(0, tile * TILE_ROWS * stepSize);
+            canvas.drawBitmap(mask, maskSrc, maskDst, tilePaints[tile]);
+            canvas.restore();
+        }
+    }
+
+    private void createTiles(MeasureResult result) {
+        releaseTiles();
+
+        int stepSize = result.stepSize;
+        int numTiles = (result.rows + TILE_ROWS - 1) / TILE_ROWS;
+        tiles = new Bitmap[numTiles];
+        tilePaints = new Paint[numTiles];
+        var matrix = new Matrix();
+        matrix.setScale(stepSize, stepSize);
+        matrix.postTranslate(result.margin, 0);
+        for (int i = 0; i < numTiles; i++) {
+            int rows = Math.min(TILE_ROWS, result.rows - i * TILE_ROWS);
+            tiles[i] = Bitmap.createBitmap(result.cols, rows, Bitmap.Config.ARGB_8888);
+            var shader = new BitmapShader(tiles[i], Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            shader.setLocalMatrix(matrix);
+            /* Without filtering to keep the sharp cell edges */
+            var paint = new Paint();
+            paint.setFilterBitmap(false);
+            paint.setShader(shader);
+            tilePaints[i] = paint;
+        }
+        rowPixels = new int[result.cols];
+
+        /* A8 mask, which is colored by the tile shader when drawn */
+        int maskRows = Math.min(MASK_ROWS, result.rows);
+        mask = Bitmap.createBitmap(result.cols * stepSize, maskRows * stepSize,
+                Bitmap.Config.ALPHA_8);
+        var maskCanvas = new Canvas(mask);
+        var maskPaint = new Paint();
+        maskPaint.setColor(Color.BLACK);
+        for (int r = 0; r < maskRows; r++) {
+            for (int c = 0; c < result.cols; c++) {
+                maskCanvas.drawRect(
+                        c * stepSize + borderSize * 2,
+                        r * stepSize + borderSize * 2,
+                        (c + 1) * stepSize,
+                        (r + 1) * stepSize,
+                        maskPaint
                 );
-                ++position;
             }
         }
+
+        tilesMeasureResult = result;
+    }
+
+    private void releaseTiles() {
+        if (tiles != null) {
+            for (var tile : tiles) {
+                tile.recycle();
+            }
+        }
+        if (mask != null) {
+            mask.recycle();
+        }
+        tiles = null;
+        tilePaints = null;
+        mask = null;
+        tilesMeasureResult = null;
+    }
+
+    private void fillTiles() {
+        int cols = tilesMeasureResult.cols;
+        int numCells = tilesMeasureResult.rows * cols;
+        for (int start = 0; start < numCells; start += cols) {
+            updateCells(start, start + cols);
+        }
+    }
+
+    /*
+     * Repaints the cells in [start, end)
+     */
+
+    private void updateCells(int start, int end) {
+        int cols = tilesMeasureResult.cols;
+        int size = pieces.size();
+        while (start < end) {
+            int row = start / cols;
+            int col = start % cols;
+            int len = Math.min(end - start, cols - col);
+            for (int i = 0; i < len; i++) {
+                int piece = start + i;
+                if (piece >= size) {
+                    rowPixels[i] = Color.TRANSPARENT;
+                } else {
+                    rowPixels[i] = pieces.get(piece) ? completeColor : emptyColor;
+                }
+            }
+            tiles[row / TILE_ROWS].setPixels(rowPixels, 0, len, col, row % TILE_ROWS, len, 1);
+            start += len;
+        }
     }
 
     private record MeasureResult(int stepSize, int width, int height,
                                  int rows, int cols, int margin) {
     }
-}
\ No newline at end of file
+}
@@ -140,6 +140,6 @@ public class TorrentDetailsPiecesFragment extends Fragment {
         disposables.add(viewModel.observePieces()
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe((pieces) -> binding.pieceMap.setPieces(pieces)));
+                .subscribe((update) -> binding.pieceMap.setPieces(update)));
     }
 }
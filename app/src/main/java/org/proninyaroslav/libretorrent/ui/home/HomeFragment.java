@@ -102,7 +102,6 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
@@ -599,12 +598,9 @@ public class HomeFragment extends AbstractListDetailFragment {
                     if (state instanceof TorrentListState.Initial) {
                         return Single.just((TorrentListItemState) new TorrentListItemState.Initial());
                     } else if (state instanceof TorrentListState.Loaded loaded) {
-                        return Flowable.fromIterable(loaded.list())
-                                .filter(viewModel.getFilter())
-                                .map(TorrentListItem::new)
-                                .sorted(viewModel.getSorting())
-                                .toList()
-                                .map(TorrentListItemState.Loaded::new);
+                        return Single.fromCallable(() -> (TorrentListItemState) new TorrentListItemState.Loaded(
+                                viewModel.applyListState(loaded)
+                        ));
                     }
                     throw new IllegalStateException("Unknown state: " + state);
                 })
@@ -639,12 +635,9 @@ public class HomeFragment extends AbstractListDetailFragment {
                     if (state instanceof TorrentListState.Initial) {
                         return Single.just((TorrentListItemState) new TorrentListItemState.Initial());
                     } else if (state instanceof TorrentListState.Loaded loaded) {
-                        return Flowable.fromIterable(loaded.list())
-                                .filter(viewModel.getSearchFilter())
-                                .map(TorrentListItem::new)
-                                .sorted(viewModel.getSorting())
-                                .toList()
-                                .map(TorrentListItemState.Loaded::new);
+                        return Single.fromCallable(() -> (TorrentListItemState) new TorrentListItemState.Loaded(
+                                viewModel.applySearchListState(loaded)
+                        ));
                     }
                     throw new IllegalStateException("Unknown state: " + state);
                 })
@@ -75,6 +75,8 @@ public class HomeViewModel extends AndroidViewModel {
     private TorrentFilter tagFilter = TorrentFilterCollection.all();
     private final PublishSubject<Boolean> forceSortAndFilter = PublishSubject.create();
     private final PublishSubject<Boolean> forceSearch = PublishSubject.create();
+    private final TorrentListPatcher listPatcher = new TorrentListPatcher();
+    private final TorrentListPatcher searchListPatcher = new TorrentListPatcher();
     private final TagRepository tagRepo;
     private final Moshi moshiDrawer = new Moshi.Builder()
             .add(PolymorphicJsonAdapterFactory.of(DrawerTagFilter.class, "type")
@@ -109,12 +111,26 @@ public class HomeViewModel extends AndroidViewModel {
         return stateProvider.getInfoListSingle();
     }
 
+    /*
+     * Returns filtered and sorted list, updated incrementally from the state delta
+     */
+
+    public List<TorrentListItem> applyListState(@NonNull TorrentListState.Loaded state) {
+        return listPatcher.apply(state, getFilter(), sorting);
+    }
+
+    public List<TorrentListItem> applySearchListState(@NonNull TorrentListState.Loaded state) {
+        return searchListPatcher.apply(state, searchFilter, sorting);
+    }
+
     public Flowable<String> observeTorrentsDeleted() {
         return stateProvider.observeTorrentsDeleted();
     }
 
     public void setSort(@NonNull TorrentSortingComparator sorting, boolean force) {
         this.sorting = sorting;
+        listPatcher.reset();
+        searchListPatcher.reset();
         if (force && !sorting.sorting().getColumnName().equals(TorrentSorting.SortingColumns.none.name())) {
             forceSortAndFilter.onNext(true);
         }
@@ -126,6 +142,7 @@ public class HomeViewModel extends AndroidViewModel {
 
     public void setStatusFilter(@NonNull List<TorrentFilter> statusFilter, boolean force) {
         this.statusFilter = statusFilter;
+        listPatcher.reset();
         if (force) {
             forceSortAndFilter.onNext(true);
         }
@@ -133,6 +150,7 @@ public class HomeViewModel extends AndroidViewModel {
 
     public void setDateAddedFilter(@NonNull List<TorrentFilter> dateAddedFilter, boolean force) {
         this.dateAddedFilter = dateAddedFilter;
+        listPatcher.reset();
         if (force) {
             forceSortAndFilter.onNext(true);
         }
@@ -140,6 +158,7 @@ public class HomeViewModel extends AndroidViewModel {
 
     public void setTagFilter(@NonNull TorrentFilter tagFilter, boolean force) {
         this.tagFilter = tagFilter;
+        listPatcher.reset();
         if (force) {
             forceSortAndFilter.onNext(true);
         }
@@ -176,6 +195,7 @@ public class HomeViewModel extends AndroidViewModel {
 
     public void setSearchQuery(@Nullable String searchQuery) {
         this.searchQuery = searchQuery;
+        searchListPatcher.reset();
         forceSearch.onNext(true);
     }
 
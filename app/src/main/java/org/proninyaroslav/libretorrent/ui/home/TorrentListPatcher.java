@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.ui.home;
+
+import androidx.annotation.NonNull;
+
+import org.proninyaroslav.libretorrent.core.filter.TorrentFilter;
+import org.proninyaroslav.libretorrent.core.model.data.TorrentInfo;
+import org.proninyaroslav.libretorrent.core.model.data.TorrentListState;
+import org.proninyaroslav.libretorrent.core.sorting.TorrentSorting;
+import org.proninyaroslav.libretorrent.core.sorting.TorrentSortingComparator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/*
+ * Applies TorrentListState delta to the previously filtered and sorted list,
+ * so that only changed torrents are filtered and placed, without full re-sorting.
+ * Must be reset if filter or sorting is changed.
+ */
+
+class TorrentListPatcher {
+    private List<TorrentListItem> prevList;
+
+    synchronized void reset() {
+        prevList = null;
+    }
+
+    synchronized List<TorrentListItem> apply(
+            @NonNull TorrentListState.Loaded state,
+            @NonNull TorrentFilter filter,
+            @NonNull TorrentSortingComparator sorting
+    ) {
+        var delta = state.delta();
+        if (prevList == null || delta.full()) {
+            prevList = makeList(state.list(), filter, sorting);
+            return prevList;
+        }
+
+        var touched = new HashSet<String>(delta.added());
+        touched.addAll(delta.changed());
+        touched.addAll(delta.removed());
+        if (touched.isEmpty()) {
+            return prevList;
+        }
+
+        var touchedInfo = new HashMap<String, TorrentInfo>();
+        for (var info : state.list()) {
+            if (touched.contains(info.torrentId)) {
+                touchedInfo.put(info.torrentId, info);
+            }
+        }
+
+        var unsorted = sorting.sorting().getColumnName()
+                .equals(TorrentSorting.SortingColumns.none.name());
+        var newList = new ArrayList<TorrentListItem>(prevList.size() + delta.added().size());
+        var placed = new HashSet<String>();
+        for (var item : prevList) {
+            if (!touched.contains(item.torrentId)) {
+                newList.add(item);
+            } else if (unsorted) {
+                /* Keep the original position */
+                var info = touchedInfo.get(item.torrentId);
+                if (info != null && matches(filter, info)) {
+                    newList.add(new TorrentListItem(info));
+                }
+                placed.add(item.torrentId);
+            }
+        }
+
+        for (var info : touchedInfo.values()) {
+            if (placed.contains(info.torrentId) || !matches(filter, info)) {
+                continue;
+            }
+            if (unsorted) {
+                /* Position depends on the database order, which is only known by the full list */
+                prevList = makeList(state.list(), filter, sorting);
+                return prevList;
+            }
+            var item = new TorrentListItem(info);
+            var pos = Collections.binarySearch(newList, item, sorting);
+            newList.add(pos < 0 ? -pos - 1 : pos, item);
+        }
+        prevList = newList;
+
+        return prevList;
+    }
+
+    private static List<TorrentListItem> makeList(
+            List<TorrentInfo> infoList,
+            TorrentFilter filter,
+            TorrentSortingComparator sorting
+    ) {
+        var list = new ArrayList<TorrentListItem>(infoList.size());
+        for (var info : infoList) {
+            if (matches(filter, info)) {
+                list.add(new TorrentListItem(info));
+            }
+        }
+        list.sort(sorting);
+
+        return list;
+    }
+
+    private static boolean matches(TorrentFilter filter, TorrentInfo info) {
+        try {
+            return filter.test(info);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
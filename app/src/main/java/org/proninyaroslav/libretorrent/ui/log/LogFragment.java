@@ -344,7 +344,7 @@ public class LogFragment extends Fragment {
                 FileManagerConfig.Mode.SAVE_FILE
         );
         config.fileName = viewModel.getSaveLogFileName();
-        config.mimeType = Utils.MIME_TEXT_PLAIN;
+        config.mimeType = Utils.MIME_GZIP;
         var action = NavBarFragmentDirections.actionSaveFileChooseDialog(
                 config,
                 KEY_SAVE_LOG_CHOOSE_DIALOG_REQUEST
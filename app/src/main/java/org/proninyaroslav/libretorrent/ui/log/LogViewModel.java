@@ -188,7 +188,7 @@ public class LogViewModel extends AndroidViewModel {
         String timeStamp = new SimpleDateFormat("MM-dd-yyyy_HH-mm-ss", Locale.getDefault())
                 .format(new Date());
 
-        return getApplication().getString(R.string.app_name) + "_log_" + timeStamp + ".txt";
+        return getApplication().getString(R.string.app_name) + "_log_" + timeStamp + ".txt.gz";
     }
 
     void saveLog(@NonNull Uri filePath) {
@@ -0,0 +1,531 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import org.proninyaroslav.libretorrent.core.exception.DecodeException;
+import org.proninyaroslav.libretorrent.core.model.data.PeerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.PieceMap;
+import org.proninyaroslav.libretorrent.core.model.data.Priority;
+import org.proninyaroslav.libretorrent.core.model.data.ReadPieceInfo;
+import org.proninyaroslav.libretorrent.core.model.data.TorrentStateCode;
+import org.proninyaroslav.libretorrent.core.model.data.TrackerInfo;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.TorrentMetaInfo;
+import org.proninyaroslav.libretorrent.core.model.filetree.TorrentContentFlatTree;
+import org.proninyaroslav.libretorrent.core.model.session.PiecesAvailability;
+import org.proninyaroslav.libretorrent.core.model.session.TorrentDownload;
+import org.proninyaroslav.libretorrent.core.model.session.TorrentStatusSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.rxjava3.core.Completable;
+
+/*
+ * Completely downloaded torrent, whose pieces are "read from the disk"
+ * by the pool of threads with the specified latency
+ */
+
+class FakeTorrentDownload implements TorrentDownload {
+    private final FakeTorrentSession session;
+    private final String id;
+    private final int pieceLength;
+    private final long totalSize;
+    private final int numPieces;
+    private final long readLatency;
+    private final ExecutorService diskExecutor;
+    private final Object alertLock = new Object();
+    private final AtomicInteger readPieceCount = new AtomicInteger();
+    /* Pieces that fail to be read, like a deleted file or an I/O error */
+    private final Set<Integer> brokenPieces = ConcurrentHashMap.newKeySet();
+    /* Pieces that are not downloaded yet */
+    private final Set<Integer> missingPieces = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch missingPieceWanted = new CountDownLatch(1);
+
+    FakeTorrentDownload(
+            @NonNull FakeTorrentSession session,
+            @NonNull String id,
+            int pieceLength,
+            long totalSize,
+            long readLatency,
+            int diskThreads
+    ) {
+        this.session = session;
+        this.id = id;
+        this.pieceLength = pieceLength;
+        this.totalSize = totalSize;
+        this.numPieces = (int) ((totalSize + pieceLength - 1) / pieceLength);
+        this.readLatency = readLatency;
+        this.diskExecutor = Executors.newFixedThreadPool(diskThreads);
+    }
+
+    static byte byteAt(long torrentOffset) {
+        return (byte) (torrentOffset % 251);
+    }
+
+    int pieceSize(int pieceIndex) {
+        if (pieceIndex == numPieces - 1)
+            return (int) (totalSize - (long) pieceIndex * pieceLength);
+
+        return pieceLength;
+    }
+
+    int getReadPieceCount() {
+        return readPieceCount.get();
+    }
+
+    void breakPiece(int pieceIndex) {
+        brokenPieces.add(pieceIndex);
+    }
+
+    void removePiece(int pieceIndex) {
+        missingPieces.add(pieceIndex);
+    }
+
+    /*
+     * Wait until somebody checks for one of the missing pieces
+     */
+
+    boolean awaitMissingPiece(long timeout, TimeUnit unit) throws InterruptedException {
+        return missingPieceWanted.await(timeout, unit);
+    }
+
+    TorrentStream makeStream(int fileIndex, long fileOffset, long fileSize) {
+        int firstPiece = (int) (fileOffset / pieceLength);
+        int lastPiece = (int) ((fileOffset + fileSize - 1) / pieceLength);
+
+        return new TorrentStream(id, fileIndex, firstPiece, lastPiece, pieceLength,
+                fileOffset, fileSize, pieceSize(lastPiece));
+    }
+
+    void shutdown() {
+        diskExecutor.shutdownNow();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String getTorrentId() {
+        return id;
+    }
+
+    @Override
+    public Completable requestStop() {
+        return null;
+    }
+
+    @Override
+    public void pause() {
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    @Override
+    public void pauseManually() {
+    }
+
+    @Override
+    public void resumeManually() {
+    }
+
+    @Override
+    public void setAutoManaged(boolean autoManaged) {
+    }
+
+    @Override
+    public boolean isAutoManaged() {
+        return false;
+    }
+
+    @Override
+    public int getProgress() {
+        return 0;
+    }
+
+    @Override
+    public TorrentStatusSnapshot getStatusSnapshot() {
+        return null;
+    }
+
+    @Override
+    public void prioritizeFiles(@NonNull Priority[] priorities) {
+    }
+
+    @Override
+    public long getSize() {
+        return 0;
+    }
+
+    @Override
+    public long getDownloadSpeed() {
+        return 0;
+    }
+
+    @Override
+    public long getUploadSpeed() {
+        return 0;
+    }
+
+    @Override
+    public void remove(boolean withFiles) {
+    }
+
+    @Override
+    public long getActiveTime() {
+        return 0;
+    }
+
+    @Override
+    public long getSeedingTime() {
+        return 0;
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return 0;
+    }
+
+    @Override
+    public long getTotalSentBytes() {
+        return 0;
+    }
+
+    @Override
+    public int getConnectedPeers() {
+        return 0;
+    }
+
+    @Override
+    public int getConnectedSeeds() {
+        return 0;
+    }
+
+    @Override
+    public int getConnectedLeechers() {
+        return 0;
+    }
+
+    @Override
+    public int getTotalPeers() {
+        return 0;
+    }
+
+    @Override
+    public int getTotalSeeds() {
+        return 0;
+    }
+
+    @Override
+    public int getTotalLeechers() {
+        return 0;
+    }
+
+    @Override
+    public void requestTrackerAnnounce() {
+    }
+
+    @Override
+    public Set<String> getTrackersUrl() {
+        return null;
+    }
+
+    @Override
+    public List<TrackerInfo> getTrackerInfoList() {
+        return null;
+    }
+
+    @Override
+    public List<PeerInfo> getPeerInfoList() {
+        return null;
+    }
+
+    @Override
+    public long getTotalWanted() {
+        return 0;
+    }
+
+    @Override
+    public void replaceTrackers(@NonNull Set<String> trackers) {
+    }
+
+    @Override
+    public void addTrackers(@NonNull Set<String> trackers) {
+    }
+
+    @Override
+    @NonNull
+    public PieceMap pieces(@Nullable PieceMap previous) {
+        return PieceMap.empty();
+    }
+
+    @Override
+    public String makeMagnet(boolean includePriorities) {
+        return null;
+    }
+
+    @Override
+    public void setSequentialDownload(boolean sequential) {
+    }
+
+    @Override
+    public void setFirstLastPiecePriority(boolean enabled) {
+    }
+
+    @Override
+    public boolean isFirstLastPiecePriority() {
+        return false;
+    }
+
+    @Override
+    public void setTorrentName(@NonNull String name) {
+    }
+
+    @Override
+    public long getETA() {
+        return 0;
+    }
+
+    @Override
+    public TorrentMetaInfo getTorrentMetaInfo() throws DecodeException {
+        return null;
+    }
+
+    @Override
+    public TorrentContentFlatTree makeFileTree() {
+        return null;
+    }
+
+    @Override
+    public String getTorrentName() {
+        return null;
+    }
+
+    @Override
+    public void setDownloadPath(@NonNull Uri path) {
+    }
+
+    @Override
+    public long[] getFilesReceivedBytes() {
+        return null;
+    }
+
+    @Override
+    public void forceRecheck() {
+    }
+
+    @Override
+    public int getNumDownloadedPieces() {
+        return 0;
+    }
+
+    @Override
+    public double getShareRatio() {
+        return 0;
+    }
+
+    @Override
+    public Uri getPartsFile() {
+        return null;
+    }
+
+    @Override
+    public void setDownloadSpeedLimit(int limit) {
+    }
+
+    @Override
+    public int getDownloadSpeedLimit() {
+        return 0;
+    }
+
+    @Override
+    public void setUploadSpeedLimit(int limit) {
+    }
+
+    @Override
+    public int getUploadSpeedLimit() {
+        return 0;
+    }
+
+    @Override
+    public String getInfoHash() {
+        return null;
+    }
+
+    @Override
+    public TorrentStateCode getStateCode() {
+        return null;
+    }
+
+    @Override
+    public boolean isPaused() {
+        return false;
+    }
+
+    @Override
+    public boolean isSeeding() {
+        return false;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public boolean isDownloading() {
+        return false;
+    }
+
+    @Override
+    public boolean isSequentialDownload() {
+        return false;
+    }
+
+    @Override
+    public void setMaxConnections(int connections) {
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return 0;
+    }
+
+    @Override
+    public void setMaxUploads(int uploads) {
+    }
+
+    @Override
+    public int getMaxUploads() {
+        return 0;
+    }
+
+    @Override
+    public PiecesAvailability getPiecesAvailability() {
+        return null;
+    }
+
+    @Override
+    public boolean havePiece(int pieceIndex) {
+        if (missingPieces.contains(pieceIndex)) {
+            missingPieceWanted.countDown();
+            return false;
+        }
+
+        return pieceIndex >= 0 && pieceIndex < numPieces;
+    }
+
+    @Override
+    public void readPiece(int pieceIndex) {
+        readPieceCount.incrementAndGet();
+        diskExecutor.execute(() -> {
+            sleep(readLatency);
+            if (brokenPieces.contains(pieceIndex)) {
+                var info = new ReadPieceInfo(pieceIndex, 0, 0,
+                        new IOException("Unable to read piece " + pieceIndex));
+                synchronized (alertLock) {
+                    session.notifyReadPiece(id, info);
+                }
+                return;
+            }
+            int size = pieceSize(pieceIndex);
+            var data = new byte[size];
+            for (int i = 0; i < size; i++)
+                data[i] = byteAt((long) pieceIndex * pieceLength + i);
+            var buf = new Memory(size);
+            buf.write(0, data, 0, size);
+            var info = new ReadPieceInfo(pieceIndex, size, Pointer.nativeValue(buf), null);
+            /* Like the alert loop, listeners are called from the single thread */
+            synchronized (alertLock) {
+                session.notifyReadPiece(id, info);
+            }
+            /* The buffer is valid only during the alert handling */
+            buf.close();
+        });
+    }
+
+    @Override
+    public void setStreamPosition(
+            @NonNull Object reader,
+            @NonNull TorrentStream stream,
+            long offset,
+            long len
+    ) {
+    }
+
+    @Override
+    public void removeStreamReader(@NonNull Object reader) {
+    }
+
+    @Override
+    public TorrentStream getStream(int fileIndex) {
+        return null;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return false;
+    }
+
+    @Override
+    public Priority[] getFilePriorities() {
+        return null;
+    }
+
+    @Override
+    public byte[] getBencode() {
+        return null;
+    }
+
+    @Override
+    public void saveResumeData(boolean force) {
+    }
+
+    @Override
+    public boolean hasMissingFiles() {
+        return false;
+    }
+}
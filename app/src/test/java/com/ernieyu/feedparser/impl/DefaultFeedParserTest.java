@@ -0,0 +1,124 @@
+package com.ernieyu.feedparser.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.ernieyu.feedparser.Feed;
+import com.ernieyu.feedparser.FeedParserFactory;
+import com.ernieyu.feedparser.Item;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class DefaultFeedParserTest {
+    private static final String RSS =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<rss version=\"2.0\"><channel>" +
+            "<title>Test feed</title>" +
+            "<item><title>item3</title><link>http://foo.com/3.torrent</link>" +
+            "<pubDate>Wed, 03 Jan 2024 00:00:00 GMT</pubDate></item>" +
+            "<item><title>item2</title><link>http://foo.com/2.torrent</link></item>" +
+            "<item><title>item1</title><link>http://foo.com/1.torrent</link>" +
+            "<pubDate>Mon, 01 Jan 2024 00:00:00 GMT</pubDate></item>" +
+            "<item><title>item0</title><link>http://foo.com/0.torrent</link>" +
+            "<pubDate>Sun, 31 Dec 2023 00:00:00 GMT</pubDate></item>" +
+            "</channel></rss>";
+
+    private static final String ATOM =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<feed xmlns=\"http://www.w3.org/2005/Atom\">" +
+            "<title>Test feed</title>" +
+            "<entry><title>entry2</title><updated>2024-01-03T00:00:00Z</updated></entry>" +
+            "<entry><title>entry1</title><updated>2024-01-01T00:00:00Z</updated></entry>" +
+            "</feed>";
+
+    /* 2024-01-02T00:00:00Z */
+    private static final long MIN_PUB_DATE = 1704153600000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final SimpleDateFormat RSS_DATE_FORMAT;
+    static {
+        RSS_DATE_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        RSS_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    @Test
+    public void parseWholeFeedTest() throws Exception {
+        Feed feed = FeedParserFactory.newParser().parse(stream(RSS));
+
+        assertEquals("Test feed", feed.getTitle());
+        assertTitles(feed.getItemList(), "item3", "item2", "item1", "item0");
+    }
+
+    @Test
+    public void stopAtOldItemTest() throws Exception {
+        Feed feed = FeedParserFactory.newParser().parse(stream(RSS), MIN_PUB_DATE);
+
+        /* The item without date doesn't stop parsing */
+        assertEquals("Test feed", feed.getTitle());
+        assertTitles(feed.getItemList(), "item3", "item2");
+    }
+
+    @Test
+    public void stopAtOldEntryTest() throws Exception {
+        Feed feed = FeedParserFactory.newParser().parse(stream(ATOM), MIN_PUB_DATE);
+
+        assertEquals("Test feed", feed.getTitle());
+        assertTitles(feed.getItemList(), "entry2");
+    }
+
+    @Test
+    public void noOldItemsTest() throws Exception {
+        Feed feed = FeedParserFactory.newParser().parse(stream(RSS), 1);
+
+        assertTitles(feed.getItemList(), "item3", "item2", "item1", "item0");
+    }
+
+    @Test
+    public void allItemsOldTest() throws Exception {
+        Feed feed = FeedParserFactory.newParser().parse(stream(RSS), Long.MAX_VALUE);
+
+        assertEquals("Test feed", feed.getTitle());
+        assertEquals(0, feed.getItemList().size());
+        assertNull(feed.getLink());
+    }
+
+    @Test
+    public void stopReadingStreamTest() throws Exception {
+        var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<rss version=\"2.0\"><channel><title>Test feed</title>");
+        long pubDate = MIN_PUB_DATE + 10 * DAY;
+        for (int i = 0; i < 5000; i++, pubDate -= DAY) {
+            xml.append("<item><title>item").append(i).append("</title><pubDate>")
+                    .append(RSS_DATE_FORMAT.format(new Date(pubDate)))
+                    .append("</pubDate></item>");
+        }
+        xml.append("</channel></rss>");
+        byte[] data = xml.toString().getBytes(StandardCharsets.UTF_8);
+        var stream = new ByteArrayInputStream(data);
+
+        Feed feed = FeedParserFactory.newParser().parse(stream, MIN_PUB_DATE);
+
+        assertEquals(11, feed.getItemList().size());
+        /* The rest of the feed isn't read */
+        assertTrue(stream.available() > data.length / 2);
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertTitles(List<Item> items, String... titles) {
+        assertEquals(titles.length, items.size());
+        for (int i = 0; i < titles.length; i++)
+            assertEquals(titles[i], items.get(i).getTitle());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.collections;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class MpscRingBufferTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityZero() {
+        new MpscRingBuffer<Integer>(0);
+    }
+
+    @Test
+    public void testCapacityRoundedUp() {
+        assertEquals(1, new MpscRingBuffer<Integer>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<Integer>(5).capacity());
+        assertEquals(16, new MpscRingBuffer<Integer>(16).capacity());
+    }
+
+    @Test
+    public void testOfferPoll() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        /* Several laps */
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++)
+                assertTrue(buffer.offer(i));
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++)
+                assertEquals(i, (int) buffer.poll());
+            assertNull(buffer.poll());
+        }
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testDropWhenFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 10; i++)
+            buffer.offer(i);
+
+        assertEquals(4, buffer.size());
+        assertEquals(6, buffer.getDroppedCount());
+        /* The oldest entries are kept */
+        assertEquals(0, (int) buffer.poll());
+
+        assertTrue(buffer.offer(10));
+        ArrayList<Integer> actual = new ArrayList<>();
+        buffer.drain(actual::add, Integer.MAX_VALUE);
+        assertArrayEquals(new Integer[]{1, 2, 3, 10}, actual.toArray());
+    }
+
+    @Test
+    public void testEvictWhenFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 10; i++)
+            buffer.offerEvicting(i);
+
+        assertEquals(4, buffer.size());
+        assertEquals(6, buffer.getDroppedCount());
+        /* The newest entries are kept */
+        ArrayList<Integer> actual = new ArrayList<>();
+        buffer.drain(actual::add, Integer.MAX_VALUE);
+        assertArrayEquals(new Integer[]{6, 7, 8, 9}, actual.toArray());
+    }
+
+    @Test
+    public void testEvictingProducers() throws InterruptedException {
+        int numProducers = 4;
+        int numElements = 100_000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+        CountDownLatch done = new CountDownLatch(numProducers);
+
+        for (int p = 0; p < numProducers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < numElements; i++)
+                    buffer.offerEvicting(new long[]{producer, i});
+                done.countDown();
+            }).start();
+        }
+
+        long[] lastSeen = new long[numProducers];
+        Arrays.fill(lastSeen, -1);
+        long[] received = new long[1];
+        while (done.getCount() > 0 || !buffer.isEmpty()) {
+            buffer.drain((e) -> {
+                /* Order of each producer is preserved */
+                assertTrue(e[1] > lastSeen[(int) e[0]]);
+                lastSeen[(int) e[0]] = e[1];
+                received[0]++;
+            }, 16);
+        }
+
+        /* Every element is either received or evicted, never lost */
+        assertEquals((long) numProducers * numElements, received[0] + buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testDrainBatch() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(16);
+        for (int i = 0; i < 10; i++)
+            buffer.offer(i);
+
+        ArrayList<Integer> actual = new ArrayList<>();
+        assertEquals(4, buffer.drain(actual::add, 4));
+        assertArrayEquals(new Integer[]{0, 1, 2, 3}, actual.toArray());
+        assertEquals(6, buffer.size());
+
+        actual.clear();
+        assertEquals(6, buffer.drain(actual::add, 100));
+        assertArrayEquals(new Integer[]{4, 5, 6, 7, 8, 9}, actual.toArray());
+        assertEquals(0, buffer.drain(actual::add, 100));
+    }
+
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        int numProducers = 4;
+        int numElements = 100_000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(1024);
+        CountDownLatch done = new CountDownLatch(numProducers);
+
+        for (int p = 0; p < numProducers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < numElements; i++)
+                    buffer.offer(new long[]{producer, i});
+                done.countDown();
+            }).start();
+        }
+
+        long[] lastSeen = new long[numProducers];
+        Arrays.fill(lastSeen, -1);
+        long[] received = new long[1];
+        while (done.getCount() > 0 || !buffer.isEmpty()) {
+            buffer.drain((e) -> {
+                /* Order of each producer is preserved */
+                assertTrue(e[1] > lastSeen[(int) e[0]]);
+                lastSeen[(int) e[0]] = e[1];
+                received[0]++;
+            }, 256);
+        }
+
+        assertEquals((long) numProducers * numElements, received[0] + buffer.getDroppedCount());
+    }
+}
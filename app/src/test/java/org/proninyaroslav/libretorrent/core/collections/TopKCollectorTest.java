@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.collections;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TopKCollectorTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeK() {
+        new TopKCollector<Integer>(-1, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void testTopK() {
+        var collector = new TopKCollector<Integer>(3, Comparator.naturalOrder());
+        for (int i : new int[]{5, 1, 9, 3, 7, 2})
+            collector.add(i);
+
+        assertEquals(6, collector.getCount());
+        assertEquals(List.of(1, 2, 3), collector.toSortedList());
+    }
+
+    @Test
+    public void testLessThanK() {
+        var collector = new TopKCollector<Integer>(10, Comparator.reverseOrder());
+        collector.add(1);
+        collector.add(3);
+        collector.add(2);
+
+        assertEquals(List.of(3, 2, 1), collector.toSortedList());
+    }
+
+    @Test
+    public void testZeroK() {
+        var collector = new TopKCollector<Integer>(0, Comparator.naturalOrder());
+        collector.add(1);
+        collector.add(2);
+
+        assertEquals(2, collector.getCount());
+        assertTrue(collector.toSortedList().isEmpty());
+    }
+
+    @Test
+    public void testStable() {
+        /* Compare only by the first char */
+        var collector = new TopKCollector<String>(4, Comparator.comparing((s) -> s.charAt(0)));
+        for (String s : new String[]{"b1", "a1", "c1", "a2", "b2", "a3", "b3"})
+            collector.add(s);
+
+        assertEquals(List.of("a1", "a2", "a3", "b1"), collector.toSortedList());
+    }
+
+    @Test
+    public void testMatchesSorting() {
+        Random random = new Random(42);
+        Comparator<int[]> comparator = Comparator.comparingInt((int[] a) -> a[0]);
+
+        for (int k : new int[]{1, 7, 100}) {
+            var collector = new TopKCollector<int[]>(k, comparator);
+            var all = new ArrayList<int[]>();
+            for (int i = 0; i < 10_000; i++) {
+                int[] item = new int[]{random.nextInt(500), i};
+                collector.add(item);
+                all.add(item);
+            }
+            all.sort(comparator);
+
+            List<int[]> actual = collector.toSortedList();
+            assertEquals(k, actual.size());
+            for (int i = 0; i < k; i++)
+                assertSame(all.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        var collector = new TopKCollector<Integer>(2, Comparator.naturalOrder());
+        collector.add(1);
+        collector.clear();
+        collector.add(2);
+
+        assertEquals(1, collector.getCount());
+        assertEquals(List.of(2), collector.toSortedList());
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.logger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class LogExporterTest {
+    @Test
+    public void testExport() throws IOException {
+        Logger logger = new Logger(100);
+        for (int i = 0; i < 150; i++)
+            logger.send(new LogEntry(i, "TAG" + (i % 3), "message " + i, i * 1000L));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        logger.write(expected, true);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        var exporter = new LogExporter(logger.snapshot(), true, false);
+        assertEquals(100, exporter.export(actual, null));
+        assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+    }
+
+    @Test
+    public void testExport_compressed() throws IOException {
+        Logger logger = new Logger(50_000);
+        send(logger, 50_000, "message");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        logger.write(expected, false);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        var exporter = new LogExporter(logger.snapshot(), false, true);
+        assertEquals(50_000, exporter.export(compressed, null));
+
+        assertTrue(compressed.size() < expected.size());
+        assertArrayEquals(expected.toByteArray(), decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void testExport_empty() throws IOException {
+        Logger logger = new Logger(10);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(0, new LogExporter(logger.snapshot(), true, false).export(os, null));
+        assertEquals(0, os.size());
+    }
+
+    @Test
+    public void testSnapshotIsolation() throws IOException {
+        Logger logger = new Logger(10);
+        for (int i = 0; i < 5; i++)
+            logger.send(new LogEntry(i, "TAG", "" + i, i));
+
+        LogSnapshot snapshot = logger.snapshot();
+        for (int i = 5; i < 20; i++)
+            logger.send(new LogEntry(i, "TAG", "" + i, i));
+        assertEquals(10, logger.getNumEntries());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new LogExporter(snapshot, false, false).export(os, null);
+        String expected =
+                """
+                        [TAG] 0
+                        [TAG] 1
+                        [TAG] 2
+                        [TAG] 3
+                        [TAG] 4
+                        """;
+        assertEquals(expected, os.toString("UTF-8"));
+    }
+
+    @Test
+    public void testStopRecordingAndSnapshot() throws IOException {
+        Logger logger = new Logger(10);
+        for (int i = 0; i < 16; i++)
+            logger.send(new LogEntry(i, "TEST", "" + i, i));
+
+        logger.startRecording();
+        for (int i = 16; i < 20; i++)
+            logger.send(new LogEntry(i, "TEST", "" + i, i));
+
+        LogSnapshot snapshot = logger.stopRecordingAndSnapshot();
+        assertFalse(logger.isRecording());
+        assertEquals(5, snapshot.size());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new LogExporter(snapshot, false, false).export(os, null);
+        String expected =
+                """
+                        [TEST] 15
+                        [TEST] 16
+                        [TEST] 17
+                        [TEST] 18
+                        [TEST] 19
+                        """;
+        assertEquals(expected, os.toString("UTF-8"));
+    }
+
+    @Test
+    public void testProgress() throws IOException {
+        Logger logger = new Logger(100_000);
+        send(logger, 100_000, "message");
+
+        AtomicInteger lastExported = new AtomicInteger();
+        var exporter = new LogExporter(logger.snapshot(), true, true);
+        exporter.export(OutputStream.nullOutputStream(), (exported, total) -> {
+            assertEquals(100_000, total);
+            assertTrue(exported > lastExported.get());
+            lastExported.set(exported);
+        });
+
+        assertEquals(100_000, lastExported.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testExport_writeError() throws IOException {
+        Logger logger = new Logger(100_000);
+        send(logger, 100_000, "message");
+
+        var exporter = new LogExporter(logger.snapshot(), false, false);
+        exporter.export(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("No space left");
+            }
+        }, null);
+    }
+
+    @Test
+    public void testExport_compressedWriteError() {
+        Logger logger = new Logger(100_000);
+        send(logger, 100_000, "message");
+
+        var closed = new AtomicInteger();
+        var exporter = new LogExporter(logger.snapshot(), false, true);
+        try {
+            exporter.export(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("No space left");
+                }
+
+                @Override
+                public void close() {
+                    closed.incrementAndGet();
+                }
+            }, null);
+            fail("Export must fail");
+
+        } catch (IOException e) {
+            /* The caller's stream stays open */
+            assertEquals(0, closed.get());
+        }
+    }
+
+    @Test
+    public void testTimeStampFormatter() throws IOException {
+        Random random = new Random(42);
+        var formatter = new LogExporter.TimeStampFormatter();
+        long time = 1_700_000_000_000L;
+
+        for (int i = 0; i < 10_000; i++) {
+            time += random.nextInt(3000);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            formatter.write(time, os);
+
+            String expected = new LogEntry(0, "TAG", "", time).getTimeStampAsString() + " ";
+            assertEquals(expected, os.toString("UTF-8"));
+        }
+    }
+
+    /*
+     * Logging must go on while a large log is being exported
+     */
+
+    @Test(timeout = 30_000)
+    public void testSendDuringExport() throws Exception {
+        Logger logger = new Logger(20_000);
+        send(logger, 20_000, "x".repeat(100));
+        assertEquals(20_000, logger.getNumEntries());
+        LogSnapshot snapshot = logger.snapshot();
+
+        CountDownLatch exportStarted = new CountDownLatch(1);
+        CountDownLatch sendFinished = new CountDownLatch(1);
+        /* Holds the export until the entries are sent */
+        OutputStream os = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                exportStarted.countDown();
+                try {
+                    sendFinished.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        AtomicReference<IOException> exportError = new AtomicReference<>();
+        Thread exportThread = new Thread(() -> {
+            try {
+                new LogExporter(snapshot, true, true).export(os, null);
+            } catch (IOException e) {
+                exportError.set(e);
+            }
+        });
+        exportThread.start();
+        exportStarted.await();
+
+        for (int i = 0; i < 1000; i++)
+            logger.send(new LogEntry(i, "TAG", "during export", 0));
+        /* Reader is not blocked too */
+        assertEquals(20_000, logger.getNumEntries());
+        sendFinished.countDown();
+
+        exportThread.join();
+        assertNull(exportError.get());
+        assertEquals(20_000, snapshot.size());
+    }
+
+    /*
+     * Sends more entries than the pending queue can hold,
+     * so they are consumed in between
+     */
+
+    private static void send(Logger logger, int count, String msg) {
+        for (int i = 0; i < count; i++) {
+            logger.send(new LogEntry(i, "TAG", msg + " " + i, i));
+            if (i % 1000 == 0)
+                logger.getNumEntries();
+        }
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return is.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.logger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LogStoreTest {
+    @Test
+    public void testAddGet() {
+        LogStore store = new LogStore(10, 1024);
+        assertEquals(0, store.size());
+
+        assertEquals(0, store.add(new LogEntry(1, "TAG1", "first", 100)));
+        assertEquals(1, store.add(new LogEntry(2, "TAG2", "второй", 200)));
+        assertEquals(2, store.add(new LogEntry(3, "TAG1", "", 300)));
+
+        assertEquals(3, store.size());
+        assertEquals(new LogEntry(1, "TAG1", "first", 100), store.get(0));
+        assertEquals(new LogEntry(2, "TAG2", "второй", 200), store.get(1));
+        assertEquals(new LogEntry(3, "TAG1", "", 300), store.get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGet_invalidSeq() {
+        LogStore store = new LogStore(10, 1024);
+        store.add(new LogEntry(1, "TAG", "1", 1));
+
+        store.get(1);
+    }
+
+    @Test
+    public void testMaxEntries() {
+        LogStore store = new LogStore(5, 1024);
+        for (int i = 0; i < 12; i++)
+            store.add(new LogEntry(i, "TAG", "" + i, i));
+
+        assertEquals(5, store.size());
+        assertEquals(7, store.getFirstSeq());
+        assertEquals(12, store.getEndSeq());
+        assertFalse(store.contains(6));
+        for (long seq = 7; seq < 12; seq++)
+            assertEquals("" + seq, store.get(seq).getMsg());
+    }
+
+    @Test
+    public void testArenaEviction() {
+        LogStore store = new LogStore(100, 32);
+        for (int i = 0; i < 10; i++)
+            store.add(new LogEntry(i, "TAG", "0123456789", i));
+
+        /* Only 2 messages fit, the tail must not reach the head */
+        assertEquals(2, store.size());
+        assertEquals(8, store.get(8).getId());
+        assertEquals(9, store.get(9).getId());
+
+        /* Message larger than the arena is truncated */
+        String large = "x".repeat(100);
+        store.add(new LogEntry(10, "TAG", large, 10));
+        assertEquals(1, store.size());
+        assertEquals(32, store.get(10).getMsg().length());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        LogStore store = new LogStore(300, 4096);
+        ArrayDeque<LogEntry> added = new ArrayDeque<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            String msg = "m".repeat(random.nextInt(100));
+            LogEntry entry = new LogEntry(i, "TAG" + random.nextInt(5), msg, i);
+            long seq = store.add(entry);
+            added.addLast(entry);
+            while (added.size() > store.size())
+                added.removeFirst();
+
+            assertEquals(i, seq);
+            assertTrue(store.size() <= 300);
+            /* The store keeps the latest entries in order */
+            if (i % 97 == 0) {
+                long s = store.getFirstSeq();
+                for (LogEntry expected : added)
+                    assertEquals(expected, store.get(s++));
+            }
+        }
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        LogStore store = new LogStore(10, 1024);
+        store.add(new LogEntry(1, "TAG", "message", 0));
+        LogEntry entry = new LogEntry(2, "ТЕГ", "сообщение", 1000);
+        store.add(entry);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        store.write(0, os, false, null);
+        store.write(1, os, true, LogEntry.newTimeStampFormatter());
+
+        String expected = "[TAG] message" + System.lineSeparator() +
+                entry.toStringWithTimeStamp() + System.lineSeparator();
+        assertEquals(expected, os.toString("UTF-8"));
+    }
+
+    @Test
+    public void testClear() {
+        LogStore store = new LogStore(10, 1024);
+        store.add(new LogEntry(1, "TAG", "1", 1));
+        store.add(new LogEntry(2, "TAG", "2", 2));
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertEquals(2, store.add(new LogEntry(3, "TAG", "3", 3)));
+        assertEquals(3, store.get(2).getId());
+    }
+
+    /*
+     * Typical session log: short messages with a few tags
+     */
+
+    @Test
+    public void testMemoryUsage() {
+        int numEntries = 100_000;
+        LogStore store = new LogStore(numEntries, numEntries * 128);
+        long msgBytes = 0;
+        for (int i = 0; i < numEntries; i++) {
+            String msg = "[" + (i % 7) + "] peer 192.168.1." + (i % 255) +
+                    ":6881 received piece " + i + " from offset " + (i * 16384L);
+            msgBytes += msg.length();
+            store.add(new LogEntry(i, "PEER_LOG", msg, System.currentTimeMillis()));
+        }
+
+        long allocated = store.getAllocatedSize();
+        assertEquals(numEntries, store.size());
+        /* Columns are 24 bytes per entry, the arena grows by doubling */
+        assertTrue(allocated < 24L * numEntries + 2 * msgBytes);
+    }
+}
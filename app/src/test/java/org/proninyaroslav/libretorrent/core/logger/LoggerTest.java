@@ -319,4 +319,80 @@ public class LoggerTest {
         assertEquals(5, logger.write(os));
         assertEquals(expected, os.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSendFromMultipleThreads() throws InterruptedException {
+        Logger logger = new Logger(1000);
+        int numThreads = 4;
+        int numEntries = 500;
+        CountDownLatch done = new CountDownLatch(numThreads);
+
+        for (int t = 0; t < numThreads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < numEntries; i++) {
+                    int id = thread * numEntries + i;
+                    logger.send(new LogEntry(id, "TEST", "" + id, id));
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        assertEquals(0, logger.getNumDroppedEntries());
+        assertEquals(1000, logger.getNumEntries());
+    }
+
+    @Test
+    public void testPaused_keepsNewestEntries() {
+        Logger logger = new Logger(100);
+        logger.pause();
+        int numEntries = logger.pendingBuf.capacity() * 3;
+        for (int i = 0; i < numEntries; i++)
+            logger.send(new LogEntry(i, "TEST", "" + i, i));
+        logger.resume();
+
+        assertEquals(100, logger.getNumEntries());
+        List<LogEntry> entries = logger.getEntries(0, 100);
+        for (int i = 0; i < 100; i++)
+            assertEquals(numEntries - 100 + i, entries.get(i).getId());
+    }
+
+    /*
+     * Simulates the alert thread and several other threads that send
+     * the log entries as fast as they can, while the entries are read.
+     * Producers must never block on the consumer.
+     */
+
+    @Test
+    public void testSendThroughput() throws InterruptedException {
+        int numThreads = 4;
+        int numEntries = 50_000;
+        Logger logger = new Logger(10_000);
+        logger.send(new LogEntry(-1, "TEST", "warm-up", 0));
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numThreads);
+
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < numEntries; i++)
+                    logger.send(new LogEntry(i, "TEST", "message", i));
+                done.countDown();
+            }).start();
+        }
+
+        start.countDown();
+        /* Reader */
+        while (!done.await(10, TimeUnit.MILLISECONDS))
+            logger.getEntries(0, 100);
+
+        long total = (long) numThreads * numEntries;
+        assertTrue(logger.getNumDroppedEntries() < total);
+        assertEquals(10_000, logger.getNumEntries());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PieceMapTest {
+    private static PieceMap makeMap(boolean[] pieces) {
+        long[] words = new long[PieceMap.numWords(pieces.length)];
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i])
+                words[i >>> 6] |= 1L << i;
+        }
+
+        return new PieceMap(pieces.length, words);
+    }
+
+    @Test
+    public void testFull() {
+        var map = PieceMap.full(130);
+        assertEquals(130, map.size());
+        assertEquals(130, map.count());
+        assertTrue(map.get(0));
+        assertTrue(map.get(129));
+        assertEquals(makeMap(filled(130)), map);
+
+        assertEquals(0, PieceMap.full(0).size());
+        assertEquals(64, PieceMap.full(64).count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWords() {
+        new PieceMap(65, new long[1]);
+    }
+
+    @Test
+    public void testGet() {
+        var pieces = new boolean[200];
+        pieces[0] = pieces[63] = pieces[64] = pieces[199] = true;
+        var map = makeMap(pieces);
+
+        assertEquals(4, map.count());
+        for (int i = 0; i < pieces.length; i++)
+            assertEquals(pieces[i], map.get(i));
+    }
+
+    @Test
+    public void testDiff() {
+        var oldPieces = new boolean[200];
+        var newPieces = new boolean[200];
+        newPieces[3] = true;
+        /* Run across the word boundary */
+        for (int i = 60; i < 70; i++)
+            newPieces[i] = true;
+        oldPieces[199] = true;
+
+        assertArrayEquals(
+                new int[]{3, 4, 60, 70, 199, 200},
+                makeMap(oldPieces).diff(makeMap(newPieces))
+        );
+        assertEquals(0, makeMap(newPieces).diff(makeMap(newPieces)).length);
+        assertNull(PieceMap.full(10).diff(PieceMap.full(11)));
+    }
+
+    @Test
+    public void testChangedRuns() {
+        var base = new PieceMap(100, new long[2]);
+        var pieces = new boolean[100];
+        pieces[10] = true;
+        var map = makeMap(pieces);
+        var update = new PieceMapUpdate(base, map, base.diff(map));
+
+        assertArrayEquals(new int[]{10, 11}, update.getChangedRuns(base));
+        /* Missed update, diff against the current map */
+        var current = PieceMap.full(100);
+        assertArrayEquals(new int[]{0, 10, 11, 100}, update.getChangedRuns(current));
+        assertNull(update.getChangedRuns(null));
+        assertNull(PieceMapUpdate.full(map).getChangedRuns(PieceMap.full(10)));
+    }
+
+    @Test
+    public void testDiffLargeMap() {
+        int size = 200_000;
+        var random = new Random(1);
+        var oldPieces = new boolean[size];
+        for (int i = 0; i < size; i++)
+            oldPieces[i] = random.nextBoolean();
+        var newPieces = oldPieces.clone();
+        for (int i = 0; i < 100; i++)
+            newPieces[random.nextInt(size)] = true;
+        var oldMap = makeMap(oldPieces);
+        var newMap = makeMap(newPieces);
+
+        int[] runs = oldMap.diff(newMap);
+
+        int changed = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            for (int p = runs[i]; p < runs[i + 1]; p++) {
+                assertNotEquals(oldPieces[p], newPieces[p]);
+                changed++;
+            }
+        }
+        int expectedChanged = 0;
+        for (int i = 0; i < size; i++) {
+            if (oldPieces[i] != newPieces[i])
+                expectedChanged++;
+        }
+        assertEquals(expectedChanged, changed);
+    }
+
+    private static boolean[] filled(int size) {
+        var pieces = new boolean[size];
+        Arrays.fill(pieces, true);
+
+        return pieces;
+    }
+}
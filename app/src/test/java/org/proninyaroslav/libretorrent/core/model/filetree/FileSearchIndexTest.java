@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class FileSearchIndexTest {
+    private final ArrayList<BencodeFileItem> files = new ArrayList<>();
+
+    @Before
+    public void init() {
+        files.add(new BencodeFileItem("Foo/Dir1/File1.txt", 0, 5));
+        files.add(new BencodeFileItem("Foo/Dir1/file2.mkv", 1, 1));
+        files.add(new BencodeFileItem("Foo/dir2/file1.txt", 2, 3));
+        files.add(new BencodeFileItem("Foo/dir2/sub/track.flac", 3, 4));
+        files.add(new BencodeFileItem("Foo/readme.txt", 4, 2));
+    }
+
+    @Test
+    public void searchNameTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        var index = new FileSearchIndex(tree);
+        assertEquals(files.size(), index.getFileCount());
+
+        assertArrayEquals(new int[]{0, 2}, search(tree, index, "FILE1"));
+        assertArrayEquals(new int[]{0, 2, 4}, search(tree, index, ".txt"));
+        assertArrayEquals(new int[]{0, 2, 1}, search(tree, index, "fi"));
+        assertArrayEquals(new int[]{3}, search(tree, index, "track.flac"));
+        assertArrayEquals(new int[]{}, search(tree, index, "file3"));
+        assertArrayEquals(new int[]{}, search(tree, index, "dir1"));
+    }
+
+    @Test
+    public void searchPathTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        var index = new FileSearchIndex(tree);
+
+        assertArrayEquals(new int[]{0, 1}, search(tree, index, "dir1/"));
+        assertArrayEquals(new int[]{0}, search(tree, index, "dir1/file1"));
+        assertArrayEquals(new int[]{0}, search(tree, index, "r1/file1.txt"));
+        assertArrayEquals(new int[]{2, 3}, search(tree, index, "foo/dir2"));
+        assertArrayEquals(new int[]{3}, search(tree, index, "dir2/sub/tr"));
+        assertArrayEquals(new int[]{3}, search(tree, index, "/track"));
+        assertArrayEquals(new int[]{0, 2, 1, 4, 3}, search(tree, index, "foo/"));
+        assertArrayEquals(new int[]{}, search(tree, index, "dir1/track"));
+    }
+
+    @Test
+    public void sortTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        var index = new FileSearchIndex(tree);
+        var result = index.search("", null);
+        assertEquals(files.size(), result.getCount());
+
+        assertArrayEquals(new int[]{0, 2, 1, 4, 3}, fileIndexes(tree, index.getNodes(result, false, false)));
+        assertArrayEquals(new int[]{3, 4, 1, 2, 0}, fileIndexes(tree, index.getNodes(result, false, true)));
+        assertArrayEquals(new int[]{1, 4, 2, 3, 0}, fileIndexes(tree, index.getNodes(result, true, false)));
+        assertArrayEquals(new int[]{0, 3, 2, 4, 1}, fileIndexes(tree, index.getNodes(result, true, true)));
+    }
+
+    @Test
+    public void incrementalSearchTest() {
+        List<BencodeFileItem> files = makeFiles(20000);
+        var tree = TorrentContentFlatTree.build(files);
+        var index = new FileSearchIndex(tree);
+
+        for (String query : new String[]{"file12", "dir3/sub", "ubdir1/file1"}) {
+            FileSearchIndex.Result prev = null;
+            for (int i = 1; i <= query.length(); i++) {
+                String q = query.substring(0, i);
+                var result = index.search(q, prev);
+                assertArrayEquals(q, naiveSearch(tree, q), index.getNodes(result, false, false));
+                prev = result;
+            }
+            assertSame(prev, index.search(query.toUpperCase(Locale.ROOT), prev));
+        }
+    }
+
+    private static int[] search(TorrentContentFlatTree tree, FileSearchIndex index, String query) {
+        return fileIndexes(tree, index.getNodes(index.search(query, null), false, false));
+    }
+
+    private static int[] fileIndexes(TorrentContentFlatTree tree, int[] nodes) {
+        int[] indexes = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            indexes[i] = tree.getFileIndex(nodes[i]);
+
+        return indexes;
+    }
+
+    /*
+     * Scans all files, as before the index
+     */
+
+    private static int[] naiveSearch(TorrentContentFlatTree tree, String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        var matches = new ArrayList<Integer>();
+        for (int i = 0; i < tree.getFileCount(); i++) {
+            int node = tree.getFileNode(i);
+            String name = (q.contains("/") ?
+                    tree.getPath(tree.getParent(node)) + tree.getName(node) :
+                    tree.getName(node));
+            if (name.toLowerCase(Locale.ROOT).contains(q))
+                matches.add(node);
+        }
+        matches.sort((a, b) -> {
+            int res = tree.getName(a).compareToIgnoreCase(tree.getName(b));
+            return res != 0 ? res : Integer.compare(a, b);
+        });
+
+        int[] nodes = new int[matches.size()];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = matches.get(i);
+
+        return nodes;
+    }
+
+    private static List<BencodeFileItem> makeFiles(int count) {
+        var files = new ArrayList<BencodeFileItem>(count);
+        for (int i = 0; i < count; i++) {
+            String path = String.format(Locale.US, "torrent/dir%d/subdir%d/file%d.bin",
+                    i % 20, (i / 20) % 50, i);
+            files.add(new BencodeFileItem(path, i, 1024L * (i % 100 + 1)));
+        }
+
+        return files;
+    }
+}
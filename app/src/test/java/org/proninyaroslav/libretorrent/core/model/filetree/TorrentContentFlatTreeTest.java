@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.filetree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.proninyaroslav.libretorrent.core.model.data.Priority;
+import org.proninyaroslav.libretorrent.core.model.data.metainfo.BencodeFileItem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+public class TorrentContentFlatTreeTest {
+    private final ArrayList<BencodeFileItem> files = new ArrayList<>();
+
+    @Before
+    public void init() {
+        files.add(new BencodeFileItem("foo/dir1/file1.txt", 0, 1));
+        files.add(new BencodeFileItem("foo/dir1/file2.txt", 1, 2));
+        files.add(new BencodeFileItem("foo/dir2/file1.txt", 2, 4));
+        files.add(new BencodeFileItem("foo/dir2/file2.txt", 3, 8));
+        files.add(new BencodeFileItem("foo/file.txt", 4, 16));
+    }
+
+    @Test
+    public void makeTreeTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        assertEquals(files.size(), tree.getFileCount());
+        /* root, foo, dir1, dir2 and the files */
+        assertEquals(files.size() + 4, tree.getNodeCount());
+
+        int root = TorrentContentFlatTree.ROOT;
+        assertFalse(tree.isFile(root));
+        assertEquals(FileTree.ROOT, tree.getName(root));
+        assertEquals(TorrentContentFlatTree.NO_NODE, tree.getParent(root));
+        assertEquals(31, tree.size(root));
+        assertEquals(1, tree.getChildrenCount(root));
+
+        int foo = tree.getChild(root, "foo");
+        assertEquals(3, tree.getChildrenCount(foo));
+        assertEquals(31, tree.size(foo));
+        assertEquals("foo/", tree.getPath(foo));
+
+        int dir2 = tree.getChild(foo, "dir2");
+        assertFalse(tree.isFile(dir2));
+        assertEquals(12, tree.size(dir2));
+        assertEquals(foo, tree.getParent(dir2));
+
+        for (BencodeFileItem file : files) {
+            int node = tree.getFileNode(file.getIndex());
+            assertTrue(tree.isFile(node));
+            assertEquals(file.getIndex(), tree.getFileIndex(node));
+            assertEquals(file.getSize(), tree.size(node));
+            assertEquals(file.getPath() + "/", tree.getPath(node));
+            assertEquals(FilePriority.Type.IGNORE, tree.getFilePriority(node).getType());
+            assertEquals(0, tree.getReceivedBytes(node));
+            assertEquals(-1, tree.getAvailability(node), 0);
+        }
+        assertEquals(tree.getFileNode(2), tree.getChild(dir2, "file1.txt"));
+        assertEquals(TorrentContentFlatTree.NO_NODE, tree.getChild(dir2, "file3.txt"));
+        assertEquals(TorrentContentFlatTree.NO_NODE, tree.getFileNode(files.size()));
+    }
+
+    @Test
+    public void builderUnsortedTest() {
+        var builder = new TorrentContentFlatTree.Builder(5);
+        builder.addFile(4, "foo/file.txt", 16);
+        builder.addFile(2, "foo/dir2/file1.txt", 4);
+        builder.addFile(0, "foo/dir1/file1.txt", 1);
+        builder.addFile(3, "foo/dir2/file2.txt", 8);
+        builder.addFile(1, "foo/dir1/file2.txt", 2);
+        var tree = builder.build();
+
+        /* The same directories as the sorted input */
+        assertEquals(files.size() + 4, tree.getNodeCount());
+        int foo = tree.getChild(TorrentContentFlatTree.ROOT, "foo");
+        assertEquals(3, tree.getChildrenCount(foo));
+        assertEquals(2, tree.getChildrenCount(tree.getChild(foo, "dir1")));
+        assertEquals(2, tree.getChildrenCount(tree.getChild(foo, "dir2")));
+        assertEquals(31, tree.size(TorrentContentFlatTree.ROOT));
+        for (BencodeFileItem file : files) {
+            int node = tree.getFileNode(file.getIndex());
+            assertEquals(file.getSize(), tree.size(node));
+            assertEquals(file.getPath() + "/", tree.getPath(node));
+        }
+    }
+
+    @Test
+    public void builderRootFilesTest() {
+        var builder = new TorrentContentFlatTree.Builder(3);
+        builder.addFile(0, "file1.txt", 1);
+        builder.addFile(1, "dir/file2.txt", 2);
+        builder.addFile(2, "file3.txt", 4);
+        var tree = builder.build();
+
+        int root = TorrentContentFlatTree.ROOT;
+        assertEquals(3, tree.getChildrenCount(root));
+        assertEquals(7, tree.size(root));
+        assertEquals(root, tree.getParent(tree.getFileNode(0)));
+        assertEquals(root, tree.getParent(tree.getFileNode(2)));
+        assertEquals(tree.getChild(root, "dir"), tree.getParent(tree.getFileNode(1)));
+    }
+
+    @Test
+    public void builderInternSegmentsTest() {
+        var builder = new TorrentContentFlatTree.Builder(4);
+        /* New string instances, as if they came from the native side */
+        builder.addFile(0, new String("a/common/file.txt"), 1);
+        builder.addFile(1, new String("b/common/file.txt"), 1);
+        builder.addFile(2, new String("a/common/other.txt"), 1);
+        builder.addFile(3, new String("b/common/other.txt"), 1);
+        var tree = builder.build();
+
+        int root = TorrentContentFlatTree.ROOT;
+        int a = tree.getChild(root, "a");
+        int b = tree.getChild(root, "b");
+        int commonA = tree.getChild(a, "common");
+        int commonB = tree.getChild(b, "common");
+        assertNotEquals(commonA, commonB);
+        assertSame(tree.getName(commonA), tree.getName(commonB));
+        assertSame(tree.getName(tree.getFileNode(0)), tree.getName(tree.getFileNode(1)));
+        assertSame(tree.getName(tree.getFileNode(2)), tree.getName(tree.getFileNode(3)));
+        assertEquals(2, tree.getChildrenCount(commonA));
+        assertEquals(2, tree.getChildrenCount(commonB));
+    }
+
+    @Test
+    public void setPriorityTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        int root = TorrentContentFlatTree.ROOT;
+        int foo = tree.getChild(root, "foo");
+        int dir1 = tree.getChild(foo, "dir1");
+
+        tree.setPriority(root, new FilePriority(Priority.DEFAULT));
+        for (int i = 0; i < files.size(); i++)
+            assertEquals(FilePriority.Type.NORMAL, tree.getFilePriority(tree.getFileNode(i)).getType());
+        assertEquals(FilePriority.Type.NORMAL, tree.getFilePriority(dir1).getType());
+        assertEquals(FilePriority.Type.NORMAL, tree.getFilePriority(root).getType());
+        assertEquals(31, tree.nonIgnoreFileSize(root));
+
+        tree.setPriority(tree.getFileNode(0), new FilePriority(Priority.IGNORE));
+        assertEquals(FilePriority.Type.IGNORE, tree.getFilePriority(tree.getFileNode(0)).getType());
+        assertEquals(FilePriority.Type.MIXED, tree.getFilePriority(dir1).getType());
+        assertEquals(FilePriority.Type.MIXED, tree.getFilePriority(root).getType());
+        assertEquals(30, tree.nonIgnoreFileSize(root));
+
+        tree.setPriority(tree.getFileNode(1), new FilePriority(Priority.IGNORE));
+        assertEquals(FilePriority.Type.IGNORE, tree.getFilePriority(dir1).getType());
+        assertEquals(FilePriority.Type.MIXED, tree.getFilePriority(foo).getType());
+        assertEquals(28, tree.nonIgnoreFileSize(root));
+        assertEquals(0, tree.nonIgnoreFileSize(dir1));
+
+        tree.setPriority(foo, new FilePriority(Priority.TOP_PRIORITY));
+        assertEquals(FilePriority.Type.HIGH, tree.getFilePriority(root).getType());
+        assertEquals(FilePriority.Type.HIGH, tree.getFilePriority(dir1).getType());
+
+        Priority[] priorities = tree.getFilePriorities();
+        assertEquals(files.size(), priorities.length);
+        for (Priority p : priorities)
+            assertEquals(Priority.TOP_PRIORITY, p);
+    }
+
+    @Test
+    public void setFilePrioritiesTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        var priorities = new Priority[]{Priority.IGNORE, Priority.IGNORE,
+                Priority.DEFAULT, Priority.LOW, Priority.TOP_PRIORITY};
+        tree.setFilePriorities(priorities);
+
+        int foo = tree.getChild(TorrentContentFlatTree.ROOT, "foo");
+        assertEquals(FilePriority.Type.IGNORE, tree.getFilePriority(tree.getChild(foo, "dir1")).getType());
+        assertEquals(FilePriority.Type.NORMAL, tree.getFilePriority(tree.getChild(foo, "dir2")).getType());
+        assertEquals(FilePriority.Type.MIXED, tree.getFilePriority(foo).getType());
+        assertEquals(28, tree.nonIgnoreFileSize(TorrentContentFlatTree.ROOT));
+        assertArrayEquals(priorities, tree.getFilePriorities());
+    }
+
+    @Test
+    public void batchPriorityTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        tree.setFilePriorities(new int[]{0, 2, 3, 4}, new Priority[]{Priority.DEFAULT,
+                Priority.LOW, Priority.DEFAULT, Priority.TOP_PRIORITY});
+
+        int root = TorrentContentFlatTree.ROOT;
+        int foo = tree.getChild(root, "foo");
+        int dir1 = tree.getChild(foo, "dir1");
+        int dir2 = tree.getChild(foo, "dir2");
+        assertEquals(FilePriority.Type.MIXED, tree.getFilePriority(dir1).getType());
+        assertEquals(FilePriority.Type.NORMAL, tree.getFilePriority(dir2).getType());
+        assertEquals(FilePriority.Type.MIXED, tree.getFilePriority(foo).getType());
+        assertEquals(29, tree.nonIgnoreFileSize(root));
+        assertEquals(1, tree.nonIgnoreFileSize(dir1));
+        assertArrayEquals(new Priority[]{Priority.DEFAULT, Priority.IGNORE, Priority.LOW,
+                Priority.DEFAULT, Priority.TOP_PRIORITY}, tree.getFilePriorities());
+
+        /* Ignore all */
+        int[] indexes = new int[files.size()];
+        var priorities = new Priority[files.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+            priorities[i] = Priority.IGNORE;
+        }
+        tree.setFilePriorities(indexes, priorities);
+        assertEquals(FilePriority.Type.IGNORE, tree.getFilePriority(root).getType());
+        assertEquals(FilePriority.Type.IGNORE, tree.getFilePriority(dir2).getType());
+        assertEquals(0, tree.nonIgnoreFileSize(root));
+    }
+
+    /*
+     * The batch updates only the ancestors of the changed files,
+     * the result must be the same as the full rebuild
+     */
+
+    @Test
+    public void batchPriorityCompareTest() {
+        List<BencodeFileItem> files = makeFiles(20000);
+        var random = new Random(42);
+        Priority[] values = Priority.values();
+        long[] received = new long[files.size()];
+        double[] availability = new double[files.size()];
+        var filePriorities = new Priority[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            received[i] = random.nextInt(1024);
+            availability[i] = (random.nextInt(4) == 0 ? -1 : random.nextDouble() * 3);
+            filePriorities[i] = values[random.nextInt(values.length)];
+        }
+
+        var tree = TorrentContentFlatTree.build(files);
+        tree.setFilePriorities(filePriorities);
+        tree.update(received, availability);
+
+        /* Some of the files are changed several times */
+        int[] indexes = new int[files.size()];
+        var priorities = new Priority[files.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = random.nextInt(files.size());
+            priorities[i] = values[random.nextInt(values.length)];
+            filePriorities[indexes[i]] = priorities[i];
+        }
+        tree.setFilePriorities(indexes, priorities);
+        int torrent = tree.getChild(TorrentContentFlatTree.ROOT, "torrent");
+        tree.setPriority(tree.getChild(torrent, "dir3"), new FilePriority(Priority.IGNORE));
+        tree.setPriority(tree.getFileNode(7), new FilePriority(Priority.TOP_PRIORITY));
+
+        var expected = TorrentContentFlatTree.build(files);
+        expected.setFilePriorities(tree.getFilePriorities());
+        expected.update(received, availability);
+
+        assertArrayEquals(expected.getFilePriorities(), tree.getFilePriorities());
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            assertEquals(expected.getFilePriority(node), tree.getFilePriority(node));
+            assertEquals(expected.nonIgnoreFileSize(node), tree.nonIgnoreFileSize(node));
+            assertEquals(expected.getAvailability(node), tree.getAvailability(node), 1e-9);
+        }
+    }
+
+    @Test
+    public void updateTest() {
+        var tree = TorrentContentFlatTree.build(files);
+        tree.setFilePriorities(new Priority[]{Priority.IGNORE, Priority.DEFAULT,
+                Priority.DEFAULT, Priority.DEFAULT, Priority.DEFAULT});
+        tree.update(new long[]{1, 1, 2, 3, 5}, new double[]{1.0, 0.5, 1.0, -1, 2.0});
+
+        int root = TorrentContentFlatTree.ROOT;
+        int foo = tree.getChild(root, "foo");
+        int dir1 = tree.getChild(foo, "dir1");
+        int dir2 = tree.getChild(foo, "dir2");
+        assertEquals(12, tree.getReceivedBytes(root));
+        assertEquals(2, tree.getReceivedBytes(dir1));
+        assertEquals(5, tree.getReceivedBytes(dir2));
+        /* The ignored file isn't counted */
+        assertEquals(0.5, tree.getAvailability(dir1), 1e-9);
+        assertEquals(4.0 / 12, tree.getAvailability(dir2), 1e-9);
+        assertEquals((1.0 + 4 + 32) / 30, tree.getAvailability(root), 1e-9);
+
+        /* No changes */
+        tree.update(null, null);
+        assertEquals(12, tree.getReceivedBytes(root));
+    }
+
+    /*
+     * Compares the directory values with the ones summed up
+     * straight from the file list of the random torrent
+     */
+
+    @Test
+    public void compareWithFileListTest() {
+        List<BencodeFileItem> files = makeFiles(20000);
+        var tree = TorrentContentFlatTree.build(files);
+        var random = new Random(42);
+        Priority[] values = Priority.values();
+        long[] received = new long[files.size()];
+        var priorities = new Priority[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            received[i] = files.get(i).getSize() / 2;
+            priorities[i] = (i % 3 == 0 ? Priority.IGNORE : values[random.nextInt(values.length)]);
+        }
+        tree.setFilePriorities(priorities);
+        tree.update(received, null);
+
+        var dirs = new HashMap<String, long[]>();
+        var dirTypes = new HashMap<String, Set<FilePriority.Type>>();
+        var dirChildren = new HashMap<String, Set<String>>();
+        for (BencodeFileItem file : files) {
+            String path = file.getPath();
+            int i = file.getIndex();
+            FilePriority.Type type = FilePriority.typeFrom(priorities[i]);
+            int start = 0;
+            for (int end; ; start = end + 1) {
+                end = path.indexOf(File.separatorChar, start);
+                String dir = path.substring(0, start);
+                String child = path.substring(start, end < 0 ? path.length() : end);
+                long[] dirValues = dirs.computeIfAbsent(dir, (k) -> new long[3]);
+                dirValues[0] += file.getSize();
+                dirValues[1] += received[i];
+                dirValues[2] += (type == FilePriority.Type.IGNORE ? 0 : file.getSize());
+                dirTypes.computeIfAbsent(dir, (k) -> new HashSet<>()).add(type);
+                dirChildren.computeIfAbsent(dir, (k) -> new HashSet<>()).add(child);
+                if (end < 0)
+                    break;
+            }
+
+            int node = tree.getFileNode(i);
+            assertEquals(path.substring(start), tree.getName(node));
+            assertTrue(tree.isFile(node));
+            assertEquals(i, tree.getFileIndex(node));
+            assertEquals(path + File.separator, tree.getPath(node));
+            assertEquals(file.getSize(), tree.size(node));
+            assertEquals(received[i], tree.getReceivedBytes(node));
+            assertEquals(type, tree.getFilePriority(node).getType());
+        }
+
+        int dirsCount = 0;
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            if (tree.isFile(node))
+                continue;
+            dirsCount++;
+            String dir = tree.getPath(node);
+            long[] dirValues = dirs.get(dir);
+            Set<FilePriority.Type> types = dirTypes.get(dir);
+            assertEquals(dirValues[0], tree.size(node));
+            assertEquals(dirValues[1], tree.getReceivedBytes(node));
+            assertEquals(dirValues[2], tree.nonIgnoreFileSize(node));
+            assertEquals(types.size() == 1 ? types.iterator().next() : FilePriority.Type.MIXED,
+                    tree.getFilePriority(node).getType());
+            assertEquals(dirChildren.get(dir).size(), tree.getChildrenCount(node));
+        }
+        assertEquals(dirs.size(), dirsCount);
+    }
+
+    private static List<BencodeFileItem> makeFiles(int count) {
+        var files = new ArrayList<BencodeFileItem>(count);
+        for (int i = 0; i < count; i++) {
+            String path = String.format(Locale.US, "torrent/dir%d/subdir%d/file%d.bin",
+                    i % 20, (i / 20) % 50, i);
+            files.add(new BencodeFileItem(path, i, 1024L * (i % 100 + 1)));
+        }
+
+        return files;
+    }
+}
@@ -33,6 +33,16 @@ class FakeIPFilter implements IPFilter {
         ranges.add(Pair.create(first, last));
     }
 
+    @Override
+    public void addRangeV4(int first, int last) {
+        addRange(IPFilterRanges.formatV4(first), IPFilterRanges.formatV4(last));
+    }
+
+    @Override
+    public void addRangeV6(long firstHigh, long firstLow, long lastHigh, long lastLow) {
+        addRange(IPFilterRanges.formatV6(firstHigh, firstLow), IPFilterRanges.formatV6(lastHigh, lastLow));
+    }
+
     List<Pair<String, String>> getRanges() {
         return ranges;
     }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import androidx.core.util.Pair;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.proninyaroslav.libretorrent.core.exception.IPFilterException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+
+public class IPFilterCacheTest {
+    private static final String SOURCE = "file:///sdcard/ipfilter.dat";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNormalize() throws IPFilterException {
+        var ranges = new IPFilterRanges();
+        ranges.addRange("001.002.008.000", "001.002.008.255");
+        ranges.addRange("1.2.4.0", "1.2.4.255");
+        /* Overlaps with the previous one */
+        ranges.addRange("1.2.4.128", "1.2.5.10");
+        /* Adjacent to the first one */
+        ranges.addRange("1.2.9.0", "1.2.9.255");
+        ranges.addRange("255.255.255.0", "255.255.255.255");
+        ranges.addRange("2002:0000:0000:0:0:0:0:0", "2002:00ff:ffff:0:0:0:0:0");
+        ranges.addRange("2002:ff::", "2002:ff::ffff");
+        ranges.addRange("::1", "::1");
+        ranges.normalize();
+
+        assertEquals(8, ranges.getRuleCount());
+        assertEquals(3, ranges.getV4Count());
+        assertEquals(2, ranges.getV6Count());
+
+        var filter = new FakeIPFilter();
+        ranges.apply(filter);
+        List<Pair<String, String>> expected = List.of(
+                Pair.create("1.2.4.0", "1.2.5.10"),
+                Pair.create("1.2.8.0", "1.2.9.255"),
+                Pair.create("255.255.255.0", "255.255.255.255"),
+                Pair.create("0:0:0:0:0:0:0:1", "0:0:0:0:0:0:0:1"),
+                Pair.create("2002:0:0:0:0:0:0:0", "2002:ff:ffff:0:0:0:0:0")
+        );
+        assertEquals(expected, filter.getRanges());
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        var ranges = new IPFilterRanges();
+        String[][] invalid = {
+                {"1.2.3", "1.2.3.4"},
+                {"1.2.3.256", "1.2.3.4"},
+                {"1.2.3.4", "::1"},
+                {"1.2.3.4", "1.2.3.3"},
+                {"2002:::1", "2002::2"},
+                {"2002:0:0:0:0:0:0:0:0", "2002::2"},
+                {"2002::g", "2002::2"},
+        };
+        for (String[] range : invalid) {
+            try {
+                ranges.addRange(range[0], range[1]);
+                fail("Range " + range[0] + " - " + range[1] + " must be invalid");
+            } catch (IPFilterException e) {
+                /* Expected */
+            }
+        }
+        assertEquals(0, ranges.getRuleCount());
+    }
+
+    @Test
+    public void testLoadSave() throws Exception {
+        var ranges = new IPFilterRanges();
+        ranges.addRange("1.2.4.0", "1.2.4.255");
+        ranges.addRange("10.0.0.0", "10.255.255.255");
+        ranges.addRange("2002::", "2002:ff::");
+        ranges.normalize();
+
+        var cache = new IPFilterCache(new File(folder.getRoot(), "ip_filter.bin"));
+        cache.save(SOURCE, 1000, 2000, ranges);
+
+        IPFilterRanges loaded = cache.load(SOURCE, 1000, 2000);
+        assertNotNull(loaded);
+        assertEquals(ranges.getRuleCount(), loaded.getRuleCount());
+        assertArrayEquals(ranges.getV4Ranges(), loaded.getV4Ranges());
+        assertArrayEquals(ranges.getV6Ranges(), loaded.getV6Ranges());
+
+        /* The source file has changed */
+        assertNull(cache.load(SOURCE, 1001, 2000));
+        assertNull(cache.load(SOURCE, 1000, 2001));
+        assertNull(cache.load("file:///sdcard/other.dat", 1000, 2000));
+    }
+
+    @Test
+    public void testCorruptedCache() throws Exception {
+        File file = new File(folder.getRoot(), "ip_filter.bin");
+        var cache = new IPFilterCache(file);
+        assertNull(cache.load(SOURCE, 1000, 2000));
+
+        var ranges = new IPFilterRanges();
+        ranges.addRange("1.2.4.0", "1.2.4.255");
+        ranges.normalize();
+        cache.save(SOURCE, 1000, 2000, ranges);
+
+        /* Truncate */
+        byte[] data = Files.readAllBytes(file.toPath());
+        try (var os = new FileOutputStream(file)) {
+            os.write(data, 0, data.length - 1);
+        }
+        assertNull(cache.load(SOURCE, 1000, 2000));
+
+        try (var os = new FileOutputStream(file)) {
+            os.write(new byte[]{1, 2, 3});
+        }
+        assertNull(cache.load(SOURCE, 1000, 2000));
+    }
+
+    @Test
+    public void testLargeFilter() throws Exception {
+        int lines = 50_000;
+        var sb = new StringBuilder(lines * 64);
+        for (int i = 0; i < lines; i++) {
+            int addr = i * 1024;
+            sb.append(String.format(Locale.US, "%03d.%03d.%03d.000 - %03d.%03d.%03d.255 , 000 , Range %d%n",
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff,
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff, i));
+        }
+        byte[] datFile = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parseDAT(new ByteArrayInputStream(datFile), ranges);
+        ranges.normalize();
+        assertEquals(lines, ruleCount);
+
+        var cache = new IPFilterCache(new File(folder.getRoot(), "ip_filter.bin"));
+        cache.save(SOURCE, datFile.length, 1, ranges);
+
+        IPFilterRanges loaded = cache.load(SOURCE, datFile.length, 1);
+        assertNotNull(loaded);
+        assertEquals(lines, loaded.getRuleCount());
+        assertEquals(ranges.getV4Count(), loaded.getV4Count());
+        assertArrayEquals(ranges.getV4Ranges(), loaded.getV4Ranges());
+    }
+}
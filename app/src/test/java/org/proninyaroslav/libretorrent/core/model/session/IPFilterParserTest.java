@@ -22,10 +22,18 @@ package org.proninyaroslav.libretorrent.core.model.session;
 import androidx.core.util.Pair;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.*;
 
@@ -63,43 +71,39 @@ public class IPFilterParserTest {
                     SMSHoax FakeAV Fraud Trojan:001.093.026.97-001.093.026.097
                     """;
 
+    /* The addresses in the canonical form, IPv4 ranges first */
     private final Pair<String, String>[] dat_expected_ranges = new Pair[]{
-            Pair.create("000.000.000.000", "000.255.255.255"),
-            Pair.create("2002:0000:0000:0:0:0:0:0", "2002:00ff:ffff:0:0:0:0:0"),
-            Pair.create("001.002.004.000", "001.002.004.255"),
-            Pair.create("001.002.008.000", "001.002.008.255"),
-            Pair.create("001.009.096.105", "001.009.096.105"),
-            Pair.create("001.009.102.251", "001.009.102.251"),
-            Pair.create("001.009.106.186", "001.009.106.186"),
-            Pair.create("001.016.000.000", "001.019.255.255"),
-            Pair.create("001.055.241.140", "001.055.241.140"),
+            Pair.create("0.0.0.0", "0.255.255.255"),
+            Pair.create("1.2.4.0", "1.2.4.255"),
+            Pair.create("1.2.8.0", "1.2.8.255"),
+            Pair.create("1.9.96.105", "1.9.96.105"),
+            Pair.create("1.9.102.251", "1.9.102.251"),
+            Pair.create("1.9.106.186", "1.9.106.186"),
+            Pair.create("1.16.0.0", "1.19.255.255"),
+            Pair.create("1.55.241.140", "1.55.241.140"),
+            Pair.create("2002:0:0:0:0:0:0:0", "2002:ff:ffff:0:0:0:0:0"),
     };
 
     private Pair[] p2p_expected_ranges = new Pair[]{
-            Pair.create("000.000.000.000", "000.255.255.255"),
-            Pair.create("001.002.004.000", "001.002.004.255"),
-            Pair.create("001.002.008.000", "001.002.008.255"),
-            Pair.create("001.009.096.105", "001.009.096.105"),
-            Pair.create("001.009.102.251", "001.009.102.251"),
-            Pair.create("001.009.106.186", "001.009.106.186"),
-            Pair.create("001.016.000.000", "001.019.255.255"),
-            Pair.create("001.055.241.140", "001.055.241.140"),
-            Pair.create("1.093.021.147", "001.093.021.147"),
-            Pair.create("001.093.026.97", "001.093.026.097"),
+            Pair.create("0.0.0.0", "0.255.255.255"),
+            Pair.create("1.2.4.0", "1.2.4.255"),
+            Pair.create("1.2.8.0", "1.2.8.255"),
+            Pair.create("1.9.96.105", "1.9.96.105"),
+            Pair.create("1.9.102.251", "1.9.102.251"),
+            Pair.create("1.9.106.186", "1.9.106.186"),
+            Pair.create("1.16.0.0", "1.19.255.255"),
+            Pair.create("1.55.241.140", "1.55.241.140"),
+            Pair.create("1.93.21.147", "1.93.21.147"),
+            Pair.create("1.93.26.97", "1.93.26.97"),
     };
 
     @Test
     public void parseDAT() {
-        FakeIPFilter filter = new FakeIPFilter();
+        var ranges = new IPFilterRanges();
         try (InputStream is = IOUtils.toInputStream(dat_file, "UTF-8")) {
-            int ruleCount = new IPFilterParser(false).parseDAT(is, filter);
+            int ruleCount = new IPFilterParser(false).parseDAT(is, ranges);
             assertEquals(dat_expected_ranges.length, ruleCount);
-
-            List<Pair<String, String>> ranges = filter.getRanges();
-            assertEquals(dat_expected_ranges.length, ranges.size());
-
-            for (int i = 0; i < dat_expected_ranges.length; i++)
-                assertEquals(dat_expected_ranges[i], ranges.get(i));
+            assertRanges(dat_expected_ranges, ranges);
 
         } catch (Exception e) {
             fail(e.toString());
@@ -108,19 +112,146 @@ public class IPFilterParserTest {
 
     @Test
     public void parseP2P() {
-        FakeIPFilter filter = new FakeIPFilter();
+        var ranges = new IPFilterRanges();
         try (InputStream is = IOUtils.toInputStream(p2p_file, "UTF-8")) {
-            int ruleCount = new IPFilterParser(false).parseP2P(is, filter);
+            int ruleCount = new IPFilterParser(false).parseP2P(is, ranges);
             assertEquals(p2p_expected_ranges.length, ruleCount);
-
-            List<Pair<String, String>> ranges = filter.getRanges();
-            assertEquals(p2p_expected_ranges.length, ranges.size());
-
-            for (int i = 0; i < p2p_expected_ranges.length; i++)
-                assertEquals(p2p_expected_ranges[i], ranges.get(i));
+            assertRanges(p2p_expected_ranges, ranges);
 
         } catch (Exception e) {
             fail(e.toString());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void parseCRLF() throws Exception {
+        var ranges = new IPFilterRanges();
+        byte[] file = dat_file.replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+        int ruleCount = new IPFilterParser(false).parseDAT(new ByteArrayInputStream(file), ranges);
+        assertEquals(dat_expected_ranges.length, ruleCount);
+        assertRanges(dat_expected_ranges, ranges);
+    }
+
+    @Test
+    public void parseMalformed() throws Exception {
+        String file = """
+                1.2.3.4 - 1.2.3.5 , abc , Invalid access value
+                1.2.3.4 - 1.2.3.5 - 1.2.3.6 , 000 , Too many dashes
+                1.2.3.4 - ::1 , 000 , Mixed IPv4 and IPv6
+                1.2.3.5 - 1.2.3.4 , 000 , First is greater than last
+                1.2.3.256 - 1.2.3.4 , 000 , Invalid IP
+                1.2.3.4 , 000 , Single IP
+                1.2.3.4 - 1.2.3.5
+                """;
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parseDAT(
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), ranges);
+        assertEquals(1, ruleCount);
+        assertRanges(new Pair[]{Pair.create("1.2.3.4", "1.2.3.5")}, ranges);
+    }
+
+    @Test
+    public void parseGzip() throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(p2p_file.getBytes(StandardCharsets.UTF_8));
+        }
+
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parse("level1.p2p.gz",
+                new ByteArrayInputStream(out.toByteArray()), ranges);
+        assertEquals(p2p_expected_ranges.length, ruleCount);
+        assertRanges(p2p_expected_ranges, ranges);
+    }
+
+    @Test
+    public void parseZip() throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var zipOut = new ZipOutputStream(out)) {
+            zipOut.putNextEntry(new ZipEntry("ipfilter.dat"));
+            zipOut.write(dat_file.getBytes(StandardCharsets.UTF_8));
+            zipOut.closeEntry();
+        }
+
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parse("ipfilter.zip",
+                new ByteArrayInputStream(out.toByteArray()), ranges);
+        assertEquals(dat_expected_ranges.length, ruleCount);
+        assertRanges(dat_expected_ranges, ranges);
+    }
+
+    @Test
+    public void detectFormat() throws Exception {
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parse("content://filter",
+                IOUtils.toInputStream(p2p_file, "UTF-8"), ranges);
+        assertEquals(p2p_expected_ranges.length, ruleCount);
+
+        ranges = new IPFilterRanges();
+        ruleCount = new IPFilterParser(false).parse("content://filter",
+                IOUtils.toInputStream(dat_file, "UTF-8"), ranges);
+        assertEquals(dat_expected_ranges.length, ruleCount);
+    }
+
+    /*
+     * Compares the parser with the line-based parsing (LineIterator and String.split)
+     * on the synthetic list
+     */
+
+    @Test
+    public void compareWithLineBased() throws Exception {
+        int lines = 10_000;
+        var sb = new StringBuilder(lines * 64);
+        for (int i = 0; i < lines; i++) {
+            int addr = i * 1024;
+            sb.append(String.format(Locale.US, "%03d.%03d.%03d.000 - %03d.%03d.%03d.255 , 000 , Range %d%n",
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff,
+                    (addr >>> 24) & 0xff, (addr >>> 16) & 0xff, (addr >>> 8) & 0xff, i));
+        }
+        byte[] file = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        var ranges = new IPFilterRanges();
+        int ruleCount = new IPFilterParser(false).parseDAT(new ByteArrayInputStream(file), ranges);
+        assertEquals(lines, ruleCount);
+
+        var lineBasedRanges = new IPFilterRanges();
+        ruleCount = parseLineBased(new ByteArrayInputStream(file), lineBasedRanges);
+        assertEquals(lines, ruleCount);
+        assertArrayEquals(lineBasedRanges.getV4Ranges(), ranges.getV4Ranges());
+    }
+
+    /*
+     * The previous parsing approach of the DAT format
+     */
+
+    private static int parseLineBased(InputStream is, IPFilter filter) throws Exception {
+        int ruleCount = 0;
+        LineIterator it = IOUtils.lineIterator(is, "UTF-8");
+        while (it.hasNext()) {
+            String line = it.nextLine().trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("//"))
+                continue;
+            String[] parts = line.split(",");
+            if (parts.length > 1 && Integer.parseInt(parts[1].trim()) > 127)
+                continue;
+            String[] ips = parts[0].split("-");
+            if (ips.length != 2)
+                continue;
+            filter.addRange(ips[0].trim(), ips[1].trim());
+            ruleCount++;
+        }
+
+        return ruleCount;
+    }
+
+    private static void assertRanges(Pair<String, String>[] expected, IPFilterRanges ranges)
+            throws Exception {
+        var filter = new FakeIPFilter();
+        ranges.apply(filter);
+        List<Pair<String, String>> actual = filter.getRanges();
+
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], actual.get(i));
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RestoreTorrentsPipelineTest {
+    private static final int BATCH_SIZE = 4;
+    private static final int MAX_PENDING_ADDS = 4;
+    private static final long PENDING_ADD_TIMEOUT = 200; /* ms */
+
+    private ExecutorService decodeExec;
+    private FakeSource source;
+
+    @Before
+    public void init() {
+        decodeExec = Executors.newFixedThreadPool(4);
+        source = new FakeSource();
+    }
+
+    @After
+    public void shutdown() {
+        decodeExec.shutdownNow();
+        if (source.finishExec != null)
+            source.finishExec.shutdownNow();
+    }
+
+    private RestoreTorrentsPipeline<String> newPipeline(int batchSize) {
+        var pipeline = new RestoreTorrentsPipeline<>(source, decodeExec, batchSize,
+                MAX_PENDING_ADDS, PENDING_ADD_TIMEOUT);
+        source.pipeline = pipeline;
+
+        return pipeline;
+    }
+
+    /*
+     * The torrent "<id>:<seeding time>" is finished if the seeding time is present.
+     * Adds are finished right away or by the executor, like the alerts
+     */
+    private static class FakeSource implements RestoreTorrentsPipeline.Source<String> {
+        final Map<String, byte[]> data = new HashMap<>();
+        final List<List<String>> loadedBatches = new ArrayList<>();
+        final List<String> added = new ArrayList<>();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        final List<String> addedAfterTimeout = new ArrayList<>();
+        final Set<String> decodeThreads = ConcurrentHashMap.newKeySet();
+        final Set<String> failedDecode = new HashSet<>();
+        final Set<String> failedAdd = new HashSet<>();
+        final Set<String> skippedAdd = new HashSet<>();
+        final Set<String> lostAdd = new HashSet<>();
+        final AtomicInteger pendingAdds = new AtomicInteger();
+        final AtomicInteger maxPendingAdds = new AtomicInteger();
+        RestoreTorrentsPipeline<String> pipeline;
+        ExecutorService finishExec;
+        int lastProcessed = -1;
+        int lastTotal = -1;
+        int cancelAfter = -1;
+
+        void put(String... ids) {
+            for (String id : ids)
+                data.put(id, id.getBytes());
+        }
+
+        @NonNull
+        @Override
+        public Map<String, byte[]> load(@NonNull List<String> ids) {
+            loadedBatches.add(new ArrayList<>(ids));
+            var res = new HashMap<String, byte[]>();
+            for (String id : ids) {
+                if (data.containsKey(id))
+                    res.put(id, data.get(id));
+            }
+
+            return res;
+        }
+
+        @NonNull
+        @Override
+        public String decode(@NonNull String id, @NonNull byte[] data) throws Exception {
+            decodeThreads.add(Thread.currentThread().getName());
+            if (failedDecode.contains(id))
+                throw new IllegalArgumentException("Can't decode " + id);
+
+            return new String(data);
+        }
+
+        @Override
+        public long getDeferOrder(@NonNull String torrent) {
+            int pos = torrent.indexOf(':');
+
+            return pos < 0 ? -1 : Long.parseLong(torrent.substring(pos + 1));
+        }
+
+        @Override
+        public boolean add(@NonNull String id, @NonNull String torrent) {
+            added.add(id);
+            if (skippedAdd.contains(id))
+                return false;
+            if (lostAdd.contains(id))
+                return true;
+
+            maxPendingAdds.accumulateAndGet(pendingAdds.incrementAndGet(), Math::max);
+            if (finishExec == null)
+                finish(id);
+            else
+                finishExec.execute(() -> finish(id));
+
+            return true;
+        }
+
+        private void finish(String id) {
+            pendingAdds.decrementAndGet();
+            pipeline.onAddFinished(id, failedAdd.contains(id) ?
+                    new IllegalStateException("Can't add " + id) :
+                    null);
+        }
+
+        @Override
+        public void onError(@NonNull String id, @NonNull Exception e) {
+            errors.add(id);
+        }
+
+        @Override
+        public void onAddedAfterTimeout(@NonNull String id) {
+            addedAfterTimeout.add(id);
+        }
+
+        @Override
+        public void onProgress(int processed, int total) {
+            assertTrue(processed >= lastProcessed);
+            lastProcessed = processed;
+            lastTotal = total;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelAfter >= 0 && added.size() >= cancelAfter;
+        }
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 10; i++)
+            ids.add("t" + i);
+        source.put(ids.toArray(new String[0]));
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(ids, source.added);
+        assertEquals(List.of(ids.subList(0, 4), ids.subList(4, 8), ids.subList(8, 10)),
+                source.loadedBatches);
+        assertTrue(source.errors.isEmpty());
+        assertEquals(10, source.lastProcessed);
+        assertEquals(10, source.lastTotal);
+    }
+
+    @Test
+    public void testDeferOrder() throws Exception {
+        var ids = List.of("a", "seed:300", "b", "seed:10", "c", "seed:100");
+        source.put(ids.toArray(new String[0]));
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(List.of("a", "b", "c", "seed:10", "seed:100", "seed:300"), source.added);
+        assertEquals(6, source.lastProcessed);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        var ids = List.of("a", "missing", "broken", "b");
+        source.put("a", "broken", "b");
+        source.failedDecode.add("broken");
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(List.of("a", "b"), source.added);
+        assertEquals(List.of("missing", "broken"), source.errors);
+        assertEquals(4, source.lastProcessed);
+    }
+
+    @Test
+    public void testLoadError() throws Exception {
+        var ids = List.of("a", "b", "c", "d", "e");
+        source = new FakeSource() {
+            @NonNull
+            @Override
+            public Map<String, byte[]> load(@NonNull List<String> ids) {
+                if (ids.contains("a"))
+                    throw new IllegalStateException();
+                return super.load(ids);
+            }
+        };
+        source.put(ids.toArray(new String[0]));
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(List.of("e"), source.added);
+        assertEquals(List.of("a", "b", "c", "d"), source.errors);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 20; i++)
+            ids.add("t" + i);
+        source.put(ids.toArray(new String[0]));
+        source.cancelAfter = 5;
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(ids.subList(0, 5), source.added);
+        assertTrue(source.loadedBatches.size() < 5);
+    }
+
+    @Test
+    public void testParallelDecode() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 200; i++)
+            ids.add("t" + i);
+        source = new FakeSource() {
+            @NonNull
+            @Override
+            public String decode(@NonNull String id, @NonNull byte[] data) throws Exception {
+                Thread.sleep(1);
+                return super.decode(id, data);
+            }
+        };
+        source.put(ids.toArray(new String[0]));
+
+        newPipeline(16).run(ids);
+
+        assertEquals(ids, source.added);
+        assertTrue(source.decodeThreads.size() > 1);
+    }
+
+    @Test
+    public void testPendingAddsLimit() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 100; i++)
+            ids.add(i % 10 == 0 ? "t" + i + ":" + i : "t" + i);
+        source.put(ids.toArray(new String[0]));
+        source.finishExec = Executors.newSingleThreadExecutor();
+        source.failedAdd.add("t5");
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(100, source.added.size());
+        assertTrue(source.maxPendingAdds.get() <= MAX_PENDING_ADDS);
+        /* All adds are finished before the end */
+        assertEquals(0, source.pendingAdds.get());
+        assertEquals(List.of("t5"), source.errors);
+        assertEquals(100, source.lastProcessed);
+    }
+
+    @Test
+    public void testSkippedAndLostAdds() throws Exception {
+        var ids = List.of("a", "skipped", "lost", "b");
+        source.put(ids.toArray(new String[0]));
+        source.skippedAdd.add("skipped");
+        source.lostAdd.add("lost");
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertEquals(ids, source.added);
+        assertTrue(source.errors.isEmpty());
+        assertEquals(4, source.lastProcessed);
+        assertTrue(source.pipeline.hasExpiredAdds());
+        /* The late result is reported only once */
+        source.pipeline.onAddFinished("lost", null);
+        source.pipeline.onAddFinished("lost", null);
+        assertEquals(List.of("lost"), source.addedAfterTimeout);
+        assertTrue(source.errors.isEmpty());
+        assertFalse(source.pipeline.hasExpiredAdds());
+        assertEquals(4, source.lastProcessed);
+    }
+
+    @Test
+    public void testLostAddLateError() throws Exception {
+        var ids = List.of("a", "lost");
+        source.put(ids.toArray(new String[0]));
+        source.lostAdd.add("lost");
+
+        newPipeline(BATCH_SIZE).run(ids);
+
+        assertTrue(source.errors.isEmpty());
+        source.pipeline.onAddFinished("lost", new IllegalStateException());
+        assertEquals(List.of("lost"), source.errors);
+        assertTrue(source.addedAfterTimeout.isEmpty());
+        assertEquals(2, source.lastProcessed);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        newPipeline(BATCH_SIZE).run(Collections.emptyList());
+
+        assertTrue(source.added.isEmpty());
+        assertTrue(source.loadedBatches.isEmpty());
+    }
+}
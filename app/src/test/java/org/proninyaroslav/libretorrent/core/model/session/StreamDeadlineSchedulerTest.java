@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.proninyaroslav.libretorrent.core.model.stream.TorrentStream;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class StreamDeadlineSchedulerTest {
+    private static final int PIECE_LENGTH = 100_000;
+    private static final int NUM_PIECES = 100;
+
+    private final HashMap<Integer, Integer> deadlines = new HashMap<>();
+    private final HashSet<Integer> havePieces = new HashSet<>();
+    private final TorrentStream stream = new TorrentStream("id", 0, 0, NUM_PIECES - 1,
+            PIECE_LENGTH, 0, (long) NUM_PIECES * PIECE_LENGTH, PIECE_LENGTH);
+    private StreamDeadlineScheduler scheduler;
+
+    @Before
+    public void init() {
+        scheduler = new StreamDeadlineScheduler(new StreamDeadlineScheduler.PieceDeadlines() {
+            @Override
+            public boolean havePiece(int piece) {
+                return havePieces.contains(piece);
+            }
+
+            @Override
+            public void setPieceDeadline(int piece, int deadline) {
+                deadlines.put(piece, deadline);
+            }
+
+            @Override
+            public void resetPieceDeadline(int piece) {
+                deadlines.remove(piece);
+            }
+        });
+    }
+
+    @Test
+    public void testUnknownRate() {
+        var reader = new Object();
+        scheduler.update(reader, stream, 0, 1, 0);
+
+        assertEquals(StreamDeadlineScheduler.MIN_LOOKAHEAD_PIECES, deadlines.size());
+        for (int p = 0; p < StreamDeadlineScheduler.MIN_LOOKAHEAD_PIECES; p++)
+            assertEquals(p * StreamDeadlineScheduler.DEFAULT_DEADLINE_STEP, (int) deadlines.get(p));
+    }
+
+    @Test
+    public void testRequiredPieces() {
+        var reader = new Object();
+        /* Read three pieces at once */
+        scheduler.update(reader, stream, PIECE_LENGTH / 2, 2L * PIECE_LENGTH, 0);
+
+        assertEquals(0, (int) deadlines.get(0));
+        assertEquals(0, (int) deadlines.get(1));
+        assertEquals(0, (int) deadlines.get(2));
+        assertEquals(StreamDeadlineScheduler.DEFAULT_DEADLINE_STEP, (int) deadlines.get(3));
+    }
+
+    @Test
+    public void testHorizonFromRate() {
+        var reader = new Object();
+        /* 100 bytes per ms, one piece per second */
+        for (int i = 0; i <= 2; i++)
+            scheduler.update(reader, stream, (long) i * PIECE_LENGTH, 1, i * 1000L);
+
+        /* 5 + 30 s of playback */
+        int expectedLast = 2 + StreamDeadlineScheduler.MIN_LOOKAHEAD_PIECES + 30 - 1;
+        assertEquals(2, scheduler.getDeadlineRange(reader)[0]);
+        assertEquals(expectedLast, scheduler.getDeadlineRange(reader)[1]);
+
+        /* The passed pieces don't have deadlines anymore */
+        assertFalse(deadlines.containsKey(0));
+        assertFalse(deadlines.containsKey(1));
+
+        assertEquals(0, (int) deadlines.get(2));
+        assertEquals(1000, (int) deadlines.get(3));
+        assertEquals(8000, (int) deadlines.get(10));
+        for (int p = 3; p <= expectedLast; p++)
+            assertTrue(deadlines.get(p) > deadlines.get(p - 1));
+    }
+
+    @Test
+    public void testSeek() {
+        var reader = new Object();
+        for (int i = 0; i <= 2; i++)
+            scheduler.update(reader, stream, (long) i * PIECE_LENGTH, 1, i * 1000L);
+
+        scheduler.update(reader, stream, 80L * PIECE_LENGTH, 1, 2100);
+
+        /* Old deadlines are cleared, the rate is unknown again */
+        assertEquals(StreamDeadlineScheduler.MIN_LOOKAHEAD_PIECES, deadlines.size());
+        for (int p = 80; p < 80 + StreamDeadlineScheduler.MIN_LOOKAHEAD_PIECES; p++)
+            assertTrue(deadlines.containsKey(p));
+
+        /* Backward seek */
+        scheduler.update(reader, stream, 10L * PIECE_LENGTH, 1, 2200);
+        assertEquals(StreamDeadlineScheduler.MIN_LOOKAHEAD_PIECES, deadlines.size());
+        assertTrue(deadlines.containsKey(10));
+        assertFalse(deadlines.containsKey(80));
+    }
+
+    @Test
+    public void testEndOfFile() {
+        var reader = new Object();
+        scheduler.update(reader, stream, (NUM_PIECES - 2L) * PIECE_LENGTH, 1, 0);
+
+        assertEquals(2, deadlines.size());
+        assertEquals(NUM_PIECES - 1, scheduler.getDeadlineRange(reader)[1]);
+    }
+
+    @Test
+    public void testSkipDownloadedPieces() {
+        havePieces.add(0);
+        havePieces.add(2);
+        var reader = new Object();
+        scheduler.update(reader, stream, 0, 1, 0);
+
+        assertFalse(deadlines.containsKey(0));
+        assertTrue(deadlines.containsKey(1));
+        assertFalse(deadlines.containsKey(2));
+        assertTrue(deadlines.containsKey(3));
+    }
+
+    @Test
+    public void testSharedPieces() {
+        var reader1 = new Object();
+        var reader2 = new Object();
+        scheduler.update(reader1, stream, 0, 1, 0);
+        scheduler.update(reader2, stream, 2L * PIECE_LENGTH, 1, 0);
+
+        scheduler.remove(reader1);
+
+        assertNull(scheduler.getDeadlineRange(reader1));
+        assertFalse(deadlines.containsKey(0));
+        assertFalse(deadlines.containsKey(1));
+        /* Still needed by the second reader */
+        for (int p = 2; p <= 6; p++)
+            assertTrue(deadlines.containsKey(p));
+
+        scheduler.remove(reader2);
+        assertTrue(deadlines.isEmpty());
+    }
+}
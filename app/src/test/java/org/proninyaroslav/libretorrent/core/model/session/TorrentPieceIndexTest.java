@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TorrentPieceIndexTest {
+    /*
+     * Piece length is 10 bytes, total size is 45 bytes (5 pieces, the last one is 5 bytes):
+     * file0 [0, 15), file1 [15, 15) (empty), file2 [15, 40), file3 [40, 45)
+     */
+    private final TorrentPieceIndex index = new TorrentPieceIndex(
+            10,
+            45,
+            new long[]{0, 15, 15, 40},
+            new long[]{15, 0, 25, 5}
+    );
+
+    @Test
+    public void filePiecesTest() {
+        assertEquals(4, index.getNumFiles());
+        assertEquals(5, index.getNumPieces());
+
+        assertEquals(0, index.getFirstPiece(0));
+        assertEquals(1, index.getLastPiece(0));
+        assertEquals(1, index.getFirstPiece(1));
+        assertEquals(1, index.getLastPiece(1));
+        assertEquals(1, index.getFirstPiece(2));
+        assertEquals(3, index.getLastPiece(2));
+        assertEquals(4, index.getFirstPiece(3));
+        assertEquals(4, index.getLastPiece(3));
+
+        assertTrue(index.isValidFile(3));
+        assertFalse(index.isValidFile(4));
+        assertFalse(index.isValidFile(-1));
+    }
+
+    @Test
+    public void pieceSizeTest() {
+        assertEquals(10, index.getPieceSize(0));
+        assertEquals(10, index.getPieceSize(3));
+        assertEquals(5, index.getPieceSize(4));
+        assertEquals(0, index.getPieceSize(5));
+    }
+
+    @Test
+    public void fileAtOffsetTest() {
+        assertEquals(0, index.getFileAtOffset(0));
+        assertEquals(0, index.getFileAtOffset(14));
+        assertEquals(2, index.getFileAtOffset(15));
+        assertEquals(2, index.getFileAtOffset(39));
+        assertEquals(3, index.getFileAtOffset(44));
+        assertEquals(-1, index.getFileAtOffset(45));
+        assertEquals(-1, index.getFileAtOffset(-1));
+
+        assertEquals(0, index.getFirstFileOfPiece(0));
+        assertEquals(0, index.getFirstFileOfPiece(1));
+        assertEquals(2, index.getFirstFileOfPiece(2));
+        assertEquals(3, index.getFirstFileOfPiece(4));
+        assertEquals(-1, index.getFirstFileOfPiece(5));
+    }
+
+    @Test
+    public void filesAvailabilityTest() {
+        var avail = new PiecesAvailability(new int[]{1, 0, 2, 2, 0}, index);
+        var filesAvail = avail.getFilesAvailability();
+
+        assertEquals(4, filesAvail.length);
+        assertEquals(0.5, filesAvail[0], 0.001);
+        assertEquals(0, filesAvail[1], 0.001);
+        assertEquals(2 / 3.0, filesAvail[2], 0.001);
+        assertEquals(0, filesAvail[3], 0.001);
+        assertEquals(0.6, avail.getAvailability(), 0.001);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class PieceBufferPoolTest {
+    private static final int PIECE_LENGTH = 1024;
+
+    @Test
+    public void testReuse() {
+        var pool = new PieceBufferPool(4 * PIECE_LENGTH);
+
+        ByteBuffer buf = pool.acquire(PIECE_LENGTH, 100);
+        assertTrue(buf.isDirect());
+        assertEquals(0, buf.position());
+        assertEquals(100, buf.limit());
+        buf.put((byte) 1);
+        pool.release(buf);
+        assertEquals(PIECE_LENGTH, pool.getFreeBytes());
+
+        ByteBuffer reused = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        assertSame(buf, reused);
+        assertEquals(0, reused.position());
+        assertEquals(PIECE_LENGTH, reused.limit());
+        assertEquals(PIECE_LENGTH, pool.getAllocatedBytes());
+        assertEquals(0, pool.getFreeBytes());
+    }
+
+    @Test
+    public void testBudget() {
+        var pool = new PieceBufferPool(2 * PIECE_LENGTH);
+
+        ByteBuffer buf1 = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        ByteBuffer buf2 = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        /* Over the budget */
+        ByteBuffer buf3 = pool.acquire(PIECE_LENGTH, 10);
+        assertTrue(buf1.isDirect());
+        assertTrue(buf2.isDirect());
+        assertFalse(buf3.isDirect());
+        assertEquals(10, buf3.limit());
+        assertEquals(2 * PIECE_LENGTH, pool.getAllocatedBytes());
+
+        /* Heap buffers aren't pooled */
+        pool.release(buf3);
+        assertEquals(0, pool.getFreeBytes());
+        pool.release(buf1);
+        pool.release(buf2);
+        assertEquals(2 * PIECE_LENGTH, pool.getFreeBytes());
+        assertEquals(2 * PIECE_LENGTH, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void testDropOtherSizes() {
+        var pool = new PieceBufferPool(2 * PIECE_LENGTH);
+
+        ByteBuffer small1 = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        ByteBuffer small2 = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        pool.release(small1);
+        pool.release(small2);
+
+        /* The free buffers of other sizes make room for the new one */
+        ByteBuffer large = pool.acquire(2 * PIECE_LENGTH, PIECE_LENGTH);
+        assertTrue(large.isDirect());
+        assertEquals(2 * PIECE_LENGTH, large.capacity());
+        assertEquals(2 * PIECE_LENGTH, pool.getAllocatedBytes());
+        assertEquals(0, pool.getFreeBytes());
+    }
+
+    @Test
+    public void testClear() {
+        var pool = new PieceBufferPool(4 * PIECE_LENGTH);
+
+        ByteBuffer buf1 = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        ByteBuffer buf2 = pool.acquire(PIECE_LENGTH, PIECE_LENGTH);
+        pool.release(buf1);
+        pool.clear();
+        assertEquals(PIECE_LENGTH, pool.getAllocatedBytes());
+        assertEquals(0, pool.getFreeBytes());
+
+        /* The buffer in use returns to the pool as usual */
+        pool.release(buf2);
+        assertEquals(PIECE_LENGTH, pool.getFreeBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeOverPieceLength() {
+        new PieceBufferPool(4 * PIECE_LENGTH).acquire(PIECE_LENGTH, PIECE_LENGTH + 1);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadAheadWindowTest {
+    private static final int PIECE_LENGTH = 64 * 1024;
+    private static final int MIN_PIECES = 1;
+    private static final int MAX_PIECES = 8;
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+    private static final long READ_LATENCY = 50; /* ms */
+
+    private ReadAheadWindow window;
+    private int piece;
+    private long time;
+
+    @Before
+    public void init() {
+        window = new ReadAheadWindow(MIN_PIECES, MAX_PIECES, MAX_BYTES, PIECE_LENGTH);
+        piece = 0;
+        time = 0;
+        for (int i = 0; i < 10; i++)
+            window.onPieceRead(READ_LATENCY);
+    }
+
+    @Test
+    public void testGrowsWithConsumeRate() {
+        assertEquals(MIN_PIECES, window.getSize());
+
+        /* 2 pieces per read latency */
+        consumePieces(20, READ_LATENCY / 2);
+        assertEquals(2, window.getSize());
+
+        /* 5 pieces per read latency */
+        consumePieces(200, READ_LATENCY / 5);
+        assertEquals(5, window.getSize());
+    }
+
+    @Test
+    public void testShrinksToMinPieces() {
+        consumePieces(50, READ_LATENCY / 5);
+        assertTrue(window.getSize() > MIN_PIECES);
+
+        /* Consume a few bytes at a time, e.g. the playback is paused */
+        for (int i = 0; i < 100; i++) {
+            time += 100;
+            window.onConsumed(piece, 1024, time);
+        }
+        assertEquals(MIN_PIECES, window.getSize());
+    }
+
+    @Test
+    public void testMaxPieces() {
+        assertEquals(MAX_PIECES, window.getMaxPieces());
+
+        /* 50 pieces per read latency */
+        consumePieces(500, 1);
+        assertEquals(MAX_PIECES, window.getSize());
+    }
+
+    @Test
+    public void testMaxBytes() {
+        window = new ReadAheadWindow(MIN_PIECES, MAX_PIECES, 4L * PIECE_LENGTH, PIECE_LENGTH);
+        window.onPieceRead(READ_LATENCY);
+        assertEquals(4, window.getMaxPieces());
+        consumePieces(500, 1);
+        assertEquals(4, window.getSize());
+
+        /* The piece is larger than the limit */
+        window = new ReadAheadWindow(MIN_PIECES, MAX_PIECES, MAX_BYTES, (int) MAX_BYTES * 2);
+        assertEquals(MIN_PIECES, window.getMaxPieces());
+    }
+
+    @Test
+    public void testResetOnSeek() {
+        consumePieces(50, READ_LATENCY / 5);
+        assertTrue(window.getSize() > MIN_PIECES);
+
+        /* Forward seek */
+        piece += 100;
+        time += 1;
+        window.onConsumed(piece, PIECE_LENGTH, time);
+        assertEquals(MIN_PIECES, window.getSize());
+
+        consumePieces(50, READ_LATENCY / 5);
+        assertTrue(window.getSize() > MIN_PIECES);
+
+        /* Backward seek */
+        piece = 0;
+        time += 1;
+        window.onConsumed(piece, PIECE_LENGTH, time);
+        assertEquals(MIN_PIECES, window.getSize());
+    }
+
+    /*
+     * Sequentially consume the whole pieces, one per the specified period
+     */
+
+    private void consumePieces(int count, long periodMs) {
+        for (int i = 0; i < count; i++) {
+            time += periodMs;
+            window.onConsumed(++piece, PIECE_LENGTH, time);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TorrentInputStreamConcurrencyTest {
+    private static final String TORRENT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final int PIECE_LENGTH = 64 * 1024;
+    private static final long FILE_SIZE = 2 * 1024 * 1024 + 1000;
+    private static final int NUM_FILES = 4;
+    private static final long READ_LATENCY = 20; /* ms */
+    private static final int DISK_THREADS = 32;
+    private static final int READ_BUF_SIZE = 16 * 1024;
+    private static final long TIMEOUT = 30; /* s */
+
+    private FakeTorrentSession session;
+    private FakeTorrentDownload task;
+    private final List<TorrentStream> streams = new ArrayList<>();
+    private final PieceBufferPool bufferPool = new PieceBufferPool();
+
+    @Before
+    public void init() {
+        session = new FakeTorrentSession();
+        task = new FakeTorrentDownload(session, TORRENT_ID, PIECE_LENGTH,
+                FILE_SIZE * NUM_FILES, READ_LATENCY, DISK_THREADS);
+        session.addTask(task);
+        /* Files aren't aligned to the piece boundaries */
+        for (int i = 0; i < NUM_FILES; i++)
+            streams.add(task.makeStream(i, FILE_SIZE * i, FILE_SIZE));
+    }
+
+    @After
+    public void finish() {
+        task.shutdown();
+    }
+
+    @Test
+    public void testReadWithSkip() throws IOException {
+        var stream = streams.get(1);
+        try (var is = new TorrentInputStream(session, stream, bufferPool)) {
+            long skip = FILE_SIZE / 2 + 7;
+            assertEquals(skip, is.skip(skip));
+            assertEquals(FakeTorrentDownload.byteAt(stream.fileOffset + skip) & 0xff, is.read());
+
+            long read = skip + 1 + readAndCheck(is, stream, skip + 1);
+            assertEquals(FILE_SIZE, read);
+            assertEquals(TorrentInputStream.EOF, is.read());
+        }
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        var stream = streams.get(2);
+        try (var is = new TorrentInputStream(session, stream, bufferPool)) {
+            long skip = PIECE_LENGTH - 1;
+            assertEquals(skip, is.skip(skip));
+
+            var out = new ByteArrayOutputStream();
+            var channel = Channels.newChannel(out);
+            long total = 0;
+            long n;
+            while ((n = is.transferTo(channel, FILE_SIZE)) != TorrentInputStream.EOF)
+                total += n;
+
+            assertEquals(FILE_SIZE - skip, total);
+            var data = out.toByteArray();
+            assertEquals(total, data.length);
+            for (int i = 0; i < data.length; i++)
+                assertEquals(FakeTorrentDownload.byteAt(stream.fileOffset + skip + i), data[i]);
+        }
+    }
+
+    @Test
+    public void testPersistentReadError() throws IOException {
+        var stream = streams.get(1);
+        long brokenPos = (long) (stream.firstFilePiece + 2) * PIECE_LENGTH - stream.fileOffset;
+        task.breakPiece(stream.firstFilePiece + 2);
+        try (var is = new TorrentInputStream(session, stream, bufferPool)) {
+            var buf = new byte[READ_BUF_SIZE];
+            long total = 0;
+            try {
+                int n;
+                while ((n = is.read(buf)) != TorrentInputStream.EOF)
+                    total += n;
+                fail("Read of the broken piece must fail");
+            } catch (IOException e) {
+                /* Expected */
+            }
+            /* The data before the broken piece is read */
+            assertEquals(brokenPos, total);
+        }
+    }
+
+    @Test
+    public void testConcurrentStreams() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(streams.size());
+        try {
+            var tasks = new ArrayList<Callable<Long>>();
+            for (var stream : streams)
+                tasks.add(() -> readStream(stream));
+
+            long totalBytes = 0;
+            for (Future<Long> f : executor.invokeAll(tasks))
+                totalBytes += f.get();
+
+            assertEquals(FILE_SIZE * NUM_FILES, totalBytes);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBlockedStreamDoesNotBlockOthers() throws Exception {
+        var blockedStream = streams.get(0);
+        int missingPiece = blockedStream.firstFilePiece + 3;
+        long missingPos = (long) missingPiece * PIECE_LENGTH - blockedStream.fileOffset;
+        task.removePiece(missingPiece);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            var blockedIs = new TorrentInputStream(session, blockedStream, bufferPool);
+            Future<Long> blocked = executor.submit(() -> readAndCheck(blockedIs, blockedStream, 0));
+            assertTrue(task.awaitMissingPiece(TIMEOUT, TimeUnit.SECONDS));
+
+            /* Independent streams must not be serialized */
+            var stream = streams.get(2);
+            Future<Long> other = executor.submit(() -> readStream(stream));
+            assertEquals(FILE_SIZE, (long) other.get(TIMEOUT, TimeUnit.SECONDS));
+            assertFalse(blocked.isDone());
+
+            /* Stopping the stream wakes up the waiting reader */
+            blockedIs.close();
+            assertEquals(missingPos, (long) blocked.get(TIMEOUT, TimeUnit.SECONDS));
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBuffersReturnedOnClose() throws Exception {
+        assertEquals(FILE_SIZE, readStream(streams.get(0)));
+        long allocated = bufferPool.getAllocatedBytes();
+        assertTrue(allocated > 0);
+        assertEquals(allocated, bufferPool.getFreeBytes());
+
+        /* The next stream reuses the buffers */
+        assertEquals(FILE_SIZE, readStream(streams.get(1)));
+        assertTrue(bufferPool.getAllocatedBytes() <= PieceBufferPool.DEFAULT_MAX_BYTES);
+        assertEquals(bufferPool.getAllocatedBytes(), bufferPool.getFreeBytes());
+    }
+
+    private long readStream(TorrentStream stream) throws IOException {
+        try (var is = new TorrentInputStream(session, stream, bufferPool)) {
+            return readAndCheck(is, stream, 0);
+        }
+    }
+
+    /*
+     * Returns the number of read bytes
+     */
+
+    private static long readAndCheck(TorrentInputStream is, TorrentStream stream, long pos)
+            throws IOException {
+        var buf = new byte[READ_BUF_SIZE];
+        long total = 0;
+        int n;
+        while ((n = is.read(buf)) != TorrentInputStream.EOF) {
+            for (int i = 0; i < n; i++)
+                assertEquals(FakeTorrentDownload.byteAt(stream.fileOffset + pos + total + i), buf[i]);
+            total += n;
+        }
+
+        return total;
+    }
+}
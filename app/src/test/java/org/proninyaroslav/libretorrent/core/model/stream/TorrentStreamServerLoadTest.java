@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.model.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Local load test of the streaming server: more concurrent range requests
+ * at random positions than the stream slots of the torrent,
+ * as a player does while seeking
+ */
+
+public class TorrentStreamServerLoadTest {
+    private static final String TORRENT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final int PIECE_LENGTH = 64 * 1024;
+    private static final long FILE_SIZE = 16L * 1024 * 1024;
+    private static final long READ_LATENCY = 2; /* ms */
+    private static final int DISK_THREADS = 8;
+    private static final int CLIENTS = TorrentStreamServer.MAX_STREAMS_PER_TORRENT * 3;
+    private static final int REQUESTS_PER_CLIENT = 4;
+    private static final int RANGE_SIZE = 128 * 1024;
+
+    private FakeTorrentSession session;
+    private FakeTorrentDownload task;
+    private TorrentStream stream;
+    private TorrentStreamServer server;
+
+    @Before
+    public void init() throws IOException {
+        session = new FakeTorrentSession();
+        task = new FakeTorrentDownload(session, TORRENT_ID, PIECE_LENGTH,
+                FILE_SIZE, READ_LATENCY, DISK_THREADS);
+        session.addTask(task);
+        stream = task.makeStream(0, 0, FILE_SIZE);
+
+        server = new TorrentStreamServer("127.0.0.1", 0);
+        server.start(new TorrentStreamServer.StreamSource() {
+            @Override
+            public TorrentStream getStream(@NonNull String torrentId, int fileIndex) {
+                return (TORRENT_ID.equals(torrentId) && fileIndex == 0 ? stream : null);
+            }
+
+            @Override
+            public TorrentInputStream openStream(@NonNull TorrentStream stream,
+                                                 @NonNull PieceBufferPool bufferPool) {
+                return new TorrentInputStream(session, stream, bufferPool);
+            }
+        });
+    }
+
+    @After
+    public void finish() {
+        server.stop();
+        task.shutdown();
+    }
+
+    @Test
+    public void testConcurrentRangeRequests() throws Exception {
+        String url = TorrentStreamServer.makeStreamUrl("127.0.0.1",
+                server.getListeningPort(), TORRENT_ID, 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            var clients = new ArrayList<Callable<Integer>>();
+            for (int i = 0; i < CLIENTS; i++) {
+                long seed = i;
+                clients.add(() -> runClient(url, new Random(seed)));
+            }
+
+            int requests = 0;
+            for (Future<Integer> f : executor.invokeAll(clients))
+                requests += f.get();
+
+            assertEquals(CLIENTS * REQUESTS_PER_CLIENT, requests);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Returns the number of completed requests
+     */
+
+    private int runClient(String url, Random random) throws IOException {
+        int requests = 0;
+        var buf = new byte[16 * 1024];
+        for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+            long start = (long) (random.nextDouble() * (FILE_SIZE - RANGE_SIZE));
+            long end = start + RANGE_SIZE - 1;
+
+            var conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+            assertEquals(HttpURLConnection.HTTP_PARTIAL, conn.getResponseCode());
+            /* Closing the stream keeps the connection alive for the next request */
+            try (InputStream is = conn.getInputStream()) {
+                long pos = start;
+                int n = is.read(buf);
+                while (n != -1) {
+                    for (int j = 0; j < n; j++)
+                        assertEquals(FakeTorrentDownload.byteAt(pos + j), buf[j]);
+                    pos += n;
+                    n = is.read(buf);
+                }
+                assertEquals(end + 1, pos);
+            }
+            requests++;
+        }
+
+        return requests;
+    }
+}
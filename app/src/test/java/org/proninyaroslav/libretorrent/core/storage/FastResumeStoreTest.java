@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class FastResumeStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private FastResumeStore store;
+
+    @Before
+    public void init() throws Exception {
+        dir = folder.newFolder("fast_resume");
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+    }
+
+    @After
+    public void finish() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 100), fastResume("b", 2, 200)));
+        store.putAll(List.of(fastResume("a", 3, 50)));
+
+        assertEquals(2, store.getCount());
+        assertArrayEquals(data(3, 50), store.get("a").data);
+        assertArrayEquals(data(2, 200), store.get("b").data);
+        assertNull(store.get("c"));
+
+        List<FastResume> fastResumes = store.get(List.of("b", "c", "a"));
+        assertEquals(2, fastResumes.size());
+        assertEquals("b", fastResumes.get(0).torrentId);
+        assertEquals("a", fastResumes.get(1).torrentId);
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 100), fastResume("b", 2, 200)));
+        store.putAll(List.of(fastResume("a", 3, 50)));
+        store.remove("b");
+        store.close();
+
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(1, store.getCount());
+        assertArrayEquals(data(3, 50), store.get("a").data);
+        assertNull(store.get("b"));
+    }
+
+    @Test
+    public void testRetainAll() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 10),
+                fastResume("b", 2, 10),
+                fastResume("c", 3, 10)));
+        store.retainAll(List.of("b", "d"));
+
+        assertEquals(1, store.getCount());
+        assertNull(store.get("a"));
+        assertNotNull(store.get("b"));
+        assertNull(store.get("c"));
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 100)));
+        long size = store.getFileSize();
+        store.putAll(List.of(fastResume("b", 2, 100)));
+        store.close();
+
+        /* Crash in the middle of the second record */
+        try (var file = new RandomAccessFile(new File(dir, FastResumeStore.SEGMENT_FILE), "rw")) {
+            file.setLength(size + FastResumeStore.HEADER_SIZE + 10);
+        }
+
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(1, store.getCount());
+        assertArrayEquals(data(1, 100), store.get("a").data);
+        assertEquals(size, store.getFileSize());
+
+        store.putAll(List.of(fastResume("b", 4, 100)));
+        store.close();
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertArrayEquals(data(4, 100), store.get("b").data);
+    }
+
+    @Test
+    public void testCorruptedRecord() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 100)));
+        long size = store.getFileSize();
+        store.putAll(List.of(fastResume("a", 2, 100), fastResume("b", 3, 100)));
+        store.close();
+
+        /* Flip a byte in the data of the second version */
+        try (var file = new RandomAccessFile(new File(dir, FastResumeStore.SEGMENT_FILE), "rw")) {
+            long pos = size + FastResumeStore.HEADER_SIZE + 1 + 10;
+            file.seek(pos);
+            int b = file.read();
+            file.seek(pos);
+            file.write(b ^ 0xff);
+        }
+
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(2, store.getCount());
+        assertArrayEquals(data(1, 100), store.get("a").data);
+        assertArrayEquals(data(3, 100), store.get("b").data);
+    }
+
+    @Test
+    public void testCorruptedHeader() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 100)));
+        long size = store.getFileSize();
+        store.putAll(List.of(fastResume("a", 2, 100), fastResume("b", 3, 100)));
+        long fileSize = store.getFileSize();
+        store.close();
+
+        /* Break the magic and the data length of the second version */
+        try (var file = new RandomAccessFile(new File(dir, FastResumeStore.SEGMENT_FILE), "rw")) {
+            file.seek(size);
+            file.writeInt(0);
+            file.seek(size + 8);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(2, store.getCount());
+        assertArrayEquals(data(1, 100), store.get("a").data);
+        assertArrayEquals(data(3, 100), store.get("b").data);
+        assertEquals(fileSize, store.getFileSize());
+    }
+
+    @Test
+    public void testCorruptedLength() throws Exception {
+        store.putAll(List.of(fastResume("a", 1, 100)));
+        long size = store.getFileSize();
+        store.putAll(List.of(fastResume("b", 2, 100), fastResume("c", 3, 100)));
+        long fileSize = store.getFileSize();
+        store.close();
+
+        /* The record of "b" now seems to end in the middle of "c" */
+        try (var file = new RandomAccessFile(new File(dir, FastResumeStore.SEGMENT_FILE), "rw")) {
+            file.seek(size + 8);
+            file.writeInt(150);
+        }
+
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(2, store.getCount());
+        assertArrayEquals(data(1, 100), store.get("a").data);
+        assertNull(store.get("b"));
+        assertArrayEquals(data(3, 100), store.get("c").data);
+        assertEquals(fileSize, store.getFileSize());
+    }
+
+    @Test
+    public void testSmallMapWindow() throws Exception {
+        store.close();
+        store = new FastResumeStore(dir, Long.MAX_VALUE, 1024);
+        store.open();
+        int[] lengths = {10, 500, 1000, 1024, 3000, 20};
+        for (int i = 0; i < lengths.length; i++) {
+            store.putAll(List.of(fastResume("id" + i, i, lengths[i])));
+            /* Read right after the append, past the mapped window */
+            assertArrayEquals(data(i, lengths[i]), store.get("id" + i).data);
+        }
+        for (int i = 0; i < lengths.length; i++) {
+            assertArrayEquals(data(i, lengths[i]), store.get("id" + i).data);
+        }
+
+        store.close();
+        store = new FastResumeStore(dir, Long.MAX_VALUE, 1024);
+        store.open();
+        assertEquals(lengths.length, store.getCount());
+        for (int i = lengths.length - 1; i >= 0; i--) {
+            assertArrayEquals(data(i, lengths[i]), store.get("id" + i).data);
+        }
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(String.format(Locale.US, "%040x", i));
+        }
+        for (int round = 0; round < 10; round++) {
+            var fastResumes = new ArrayList<FastResume>();
+            for (int i = 0; i < ids.size(); i++) {
+                fastResumes.add(fastResume(ids.get(i), round + i, 1000));
+            }
+            store.putAll(fastResumes);
+        }
+        store.retainAll(ids.subList(0, 50));
+        long liveSize = store.getLiveSize();
+        assertTrue(store.getFileSize() > liveSize * 10);
+
+        store.compact();
+        assertEquals(liveSize, store.getFileSize());
+        assertEquals(50, store.getCount());
+        for (int i = 0; i < 50; i++) {
+            assertArrayEquals(data(9 + i, 1000), store.get(ids.get(i)).data);
+        }
+
+        store.close();
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(50, store.getCount());
+        assertEquals(liveSize, store.getFileSize());
+        for (int i = 0; i < 50; i++) {
+            assertArrayEquals(data(9 + i, 1000), store.get(ids.get(i)).data);
+        }
+    }
+
+    @Test
+    public void testCompactConcurrentWrites() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(String.format(Locale.US, "%040x", i));
+        }
+        for (int round = 0; round < 5; round++) {
+            var fastResumes = new ArrayList<FastResume>();
+            for (String id : ids) {
+                fastResumes.add(fastResume(id, round, 4096));
+            }
+            store.putAll(fastResumes);
+        }
+
+        var compaction = new Thread(() -> {
+            try {
+                store.compact();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        compaction.start();
+        for (int i = 0; i < ids.size(); i += 2) {
+            store.putAll(List.of(fastResume(ids.get(i), 100, 4096)));
+        }
+        store.remove(ids.get(1));
+        compaction.join();
+
+        assertEquals(ids.size() - 1, store.getCount());
+        assertNull(store.get(ids.get(1)));
+        for (int i = 2; i < ids.size(); i++) {
+            assertArrayEquals(data(i % 2 == 0 ? 100 : 4, 4096), store.get(ids.get(i)).data);
+        }
+
+        store.close();
+        store = new FastResumeStore(dir, Long.MAX_VALUE);
+        store.open();
+        assertEquals(ids.size() - 1, store.getCount());
+        assertNull(store.get(ids.get(1)));
+        for (int i = 2; i < ids.size(); i++) {
+            assertArrayEquals(data(i % 2 == 0 ? 100 : 4, 4096), store.get(ids.get(i)).data);
+        }
+    }
+
+    @Test
+    public void testAutoCompact() throws Exception {
+        store.close();
+        store = new FastResumeStore(dir, 64 * 1024);
+        store.open();
+        for (int round = 0; round < 100; round++) {
+            store.putAll(List.of(fastResume("a", round, 4096)));
+        }
+        /* Compaction runs in the background */
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.getFileSize() > 64 * 1024 + store.getLiveSize() * 2 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(store.getFileSize() <= 64 * 1024 + store.getLiveSize() * 2);
+        assertArrayEquals(data(99, 4096), store.get("a").data);
+    }
+
+    private static FastResume fastResume(String id, int seed, int length) {
+        return new FastResume(id, data(seed, length));
+    }
+
+    private static byte[] data(int seed, int length) {
+        var data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed * 31 + i);
+        }
+
+        return data;
+    }
+}
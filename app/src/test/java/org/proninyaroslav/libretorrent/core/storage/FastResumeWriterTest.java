@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2025 Yaroslav Pronin <proninyaroslav@mail.ru>
+ *
+ * This file is part of LibreTorrent.
+ *
+ * LibreTorrent is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibreTorrent is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibreTorrent.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proninyaroslav.libretorrent.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.proninyaroslav.libretorrent.core.model.data.entity.FastResume;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class FastResumeWriterTest {
+    /* Simulated cost of the transaction commit */
+    private static final long TRANSACTION_TIME = 1; /* ms */
+
+    private static class FakeStorage implements FastResumeWriter.Storage {
+        final Map<String, byte[]> data = new HashMap<>();
+        final List<Integer> transactions = new ArrayList<>();
+        final Set<String> deleted = new HashSet<>();
+        long transactionTime;
+
+        @Override
+        public synchronized void addAll(@NonNull List<FastResume> fastResumes) throws Exception {
+            for (FastResume fastResume : fastResumes) {
+                if (deleted.contains(fastResume.torrentId))
+                    throw new IllegalStateException("FOREIGN KEY constraint failed");
+            }
+            commit(fastResumes);
+        }
+
+        @Override
+        public synchronized void add(@NonNull FastResume fastResume) throws Exception {
+            if (deleted.contains(fastResume.torrentId))
+                throw new IllegalStateException("FOREIGN KEY constraint failed");
+            commit(List.of(fastResume));
+        }
+
+        private void commit(List<FastResume> fastResumes) throws InterruptedException {
+            for (FastResume fastResume : fastResumes)
+                data.put(fastResume.torrentId, fastResume.data);
+            transactions.add(fastResumes.size());
+            if (transactionTime > 0)
+                Thread.sleep(transactionTime);
+        }
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        var storage = new FakeStorage();
+        var writer = new FastResumeWriter(storage, 4, TimeUnit.MINUTES.toMillis(1));
+        for (int i = 0; i < 10; i++)
+            writer.put("t" + i, new byte[]{(byte) i});
+
+        writer.flush();
+
+        assertEquals(0, writer.getNumPending());
+        assertEquals(10, storage.data.size());
+        assertEquals(List.of(4, 4, 2), storage.transactions);
+        assertArrayEquals(new byte[]{9}, storage.data.get("t9"));
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        var storage = new FakeStorage();
+        var writer = new FastResumeWriter(storage, 256, TimeUnit.MINUTES.toMillis(1));
+        for (int i = 0; i < 100; i++) {
+            writer.put("a", new byte[]{(byte) i});
+            writer.put("b", new byte[]{(byte) -i});
+        }
+        assertEquals(2, writer.getNumPending());
+
+        writer.flush();
+
+        assertEquals(List.of(2), storage.transactions);
+        assertArrayEquals(new byte[]{99}, storage.data.get("a"));
+        assertArrayEquals(new byte[]{-99}, storage.data.get("b"));
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception {
+        var written = new CountDownLatch(1);
+        var storage = new FakeStorage() {
+            @Override
+            public synchronized void addAll(@NonNull List<FastResume> fastResumes) throws Exception {
+                super.addAll(fastResumes);
+                written.countDown();
+            }
+        };
+        var writer = new FastResumeWriter(storage, 256, 10);
+        writer.put("a", new byte[]{1});
+
+        /* Without flush */
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{1}, storage.data.get("a"));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        var storage = new FakeStorage();
+        var writer = new FastResumeWriter(storage, 256, TimeUnit.MINUTES.toMillis(1));
+        writer.put("a", new byte[]{1});
+        writer.put("b", new byte[]{2});
+        writer.discard("a");
+
+        writer.flush();
+
+        assertFalse(storage.data.containsKey("a"));
+        assertTrue(storage.data.containsKey("b"));
+    }
+
+    @Test
+    public void testBatchError() throws Exception {
+        var storage = new FakeStorage();
+        storage.deleted.add("deleted");
+        var writer = new FastResumeWriter(storage, 256, TimeUnit.MINUTES.toMillis(1));
+        writer.put("a", new byte[]{1});
+        writer.put("deleted", new byte[]{2});
+        writer.put("b", new byte[]{3});
+
+        writer.flush();
+
+        assertEquals(Set.of("a", "b"), storage.data.keySet());
+    }
+
+    @Test
+    public void testFlushEmpty() throws Exception {
+        var writer = new FastResumeWriter(new FakeStorage(), 256, TimeUnit.MINUTES.toMillis(1));
+        writer.flush();
+    }
+
+    @Test
+    public void testConcurrentPut() throws Exception {
+        var storage = new FakeStorage();
+        var writer = new FastResumeWriter(storage, 16, 1);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    writer.put("t" + thread + "-" + (i % 100), new byte[]{(byte) i});
+            }));
+        }
+        for (var t : threads)
+            t.start();
+        for (var t : threads)
+            t.join();
+
+        writer.flush();
+
+        assertEquals(400, storage.data.size());
+        for (int t = 0; t < 4; t++)
+            assertArrayEquals(new byte[]{(byte) 999}, storage.data.get("t" + t + "-99"));
+    }
+
+    /*
+     * Saving all torrents on stop takes a few transactions instead of one per torrent
+     */
+
+    @Test
+    public void testFlushInBatches() throws Exception {
+        int torrentsCount = 2000;
+        var data = new byte[4096];
+
+        var storage = new FakeStorage();
+        storage.transactionTime = TRANSACTION_TIME;
+        var writer = new FastResumeWriter(storage, FastResumeWriter.DEFAULT_BATCH_SIZE,
+                FastResumeWriter.DEFAULT_COALESCE_DELAY);
+        for (int i = 0; i < torrentsCount; i++)
+            writer.put("t" + i, data);
+        writer.flush();
+
+        assertEquals(torrentsCount, storage.data.size());
+        assertTrue(storage.transactions.size() <= torrentsCount / FastResumeWriter.DEFAULT_BATCH_SIZE + 1);
+    }
+}